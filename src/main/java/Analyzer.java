@@ -0,0 +1,294 @@
+package plc.project;
+
+import java.util.List;
+
+/**
+ * The analyzer resolves every name in the AST once, so that later stages never
+ * need to look names up again. Fields are assigned global slots and each
+ * method's parameters and declarations are assigned slots in its frame, with
+ * the results stored on the AST:
+ *
+ *  - {@link Ast.Field}, {@link Ast.Stmt.Declaration} and {@link Ast.Stmt.For}
+ *    have the {@link Scope.Variable} they define,
+ *  - {@link Ast.Method} has its {@link Scope.Function}, including the number of
+ *    slots its frame needs,
+ *  - {@link Ast.Expr.Access} and {@link Ast.Expr.Function} without a receiver
+ *    have the variable or function they refer to, and a function which is the
+ *    value of a {@code RETURN} and calls a method of the program is marked as
+ *    a tail call.
+ *
+ * Undefined names, calls with the wrong number of arguments, and duplicate
+ * definitions throw a {@link RuntimeException}. Members accessed through a
+ * receiver depend on the receiver's value and are left for the runtime.
+ *
+ * Methods are all defined before any is analyzed, so methods may call each
+ * other regardless of order. Fields are defined in order, so a field's value
+ * can only refer to earlier fields.
+ */
+public final class Analyzer implements Ast.Visitor<Void> {
+
+    private final Scope globals;
+    private Scope scope;
+    private int globalCount = 0;
+
+    private int nextSlot = 0;
+    private int frameSize = 0;
+
+    private final Resolver resolver = new Resolver();
+    private Ast.Source declared = null;
+
+    public Analyzer(Scope parent) {
+        this(parent, 0);
+    }
+
+    /**
+     * Creates an analyzer whose fields are assigned global slots starting at
+     * the given slot, so that several sources can share one array of globals
+     * (see {@link Project}).
+     */
+    public Analyzer(Scope parent, int firstGlobal) {
+        globals = new Scope(parent);
+        scope = globals;
+        globalCount = firstGlobal;
+    }
+
+    /**
+     * Creates an analyzer whose globals are defined in a child of the scope
+     * with the built-in functions.
+     */
+    public Analyzer() {
+        this(builtins());
+    }
+
+    /**
+     * Returns a scope containing the built-in functions, which are
+     * implemented by the {@link Interpreter}.
+     */
+    public static Scope builtins() {
+        Scope scope = new Scope(null);
+        scope.defineFunction("print", 1, null);
+        scope.defineFunction("object", 0, null);
+        scope.defineFunction("list", 0, null);
+        scope.defineFunction("range", 2, null);
+        return scope;
+    }
+
+    /**
+     * Returns the scope containing the analyzed source's fields and methods.
+     */
+    public Scope getScope() {
+        return globals;
+    }
+
+    /**
+     * Defines the source's methods without analyzing them, so that their
+     * functions are available before {@link #visit(Ast.Source)} (such as to
+     * other sources with calls to them, see {@link Project}).
+     */
+    public void declare(Ast.Source ast) {
+        for (Ast.Method method : ast.getMethods()) {
+            method.setFunction(globals.defineFunction(method.getName(), method.getParameters().size(), method));
+        }
+        declared = ast;
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        //methods are declared first, so field values can call them
+        if (declared != ast) {
+            declare(ast);
+        }
+        for (Ast.Field field : ast.getFields()) {
+            visit(field);
+        }
+        for (Ast.Method method : ast.getMethods()) {
+            visit(method);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Field ast) {
+        ast.getValue().ifPresent(this::resolve);
+        ast.setVariable(globals.defineVariable(ast.getName(), Scope.Variable.Kind.GLOBAL, globalCount++));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Method ast) {
+        if (ast.getFunction() == null) {
+            ast.setFunction(globals.defineFunction(ast.getName(), ast.getParameters().size(), ast));
+        }
+        scope = new Scope(globals);
+        nextSlot = 0;
+        frameSize = 0;
+        try {
+            for (String parameter : ast.getParameters()) {
+                define(parameter);
+            }
+            visit(ast.getStatements());
+            ast.getFunction().setFrameSize(frameSize);
+        } finally {
+            scope = globals;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Expression ast) {
+        resolve(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Declaration ast) {
+        //the value is resolved first, so LET x = x; refers to an outer x
+        ast.getValue().ifPresent(this::resolve);
+        ast.setVariable(define(ast.getName()));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Assignment ast) {
+        if (!(ast.getReceiver() instanceof Ast.Expr.Access)) {
+            throw new RuntimeException("The receiver of an assignment must be an access expression.");
+        }
+        resolve(ast.getReceiver());
+        resolve(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.If ast) {
+        resolve(ast.getCondition());
+        visitBlock(ast.getThenStatements());
+        visitBlock(ast.getElseStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.For ast) {
+        resolve(ast.getValue());
+        Scope parent = scope;
+        int slot = nextSlot;
+        scope = new Scope(parent);
+        try {
+            ast.setVariable(define(ast.getName()));
+            visit(ast.getStatements());
+        } finally {
+            scope = parent;
+            nextSlot = slot;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.While ast) {
+        resolve(ast.getCondition());
+        visitBlock(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Return ast) {
+        resolve(ast.getValue());
+        Ast.Expr value = ast.getValue();
+        while (value instanceof Ast.Expr.Group) {
+            value = ((Ast.Expr.Group) value).getExpression();
+        }
+        if (value instanceof Ast.Expr.Function) {
+            Ast.Expr.Function call = (Ast.Expr.Function) value;
+            call.setTail(call.getFunction() != null && call.getFunction().getMethod() != null);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Literal ast) {
+        resolve(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Group ast) {
+        resolve(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Binary ast) {
+        resolve(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Access ast) {
+        resolve(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Function ast) {
+        resolve(ast);
+        return null;
+    }
+
+    private void visit(List<Ast.Stmt> statements) {
+        for (Ast.Stmt statement : statements) {
+            statement.accept(this);
+        }
+    }
+
+    /**
+     * Visits statements in a new scope. Slots of variables declared in the
+     * block are reused once it ends, since they can no longer be accessed.
+     */
+    private void visitBlock(List<Ast.Stmt> statements) {
+        Scope parent = scope;
+        int slot = nextSlot;
+        scope = new Scope(parent);
+        try {
+            visit(statements);
+        } finally {
+            scope = parent;
+            nextSlot = slot;
+        }
+    }
+
+    private Scope.Variable define(String name) {
+        Scope.Variable variable = scope.defineVariable(name, Scope.Variable.Kind.LOCAL, nextSlot++);
+        frameSize = Math.max(frameSize, nextSlot);
+        return variable;
+    }
+
+    /**
+     * Resolves all names in an expression, which is walked with a
+     * {@link Traversal} so deeply nested expressions don't recurse.
+     */
+    private void resolve(Ast.Expr ast) {
+        Traversal.walk(ast, resolver, null);
+    }
+
+    private final class Resolver extends Traversal.Adapter {
+
+        @Override
+        public Boolean visit(Ast.Expr.Access ast) {
+            if (!ast.getReceiver().isPresent()) {
+                Scope.Variable variable = scope.lookupVariable(ast.getName());
+                variable.setUsed(true);
+                ast.setVariable(variable);
+            }
+            return true;
+        }
+
+        @Override
+        public Boolean visit(Ast.Expr.Function ast) {
+            if (!ast.getReceiver().isPresent()) {
+                ast.setFunction(scope.lookupFunction(ast.getName(), ast.getArguments().size()));
+            }
+            return true;
+        }
+
+    }
+
+}
@@ -1,5 +1,6 @@
 package plc.project;
 
+import java.math.BigInteger;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -10,12 +11,62 @@ import java.util.Optional;
  */
 public abstract class Ast {
 
+    /**
+     * A structural (Merkle) hash of the node, computed once at construction
+     * from the node's own data and the hashes of its children. Equal trees
+     * always have equal hashes, so comparisons can stop as soon as two hashes
+     * differ (see {@link AstDiff}). Nodes must not be modified after they are
+     * constructed, including the lists passed to them.
+     */
+    private final long hash;
+
+    private Ast(long hash) {
+        this.hash = hash;
+    }
+
+    public final long getStructuralHash() {
+        return hash;
+    }
+
+    @Override
+    public final int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static long hash(long kind, long... parts) {
+        long hash = kind * 0x9E3779B97F4A7C15L;
+        for (long part : parts) {
+            hash = (hash ^ part) * 0xBF58476D1CE4E5B9L;
+            hash ^= hash >>> 31;
+        }
+        return hash;
+    }
+
+    private static long hash(Optional<? extends Ast> value) {
+        return value.isPresent() ? value.get().getStructuralHash() : 0;
+    }
+
+    private static long hash(List<? extends Ast> values) {
+        long hash = values.size();
+        for (Ast value : values) {
+            hash = hash(hash, value.getStructuralHash());
+        }
+        return hash;
+    }
+
+    /**
+     * Calls the {@link Visitor} method for this node's class. This dispatches
+     * with a single virtual call, so consumers don't need an instanceof chain.
+     */
+    public abstract <R> R accept(Visitor<R> visitor);
+
     public static final class Source extends Ast {
 
         private final List<Field> fields;
         private final List<Method> methods;
 
         public Source(List<Field> fields, List<Method> methods) {
+            super(hash(1, hash(fields), hash(methods)));
             this.fields = fields;
             this.methods = methods;
         }
@@ -28,9 +79,15 @@ public abstract class Ast {
             return methods;
         }
 
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visit(this);
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Source &&
+                    getStructuralHash() == ((Source) obj).getStructuralHash() &&
                     fields.equals(((Source) obj).fields) &&
                     methods.equals(((Source) obj).methods);
         }
@@ -49,8 +106,10 @@ public abstract class Ast {
 
         private final String name;
         private final Optional<Expr> value;
+        private Scope.Variable variable = null;
 
         public Field(String name, Optional<Expr> value) {
+            super(hash(2, name.hashCode(), hash(value)));
             this.name = name;
             this.value = value;
         }
@@ -63,9 +122,26 @@ public abstract class Ast {
             return value;
         }
 
+        /**
+         * Returns the global variable for this field, set by the {@link Analyzer}.
+         */
+        public Scope.Variable getVariable() {
+            return variable;
+        }
+
+        public void setVariable(Scope.Variable variable) {
+            this.variable = variable;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visit(this);
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Field &&
+                    getStructuralHash() == ((Field) obj).getStructuralHash() &&
                     name.equals(((Field) obj).name) &&
                     value.equals(((Field) obj).value);
         }
@@ -85,8 +161,10 @@ public abstract class Ast {
         private final String name;
         private final List<String> parameters;
         private final List<Stmt> statements;
+        private Scope.Function function = null;
 
         public Method(String name, List<String> parameters, List<Stmt> statements) {
+            super(hash(3, name.hashCode(), parameters.hashCode(), hash(statements)));
             this.name = name;
             this.parameters = parameters;
             this.statements = statements;
@@ -104,9 +182,26 @@ public abstract class Ast {
             return statements;
         }
 
+        /**
+         * Returns the function for this method, set by the {@link Analyzer}.
+         */
+        public Scope.Function getFunction() {
+            return function;
+        }
+
+        public void setFunction(Scope.Function function) {
+            this.function = function;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visit(this);
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Method &&
+                    getStructuralHash() == ((Method) obj).getStructuralHash() &&
                     name.equals(((Method) obj).name) &&
                     parameters.equals(((Method) obj).parameters) &&
                     statements.equals(((Method) obj).statements);
@@ -125,11 +220,31 @@ public abstract class Ast {
 
     public static abstract class Stmt extends Ast {
 
+        private int index = -1;
+
+        private Stmt(long hash) {
+            super(hash);
+        }
+
+        /**
+         * Returns the offset of the statement's first token (see
+         * {@link Token#getIndex()}), set by the {@link Parser}, or -1 if the
+         * statement wasn't parsed from source.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public void setIndex(int index) {
+            this.index = index;
+        }
+
         public static final class Expression extends Stmt {
 
             private final Expr expression;
 
             public Expression(Expr expression) {
+                super(hash(4, expression.getStructuralHash()));
                 this.expression = expression;
             }
 
@@ -137,9 +252,15 @@ public abstract class Ast {
                 return expression;
             }
 
+            @Override
+            public <R> R accept(Visitor<R> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Expression &&
+                        getStructuralHash() == ((Expression) obj).getStructuralHash() &&
                         expression.equals(((Expression) obj).expression);
             }
 
@@ -156,8 +277,10 @@ public abstract class Ast {
 
             private String name;
             private Optional<Expr> value;
+            private Scope.Variable variable = null;
 
             public Declaration(String name, Optional<Expr> value) {
+                super(hash(5, name.hashCode(), hash(value)));
                 this.name = name;
                 this.value = value;
             }
@@ -170,9 +293,26 @@ public abstract class Ast {
                 return value;
             }
 
+            /**
+             * Returns the variable being declared, set by the {@link Analyzer}.
+             */
+            public Scope.Variable getVariable() {
+                return variable;
+            }
+
+            public void setVariable(Scope.Variable variable) {
+                this.variable = variable;
+            }
+
+            @Override
+            public <R> R accept(Visitor<R> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Declaration &&
+                        getStructuralHash() == ((Declaration) obj).getStructuralHash() &&
                         name.equals(((Declaration) obj).name) &&
                         value.equals(((Declaration) obj).value);
             }
@@ -193,6 +333,7 @@ public abstract class Ast {
             private final Expr value;
 
             public Assignment(Expr receiver, Expr value) {
+                super(hash(6, receiver.getStructuralHash(), value.getStructuralHash()));
                 this.receiver = receiver;
                 this.value = value;
             }
@@ -205,9 +346,15 @@ public abstract class Ast {
                 return value;
             }
 
+            @Override
+            public <R> R accept(Visitor<R> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Assignment &&
+                        getStructuralHash() == ((Assignment) obj).getStructuralHash() &&
                         receiver.equals(((Assignment) obj).receiver) &&
                         value.equals(((Assignment) obj).value);
             }
@@ -230,6 +377,7 @@ public abstract class Ast {
 
 
             public If(Expr condition, List<Stmt> thenStatements, List<Stmt> elseStatements) {
+                super(hash(7, condition.getStructuralHash(), hash(thenStatements), hash(elseStatements)));
                 this.condition = condition;
                 this.thenStatements = thenStatements;
                 this.elseStatements = elseStatements;
@@ -247,9 +395,15 @@ public abstract class Ast {
                 return elseStatements;
             }
 
+            @Override
+            public <R> R accept(Visitor<R> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof If &&
+                        getStructuralHash() == ((If) obj).getStructuralHash() &&
                         condition.equals(((If) obj).condition) &&
                         thenStatements.equals(((If) obj).thenStatements) &&
                         elseStatements.equals(((If) obj).elseStatements);
@@ -271,8 +425,10 @@ public abstract class Ast {
             private final String name;
             private final Expr value;
             private final List<Stmt> statements;
+            private Scope.Variable variable = null;
 
             public For(String name, Expr value, List<Stmt> statements) {
+                super(hash(8, name.hashCode(), value.getStructuralHash(), hash(statements)));
                 this.name = name;
                 this.value = value;
                 this.statements = statements;
@@ -290,9 +446,26 @@ public abstract class Ast {
                 return statements;
             }
 
+            /**
+             * Returns the loop variable, set by the {@link Analyzer}.
+             */
+            public Scope.Variable getVariable() {
+                return variable;
+            }
+
+            public void setVariable(Scope.Variable variable) {
+                this.variable = variable;
+            }
+
+            @Override
+            public <R> R accept(Visitor<R> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof For &&
+                        getStructuralHash() == ((For) obj).getStructuralHash() &&
                         name.equals(((For) obj).name) &&
                         value.equals(((For) obj).value) &&
                         statements.equals(((For) obj).statements);
@@ -315,6 +488,7 @@ public abstract class Ast {
             private final List<Stmt> statements;
 
             public While(Expr condition, List<Stmt> statements) {
+                super(hash(9, condition.getStructuralHash(), hash(statements)));
                 this.condition = condition;
                 this.statements = statements;
             }
@@ -327,9 +501,15 @@ public abstract class Ast {
                 return statements;
             }
 
+            @Override
+            public <R> R accept(Visitor<R> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof While &&
+                        getStructuralHash() == ((While) obj).getStructuralHash() &&
                         condition.equals(((While) obj).condition) &&
                         statements.equals(((While) obj).statements);
             }
@@ -349,6 +529,7 @@ public abstract class Ast {
             private final Expr value;
 
             public Return(Expr value) {
+                super(hash(10, value.getStructuralHash()));
                 this.value = value;
             }
 
@@ -356,9 +537,15 @@ public abstract class Ast {
                 return value;
             }
 
+            @Override
+            public <R> R accept(Visitor<R> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Return &&
+                        getStructuralHash() == ((Return) obj).getStructuralHash() &&
                         value.equals(((Return) obj).value);
             }
 
@@ -375,28 +562,82 @@ public abstract class Ast {
 
     public static abstract class Expr extends Ast {
 
+        private Type type = Type.ANY;
+
+        private Expr(long hash) {
+            super(hash);
+        }
+
+        /**
+         * Returns the static type of this expression, set by the
+         * {@link TypeInference}. This is {@link Type#ANY} if it couldn't be
+         * proven (or inference hasn't run).
+         */
+        public Type getType() {
+            return type;
+        }
+
+        public void setType(Type type) {
+            this.type = type;
+        }
+
         public static final class Literal extends Expr {
 
-            private final Object literal;
+            private Object literal;
+            private final Object value;
 
             public Literal(Object literal) {
+                this(literal, literal instanceof BigInteger ? Numeric.narrow((BigInteger) literal) : literal);
+            }
+
+            private Literal(Object literal, Object value) {
+                super(hash(11, Objects.hashCode(value)));
                 this.literal = literal;
+                this.value = value;
+            }
+
+            /**
+             * Creates a literal from the runtime representation of a value (see
+             * {@link #getValue()}). Integers that fit in a {@code long} only
+             * create their {@link BigInteger} when {@link #getLiteral()} is
+             * called.
+             */
+            public static Literal of(Object value) {
+                return value instanceof Long ? new Literal(null, value) : new Literal(value);
             }
 
             public Object getLiteral() {
+                if (literal == null && value instanceof Long) {
+                    literal = Numeric.toBigInteger(value);
+                }
                 return literal;
             }
 
+            /**
+             * Returns the literal in its runtime representation, which is the
+             * same as {@link #getLiteral()} except that integers which fit in a
+             * {@code long} are a {@link Long} (see {@link Numeric}).
+             */
+            public Object getValue() {
+                return value;
+            }
+
+            @Override
+            public <R> R accept(Visitor<R> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Literal &&
-                        Objects.equals(literal, ((Literal) obj).literal);
+                        getStructuralHash() == ((Literal) obj).getStructuralHash() &&
+                        Objects.equals(value, ((Literal) obj).value);
             }
 
             @Override
             public String toString() {
                 return "Ast.Expr.Literal{" +
-                        "literal=" + literal +
+                        "literal=" + getLiteral() +
                         '}';
             }
 
@@ -407,6 +648,7 @@ public abstract class Ast {
             private final Expr expression;
 
             public Group(Expr expression) {
+                super(hash(12, expression.getStructuralHash()));
                 this.expression = expression;
             }
 
@@ -414,9 +656,15 @@ public abstract class Ast {
                 return expression;
             }
 
+            @Override
+            public <R> R accept(Visitor<R> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Group &&
+                        getStructuralHash() == ((Group) obj).getStructuralHash() &&
                         expression.equals(((Group) obj).expression);
             }
 
@@ -436,6 +684,7 @@ public abstract class Ast {
             private final Expr right;
 
             public Binary(String operator, Expr left, Expr right) {
+                super(hash(13, operator.hashCode(), left.getStructuralHash(), right.getStructuralHash()));
                 this.operator = operator;
                 this.left = left;
                 this.right = right;
@@ -453,9 +702,15 @@ public abstract class Ast {
                 return right;
             }
 
+            @Override
+            public <R> R accept(Visitor<R> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Binary &&
+                        getStructuralHash() == ((Binary) obj).getStructuralHash() &&
                         operator.equals(((Binary) obj).operator) &&
                         left.equals(((Binary) obj).left) &&
                         right.equals(((Binary) obj).right);
@@ -476,8 +731,11 @@ public abstract class Ast {
 
             private final Optional<Expr> receiver;
             private final String name;
+            private Scope.Variable variable = null;
+            private InlineCache cache = null;
 
             public Access(Optional<Expr> receiver, String name) {
+                super(hash(14, hash(receiver), name.hashCode()));
                 this.receiver = receiver;
                 this.name = name;
             }
@@ -490,9 +748,38 @@ public abstract class Ast {
                 return name;
             }
 
+            /**
+             * Returns the variable this accesses, set by the {@link Analyzer}. Accesses
+             * with a receiver are resolved at runtime and are always {@code null}.
+             */
+            public Scope.Variable getVariable() {
+                return variable;
+            }
+
+            public void setVariable(Scope.Variable variable) {
+                this.variable = variable;
+            }
+
+            /**
+             * Returns the inline cache of the field's slot by receiver shape,
+             * for accesses with a receiver (see {@link Interpreter}).
+             */
+            public InlineCache getCache() {
+                if (cache == null) {
+                    cache = new InlineCache();
+                }
+                return cache;
+            }
+
+            @Override
+            public <R> R accept(Visitor<R> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Access &&
+                        getStructuralHash() == ((Access) obj).getStructuralHash() &&
                         receiver.equals(((Access) obj).receiver) &&
                         name.equals(((Access) obj).name);
             }
@@ -512,8 +799,12 @@ public abstract class Ast {
             private final Optional<Expr> receiver;
             private final String name;
             private final List<Expr> arguments;
+            private Scope.Function function = null;
+            private InlineCache cache = null;
+            private boolean tail = false;
 
             public Function(Optional<Expr> receiver, String name, List<Expr> arguments) {
+                super(hash(15, hash(receiver), name.hashCode(), hash(arguments)));
                 this.receiver = receiver;
                 this.name = name;
                 this.arguments = arguments;
@@ -531,9 +822,51 @@ public abstract class Ast {
                 return arguments;
             }
 
+            /**
+             * Returns the function this calls, set by the {@link Analyzer}. Calls with
+             * a receiver are resolved at runtime and are always {@code null}.
+             */
+            public Scope.Function getFunction() {
+                return function;
+            }
+
+            public void setFunction(Scope.Function function) {
+                this.function = function;
+            }
+
+            /**
+             * Returns true if this is a tail call, set by the {@link Analyzer}
+             * for a call to a method of the program which is the value of a
+             * {@code RETURN}.
+             */
+            public boolean isTail() {
+                return tail;
+            }
+
+            public void setTail(boolean tail) {
+                this.tail = tail;
+            }
+
+            /**
+             * Returns the inline cache of the method by receiver shape, for
+             * calls with a receiver (see {@link Interpreter}).
+             */
+            public InlineCache getCache() {
+                if (cache == null) {
+                    cache = new InlineCache();
+                }
+                return cache;
+            }
+
+            @Override
+            public <R> R accept(Visitor<R> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Function &&
+                        getStructuralHash() == ((Function) obj).getStructuralHash() &&
                         receiver.equals(((Function) obj).receiver) &&
                         name.equals(((Function) obj).name) &&
                         arguments.equals(((Function) obj).arguments);
@@ -552,4 +885,43 @@ public abstract class Ast {
 
     }
 
+    /**
+     * A visitor over every concrete AST class, with the result type {@code R}.
+     * Use {@link Ast#accept(Visitor)} to dispatch to the appropriate method,
+     * or {@link Traversal} to visit a whole tree without recursion.
+     */
+    public interface Visitor<R> {
+
+        R visit(Source ast);
+
+        R visit(Field ast);
+
+        R visit(Method ast);
+
+        R visit(Stmt.Expression ast);
+
+        R visit(Stmt.Declaration ast);
+
+        R visit(Stmt.Assignment ast);
+
+        R visit(Stmt.If ast);
+
+        R visit(Stmt.For ast);
+
+        R visit(Stmt.While ast);
+
+        R visit(Stmt.Return ast);
+
+        R visit(Expr.Literal ast);
+
+        R visit(Expr.Group ast);
+
+        R visit(Expr.Binary ast);
+
+        R visit(Expr.Access ast);
+
+        R visit(Expr.Function ast);
+
+    }
+
 }
@@ -0,0 +1,257 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Computes the differences between two versions of an AST.
+ *
+ * Subtrees are compared with their structural hashes, so identical subtrees
+ * are skipped in O(1) and the cost of a diff is proportional to the
+ * size of the changed region rather than the whole tree. Pairs of nodes are
+ * processed with an explicit stack, so deep trees don't recurse.
+ *
+ * Nodes with the same class and own data (names, operators, literal values,
+ * parameters) are compared child by child; otherwise the whole subtree is
+ * reported as replaced. Lists of children (such as statements) are aligned by
+ * their common prefix and suffix, and the remaining children are paired in
+ * order with any extras reported as removed or inserted.
+ */
+public final class AstDiff {
+
+    /**
+     * A single change. {@code before} is {@code null} for an inserted node
+     * and {@code after} is {@code null} for a removed node.
+     */
+    public static final class Change {
+
+        private final Ast before;
+        private final Ast after;
+
+        public Change(Ast before, Ast after) {
+            this.before = before;
+            this.after = after;
+        }
+
+        public Ast getBefore() {
+            return before;
+        }
+
+        public Ast getAfter() {
+            return after;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Change &&
+                    Objects.equals(before, ((Change) obj).before) &&
+                    Objects.equals(after, ((Change) obj).after);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(before, after);
+        }
+
+        @Override
+        public String toString() {
+            return "AstDiff.Change{" +
+                    "before=" + before +
+                    ", after=" + after +
+                    '}';
+        }
+
+    }
+
+    private AstDiff() {}
+
+    /**
+     * Returns the changes between two trees in source order, which is empty
+     * if the trees are equal.
+     */
+    public static List<Change> diff(Ast before, Ast after) {
+        List<Change> changes = new ArrayList<>();
+        Deque<Ast[]> pairs = new ArrayDeque<>();
+        List<Ast[]> children = new ArrayList<>();
+        Splitter left = new Splitter();
+        Splitter right = new Splitter();
+        pairs.push(new Ast[] {before, after});
+        while (!pairs.isEmpty()) {
+            Ast[] pair = pairs.pop();
+            if (pair[0] == null || pair[1] == null) {
+                changes.add(new Change(pair[0], pair[1]));
+                continue;
+            }
+            if (same(pair[0], pair[1])) {
+                continue;
+            }
+            pair[0].accept(left);
+            pair[1].accept(right);
+            if (!left.label.equals(right.label)) {
+                changes.add(new Change(pair[0], pair[1]));
+                continue;
+            }
+            children.clear();
+            for (int i = 0; i < left.groups.size(); i++) {
+                align(left.groups.get(i), right.groups.get(i), children);
+            }
+            for (int i = children.size() - 1; i >= 0; i--) {
+                pairs.push(children.get(i));
+            }
+        }
+        return changes;
+    }
+
+    private static void align(List<? extends Ast> before, List<? extends Ast> after, List<Ast[]> pairs) {
+        int start = 0;
+        int end = 0;
+        int min = Math.min(before.size(), after.size());
+        while (start < min && same(before.get(start), after.get(start))) {
+            start++;
+        }
+        while (end < min - start && same(before.get(before.size() - 1 - end), after.get(after.size() - 1 - end))) {
+            end++;
+        }
+        int beforeEnd = before.size() - end;
+        int afterEnd = after.size() - end;
+        for (int i = start, j = start; i < beforeEnd || j < afterEnd; i++, j++) {
+            pairs.add(new Ast[] {
+                    i < beforeEnd ? before.get(i) : null,
+                    j < afterEnd ? after.get(j) : null
+            });
+        }
+    }
+
+    /**
+     * Compares subtrees by hash alone, which keeps the check O(1) at the cost
+     * of treating a 64-bit hash collision as equality.
+     */
+    private static boolean same(Ast before, Ast after) {
+        return before.getStructuralHash() == after.getStructuralHash();
+    }
+
+    /**
+     * Splits a node into its label (class and own data) and its groups of
+     * children, with optional children as lists of zero or one nodes.
+     */
+    private static final class Splitter implements Ast.Visitor<Void> {
+
+        private List<Object> label;
+        private List<List<? extends Ast>> groups;
+
+        @SafeVarargs
+        private void split(Ast ast, List<Object> label, List<? extends Ast>... groups) {
+            this.label = new ArrayList<>(label.size() + 1);
+            this.label.add(ast.getClass());
+            this.label.addAll(label);
+            //copied rather than Arrays.asList(groups), which would expose the
+            //varargs array (a [varargs] warning even with @SafeVarargs)
+            this.groups = new ArrayList<>(groups.length);
+            for (List<? extends Ast> group : groups) {
+                this.groups.add(group);
+            }
+        }
+
+        private static List<Ast> optional(Optional<? extends Ast> value) {
+            return value.isPresent() ? List.of(value.get()) : List.of();
+        }
+
+        @Override
+        public Void visit(Ast.Source ast) {
+            split(ast, List.of(), ast.getFields(), ast.getMethods());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Field ast) {
+            split(ast, List.of(ast.getName()), optional(ast.getValue()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Method ast) {
+            split(ast, List.of(ast.getName(), ast.getParameters()), ast.getStatements());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Expression ast) {
+            split(ast, List.of(), List.of(ast.getExpression()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Declaration ast) {
+            split(ast, List.of(ast.getName()), optional(ast.getValue()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Assignment ast) {
+            split(ast, List.of(), List.of(ast.getReceiver()), List.of(ast.getValue()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.If ast) {
+            split(ast, List.of(), List.of(ast.getCondition()), ast.getThenStatements(), ast.getElseStatements());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.For ast) {
+            split(ast, List.of(ast.getName()), List.of(ast.getValue()), ast.getStatements());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.While ast) {
+            split(ast, List.of(), List.of(ast.getCondition()), ast.getStatements());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Return ast) {
+            split(ast, List.of(), List.of(ast.getValue()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Literal ast) {
+            //the value may be null (NIL), which List.of doesn't allow
+            split(ast, Arrays.asList(ast.getValue()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Group ast) {
+            split(ast, List.of(), List.of(ast.getExpression()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Binary ast) {
+            split(ast, List.of(ast.getOperator()), List.of(ast.getLeft()), List.of(ast.getRight()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Access ast) {
+            split(ast, List.of(ast.getName()), optional(ast.getReceiver()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Function ast) {
+            split(ast, List.of(ast.getName()), optional(ast.getReceiver()), ast.getArguments());
+            return null;
+        }
+
+    }
+
+}
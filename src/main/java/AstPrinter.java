@@ -0,0 +1,446 @@
+package plc.project;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Writes an AST to an {@link Appendable} (such as a {@link java.io.Writer})
+ * in a single pass, either in the same format as {@link Ast#toString()} or as
+ * JSON. Unlike {@code toString}, no intermediate strings are built for
+ * subtrees, and nodes are expanded with an explicit stack so memory use is
+ * proportional to the depth of the tree rather than its size.
+ *
+ * The JSON format has an object for each node with a {@code "type"} (the
+ * class name, such as {@code "Binary"}) followed by the node's properties,
+ * with {@code null} for an empty optional value.
+ */
+public final class AstPrinter {
+
+    private final Appendable out;
+    private final Ast.Visitor<Void> expander;
+
+    private Object[] stack = new Object[16];
+    private int size = 0;
+
+    private AstPrinter(Appendable out, boolean json) {
+        this.out = out;
+        this.expander = json ? new JsonExpander() : new TextExpander();
+    }
+
+    /**
+     * Writes the AST in the same format as {@link Ast#toString()}.
+     */
+    public static void print(Ast ast, Appendable out) throws IOException {
+        new AstPrinter(out, false).run(ast);
+    }
+
+    public static void printJson(Ast ast, Appendable out) throws IOException {
+        new AstPrinter(out, true).run(ast);
+    }
+
+    /**
+     * The stack contains strings to write, nodes to expand, and lists which
+     * are in the process of being written.
+     */
+    private void run(Ast ast) throws IOException {
+        push(ast);
+        try {
+            while (size > 0) {
+                size--;
+                Object item = stack[size];
+                stack[size] = null;
+                if (item instanceof String) {
+                    out.append((String) item);
+                } else if (item instanceof Ast) {
+                    ((Ast) item).accept(expander);
+                } else {
+                    ((Items) item).next();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void push(Object item) {
+        if (size == stack.length) {
+            stack = Arrays.copyOf(stack, size * 2);
+        }
+        stack[size++] = item;
+    }
+
+    /**
+     * Pushes items to be written in the given order.
+     */
+    private void push(Object... items) {
+        for (int i = items.length - 1; i >= 0; i--) {
+            push(items[i]);
+        }
+    }
+
+    private void write(String string) {
+        try {
+            out.append(string);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a string as a quoted JSON string.
+     */
+    private void writeJson(String string) {
+        try {
+            out.append('"');
+            for (int i = 0; i < string.length(); i++) {
+                char c = string.charAt(i);
+                if (c == '"' || c == '\\') {
+                    out.append('\\').append(c);
+                } else if (c == '\n') {
+                    out.append("\\n");
+                } else if (c == '\r') {
+                    out.append("\\r");
+                } else if (c == '\t') {
+                    out.append("\\t");
+                } else if (c < 0x20) {
+                    out.append(String.format("\\u%04x", (int) c));
+                } else {
+                    out.append(c);
+                }
+            }
+            out.append('"');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A list of nodes or strings being written one element at a time, which
+     * stays on the stack until the closing bracket.
+     */
+    private final class Items {
+
+        private final List<?> items;
+        private final boolean json;
+        private int index = 0;
+
+        private Items(List<?> items, boolean json) {
+            this.items = items;
+            this.json = json;
+        }
+
+        private void next() {
+            if (index == items.size()) {
+                write("]");
+                return;
+            }
+            Object item = items.get(index);
+            if (index > 0) {
+                write(json ? "," : ", ");
+            }
+            index++;
+            push(this);
+            if (item instanceof Ast) {
+                push(item);
+            } else if (json) {
+                writeJson((String) item);
+            } else {
+                write((String) item);
+            }
+        }
+
+    }
+
+    private final class TextExpander implements Ast.Visitor<Void> {
+
+        private Object list(List<?> items) {
+            write("[");
+            return new Items(items, false);
+        }
+
+        private Object optional(Optional<? extends Ast> value) {
+            if (!value.isPresent()) {
+                return "Optional.empty";
+            }
+            write("Optional[");
+            push("]");
+            return value.get();
+        }
+
+        @Override
+        public Void visit(Ast.Source ast) {
+            write("Ast.Source{fields=[");
+            push(new Items(ast.getFields(), false), "methods=[", new Items(ast.getMethods(), false), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Field ast) {
+            write("Ast.Field{name='" + ast.getName() + "', value=");
+            push("}");
+            push(optional(ast.getValue()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Method ast) {
+            write("Ast.Method{name='" + ast.getName() + "', parameters=" + ast.getParameters() + ", statements=");
+            push("}");
+            push(list(ast.getStatements()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Expression ast) {
+            write("Ast.Stmt.Expression{expression=");
+            push(ast.getExpression(), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Declaration ast) {
+            write("Ast.Stmt.Declaration{name='" + ast.getName() + "', value=");
+            push("}");
+            push(optional(ast.getValue()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Assignment ast) {
+            write("Ast.Stmt.Assignment{receiver=");
+            push(ast.getReceiver(), ", value=", ast.getValue(), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.If ast) {
+            write("Ast.Stmt.If{condition=");
+            push(ast.getCondition(),
+                    ", thenStatements=[", new Items(ast.getThenStatements(), false),
+                    ", elseStatements=[", new Items(ast.getElseStatements(), false),
+                    "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.For ast) {
+            //matches Ast.Stmt.For#toString, which has no "Ast.Stmt." prefix
+            write("For{name='" + ast.getName() + "', value=");
+            push(ast.getValue(), ", statements=[", new Items(ast.getStatements(), false), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.While ast) {
+            write("Ast.Stmt.While{condition=");
+            push(ast.getCondition(), ", statements=[", new Items(ast.getStatements(), false), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Return ast) {
+            write("Ast.Stmt.Return{value=");
+            push(ast.getValue(), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Literal ast) {
+            write("Ast.Expr.Literal{literal=" + ast.getLiteral() + "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Group ast) {
+            write("Ast.Expr.Group{expression=");
+            push(ast.getExpression(), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Binary ast) {
+            write("Ast.Expr.Binary{operator='" + ast.getOperator() + "', left=");
+            push(ast.getLeft(), ", right=", ast.getRight(), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Access ast) {
+            write("Ast.Expr.Access{receiver=");
+            push(", name='" + ast.getName() + "'}");
+            push(optional(ast.getReceiver()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Function ast) {
+            write("Ast.Expr.Function{receiver=");
+            push(", name='" + ast.getName() + "', arguments=[", new Items(ast.getArguments(), false), "}");
+            push(optional(ast.getReceiver()));
+            return null;
+        }
+
+    }
+
+    private final class JsonExpander implements Ast.Visitor<Void> {
+
+        private void start(String type) {
+            write("{\"type\":\"" + type + "\"");
+        }
+
+        private Object optional(Optional<? extends Ast> value) {
+            return value.isPresent() ? value.get() : "null";
+        }
+
+        @Override
+        public Void visit(Ast.Source ast) {
+            start("Source");
+            write(",\"fields\":[");
+            push(new Items(ast.getFields(), true), ",\"methods\":[", new Items(ast.getMethods(), true), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Field ast) {
+            start("Field");
+            write(",\"name\":");
+            writeJson(ast.getName());
+            write(",\"value\":");
+            push(optional(ast.getValue()), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Method ast) {
+            start("Method");
+            write(",\"name\":");
+            writeJson(ast.getName());
+            write(",\"parameters\":[");
+            push(new Items(ast.getParameters(), true), ",\"statements\":[", new Items(ast.getStatements(), true), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Expression ast) {
+            start("Expression");
+            write(",\"expression\":");
+            push(ast.getExpression(), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Declaration ast) {
+            start("Declaration");
+            write(",\"name\":");
+            writeJson(ast.getName());
+            write(",\"value\":");
+            push(optional(ast.getValue()), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Assignment ast) {
+            start("Assignment");
+            write(",\"receiver\":");
+            push(ast.getReceiver(), ",\"value\":", ast.getValue(), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.If ast) {
+            start("If");
+            write(",\"condition\":");
+            push(ast.getCondition(),
+                    ",\"thenStatements\":[", new Items(ast.getThenStatements(), true),
+                    ",\"elseStatements\":[", new Items(ast.getElseStatements(), true),
+                    "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.For ast) {
+            start("For");
+            write(",\"name\":");
+            writeJson(ast.getName());
+            write(",\"value\":");
+            push(ast.getValue(), ",\"statements\":[", new Items(ast.getStatements(), true), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.While ast) {
+            start("While");
+            write(",\"condition\":");
+            push(ast.getCondition(), ",\"statements\":[", new Items(ast.getStatements(), true), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Return ast) {
+            start("Return");
+            write(",\"value\":");
+            push(ast.getValue(), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Literal ast) {
+            start("Literal");
+            write(",\"value\":");
+            Object value = ast.getValue();
+            if (value == null || value instanceof Boolean || value instanceof Long
+                    || value instanceof BigInteger || value instanceof BigDecimal) {
+                write(String.valueOf(value));
+            } else {
+                writeJson(value.toString());
+            }
+            write("}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Group ast) {
+            start("Group");
+            write(",\"expression\":");
+            push(ast.getExpression(), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Binary ast) {
+            start("Binary");
+            write(",\"operator\":");
+            writeJson(ast.getOperator());
+            write(",\"left\":");
+            push(ast.getLeft(), ",\"right\":", ast.getRight(), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Access ast) {
+            start("Access");
+            write(",\"name\":");
+            writeJson(ast.getName());
+            write(",\"receiver\":");
+            push(optional(ast.getReceiver()), "}");
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Function ast) {
+            start("Function");
+            write(",\"name\":");
+            writeJson(ast.getName());
+            write(",\"receiver\":");
+            push(optional(ast.getReceiver()), ",\"arguments\":[", new Items(ast.getArguments(), true), "}");
+            return null;
+        }
+
+    }
+
+}
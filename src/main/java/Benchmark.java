@@ -0,0 +1,162 @@
+package plc.project;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Compares the {@link Interpreter} (a plain tree walker) with the
+ * {@link NodeInterpreter} (self-specializing nodes) on a few programs with
+ * hot loops, printing the best time of each after warming up.
+ *
+ * Each run analyzes a fresh copy of the program, so neither executor sees
+ * inline caches that the other already filled.
+ */
+public final class Benchmark {
+
+    private static final int WARMUP = 10;
+    private static final int RUNS = 10;
+
+    private Benchmark() {}
+
+    public static void main(String[] args) {
+        long n = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        run("integers", () -> integers(n));
+        run("decimals", () -> decimals(n / 10));
+        run("ranges", () -> ranges(n));
+        run("fields", () -> fields(n));
+        run("calls", () -> calls(n));
+        run("strings", () -> strings(n / 10));
+    }
+
+    private static void run(String name, Supplier<Ast.Source> program) {
+        long tree = measure(program, source -> {
+            Analyzer analyzer = new Analyzer();
+            analyzer.visit(source);
+            return new Interpreter(analyzer.getScope()).run(source);
+        });
+        long nodes = measure(program, source -> {
+            Analyzer analyzer = new Analyzer();
+            analyzer.visit(source);
+            return new NodeInterpreter(analyzer.getScope()).run(source);
+        });
+        System.out.printf("%-10s tree %6d ms   nodes %6d ms   %.2fx%n", name, tree / 1_000_000, nodes / 1_000_000, (double) tree / nodes);
+    }
+
+    private static long measure(Supplier<Ast.Source> program, java.util.function.Function<Ast.Source, Object> executor) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < WARMUP + RUNS; i++) {
+            Ast.Source source = program.get();
+            long start = System.nanoTime();
+            executor.apply(source);
+            long elapsed = System.nanoTime() - start;
+            if (i >= WARMUP) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * {@code LET i = 0; LET t = 0; WHILE i < n DO t = t + i * 2 - 1; i = i + 1; END RETURN t;}
+     */
+    private static Ast.Source integers(long n) {
+        return main(
+                new Ast.Stmt.Declaration("i", Optional.of(parse("0"))),
+                new Ast.Stmt.Declaration("t", Optional.of(parse("0"))),
+                new Ast.Stmt.While(parse("i < " + n), Arrays.asList(
+                        new Ast.Stmt.Assignment(parse("t"), parse("t + i * 2 - 1")),
+                        new Ast.Stmt.Assignment(parse("i"), parse("i + 1"))
+                )),
+                new Ast.Stmt.Return(parse("t"))
+        );
+    }
+
+    /**
+     * {@code LET i = 0; LET t = 0.0; WHILE i < n DO t = t + 0.5; i = i + 1; END RETURN t;}
+     */
+    private static Ast.Source decimals(long n) {
+        return main(
+                new Ast.Stmt.Declaration("i", Optional.of(parse("0"))),
+                new Ast.Stmt.Declaration("t", Optional.of(parse("0.0"))),
+                new Ast.Stmt.While(parse("i < " + n), Arrays.asList(
+                        new Ast.Stmt.Assignment(parse("t"), parse("t + 0.5")),
+                        new Ast.Stmt.Assignment(parse("i"), parse("i + 1"))
+                )),
+                new Ast.Stmt.Return(parse("t"))
+        );
+    }
+
+    /**
+     * {@code LET t = 0; FOR i IN range(0, n) DO t = t + i * 2 - 1; END RETURN t;}
+     */
+    private static Ast.Source ranges(long n) {
+        return main(
+                new Ast.Stmt.Declaration("t", Optional.of(parse("0"))),
+                new Ast.Stmt.For("i", parse("range(0, " + n + ")"), Arrays.asList(
+                        new Ast.Stmt.Assignment(parse("t"), parse("t + i * 2 - 1"))
+                )),
+                new Ast.Stmt.Return(parse("t"))
+        );
+    }
+
+    /**
+     * {@code LET o = object(); o.x = 0; LET i = 0; WHILE i < n DO o.x = o.x + i; i = i + 1; END RETURN o.x;}
+     */
+    private static Ast.Source fields(long n) {
+        return main(
+                new Ast.Stmt.Declaration("o", Optional.of(parse("object()"))),
+                new Ast.Stmt.Assignment(parse("o.x"), parse("0")),
+                new Ast.Stmt.Declaration("i", Optional.of(parse("0"))),
+                new Ast.Stmt.While(parse("i < " + n), Arrays.asList(
+                        new Ast.Stmt.Assignment(parse("o.x"), parse("o.x + i")),
+                        new Ast.Stmt.Assignment(parse("i"), parse("i + 1"))
+                )),
+                new Ast.Stmt.Return(parse("o.x"))
+        );
+    }
+
+    /**
+     * {@code DEF add(a, b) DO RETURN a + b; END} and
+     * {@code LET i = 0; LET t = 0; WHILE i < n DO t = add(t, i); i = i + 1; END RETURN t;}
+     */
+    private static Ast.Source calls(long n) {
+        Ast.Method add = new Ast.Method("add", Arrays.asList("a", "b"), Arrays.asList(new Ast.Stmt.Return(parse("a + b"))));
+        Ast.Source main = main(
+                new Ast.Stmt.Declaration("i", Optional.of(parse("0"))),
+                new Ast.Stmt.Declaration("t", Optional.of(parse("0"))),
+                new Ast.Stmt.While(parse("i < " + n), Arrays.asList(
+                        new Ast.Stmt.Assignment(parse("t"), parse("add(t, i)")),
+                        new Ast.Stmt.Assignment(parse("i"), parse("i + 1"))
+                )),
+                new Ast.Stmt.Return(parse("t"))
+        );
+        return new Ast.Source(Arrays.asList(), List.of(add, main.getMethods().get(0)));
+    }
+
+    /**
+     * {@code LET i = 0; LET s = ""; WHILE i < n DO s = s + "ab"; i = i + 1; END RETURN s.length();}
+     */
+    private static Ast.Source strings(long n) {
+        return main(
+                new Ast.Stmt.Declaration("i", Optional.of(parse("0"))),
+                new Ast.Stmt.Declaration("s", Optional.of(parse("\"\""))),
+                new Ast.Stmt.While(parse("i < " + n), Arrays.asList(
+                        new Ast.Stmt.Assignment(parse("s"), parse("s + \"ab\"")),
+                        new Ast.Stmt.Assignment(parse("i"), parse("i + 1"))
+                )),
+                new Ast.Stmt.Return(parse("s.length()"))
+        );
+    }
+
+    private static Ast.Source main(Ast.Stmt... statements) {
+        Ast.Method main = new Ast.Method("main", Arrays.asList(), Arrays.asList(statements));
+        return new Ast.Source(Arrays.asList(), Arrays.asList(main));
+    }
+
+    private static Ast.Expr parse(String input) {
+        return new Parser(new Lexer(input).lex()).parseExpression();
+    }
+
+}
@@ -0,0 +1,66 @@
+package plc.project;
+
+/**
+ * An instruction budget for an {@link Interpreter} (see
+ * {@link Interpreter#setBudget(Budget)}), which charges one instruction for
+ * each loop iteration (a back edge of a {@code WHILE} or {@code FOR}) and
+ * each call, since every unbounded computation goes through one of them.
+ *
+ * Instructions are handed to the interpreter in slices. The interpreter only
+ * decrements a counter per instruction, and when a slice is used it asks the
+ * budget for the next one, which yields the thread (so other programs can
+ * run on its carrier or core) or throws once the limit is reached.
+ */
+public final class Budget {
+
+    private final long slice;
+    private final long limit;
+    private long used = 0;
+    private long granted = 0;
+    private long yields = 0;
+
+    public Budget(long slice, long limit) {
+        if (slice <= 0) {
+            throw new IllegalArgumentException("Expected a positive slice, received " + slice + ".");
+        }
+        this.slice = slice;
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the number of instructions charged, counting only the slices
+     * which have been used completely.
+     */
+    public long getUsed() {
+        return used;
+    }
+
+    public long getYields() {
+        return yields;
+    }
+
+    /**
+     * Returns the first slice, which is granted without yielding.
+     */
+    long start() {
+        granted = Math.min(slice, limit - used);
+        return Math.max(granted, 0);
+    }
+
+    /**
+     * Charges the slice that was just used and returns the number of
+     * instructions left in the next one, after the instruction that asked
+     * for it.
+     */
+    long next() {
+        used += granted;
+        if (used >= limit) {
+            throw new RuntimeException("Instruction budget of " + limit + " exceeded.");
+        }
+        yields++;
+        Thread.yield();
+        granted = Math.min(slice, limit - used);
+        return granted - 1;
+    }
+
+}
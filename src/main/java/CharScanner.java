@@ -0,0 +1,87 @@
+package plc.project;
+
+/**
+ * Finds the end of runs of characters used by the {@link Lexer}: blanks
+ * (spaces, tabs, and backspaces, but not line breaks, which the lexer records
+ * in its {@link LineIndex}), identifier characters ({@code [A-Za-z0-9_-]}),
+ * and digits ({@code [0-9]}).
+ *
+ * When the {@code jdk.incubator.vector} module is available (it must be added
+ * with {@code --add-modules jdk.incubator.vector}), runs are scanned a whole
+ * vector of characters at a time by {@link VectorCharScanner}. Otherwise, each
+ * character is checked in turn, with the same results.
+ */
+public final class CharScanner {
+
+    static final boolean VECTOR = isVectorAvailable();
+
+    private CharScanner() {}
+
+    /**
+     * Returns the index of the first character at or after {@code start}
+     * which is not a blank, or {@code chars.length} if there is none.
+     */
+    public static int blankEnd(char[] chars, int start) {
+        return VECTOR ? VectorCharScanner.blankEnd(chars, start) : scalarBlankEnd(chars, start);
+    }
+
+    public static int identifierEnd(char[] chars, int start) {
+        return VECTOR ? VectorCharScanner.identifierEnd(chars, start) : scalarIdentifierEnd(chars, start);
+    }
+
+    public static int digitEnd(char[] chars, int start) {
+        return VECTOR ? VectorCharScanner.digitEnd(chars, start) : scalarDigitEnd(chars, start);
+    }
+
+    static int scalarBlankEnd(char[] chars, int start) {
+        int i = start;
+        while (i < chars.length && isBlank(chars[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    static int scalarIdentifierEnd(char[] chars, int start) {
+        int i = start;
+        while (i < chars.length && isIdentifier(chars[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    static int scalarDigitEnd(char[] chars, int start) {
+        int i = start;
+        while (i < chars.length && isDigit(chars[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\b';
+    }
+
+    static boolean isIdentifier(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || isDigit(c) || c == '_' || c == '-';
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * The vector API is an incubator module, so it's only used if it was
+     * added to the boot layer and {@link VectorCharScanner} links.
+     */
+    private static boolean isVectorAvailable() {
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return false;
+        }
+        try {
+            return VectorCharScanner.LENGTH > 1;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the compiler pipeline on a source string: {@link Lexer},
+ * {@link Parser#parseSource()}, {@link Inliner}, {@link Optimizer},
+ * {@link Analyzer}, and {@link TypeInference}. The analyzer runs after the
+ * optimizer so that its annotations are on the optimized tree, and type
+ * inference (which needs the resolved names) is measured as part of the
+ * analyze phase.
+ *
+ * Sources are parsed iteratively (see {@link Parser#Parser(List, int)}), so
+ * groups and argument lists nested deeper than the limit throw a
+ * {@link ParseException} rather than overflowing the stack.
+ *
+ * If {@link Metrics#isEnabled()} when a compile starts, each phase is
+ * measured and the results are available from {@link #getMetrics()}.
+ */
+public final class Compiler {
+
+    private final int maxDepth;
+    private Metrics metrics = null;
+    private LineIndex lines = null;
+
+    public Compiler() {
+        this(Parser.DEFAULT_MAX_DEPTH);
+    }
+
+    public Compiler(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public Ast.Source compile(String input) throws ParseException {
+        Metrics metrics = Metrics.isEnabled() ? new Metrics() : null;
+        this.metrics = metrics;
+        if (metrics == null) {
+            Lexer lexer = new Lexer(input);
+            lines = lexer.getLineIndex();
+            Ast.Source ast = new Optimizer().optimize(new Inliner().inline(new Parser(lexer.lex(), maxDepth).parseSource()));
+            new Analyzer().visit(ast);
+            new TypeInference().visit(ast);
+            return ast;
+        }
+        metrics.begin();
+        try {
+            metrics.begin(Metrics.Phase.LEX);
+            Lexer lexer = new Lexer(input);
+            lines = lexer.getLineIndex();
+            List<Token> tokens;
+            try {
+                tokens = lexer.lex();
+            } finally {
+                metrics.end(Metrics.Phase.LEX);
+            }
+            metrics.addCharacters(input.length());
+            metrics.addTokens(tokens.size());
+
+            metrics.begin(Metrics.Phase.PARSE);
+            Ast.Source ast;
+            try {
+                ast = new Parser(tokens, maxDepth).parseSource();
+            } finally {
+                metrics.end(Metrics.Phase.PARSE);
+            }
+            metrics.addNodes(ast);
+
+            metrics.begin(Metrics.Phase.OPTIMIZE);
+            try {
+                Inliner inliner = new Inliner();
+                ast = new Optimizer().optimize(inliner.inline(ast));
+                metrics.addInlined(inliner.getInlined());
+            } finally {
+                metrics.end(Metrics.Phase.OPTIMIZE);
+            }
+
+            metrics.begin(Metrics.Phase.ANALYZE);
+            try {
+                new Analyzer().visit(ast);
+                new TypeInference().visit(ast);
+            } finally {
+                metrics.end(Metrics.Phase.ANALYZE);
+            }
+            return ast;
+        } finally {
+            metrics.end();
+        }
+    }
+
+    /**
+     * Lowers each method of a compiled source into an optimized
+     * {@link Ir.Function}, for code generation.
+     */
+    public List<Ir.Function> lower(Ast.Source ast) {
+        List<Ir.Function> functions = new ArrayList<>();
+        for (Ast.Method method : ast.getMethods()) {
+            functions.add(new IrOptimizer().optimize(new IrBuilder().build(method)));
+        }
+        return functions;
+    }
+
+    /**
+     * Returns the metrics of the last compile, or {@code null} if metrics
+     * were disabled.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the line index of the last compiled input, for converting the
+     * index of a {@link ParseException} to a line and column.
+     */
+    public LineIndex getLineIndex() {
+        return lines;
+    }
+
+}
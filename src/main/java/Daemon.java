@@ -0,0 +1,195 @@
+package plc.project;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A long-lived compiler process which accepts requests over a Unix domain
+ * socket, so that repeated compiles run on an already warmed-up JVM instead of
+ * paying for startup and JIT compilation every time (see
+ * {@link DaemonClient} for the client side).
+ *
+ * Each connection may send any number of requests, which are handled in
+ * order. A request is a format byte ({@link #TEXT} or {@link #JSON}) followed
+ * by a frame containing the UTF-8 source. The response is a status byte
+ * followed by a frame containing either the compiled AST printed with
+ * {@link AstPrinter} ({@link #OK}), a diagnostic formatted as
+ * {@code line:column: message} ({@link #DIAGNOSTIC}), or the message of any
+ * other failure ({@link #ERROR}). A frame is an int length followed by that
+ * many bytes.
+ */
+public final class Daemon implements Closeable {
+
+    public static final byte TEXT = 0;
+    public static final byte JSON = 1;
+
+    public static final byte OK = 0;
+    public static final byte DIAGNOSTIC = 1;
+    public static final byte ERROR = 2;
+
+    /**
+     * The largest frame accepted, which guards against reading a corrupt
+     * length as a huge allocation.
+     */
+    static final int MAX_FRAME = 64 * 1024 * 1024;
+
+    private final Path path;
+    private final ServerSocketChannel server;
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "plc-daemon-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Binds the daemon to a socket file at the given path, replacing any file
+     * left by a previous daemon.
+     */
+    public Daemon(Path path) throws IOException {
+        this.path = path;
+        Files.deleteIfExists(path);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: Daemon <socket>");
+            System.exit(2);
+        }
+        try (Daemon daemon = new Daemon(Paths.get(args[0]))) {
+            daemon.warmup(10_000);
+            daemon.serve();
+        }
+    }
+
+    /**
+     * Compiles a sample source, so the first requests don't run in the
+     * interpreter while the JIT catches up.
+     */
+    public void warmup(int iterations) {
+        String sample = "LET limit = 10;\n" +
+                "DEF main() DO\n" +
+                "    LET total = 0;\n" +
+                "    FOR i IN range(0, limit) DO\n" +
+                "        IF i >= 5 AND (TRUE OR i != 7) DO total = total + i * 2; ELSE print(\"small\\n\"); END\n" +
+                "    END\n" +
+                "    WHILE total > 100 DO total = total - 1; END\n" +
+                "    LET items = list(); items.add('c'); items.add(2.5);\n" +
+                "    RETURN total;\n" +
+                "END";
+        Compiler compiler = new Compiler();
+        for (int i = 0; i < iterations; i++) {
+            compiler.compile(sample);
+        }
+    }
+
+    /**
+     * Accepts connections until the daemon is closed, handling each connection
+     * on its own thread.
+     */
+    public void serve() throws IOException {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            connections.execute(() -> handle(channel));
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try {
+            DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+            Compiler compiler = new Compiler();
+            while (true) {
+                int format = in.read();
+                if (format == -1) {
+                    return;
+                }
+                String source = new String(readFrame(in), StandardCharsets.UTF_8);
+                respond(compiler, format, source, out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            //the client disconnected or sent a malformed request
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //already disconnected
+            }
+        }
+    }
+
+    private static void respond(Compiler compiler, int format, String source, DataOutputStream out) throws IOException {
+        byte status;
+        String response;
+        try {
+            Ast.Source ast = compiler.compile(source);
+            StringBuilder builder = new StringBuilder();
+            if (format == JSON) {
+                AstPrinter.printJson(ast, builder);
+            } else {
+                AstPrinter.print(ast, builder);
+            }
+            status = OK;
+            response = builder.toString();
+        } catch (ParseException e) {
+            LineIndex lines = compiler.getLineIndex();
+            int index = Math.min(Math.max(e.getIndex(), 0), source.length());
+            status = DIAGNOSTIC;
+            response = lines.getLine(index) + ":" + lines.getColumn(index) + ": " + e.getMessage();
+        } catch (RuntimeException | Error e) {
+            //errors such as a StackOverflowError still get a response, rather than dropping the connection
+            status = ERROR;
+            response = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+        out.writeByte(status);
+        writeFrame(out, response.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME) {
+            throw new IOException("Invalid frame length " + length + ".");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeFrame(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Stops accepting connections and removes the socket file. Connections
+     * already open finish their current request.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        connections.shutdown();
+        Files.deleteIfExists(path);
+    }
+
+}
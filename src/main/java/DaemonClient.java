@@ -0,0 +1,100 @@
+package plc.project;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * A client for a {@link Daemon}, which sends sources over the daemon's socket
+ * and returns its responses. A client keeps its connection open, so it can be
+ * reused for any number of compiles.
+ */
+public final class DaemonClient implements Closeable {
+
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    public DaemonClient(Path path) throws IOException {
+        channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.connect(UnixDomainSocketAddress.of(path));
+        in = new DataInputStream(Channels.newInputStream(channel));
+        out = new DataOutputStream(Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Compiles a source file with a running daemon, printing the AST to stdout
+     * or the diagnostic to stderr (exiting with status 1).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3 || args.length == 3 && !args[2].equals("--json")) {
+            System.err.println("Usage: DaemonClient <socket> <file> [--json]");
+            System.exit(2);
+        }
+        String source = Files.readString(Paths.get(args[1]));
+        try (DaemonClient client = new DaemonClient(Paths.get(args[0]))) {
+            Response response = client.compile(source, args.length == 3);
+            if (response.getStatus() == Daemon.OK) {
+                System.out.println(response.getOutput());
+            } else {
+                System.err.println(args[1] + ":" + response.getOutput());
+                System.exit(1);
+            }
+        }
+    }
+
+    public Response compile(String source, boolean json) throws IOException {
+        out.writeByte(json ? Daemon.JSON : Daemon.TEXT);
+        Daemon.writeFrame(out, source.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        byte status = in.readByte();
+        return new Response(status, new String(Daemon.readFrame(in), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static final class Response {
+
+        private final byte status;
+        private final String output;
+
+        public Response(byte status, String output) {
+            this.status = status;
+            this.output = output;
+        }
+
+        /**
+         * Returns {@link Daemon#OK}, {@link Daemon#DIAGNOSTIC}, or
+         * {@link Daemon#ERROR}.
+         */
+        public byte getStatus() {
+            return status;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        @Override
+        public String toString() {
+            return "DaemonClient.Response{" +
+                    "status=" + status +
+                    ", output='" + output + '\'' +
+                    '}';
+        }
+
+    }
+
+}
@@ -0,0 +1,183 @@
+package plc.project;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Records a fingerprint of each source in a {@link Project} build, so the
+ * next build can tell which sources changed (see
+ * {@link Project#build(Path, FingerprintStore)}).
+ *
+ * A fingerprint has the file's size, modification time, and SHA-256 hash,
+ * along with the signatures the source exports (field names and methods as
+ * {@code name/arity}) and those it imports from other sources. A file whose
+ * size and modification time haven't changed is assumed to be unchanged
+ * without reading it, and otherwise its hash is compared.
+ *
+ * The store is saved to a single file, which is replaced atomically. A
+ * missing, corrupt, or outdated file is treated as empty, so the next build
+ * is a full build.
+ */
+public final class FingerprintStore {
+
+    private static final int MAGIC = 0x504C4346;
+    private static final int VERSION = 1;
+
+    private final Path path;
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    private FingerprintStore(Path path) {
+        this.path = path;
+    }
+
+    public static FingerprintStore load(Path path) throws IOException {
+        FingerprintStore store = new FingerprintStore(path);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return store;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                byte[] hash = new byte[in.readUnsignedByte()];
+                in.readFully(hash);
+                store.entries.put(name, new Entry(size, modified, hash, readStrings(in), readStrings(in)));
+            }
+        } catch (NoSuchFileException e) {
+            return store;
+        } catch (IOException e) {
+            //a partially read store could be wrong, so start over
+            store.entries.clear();
+        }
+        return store;
+    }
+
+    public void save() throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().size);
+                out.writeLong(entry.getValue().modified);
+                out.writeByte(entry.getValue().hash.length);
+                out.write(entry.getValue().hash);
+                writeStrings(out, entry.getValue().exports);
+                writeStrings(out, entry.getValue().imports);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Entry get(String name) {
+        return entries.get(name);
+    }
+
+    public void put(String name, Entry entry) {
+        entries.put(name, entry);
+    }
+
+    public void remove(String name) {
+        entries.remove(name);
+    }
+
+    public Map<String, Entry> getEntries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    public static byte[] hash(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 is required to be supported.", e);
+        }
+    }
+
+    private static Set<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Set<String> strings = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+
+    private static void writeStrings(DataOutputStream out, Set<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    public static final class Entry {
+
+        private final long size;
+        private final long modified;
+        private final byte[] hash;
+        private final Set<String> exports;
+        private final Set<String> imports;
+
+        public Entry(long size, long modified, byte[] hash, Set<String> exports, Set<String> imports) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash.clone();
+            this.exports = Collections.unmodifiableSet(new TreeSet<>(exports));
+            this.imports = Collections.unmodifiableSet(new TreeSet<>(imports));
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getModified() {
+            return modified;
+        }
+
+        public byte[] getHash() {
+            return hash.clone();
+        }
+
+        public boolean hasHash(byte[] hash) {
+            return Arrays.equals(this.hash, hash);
+        }
+
+        public Set<String> getExports() {
+            return exports;
+        }
+
+        public Set<String> getImports() {
+            return imports;
+        }
+
+        @Override
+        public String toString() {
+            return "FingerprintStore.Entry{" +
+                    "size=" + size +
+                    ", modified=" + modified +
+                    ", exports=" + exports +
+                    ", imports=" + imports +
+                    '}';
+        }
+
+    }
+
+}
@@ -0,0 +1,431 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A compact representation of an AST stored in primitive arrays, which avoids
+ * the per-node objects (and {@link List}/{@link Optional} wrappers) of the
+ * {@link Ast} classes. Each node is an {@code int} id indexing into:
+ *
+ *  - {@code kinds}: the node's {@link Kind},
+ *  - {@code data}: a pool index for the node's name, operator or literal,
+ *  - {@code extra}: a flag or count whose meaning depends on the kind (such as
+ *    whether a receiver is present, or the number of then statements),
+ *  - {@code sizes}: the number of nodes in the node's subtree,
+ *  - {@code offsets}/{@code counts}: the node's children in {@code children}.
+ *
+ * Nodes are added in post-order, meaning each node's children must be the
+ * subtrees added immediately before it, in source order (the order a parser
+ * completes them). Names and literals are deduplicated in a shared pool.
+ *
+ * The {@link Ast} classes are only created when requested with {@link
+ * #toAst(int)}, which builds the subtree without recursion.
+ */
+public final class FlatAst {
+
+    public enum Kind {
+        SOURCE,
+        FIELD,
+        METHOD,
+        EXPRESSION,
+        DECLARATION,
+        ASSIGNMENT,
+        IF,
+        FOR,
+        WHILE,
+        RETURN,
+        LITERAL,
+        GROUP,
+        BINARY,
+        ACCESS,
+        FUNCTION
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private byte[] kinds = new byte[64];
+    private int[] data = new int[64];
+    private int[] extra = new int[64];
+    private int[] sizes = new int[64];
+    private int[] offsets = new int[64];
+    private int[] counts = new int[64];
+    private int[] children = new int[64];
+    private int length = 0;
+    private int childLength = 0;
+
+    private final List<Object> pool = new ArrayList<>();
+    private final Map<Object, Integer> poolIndices = new HashMap<>();
+
+    /**
+     * Returns the number of nodes.
+     */
+    public int size() {
+        return length;
+    }
+
+    public Kind getKind(int node) {
+        return KINDS[kinds[check(node)]];
+    }
+
+    public int getChildCount(int node) {
+        return counts[check(node)];
+    }
+
+    public int getChild(int node, int index) {
+        if (index < 0 || index >= counts[check(node)]) {
+            throw new IndexOutOfBoundsException("Child " + index + " of node " + node);
+        }
+        return children[offsets[node] + index];
+    }
+
+    /**
+     * Returns the name of a field, method, declaration, for loop, access or
+     * function node.
+     */
+    public String getName(int node) {
+        return (String) pool.get(data[check(node)]);
+    }
+
+    public String getOperator(int node) {
+        return (String) pool.get(data[check(node)]);
+    }
+
+    /**
+     * Returns the literal of a literal node in its runtime representation (see
+     * {@link Ast.Expr.Literal#getValue()}).
+     */
+    public Object getValue(int node) {
+        return pool.get(data[check(node)]);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<String> getParameters(int node) {
+        return (List<String>) pool.get(extra[check(node)]);
+    }
+
+    /**
+     * Returns whether a field or declaration has a value.
+     */
+    public boolean hasValue(int node) {
+        return extra[check(node)] != 0;
+    }
+
+    /**
+     * Returns whether an access or function has a receiver, which is then the
+     * node's first child.
+     */
+    public boolean hasReceiver(int node) {
+        return extra[check(node)] != 0;
+    }
+
+    /**
+     * Returns the number of fields of a source, which are its first children
+     * followed by the methods.
+     */
+    public int getFieldCount(int node) {
+        return extra[check(node)];
+    }
+
+    /**
+     * Returns the number of then statements of an if, which follow the
+     * condition and are followed by the else statements.
+     */
+    public int getThenCount(int node) {
+        return extra[check(node)];
+    }
+
+    public int source(int fieldCount, int methodCount) {
+        return append(Kind.SOURCE, 0, fieldCount, fieldCount + methodCount);
+    }
+
+    public int field(String name, boolean hasValue) {
+        return append(Kind.FIELD, intern(name), hasValue ? 1 : 0, hasValue ? 1 : 0);
+    }
+
+    public int method(String name, List<String> parameters, int statementCount) {
+        return append(Kind.METHOD, intern(name), intern(parameters), statementCount);
+    }
+
+    public int expression() {
+        return append(Kind.EXPRESSION, 0, 0, 1);
+    }
+
+    public int declaration(String name, boolean hasValue) {
+        return append(Kind.DECLARATION, intern(name), hasValue ? 1 : 0, hasValue ? 1 : 0);
+    }
+
+    public int assignment() {
+        return append(Kind.ASSIGNMENT, 0, 0, 2);
+    }
+
+    public int ifStatement(int thenCount, int elseCount) {
+        return append(Kind.IF, 0, thenCount, 1 + thenCount + elseCount);
+    }
+
+    public int forStatement(String name, int statementCount) {
+        return append(Kind.FOR, intern(name), 0, 1 + statementCount);
+    }
+
+    public int whileStatement(int statementCount) {
+        return append(Kind.WHILE, 0, 0, 1 + statementCount);
+    }
+
+    public int returnStatement() {
+        return append(Kind.RETURN, 0, 0, 1);
+    }
+
+    /**
+     * Adds a literal, given in its runtime representation (see {@link
+     * Ast.Expr.Literal#getValue()}).
+     */
+    public int literal(Object value) {
+        return append(Kind.LITERAL, intern(value), 0, 0);
+    }
+
+    public int group() {
+        return append(Kind.GROUP, 0, 0, 1);
+    }
+
+    public int binary(String operator) {
+        return append(Kind.BINARY, intern(operator), 0, 2);
+    }
+
+    public int access(String name, boolean hasReceiver) {
+        return append(Kind.ACCESS, intern(name), hasReceiver ? 1 : 0, hasReceiver ? 1 : 0);
+    }
+
+    public int function(String name, boolean hasReceiver, int argumentCount) {
+        return append(Kind.FUNCTION, intern(name), hasReceiver ? 1 : 0, (hasReceiver ? 1 : 0) + argumentCount);
+    }
+
+    /**
+     * Adds an existing AST, returning the id of its root.
+     */
+    public int add(Ast ast) {
+        int start = length;
+        Traversal.walk(ast, null, new Appender());
+        return length > start ? length - 1 : -1;
+    }
+
+    /**
+     * Returns the AST classes for the subtree rooted at the given node. Each
+     * call creates a new tree.
+     */
+    public Ast toAst(int node) {
+        Deque<Ast> stack = new ArrayDeque<>();
+        for (int i = check(node) - sizes[node] + 1; i <= node; i++) {
+            stack.push(materialize(i, stack));
+        }
+        return stack.pop();
+    }
+
+    /**
+     * Creates the AST for the given node, whose children are on top of the
+     * stack (the last child on top).
+     */
+    private Ast materialize(int node, Deque<Ast> stack) {
+        switch (KINDS[kinds[node]]) {
+            case SOURCE: {
+                List<Ast.Method> methods = pop(stack, counts[node] - extra[node]);
+                return new Ast.Source(pop(stack, extra[node]), methods);
+            }
+            case FIELD:
+                return new Ast.Field(getName(node), popOptional(stack, hasValue(node)));
+            case METHOD:
+                return new Ast.Method(getName(node), getParameters(node), pop(stack, counts[node]));
+            case EXPRESSION:
+                return new Ast.Stmt.Expression((Ast.Expr) stack.pop());
+            case DECLARATION:
+                return new Ast.Stmt.Declaration(getName(node), popOptional(stack, hasValue(node)));
+            case ASSIGNMENT: {
+                Ast.Expr value = (Ast.Expr) stack.pop();
+                return new Ast.Stmt.Assignment((Ast.Expr) stack.pop(), value);
+            }
+            case IF: {
+                List<Ast.Stmt> elseStatements = pop(stack, counts[node] - 1 - extra[node]);
+                List<Ast.Stmt> thenStatements = pop(stack, extra[node]);
+                return new Ast.Stmt.If((Ast.Expr) stack.pop(), thenStatements, elseStatements);
+            }
+            case FOR: {
+                List<Ast.Stmt> statements = pop(stack, counts[node] - 1);
+                return new Ast.Stmt.For(getName(node), (Ast.Expr) stack.pop(), statements);
+            }
+            case WHILE: {
+                List<Ast.Stmt> statements = pop(stack, counts[node] - 1);
+                return new Ast.Stmt.While((Ast.Expr) stack.pop(), statements);
+            }
+            case RETURN:
+                return new Ast.Stmt.Return((Ast.Expr) stack.pop());
+            case LITERAL:
+                return Ast.Expr.Literal.of(getValue(node));
+            case GROUP:
+                return new Ast.Expr.Group((Ast.Expr) stack.pop());
+            case BINARY: {
+                Ast.Expr right = (Ast.Expr) stack.pop();
+                return new Ast.Expr.Binary(getOperator(node), (Ast.Expr) stack.pop(), right);
+            }
+            case ACCESS:
+                return new Ast.Expr.Access(popOptional(stack, hasReceiver(node)), getName(node));
+            case FUNCTION: {
+                List<Ast.Expr> arguments = pop(stack, counts[node] - extra[node]);
+                return new Ast.Expr.Function(popOptional(stack, hasReceiver(node)), getName(node), arguments);
+            }
+            default:
+                throw new AssertionError(KINDS[kinds[node]]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Ast> List<T> pop(Deque<Ast> stack, int count) {
+        Ast[] popped = new Ast[count];
+        for (int i = count - 1; i >= 0; i--) {
+            popped[i] = stack.pop();
+        }
+        return (List<T>) new ArrayList<>(Arrays.asList(popped));
+    }
+
+    private static Optional<Ast.Expr> popOptional(Deque<Ast> stack, boolean present) {
+        return present ? Optional.of((Ast.Expr) stack.pop()) : Optional.empty();
+    }
+
+    private int append(Kind kind, int data, int extra, int count) {
+        if (length == kinds.length) {
+            int capacity = length * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            this.data = Arrays.copyOf(this.data, capacity);
+            this.extra = Arrays.copyOf(this.extra, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        if (childLength + count > children.length) {
+            children = Arrays.copyOf(children, Math.max(children.length * 2, childLength + count));
+        }
+        //the children are the preceding subtrees, found by walking back over their sizes
+        int size = 1;
+        int child = length - 1;
+        for (int i = count - 1; i >= 0; i--) {
+            if (child < 0) {
+                throw new IllegalStateException("Missing children for " + kind + " node.");
+            }
+            children[childLength + i] = child;
+            size += sizes[child];
+            child -= sizes[child];
+        }
+        kinds[length] = (byte) kind.ordinal();
+        this.data[length] = data;
+        this.extra[length] = extra;
+        sizes[length] = size;
+        offsets[length] = childLength;
+        counts[length] = count;
+        childLength += count;
+        return length++;
+    }
+
+    private int intern(Object value) {
+        Integer index = poolIndices.get(value);
+        if (index == null) {
+            index = pool.size();
+            pool.add(value);
+            poolIndices.put(value, index);
+        }
+        return index;
+    }
+
+    private int check(int node) {
+        if (node < 0 || node >= length) {
+            throw new IndexOutOfBoundsException("Node " + node);
+        }
+        return node;
+    }
+
+    /**
+     * Appends nodes as they are exited, which is post-order.
+     */
+    private final class Appender implements Ast.Visitor<Integer> {
+
+        @Override
+        public Integer visit(Ast.Source ast) {
+            return source(ast.getFields().size(), ast.getMethods().size());
+        }
+
+        @Override
+        public Integer visit(Ast.Field ast) {
+            return field(ast.getName(), ast.getValue().isPresent());
+        }
+
+        @Override
+        public Integer visit(Ast.Method ast) {
+            return method(ast.getName(), ast.getParameters(), ast.getStatements().size());
+        }
+
+        @Override
+        public Integer visit(Ast.Stmt.Expression ast) {
+            return expression();
+        }
+
+        @Override
+        public Integer visit(Ast.Stmt.Declaration ast) {
+            return declaration(ast.getName(), ast.getValue().isPresent());
+        }
+
+        @Override
+        public Integer visit(Ast.Stmt.Assignment ast) {
+            return assignment();
+        }
+
+        @Override
+        public Integer visit(Ast.Stmt.If ast) {
+            return ifStatement(ast.getThenStatements().size(), ast.getElseStatements().size());
+        }
+
+        @Override
+        public Integer visit(Ast.Stmt.For ast) {
+            return forStatement(ast.getName(), ast.getStatements().size());
+        }
+
+        @Override
+        public Integer visit(Ast.Stmt.While ast) {
+            return whileStatement(ast.getStatements().size());
+        }
+
+        @Override
+        public Integer visit(Ast.Stmt.Return ast) {
+            return returnStatement();
+        }
+
+        @Override
+        public Integer visit(Ast.Expr.Literal ast) {
+            return literal(ast.getValue());
+        }
+
+        @Override
+        public Integer visit(Ast.Expr.Group ast) {
+            return group();
+        }
+
+        @Override
+        public Integer visit(Ast.Expr.Binary ast) {
+            return binary(ast.getOperator());
+        }
+
+        @Override
+        public Integer visit(Ast.Expr.Access ast) {
+            return access(ast.getName(), ast.getReceiver().isPresent());
+        }
+
+        @Override
+        public Integer visit(Ast.Expr.Function ast) {
+            return function(ast.getName(), ast.getReceiver().isPresent(), ast.getArguments().size());
+        }
+
+    }
+
+}
@@ -0,0 +1,120 @@
+package plc.project;
+
+/**
+ * Caches the result of looking up a member (a field slot or a method) by
+ * receiver {@link Shape} at a single access or call site, so repeated
+ * executions with the same shapes skip the lookup.
+ *
+ * The cache starts {@link State#UNINITIALIZED}, becomes
+ * {@link State#MONOMORPHIC} after the first lookup, and
+ * {@link State#POLYMORPHIC} once it has more shapes, up to
+ * {@link #MAX_ENTRIES}. A site that sees more shapes than that is
+ * {@link State#MEGAMORPHIC}: it stops caching and looks members up every
+ * time, since scanning a long list of shapes would be no faster.
+ *
+ * A cache belongs to its AST node, which every interpreter running the
+ * program shares, so it may be used by several threads at once without
+ * locking. This is racy but safe: entries are published by replacing whole
+ * arrays, so a racing reader sees either the old entries or the new ones, and
+ * every cached target is correct for its shape. Racing updates may drop each
+ * other's entries and the miss count may lose increments, which only costs
+ * extra lookups.
+ */
+public final class InlineCache {
+
+    public enum State {
+        UNINITIALIZED,
+        MONOMORPHIC,
+        POLYMORPHIC,
+        MEGAMORPHIC
+    }
+
+    public static final int MAX_ENTRIES = 4;
+
+    private static final Shape[] NO_SHAPES = new Shape[0];
+    private static final Object[] NO_TARGETS = new Object[0];
+
+    private volatile Entries entries = new Entries(NO_SHAPES, NO_TARGETS);
+    private volatile boolean megamorphic = false;
+    private volatile long misses = 0;
+
+    /**
+     * Returns the cached target for the shape, or {@code null} (counting a
+     * miss) if it isn't cached.
+     */
+    public Object lookup(Shape shape) {
+        Entries entries = this.entries;
+        Shape[] shapes = entries.shapes;
+        for (int i = 0; i < shapes.length; i++) {
+            if (shapes[i] == shape) {
+                return entries.targets[i];
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Caches the target looked up after a miss, unless the site is (or now
+     * becomes) megamorphic.
+     */
+    public void update(Shape shape, Object target) {
+        Entries entries = this.entries;
+        int size = entries.shapes.length;
+        if (megamorphic) {
+            return;
+        }
+        else if (size == MAX_ENTRIES) {
+            megamorphic = true;
+            this.entries = new Entries(NO_SHAPES, NO_TARGETS);
+            return;
+        }
+        Shape[] shapes = new Shape[size + 1];
+        Object[] targets = new Object[size + 1];
+        System.arraycopy(entries.shapes, 0, shapes, 0, size);
+        System.arraycopy(entries.targets, 0, targets, 0, size);
+        shapes[size] = shape;
+        targets[size] = target;
+        this.entries = new Entries(shapes, targets);
+    }
+
+    public State getState() {
+        if (megamorphic) {
+            return State.MEGAMORPHIC;
+        }
+        switch (entries.shapes.length) {
+            case 0: return State.UNINITIALIZED;
+            case 1: return State.MONOMORPHIC;
+            default: return State.POLYMORPHIC;
+        }
+    }
+
+    /**
+     * Returns the number of lookups that weren't cached, including every
+     * lookup once the site is megamorphic.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public String toString() {
+        return "InlineCache{" +
+                "state=" + getState() +
+                ", misses=" + misses +
+                '}';
+    }
+
+    private static final class Entries {
+
+        private final Shape[] shapes;
+        private final Object[] targets;
+
+        private Entries(Shape[] shapes, Object[] targets) {
+            this.shapes = shapes;
+            this.targets = targets;
+        }
+
+    }
+
+}
@@ -0,0 +1,660 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Inlines calls to small methods of the same source, so that calls in hot
+ * loops don't pay for a frame and their arguments. It runs on the parsed
+ * source before the {@link Optimizer}, which then folds any constants that
+ * were passed as arguments.
+ *
+ * A method can be inlined if it isn't recursive (directly or through other
+ * methods), has at most {@code maxSize} nodes, and has had calls inlined into
+ * it at most {@code maxDepth - 1} levels deep. Methods are processed callees
+ * first, so their own calls are already inlined. A call is inlined in one of
+ * two ways:
+ *
+ *  - A call anywhere in an expression, to a method whose body is only
+ *    {@code RETURN expr;}, is replaced by {@code expr} with the arguments
+ *    substituted for the parameters. Since that changes how many times (and
+ *    when) each argument is evaluated, the arguments must be literals, or
+ *    variables if {@code expr} doesn't call anything that could assign them.
+ *  - A call that is the whole value of an expression statement, declaration,
+ *    assignment to a variable or {@code RETURN} is replaced by declarations
+ *    of the arguments, the body, and the statement with the body's returned
+ *    value. The body may only return as its last statement.
+ *
+ * The callee's parameters and local variables are renamed to names which
+ * can't appear in the source ({@code name$n}) so they can't capture the
+ * caller's variables. A call isn't inlined if the body refers to a global
+ * that the caller declares a variable with the same name as, since the
+ * caller's variable would capture it.
+ */
+public final class Inliner {
+
+    public static final int DEFAULT_MAX_SIZE = 32;
+    public static final int DEFAULT_MAX_DEPTH = 3;
+
+    private final int maxSize;
+    private final int maxDepth;
+
+    private final Map<String, Ast.Method> methods = new HashMap<>();
+    private final Map<String, Integer> sizes = new HashMap<>();
+    private final Map<String, Integer> depths = new HashMap<>();
+    private final Set<String> recursive = new HashSet<>();
+    private int inlined = 0;
+    private int nextName = 0;
+
+    private Set<String> declared;
+    private int depth;
+
+    public Inliner(int maxSize, int maxDepth) {
+        this.maxSize = maxSize;
+        this.maxDepth = maxDepth;
+    }
+
+    public Inliner() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_DEPTH);
+    }
+
+    public Ast.Source inline(Ast.Source ast) {
+        Map<String, Ast.Method> originals = new LinkedHashMap<>();
+        for (Ast.Method method : ast.getMethods()) {
+            //duplicates are left for the analyzer to report
+            if (originals.put(key(method.getName(), method.getParameters().size()), method) != null) {
+                return ast;
+            }
+        }
+        Map<String, Set<String>> calls = new LinkedHashMap<>();
+        for (Map.Entry<String, Ast.Method> entry : originals.entrySet()) {
+            calls.put(entry.getKey(), callees(entry.getValue(), originals.keySet()));
+        }
+        for (String key : originals.keySet()) {
+            if (reaches(calls, key)) {
+                recursive.add(key);
+            }
+        }
+        for (String key : postorder(calls)) {
+            Ast.Method method = inlineInto(originals.get(key));
+            methods.put(key, method);
+            sizes.put(key, size(method));
+        }
+        List<Ast.Method> rewritten = new ArrayList<>();
+        for (String key : originals.keySet()) {
+            rewritten.add(methods.get(key));
+        }
+        return new Ast.Source(ast.getFields(), rewritten);
+    }
+
+    /**
+     * Returns the number of call sites that were inlined.
+     */
+    public int getInlined() {
+        return inlined;
+    }
+
+    private Ast.Method inlineInto(Ast.Method method) {
+        declared = new HashSet<>(method.getParameters());
+        Traversal.walk(method, new Traversal.Adapter() {
+
+            @Override
+            public Boolean visit(Ast.Stmt.Declaration ast) {
+                declared.add(ast.getName());
+                return true;
+            }
+
+            @Override
+            public Boolean visit(Ast.Stmt.For ast) {
+                declared.add(ast.getName());
+                return true;
+            }
+
+        }, null);
+        depth = 0;
+        List<Ast.Stmt> statements = rewrite(method.getStatements());
+        depths.put(key(method.getName(), method.getParameters().size()), depth);
+        return new Ast.Method(method.getName(), method.getParameters(), statements);
+    }
+
+    private List<Ast.Stmt> rewrite(List<Ast.Stmt> statements) {
+        List<Ast.Stmt> rewritten = new ArrayList<>();
+        for (Ast.Stmt statement : statements) {
+            rewrite(statement, rewritten);
+        }
+        return rewritten;
+    }
+
+    private void rewrite(Ast.Stmt ast, List<Ast.Stmt> out) {
+        if (ast instanceof Ast.Stmt.Expression) {
+            Ast.Expr value = rewrite(((Ast.Stmt.Expression) ast).getExpression());
+            if (!inlineStatement(value, Ast.Stmt.Expression::new, out)) {
+                out.add(new Ast.Stmt.Expression(value));
+            }
+        }
+        else if (ast instanceof Ast.Stmt.Declaration) {
+            Ast.Stmt.Declaration declaration = (Ast.Stmt.Declaration) ast;
+            if (!declaration.getValue().isPresent()) {
+                out.add(declaration);
+                return;
+            }
+            Ast.Expr value = rewrite(declaration.getValue().get());
+            Function<Ast.Expr, Ast.Stmt> site = v -> new Ast.Stmt.Declaration(declaration.getName(), Optional.of(v));
+            if (!inlineStatement(value, site, out)) {
+                out.add(site.apply(value));
+            }
+        }
+        else if (ast instanceof Ast.Stmt.Assignment) {
+            Ast.Expr receiver = rewrite(((Ast.Stmt.Assignment) ast).getReceiver());
+            Ast.Expr value = rewrite(((Ast.Stmt.Assignment) ast).getValue());
+            Function<Ast.Expr, Ast.Stmt> site = v -> new Ast.Stmt.Assignment(receiver, v);
+            //a receiver is evaluated before the value, so only variables are safe
+            boolean variable = receiver instanceof Ast.Expr.Access && !((Ast.Expr.Access) receiver).getReceiver().isPresent();
+            if (!variable || !inlineStatement(value, site, out)) {
+                out.add(site.apply(value));
+            }
+        }
+        else if (ast instanceof Ast.Stmt.If) {
+            Ast.Stmt.If statement = (Ast.Stmt.If) ast;
+            out.add(new Ast.Stmt.If(rewrite(statement.getCondition()), rewrite(statement.getThenStatements()), rewrite(statement.getElseStatements())));
+        }
+        else if (ast instanceof Ast.Stmt.For) {
+            Ast.Stmt.For statement = (Ast.Stmt.For) ast;
+            out.add(new Ast.Stmt.For(statement.getName(), rewrite(statement.getValue()), rewrite(statement.getStatements())));
+        }
+        else if (ast instanceof Ast.Stmt.While) {
+            Ast.Stmt.While statement = (Ast.Stmt.While) ast;
+            out.add(new Ast.Stmt.While(rewrite(statement.getCondition()), rewrite(statement.getStatements())));
+        }
+        else if (ast instanceof Ast.Stmt.Return) {
+            Ast.Expr value = rewrite(((Ast.Stmt.Return) ast).getValue());
+            if (!inlineStatement(value, Ast.Stmt.Return::new, out)) {
+                out.add(new Ast.Stmt.Return(value));
+            }
+        }
+        else {
+            throw new AssertionError("Unexpected statement " + ast.getClass() + ".");
+        }
+    }
+
+    private Ast.Expr rewrite(Ast.Expr ast) {
+        return new Rewriter(null, null).rewrite(ast);
+    }
+
+    /**
+     * Inlines a call that is the value of a statement, adding the inlined
+     * statements and then the statement created by {@code site} with the
+     * returned value. Returns false (without adding anything) if the value
+     * isn't a call that can be inlined this way.
+     */
+    private boolean inlineStatement(Ast.Expr value, Function<Ast.Expr, Ast.Stmt> site, List<Ast.Stmt> out) {
+        Ast.Expr call = unwrap(value);
+        if (!(call instanceof Ast.Expr.Function) || ((Ast.Expr.Function) call).getReceiver().isPresent()) {
+            return false;
+        }
+        Ast.Expr.Function function = (Ast.Expr.Function) call;
+        String key = key(function.getName(), function.getArguments().size());
+        Ast.Method callee = candidate(key);
+        if (callee == null) {
+            return false;
+        }
+        List<Ast.Stmt> body = callee.getStatements();
+        for (int i = 0; i < body.size(); i++) {
+            boolean last = i == body.size() - 1 && body.get(i) instanceof Ast.Stmt.Return;
+            if (!last && containsReturn(body.get(i))) {
+                return false;
+            }
+        }
+        List<Ast.Stmt> inlined = new ArrayList<>();
+        Copier copier = new Copier();
+        for (int i = 0; i < callee.getParameters().size(); i++) {
+            String name = rename(callee.getParameters().get(i));
+            inlined.add(new Ast.Stmt.Declaration(name, Optional.of(function.getArguments().get(i))));
+            copier.define(callee.getParameters().get(i), name);
+        }
+        Ast.Expr result = new Ast.Expr.Literal(null);
+        for (Ast.Stmt statement : body) {
+            if (statement instanceof Ast.Stmt.Return) {
+                result = copier.copy(((Ast.Stmt.Return) statement).getValue());
+            }
+            else {
+                copier.copy(statement, inlined);
+            }
+        }
+        if (captures(copier.free)) {
+            return false;
+        }
+        inlined.add(site.apply(result));
+        out.addAll(inlined);
+        record(key);
+        return true;
+    }
+
+    /**
+     * Returns the inlined body of a call if it can be inlined as an
+     * expression, otherwise {@code null}.
+     */
+    private Ast.Expr inlineExpression(Ast.Expr.Function call) {
+        String key = key(call.getName(), call.getArguments().size());
+        Ast.Method callee = candidate(key);
+        if (callee == null || callee.getStatements().size() != 1 || !(callee.getStatements().get(0) instanceof Ast.Stmt.Return)) {
+            return null;
+        }
+        Ast.Expr value = ((Ast.Stmt.Return) callee.getStatements().get(0)).getValue();
+        boolean calls = containsCall(value);
+        Map<String, Ast.Expr> substitutions = new HashMap<>();
+        for (int i = 0; i < call.getArguments().size(); i++) {
+            Ast.Expr argument = unwrap(call.getArguments().get(i));
+            boolean variable = argument instanceof Ast.Expr.Access && !((Ast.Expr.Access) argument).getReceiver().isPresent();
+            if (!(argument instanceof Ast.Expr.Literal) && (!variable || calls)) {
+                return null;
+            }
+            substitutions.put(callee.getParameters().get(i), argument);
+        }
+        Set<String> free = new HashSet<>();
+        Ast.Expr result = new Rewriter(substitutions::get, free).rewrite(value);
+        if (captures(free)) {
+            return null;
+        }
+        record(key);
+        //keeps the body's grouping if it becomes the operand of a binary expression
+        return result instanceof Ast.Expr.Binary ? new Ast.Expr.Group(result) : result;
+    }
+
+    private Ast.Method candidate(String key) {
+        Ast.Method method = methods.get(key);
+        if (method == null || recursive.contains(key) || sizes.get(key) > maxSize || depths.get(key) >= maxDepth) {
+            return null;
+        }
+        return method;
+    }
+
+    private void record(String key) {
+        inlined++;
+        depth = Math.max(depth, depths.get(key) + 1);
+    }
+
+    private boolean captures(Set<String> free) {
+        for (String name : free) {
+            if (declared.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String rename(String name) {
+        return name + "$" + nextName++;
+    }
+
+    private static String key(String name, int arity) {
+        return name + "/" + arity;
+    }
+
+    /**
+     * Returns the methods of the source which the method calls directly.
+     */
+    private static Set<String> callees(Ast.Method method, Set<String> keys) {
+        Set<String> callees = new HashSet<>();
+        Traversal.walk(method, new Traversal.Adapter() {
+
+            @Override
+            public Boolean visit(Ast.Expr.Function ast) {
+                String key = key(ast.getName(), ast.getArguments().size());
+                if (!ast.getReceiver().isPresent() && keys.contains(key)) {
+                    callees.add(key);
+                }
+                return true;
+            }
+
+        }, null);
+        return callees;
+    }
+
+    /**
+     * Returns true if the method can reach itself through calls.
+     */
+    private static boolean reaches(Map<String, Set<String>> calls, String key) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> work = new ArrayDeque<>(calls.get(key));
+        while (!work.isEmpty()) {
+            String next = work.pop();
+            if (next.equals(key)) {
+                return true;
+            }
+            else if (visited.add(next)) {
+                work.addAll(calls.get(next));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Orders the methods so that each comes after the methods it calls
+     * (other than through recursion).
+     */
+    private static List<String> postorder(Map<String, Set<String>> calls) {
+        List<String> order = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        for (String root : calls.keySet()) {
+            if (!visited.add(root)) {
+                continue;
+            }
+            //each entry is a method and its callees left to visit
+            Deque<Map.Entry<String, Iterator<String>>> stack = new ArrayDeque<>();
+            stack.push(Map.entry(root, calls.get(root).iterator()));
+            while (!stack.isEmpty()) {
+                Map.Entry<String, Iterator<String>> top = stack.peek();
+                if (top.getValue().hasNext()) {
+                    String next = top.getValue().next();
+                    if (visited.add(next)) {
+                        stack.push(Map.entry(next, calls.get(next).iterator()));
+                    }
+                }
+                else {
+                    stack.pop();
+                    order.add(top.getKey());
+                }
+            }
+        }
+        return order;
+    }
+
+    private static int size(Ast ast) {
+        int[] size = {0};
+        Traversal.walk(ast, new Traversal.Adapter() {
+
+            @Override
+            protected boolean enter(Ast ast) {
+                size[0]++;
+                return true;
+            }
+
+        }, null);
+        return size[0] - 1;
+    }
+
+    private static boolean containsReturn(Ast.Stmt ast) {
+        boolean[] found = {false};
+        Traversal.walk(ast, new Traversal.Adapter() {
+
+            @Override
+            protected boolean enter(Ast ast) {
+                found[0] |= ast instanceof Ast.Stmt.Return;
+                return !(ast instanceof Ast.Expr);
+            }
+
+        }, null);
+        return found[0];
+    }
+
+    private static boolean containsCall(Ast.Expr ast) {
+        boolean[] found = {false};
+        Traversal.walk(ast, new Traversal.Adapter() {
+
+            @Override
+            public Boolean visit(Ast.Expr.Function ast) {
+                found[0] = true;
+                return false;
+            }
+
+        }, null);
+        return found[0];
+    }
+
+    private static Ast.Expr unwrap(Ast.Expr ast) {
+        while (ast instanceof Ast.Expr.Group) {
+            ast = ((Ast.Expr.Group) ast).getExpression();
+        }
+        return ast;
+    }
+
+    /**
+     * Copies the statements of a callee's body, renaming its variables with a
+     * scope for each block like the {@link Analyzer}, and records the names
+     * that refer to globals.
+     */
+    private final class Copier {
+
+        private final Deque<Map<String, Ast.Expr>> scopes = new ArrayDeque<>(List.of(new HashMap<>()));
+        private final Set<String> free = new HashSet<>();
+
+        private void define(String name, String renamed) {
+            scopes.peek().put(name, new Ast.Expr.Access(Optional.empty(), renamed));
+        }
+
+        private Ast.Expr lookup(String name) {
+            for (Map<String, Ast.Expr> scope : scopes) {
+                Ast.Expr renamed = scope.get(name);
+                if (renamed != null) {
+                    return renamed;
+                }
+            }
+            return null;
+        }
+
+        private Ast.Expr copy(Ast.Expr ast) {
+            return new Rewriter(this::lookup, free).rewrite(ast);
+        }
+
+        private List<Ast.Stmt> copyBlock(List<Ast.Stmt> statements) {
+            scopes.push(new HashMap<>());
+            try {
+                List<Ast.Stmt> copied = new ArrayList<>();
+                for (Ast.Stmt statement : statements) {
+                    copy(statement, copied);
+                }
+                return copied;
+            } finally {
+                scopes.pop();
+            }
+        }
+
+        private void copy(Ast.Stmt ast, List<Ast.Stmt> out) {
+            if (ast instanceof Ast.Stmt.Expression) {
+                out.add(new Ast.Stmt.Expression(copy(((Ast.Stmt.Expression) ast).getExpression())));
+            }
+            else if (ast instanceof Ast.Stmt.Declaration) {
+                Ast.Stmt.Declaration declaration = (Ast.Stmt.Declaration) ast;
+                //the value is copied first, so LET x = x; refers to an outer x
+                Optional<Ast.Expr> value = declaration.getValue().map(this::copy);
+                String name = rename(declaration.getName());
+                define(declaration.getName(), name);
+                out.add(new Ast.Stmt.Declaration(name, value));
+            }
+            else if (ast instanceof Ast.Stmt.Assignment) {
+                Ast.Stmt.Assignment assignment = (Ast.Stmt.Assignment) ast;
+                out.add(new Ast.Stmt.Assignment(copy(assignment.getReceiver()), copy(assignment.getValue())));
+            }
+            else if (ast instanceof Ast.Stmt.If) {
+                Ast.Stmt.If statement = (Ast.Stmt.If) ast;
+                out.add(new Ast.Stmt.If(copy(statement.getCondition()), copyBlock(statement.getThenStatements()), copyBlock(statement.getElseStatements())));
+            }
+            else if (ast instanceof Ast.Stmt.For) {
+                Ast.Stmt.For statement = (Ast.Stmt.For) ast;
+                Ast.Expr value = copy(statement.getValue());
+                String name = rename(statement.getName());
+                scopes.push(new HashMap<>());
+                try {
+                    define(statement.getName(), name);
+                    List<Ast.Stmt> statements = new ArrayList<>();
+                    for (Ast.Stmt child : statement.getStatements()) {
+                        copy(child, statements);
+                    }
+                    out.add(new Ast.Stmt.For(name, value, statements));
+                } finally {
+                    scopes.pop();
+                }
+            }
+            else if (ast instanceof Ast.Stmt.While) {
+                Ast.Stmt.While statement = (Ast.Stmt.While) ast;
+                out.add(new Ast.Stmt.While(copy(statement.getCondition()), copyBlock(statement.getStatements())));
+            }
+            else {
+                throw new AssertionError("Unexpected statement " + ast.getClass() + ".");
+            }
+        }
+
+    }
+
+    /**
+     * Rewrites an expression bottom-up in a single {@link Traversal}, like
+     * the {@link Optimizer}. Without a lookup it rewrites the caller,
+     * inlining calls and keeping nodes whose children didn't change. With a
+     * lookup it copies a callee's expression, replacing each variable that
+     * the lookup returns a literal or variable for (copied, so every node
+     * is only used once) and recording the rest as free.
+     */
+    private final class Rewriter implements Ast.Visitor<Void> {
+
+        private final Function<String, Ast.Expr> lookup;
+        private final Set<String> free;
+        private final Deque<Ast.Expr> results = new ArrayDeque<>();
+
+        private Rewriter(Function<String, Ast.Expr> lookup, Set<String> free) {
+            this.lookup = lookup;
+            this.free = free;
+        }
+
+        private Ast.Expr rewrite(Ast.Expr ast) {
+            Traversal.walk(ast, null, this);
+            return results.pop();
+        }
+
+        @Override
+        public Void visit(Ast.Source ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Field ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Method ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Expression ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Declaration ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Assignment ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.If ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.For ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.While ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Return ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Literal ast) {
+            results.push(lookup == null ? ast : copy(ast));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Group ast) {
+            Ast.Expr expression = results.pop();
+            results.push(lookup == null && expression == ast.getExpression() ? ast : new Ast.Expr.Group(expression));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Binary ast) {
+            Ast.Expr right = results.pop();
+            Ast.Expr left = results.pop();
+            boolean same = lookup == null && left == ast.getLeft() && right == ast.getRight();
+            results.push(same ? ast : new Ast.Expr.Binary(ast.getOperator(), left, right));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Access ast) {
+            Optional<Ast.Expr> receiver = ast.getReceiver().isPresent() ? Optional.of(results.pop()) : Optional.empty();
+            if (lookup == null) {
+                results.push(same(receiver, ast.getReceiver()) ? ast : new Ast.Expr.Access(receiver, ast.getName()));
+                return null;
+            }
+            Ast.Expr substitution = receiver.isPresent() ? null : lookup.apply(ast.getName());
+            if (substitution != null) {
+                results.push(copy(substitution));
+            }
+            else {
+                if (!receiver.isPresent()) {
+                    free.add(ast.getName());
+                }
+                results.push(new Ast.Expr.Access(receiver, ast.getName()));
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Function ast) {
+            Ast.Expr[] arguments = new Ast.Expr[ast.getArguments().size()];
+            boolean same = lookup == null;
+            for (int i = arguments.length - 1; i >= 0; i--) {
+                arguments[i] = results.pop();
+                same &= arguments[i] == ast.getArguments().get(i);
+            }
+            Optional<Ast.Expr> receiver = ast.getReceiver().isPresent() ? Optional.of(results.pop()) : Optional.empty();
+            same &= same(receiver, ast.getReceiver());
+            Ast.Expr.Function call = same ? ast : new Ast.Expr.Function(receiver, ast.getName(), Arrays.asList(arguments));
+            //a callee's calls were already inlined when it was processed
+            Ast.Expr inlined = lookup == null && !receiver.isPresent() ? inlineExpression(call) : null;
+            results.push(inlined != null ? inlined : call);
+            return null;
+        }
+
+        private boolean same(Optional<Ast.Expr> rewritten, Optional<Ast.Expr> original) {
+            return rewritten.isPresent() ? rewritten.get() == original.get() : true;
+        }
+
+        /**
+         * Copies a literal or a variable without a receiver.
+         */
+        private Ast.Expr copy(Ast.Expr ast) {
+            if (ast instanceof Ast.Expr.Literal) {
+                return new Ast.Expr.Literal(((Ast.Expr.Literal) ast).getLiteral());
+            }
+            return new Ast.Expr.Access(Optional.empty(), ((Ast.Expr.Access) ast).getName());
+        }
+
+    }
+
+}
@@ -0,0 +1,604 @@
+package plc.project;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Evaluates an analyzed AST directly, using the slots assigned by the
+ * {@link Analyzer}: globals are an array indexed by each field's slot, and
+ * each call has a frame array sized by its function's frame size.
+ *
+ * Values use their runtime representation (see {@link Numeric}), with
+ * {@code NIL} as {@code null} and strings built by concatenation as a
+ * {@link Rope}. The built-in functions are {@code print(x)},
+ * {@code object()}, which creates an empty {@link PlcObject},
+ * {@code list()}, which creates an empty list, and {@code range(start, end)}
+ * (see {@link Range}).
+ *
+ * Members accessed through a receiver are resolved by the receiver's
+ * {@link Shape}, and each access and call site caches the result in its
+ * {@link InlineCache}:
+ *
+ *  - {@code receiver.name} reads the field's slot, and assigning it sets the
+ *    slot or adds the field if the object doesn't have it yet,
+ *  - {@code receiver.name(args)} calls a built-in method of the receiver's
+ *    shape, or for objects the program's function {@code name} with the
+ *    receiver as its first argument.
+ *
+ * Tail calls (see {@link Ast.Expr.Function#isTail()}) don't call the
+ * method recursively: the caller's frame is replaced by the callee's and its
+ * statements are run in the same loop, so tail-recursive methods run in
+ * constant Java stack. Each call alternates between two frame arrays, one for
+ * the running method and a spare one that a tail call's arguments are
+ * evaluated into (since they may read the current frame), so a chain of tail
+ * calls doesn't allocate frames either.
+ *
+ * If a {@link Profiler} is set, it's told when each call and statement
+ * starts and ends; otherwise statements run without any profiling checks
+ * beyond one per block.
+ *
+ * If a {@link Budget} is set, each loop iteration and call is charged to it,
+ * and a program that exceeds its limit throws.
+ *
+ * Runtime errors (such as operands of the wrong type or undefined members)
+ * throw a {@link RuntimeException}.
+ */
+public final class Interpreter implements Ast.Visitor<Object> {
+
+    private final Scope scope;
+    private final Appendable out;
+
+    private Object[] globals = new Object[0];
+    private Object[] frame = null;
+    private Object[] spare = null;
+    private final Return signal = new Return();
+    private Profiler profiler = null;
+    private Budget budget = null;
+    private long fuel = Long.MAX_VALUE;
+
+    /**
+     * Creates an interpreter for the source analyzed in the given scope (see
+     * {@link Analyzer#getScope()}), which prints to the given output.
+     */
+    public Interpreter(Scope scope, Appendable out) {
+        this.scope = scope;
+        this.out = out;
+    }
+
+    public Interpreter(Scope scope) {
+        this(scope, System.out);
+    }
+
+    /**
+     * Sets the profiler which is told about each call and statement, or
+     * {@code null} to stop profiling.
+     */
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Sets the budget charged for each loop iteration and call, or
+     * {@code null} for no limit.
+     */
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+        fuel = budget != null ? budget.start() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Initializes the source's fields and calls {@code main/0} if there is
+     * one, returning its result (with a {@link Rope} flattened to a
+     * {@code String}).
+     */
+    public Object run(Ast.Source ast) {
+        visit(ast);
+        for (Ast.Method method : ast.getMethods()) {
+            if (method.getName().equals("main") && method.getParameters().isEmpty()) {
+                Object result = call(method.getFunction(), new Object[0]);
+                return result instanceof Rope ? result.toString() : result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Calls a function with the given arguments, returning its result.
+     */
+    public Object call(Scope.Function function, Object... arguments) {
+        if (function.getMethod() == null) {
+            return builtin(function.getName(), arguments);
+        }
+        Object[] caller = frame;
+        Object[] callerSpare = spare;
+        frame = new Object[Math.max(function.getFrameSize(), arguments.length)];
+        spare = null;
+        System.arraycopy(arguments, 0, frame, 0, arguments.length);
+        tick();
+        if (profiler != null) {
+            profiler.enter(function);
+        }
+        try {
+            while (true) {
+                try {
+                    execute(function.getMethod().getStatements());
+                    return null;
+                } catch (Return r) {
+                    if (r.function == null) {
+                        return r.value;
+                    }
+                    //a tail call, whose arguments are in the spare frame
+                    function = r.function;
+                    tick();
+                    if (profiler != null) {
+                        profiler.exit();
+                        profiler.enter(function);
+                    }
+                    Object[] next = spare;
+                    spare = frame;
+                    frame = next.length < function.getFrameSize() ? Arrays.copyOf(next, function.getFrameSize()) : next;
+                    Arrays.fill(frame, function.getArity(), frame.length, null);
+                }
+            }
+        } finally {
+            if (profiler != null) {
+                profiler.exit();
+            }
+            frame = caller;
+            spare = callerSpare;
+        }
+    }
+
+    @Override
+    public Object visit(Ast.Source ast) {
+        for (Ast.Field field : ast.getFields()) {
+            visit(field);
+        }
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Field ast) {
+        int slot = ast.getVariable().getSlot();
+        if (slot >= globals.length) {
+            globals = Arrays.copyOf(globals, Math.max(slot + 1, globals.length * 2));
+        }
+        globals[slot] = ast.getValue().isPresent() ? evaluate(ast.getValue().get()) : null;
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Method ast) {
+        //methods are only executed when called
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Stmt.Expression ast) {
+        evaluate(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Stmt.Declaration ast) {
+        frame[ast.getVariable().getSlot()] = ast.getValue().isPresent() ? evaluate(ast.getValue().get()) : null;
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Stmt.Assignment ast) {
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        if (receiver.getReceiver().isPresent()) {
+            PlcObject object = requireObject(evaluate(receiver.getReceiver().get()), receiver.getName());
+            writeField(object, receiver.getName(), receiver.getCache(), evaluate(ast.getValue()));
+        }
+        else {
+            store(receiver.getVariable(), evaluate(ast.getValue()));
+        }
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Stmt.If ast) {
+        if (requireBoolean(evaluate(ast.getCondition()))) {
+            execute(ast.getThenStatements());
+        }
+        else {
+            execute(ast.getElseStatements());
+        }
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Stmt.For ast) {
+        Object value = evaluate(ast.getValue());
+        int slot = ast.getVariable().getSlot();
+        boolean used = ast.getVariable().isUsed();
+        if (value instanceof Range && ((Range) value).isLong()) {
+            long end = (Long) ((Range) value).getEnd();
+            for (long i = (Long) ((Range) value).getStart(); i < end; i++) {
+                tick();
+                if (used) {
+                    frame[slot] = Numeric.valueOf(i);
+                }
+                execute(ast.getStatements());
+            }
+        }
+        else if (value instanceof List && value instanceof RandomAccess) {
+            List<?> list = (List<?>) value;
+            int size = list.size();
+            for (int i = 0; i < size; i++) {
+                tick();
+                if (used) {
+                    frame[slot] = list.get(i);
+                }
+                execute(ast.getStatements());
+                if (list.size() != size) {
+                    throw modified();
+                }
+            }
+        }
+        else if (value instanceof Iterable) {
+            for (Object element : (Iterable<?>) value) {
+                tick();
+                frame[slot] = element;
+                execute(ast.getStatements());
+            }
+        }
+        else {
+            throw new RuntimeException("Expected an iterable value, received " + Shape.of(value).getName() + ".");
+        }
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Stmt.While ast) {
+        while (requireBoolean(evaluate(ast.getCondition()))) {
+            tick();
+            execute(ast.getStatements());
+        }
+        return null;
+    }
+
+    @Override
+    public Object visit(Ast.Stmt.Return ast) {
+        Ast.Expr value = ast.getValue();
+        while (value instanceof Ast.Expr.Group) {
+            value = ((Ast.Expr.Group) value).getExpression();
+        }
+        if (value instanceof Ast.Expr.Function && ((Ast.Expr.Function) value).isTail()) {
+            Ast.Expr.Function call = (Ast.Expr.Function) value;
+            List<Ast.Expr> expressions = call.getArguments();
+            Object[] arguments = spare;
+            if (arguments == null || arguments.length < expressions.size()) {
+                arguments = new Object[Math.max(expressions.size(), frame.length)];
+            }
+            for (int i = 0; i < expressions.size(); i++) {
+                arguments[i] = evaluate(expressions.get(i));
+            }
+            spare = arguments;
+            throw signal.of(call.getFunction(), null);
+        }
+        throw signal.of(null, evaluate(value));
+    }
+
+    @Override
+    public Object visit(Ast.Expr.Literal ast) {
+        return ast.getValue();
+    }
+
+    @Override
+    public Object visit(Ast.Expr.Group ast) {
+        return evaluate(ast.getExpression());
+    }
+
+    @Override
+    public Object visit(Ast.Expr.Binary ast) {
+        String operator = ast.getOperator();
+        Object left = evaluate(ast.getLeft());
+        //the right side is only evaluated when the left side doesn't decide the result
+        if (operator.equals("AND") || operator.equals("OR")) {
+            boolean shortCircuit = operator.equals("OR");
+            if (requireBoolean(left) == shortCircuit) {
+                return shortCircuit;
+            }
+            return evaluate(ast.getRight());
+        }
+        return binary(operator, left, evaluate(ast.getRight()));
+    }
+
+    @Override
+    public Object visit(Ast.Expr.Access ast) {
+        if (!ast.getReceiver().isPresent()) {
+            Scope.Variable variable = ast.getVariable();
+            return variable.getKind() == Scope.Variable.Kind.GLOBAL ? globals[variable.getSlot()] : frame[variable.getSlot()];
+        }
+        PlcObject object = requireObject(evaluate(ast.getReceiver().get()), ast.getName());
+        return readField(object, ast.getName(), ast.getCache());
+    }
+
+    @Override
+    public Object visit(Ast.Expr.Function ast) {
+        List<Ast.Expr> expressions = ast.getArguments();
+        if (!ast.getReceiver().isPresent()) {
+            Object[] arguments = new Object[expressions.size()];
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = evaluate(expressions.get(i));
+            }
+            return call(ast.getFunction(), arguments);
+        }
+        Object receiver = evaluate(ast.getReceiver().get());
+        //objects pass themselves as the first argument to the program's function
+        Object[] arguments = new Object[expressions.size() + 1];
+        arguments[0] = receiver;
+        for (int i = 0; i < expressions.size(); i++) {
+            arguments[i + 1] = evaluate(expressions.get(i));
+        }
+        Object target = lookupMethod(scope, receiver, ast.getName(), expressions.size(), ast.getCache());
+        if (target instanceof Shape.Method) {
+            return ((Shape.Method) target).invoke(receiver, Arrays.asList(arguments).subList(1, arguments.length));
+        }
+        return call((Scope.Function) target, arguments);
+    }
+
+    private Object evaluate(Ast.Expr ast) {
+        return ast.accept(this);
+    }
+
+    private void execute(List<Ast.Stmt> statements) {
+        if (profiler != null) {
+            profile(statements);
+            return;
+        }
+        for (Ast.Stmt statement : statements) {
+            statement.accept(this);
+        }
+    }
+
+    private void profile(List<Ast.Stmt> statements) {
+        for (Ast.Stmt statement : statements) {
+            Ast.Stmt previous = profiler.begin(statement);
+            try {
+                statement.accept(this);
+            } finally {
+                profiler.end(statement, previous);
+            }
+        }
+    }
+
+    /**
+     * Charges one instruction to the budget, which only does more than a
+     * decrement once per slice.
+     */
+    private void tick() {
+        if (fuel-- == 0) {
+            fuel = budget != null ? budget.next() : Long.MAX_VALUE;
+        }
+    }
+
+    private void store(Scope.Variable variable, Object value) {
+        if (variable.getKind() == Scope.Variable.Kind.GLOBAL) {
+            globals[variable.getSlot()] = value;
+        }
+        else {
+            frame[variable.getSlot()] = value;
+        }
+    }
+
+    /**
+     * Returns the result of a binary operator other than {@code AND} and
+     * {@code OR}, which need to be short-circuited by the caller.
+     */
+    static Object binary(String operator, Object left, Object right) {
+        switch (operator) {
+            case "==": return Rope.equal(left, right);
+            case "!=": return !Rope.equal(left, right);
+            case "<": return compare(operator, left, right) < 0;
+            case "<=": return compare(operator, left, right) <= 0;
+            case ">": return compare(operator, left, right) > 0;
+            case ">=": return compare(operator, left, right) >= 0;
+            default: return arithmetic(operator, left, right);
+        }
+    }
+
+    /**
+     * Reads a field, with its slot cached by the object's shape.
+     */
+    static Object readField(PlcObject object, String name, InlineCache cache) {
+        Shape shape = object.getShape();
+        Object slot = cache.lookup(shape);
+        if (slot == null) {
+            slot = shape.lookupField(name);
+            if ((Integer) slot == -1) {
+                throw new RuntimeException("The field " + name + " is not defined for this object.");
+            }
+            cache.update(shape, slot);
+        }
+        return object.get((Integer) slot);
+    }
+
+    /**
+     * Writes a field, adding it if the object doesn't have it yet, with the
+     * slot (or the shape after adding it) cached by the object's shape.
+     */
+    static void writeField(PlcObject object, String name, InlineCache cache, Object value) {
+        Shape shape = object.getShape();
+        Object target = cache.lookup(shape);
+        if (target == null) {
+            int slot = shape.lookupField(name);
+            target = slot != -1 ? (Object) slot : shape.addField(name);
+            cache.update(shape, target);
+        }
+        //a cached shape is the transition for an added field
+        if (target instanceof Integer) {
+            object.set((Integer) target, value);
+        }
+        else {
+            object.add((Shape) target, value);
+        }
+    }
+
+    /**
+     * Returns the method called through a receiver, cached by the receiver's
+     * shape: a {@link Shape.Method}, or for objects the program's function
+     * taking the receiver as its first argument. That function doesn't depend
+     * on the object's fields, so all objects share one entry under
+     * {@link Shape#EMPTY}.
+     */
+    static Object lookupMethod(Scope scope, Object receiver, String name, int arity, InlineCache cache) {
+        Shape shape = Shape.of(receiver);
+        if (shape.isObject()) {
+            shape = Shape.EMPTY;
+        }
+        Object target = cache.lookup(shape);
+        if (target == null) {
+            if (shape.isObject()) {
+                target = scope.lookupFunction(name, arity + 1);
+            }
+            else {
+                target = shape.lookupMethod(name, arity);
+                if (target == null) {
+                    throw new RuntimeException("The method " + name + "/" + arity + " is not defined for " + shape.getName() + " values.");
+                }
+            }
+            cache.update(shape, target);
+        }
+        return target;
+    }
+
+    private Object builtin(String name, Object[] arguments) {
+        return builtin(name, arguments, out);
+    }
+
+    static Object builtin(String name, Object[] arguments, Appendable out) {
+        switch (name) {
+            case "print":
+                try {
+                    out.append(format(arguments[0])).append('\n');
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                return null;
+            case "object":
+                return new PlcObject();
+            case "list":
+                return new ArrayList<Object>();
+            case "range":
+                return Range.of(arguments[0], arguments[1]);
+            default:
+                throw new AssertionError("Unknown built-in function " + name + ".");
+        }
+    }
+
+    private static String format(Object value) {
+        if (value == null) {
+            return "NIL";
+        }
+        else if (value instanceof Boolean) {
+            return (Boolean) value ? "TRUE" : "FALSE";
+        }
+        return value.toString();
+    }
+
+    private static int compare(String operator, Object left, Object right) {
+        if (Numeric.isInteger(left) && Numeric.isInteger(right)) {
+            return Numeric.compare(left, right);
+        }
+        else if (left instanceof BigDecimal && right instanceof BigDecimal) {
+            return ((BigDecimal) left).compareTo((BigDecimal) right);
+        }
+        else if (left instanceof Character && right instanceof Character) {
+            return ((Character) left).compareTo((Character) right);
+        }
+        else if (left instanceof CharSequence && right instanceof CharSequence) {
+            return left.toString().compareTo(right.toString());
+        }
+        throw mismatch(operator, left, right);
+    }
+
+    private static Object arithmetic(String operator, Object left, Object right) {
+        if (Numeric.isInteger(left) && Numeric.isInteger(right)) {
+            switch (operator) {
+                case "+": return Numeric.add(left, right);
+                case "-": return Numeric.subtract(left, right);
+                case "*": return Numeric.multiply(left, right);
+                case "/":
+                    if (Numeric.signum(right) == 0) {
+                        throw new RuntimeException("Division by zero.");
+                    }
+                    return Numeric.divide(left, right);
+            }
+        }
+        else if (left instanceof BigDecimal && right instanceof BigDecimal) {
+            BigDecimal lhs = (BigDecimal) left;
+            BigDecimal rhs = (BigDecimal) right;
+            switch (operator) {
+                case "+": return lhs.add(rhs);
+                case "-": return lhs.subtract(rhs);
+                case "*": return lhs.multiply(rhs);
+                case "/":
+                    if (rhs.signum() == 0) {
+                        throw new RuntimeException("Division by zero.");
+                    }
+                    return lhs.divide(rhs, RoundingMode.HALF_EVEN);
+            }
+        }
+        else if (left instanceof CharSequence && right instanceof CharSequence && operator.equals("+")) {
+            return Rope.concat((CharSequence) left, (CharSequence) right);
+        }
+        throw mismatch(operator, left, right);
+    }
+
+    private static RuntimeException mismatch(String operator, Object left, Object right) {
+        return new RuntimeException("The operator " + operator + " is not defined for " + Shape.of(left).getName() + " and " + Shape.of(right).getName() + " values.");
+    }
+
+    static RuntimeException modified() {
+        return new RuntimeException("The list was modified while iterating over it.");
+    }
+
+    static boolean requireBoolean(Object value) {
+        if (!(value instanceof Boolean)) {
+            throw new RuntimeException("Expected a Boolean value, received " + Shape.of(value).getName() + ".");
+        }
+        return (Boolean) value;
+    }
+
+    static PlcObject requireObject(Object value, String field) {
+        if (!(value instanceof PlcObject)) {
+            throw new RuntimeException("The field " + field + " is not defined for " + Shape.of(value).getName() + " values.");
+        }
+        return (PlcObject) value;
+    }
+
+    /**
+     * Unwinds the calling method's statements with the returned value, or
+     * with the function of a tail call. It is thrown on every return, so it
+     * has no stack trace and each interpreter reuses a single instance: it is
+     * always caught by the enclosing call before anything else can return.
+     */
+    static final class Return extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        Scope.Function function;
+        Object value;
+
+        Return() {
+            super(null, null, false, false);
+        }
+
+        Return of(Scope.Function function, Object value) {
+            this.function = function;
+            this.value = value;
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,420 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An intermediate representation of a method as a control-flow graph in SSA
+ * form, built by {@link IrBuilder} and optimized by {@link IrOptimizer}.
+ *
+ * A {@link Function} is a list of {@link Block}s, the first of which is the
+ * entry. Each block is a list of {@link Instruction}s which starts with its
+ * phis and ends with exactly one terminator ({@link Op#JUMP},
+ * {@link Op#BRANCH} or {@link Op#RETURN}), which determines its successors.
+ * Every instruction is also the value it produces, and every value is
+ * assigned exactly once, so uses refer directly to the instruction that
+ * defines them. Local variables only exist while building; fields are
+ * accessed with {@link Op#LOAD} and {@link Op#STORE}.
+ *
+ * Code generation walks {@link Function#getBlocks()} in order (the entry
+ * first) and each block's instructions, using {@link Instruction#getOp()},
+ * {@link Instruction#getData()} and {@link Instruction#getOperands()}. A phi's
+ * operands are in the same order as its block's predecessors.
+ */
+public final class Ir {
+
+    private Ir() {}
+
+    /**
+     * The operation of an instruction, with the data and operands it has.
+     */
+    public enum Op {
+        /** The constant value in data, in its runtime representation. */
+        CONST,
+        /** The parameter whose index is in data. */
+        PARAM,
+        /** Loads the field whose {@link Scope.Variable} is in data. */
+        LOAD,
+        /** Stores the operand in the field whose {@link Scope.Variable} is in data. */
+        STORE,
+        /** Gets the field named in data of the receiver operand. */
+        GET,
+        /** Sets the field named in data of the receiver operand to the value operand. */
+        SET,
+        /** Calls the {@link Scope.Function} in data with the operands. */
+        CALL,
+        /** Calls the method named in data of the first operand with the rest. */
+        INVOKE,
+        /** Applies the operator in data (other than AND/OR) to both operands. */
+        BINARY,
+        /** Merges one operand from each predecessor of the block. */
+        PHI,
+        /** Starts iterating over the operand's elements, for a FOR loop. */
+        ITERATE,
+        /** Returns whether the iteration operand has another element. */
+        HAS_NEXT,
+        /** Returns the next element of the iteration operand. */
+        NEXT,
+        /** Jumps to the only successor. */
+        JUMP,
+        /** Jumps to the first successor if the operand is TRUE, otherwise the second. */
+        BRANCH,
+        /** Returns the operand from the method. */
+        RETURN;
+
+        public boolean isTerminator() {
+            return this == JUMP || this == BRANCH || this == RETURN;
+        }
+    }
+
+    public static final class Function {
+
+        private final String name;
+        private final int arity;
+        private final List<Block> blocks = new ArrayList<>();
+        private int nextBlock = 0;
+        private int nextValue = 0;
+
+        Function(String name, int arity) {
+            this.name = name;
+            this.arity = arity;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getArity() {
+            return arity;
+        }
+
+        public Block getEntry() {
+            return blocks.get(0);
+        }
+
+        public List<Block> getBlocks() {
+            return Collections.unmodifiableList(blocks);
+        }
+
+        Block addBlock() {
+            Block block = new Block(this, nextBlock++);
+            blocks.add(block);
+            return block;
+        }
+
+        /**
+         * Replaces the blocks, such as to remove unreachable ones or reorder
+         * them. The entry must stay first.
+         */
+        void setBlocks(List<Block> blocks) {
+            this.blocks.clear();
+            this.blocks.addAll(blocks);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(name).append('/').append(arity).append(":\n");
+            for (Block block : blocks) {
+                builder.append(block).append(':');
+                if (!block.predecessors.isEmpty()) {
+                    builder.append(" <- ").append(block.predecessors);
+                }
+                builder.append('\n');
+                for (Instruction instruction : block.instructions) {
+                    builder.append("  ").append(instruction.format()).append('\n');
+                }
+            }
+            return builder.toString();
+        }
+
+    }
+
+    public static final class Block {
+
+        private final Function function;
+        private final int id;
+        private final List<Instruction> instructions = new ArrayList<>();
+        private final List<Block> predecessors = new ArrayList<>();
+        private final List<Block> successors = new ArrayList<>();
+
+        private Block(Function function, int id) {
+            this.function = function;
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public List<Instruction> getInstructions() {
+            return Collections.unmodifiableList(instructions);
+        }
+
+        public List<Block> getPredecessors() {
+            return Collections.unmodifiableList(predecessors);
+        }
+
+        public List<Block> getSuccessors() {
+            return Collections.unmodifiableList(successors);
+        }
+
+        /**
+         * Returns the terminator, or {@code null} while the block is still
+         * being built.
+         */
+        public Instruction getTerminator() {
+            Instruction last = instructions.isEmpty() ? null : instructions.get(instructions.size() - 1);
+            return last != null && last.op.isTerminator() ? last : null;
+        }
+
+        Instruction append(Op op, Object data, Type type, Instruction... operands) {
+            Instruction instruction = new Instruction(function.nextValue++, op, data, type, this);
+            for (Instruction operand : operands) {
+                instruction.addOperand(operand);
+            }
+            instructions.add(instruction);
+            return instruction;
+        }
+
+        /**
+         * Adds a phi without operands after the existing phis.
+         */
+        Instruction addPhi() {
+            return insert(Op.PHI, null, null);
+        }
+
+        /**
+         * Adds an instruction without operands after the existing phis, which
+         * can be done after the block is terminated.
+         */
+        Instruction insert(Op op, Object data, Type type) {
+            Instruction instruction = new Instruction(function.nextValue++, op, data, type, this);
+            int index = 0;
+            while (index < instructions.size() && instructions.get(index).op == Op.PHI) {
+                index++;
+            }
+            instructions.add(index, instruction);
+            return instruction;
+        }
+
+        /**
+         * Moves an instruction from another block to just before this block's
+         * terminator.
+         */
+        void hoist(Instruction instruction) {
+            instruction.block.instructions.remove(instruction);
+            instructions.add(instructions.size() - 1, instruction);
+            instruction.block = this;
+        }
+
+        void jump(Block target) {
+            append(Op.JUMP, null, null);
+            addSuccessor(target);
+        }
+
+        void branch(Instruction condition, Block then, Block otherwise) {
+            append(Op.BRANCH, null, null, condition);
+            addSuccessor(then);
+            addSuccessor(otherwise);
+        }
+
+        private void addSuccessor(Block successor) {
+            successors.add(successor);
+            successor.predecessors.add(this);
+        }
+
+        /**
+         * Removes the edge to a successor, along with the operands of the
+         * successor's phis for it.
+         */
+        void removeSuccessor(Block successor) {
+            successors.remove(successor);
+            int index = successor.predecessors.indexOf(this);
+            successor.predecessors.remove(index);
+            for (Instruction instruction : successor.instructions) {
+                if (instruction.op == Op.PHI) {
+                    instruction.removeOperand(index);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "b" + id;
+        }
+
+    }
+
+    public static final class Instruction {
+
+        private final int id;
+        private final Op op;
+        private final Object data;
+        private final List<Instruction> operands = new ArrayList<>();
+        private final List<Instruction> users = new ArrayList<>();
+        private Block block;
+        private Type type;
+
+        private Instruction(int id, Op op, Object data, Type type, Block block) {
+            this.id = id;
+            this.op = op;
+            this.data = data;
+            this.type = type;
+            this.block = block;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public Op getOp() {
+            return op;
+        }
+
+        public Object getData() {
+            return data;
+        }
+
+        public List<Instruction> getOperands() {
+            return Collections.unmodifiableList(operands);
+        }
+
+        /**
+         * Returns the instructions using this value, once per use.
+         */
+        public List<Instruction> getUsers() {
+            return Collections.unmodifiableList(users);
+        }
+
+        /**
+         * Returns the block containing the instruction, or {@code null} if it
+         * was removed.
+         */
+        public Block getBlock() {
+            return block;
+        }
+
+        /**
+         * Returns the static type of the value (see {@link TypeInference}),
+         * which is {@code null} for terminators and stores.
+         */
+        public Type getType() {
+            return type;
+        }
+
+        void setType(Type type) {
+            this.type = type;
+        }
+
+        /**
+         * Returns true if the instruction only computes a value from its
+         * operands, without any effects or possible errors, so it can be
+         * removed if unused, merged with an equal instruction, or moved.
+         * Binary operators are pure when their operand types are known to be
+         * valid, except for division (which can divide by zero).
+         */
+        public boolean isPure() {
+            switch (op) {
+                case CONST:
+                case PARAM:
+                case PHI:
+                    return true;
+                case BINARY:
+                    return data.equals("==") || data.equals("!=") || (type != Type.ANY && !data.equals("/"));
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Returns true if the instruction must be kept even if its value is
+         * unused. Loads are neither pure nor effects, since stores and calls
+         * may change their value.
+         */
+        public boolean hasEffects() {
+            return !isPure() && op != Op.LOAD;
+        }
+
+        void addOperand(Instruction operand) {
+            operands.add(operand);
+            operand.users.add(this);
+        }
+
+        void removeOperand(int index) {
+            operands.remove(index).users.remove(this);
+        }
+
+        /**
+         * Replaces every use of this value with the other value.
+         */
+        void replaceWith(Instruction other) {
+            for (Instruction user : users) {
+                for (int i = 0; i < user.operands.size(); i++) {
+                    if (user.operands.get(i) == this) {
+                        user.operands.set(i, other);
+                    }
+                }
+                other.users.add(user);
+            }
+            users.clear();
+        }
+
+        /**
+         * Removes the instruction from its block, along with its uses of its
+         * operands. The instruction must not have any users, and its block is
+         * {@code null} afterwards.
+         */
+        void remove() {
+            for (Instruction operand : operands) {
+                operand.users.remove(this);
+            }
+            operands.clear();
+            block.instructions.remove(this);
+            block = null;
+        }
+
+        String format() {
+            StringBuilder builder = new StringBuilder();
+            if (!op.isTerminator() && op != Op.STORE && op != Op.SET) {
+                builder.append(this).append(" = ");
+            }
+            builder.append(op.name().toLowerCase());
+            if (op == Op.LOAD || op == Op.STORE) {
+                builder.append(' ').append(((Scope.Variable) data).getName());
+            }
+            else if (op == Op.CALL) {
+                builder.append(' ').append(((Scope.Function) data).getName());
+            }
+            else if (op == Op.CONST && data == null) {
+                builder.append(" NIL");
+            }
+            else if (op == Op.CONST && data instanceof String) {
+                builder.append(" \"").append(data).append('"');
+            }
+            else if (data != null) {
+                builder.append(' ').append(data);
+            }
+            for (Instruction operand : operands) {
+                builder.append(' ').append(operand);
+            }
+            if (op == Op.JUMP || op == Op.BRANCH) {
+                for (Block successor : block.successors) {
+                    builder.append(' ').append(successor);
+                }
+            }
+            if (type != null && type != Type.ANY) {
+                builder.append(" : ").append(type);
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public String toString() {
+            return "v" + id;
+        }
+
+    }
+
+}
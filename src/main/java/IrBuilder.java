@@ -0,0 +1,477 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lowers an analyzed {@link Ast.Method} (see {@link Analyzer}) into an
+ * {@link Ir.Function} in SSA form, using the types from
+ * {@link TypeInference} if it has run.
+ *
+ * SSA is constructed directly while lowering, without computing dominance
+ * frontiers, following Braun et al., "Simple and Efficient Construction of
+ * Static Single Assignment Form". Each block records the current value of
+ * each local variable it assigns, and a read in a block that doesn't assign
+ * the variable looks it up in the predecessors, adding a phi where they
+ * merge. A loop header isn't sealed until its back edge is added, so reads
+ * from it get a phi whose operands are filled in afterwards. Phis that turn
+ * out to merge a single value are removed immediately, so assignments such as
+ * {@code LET y = x;} never create copies.
+ *
+ * {@code AND}/{@code OR} are lowered to branches since the right side is only
+ * evaluated when the left doesn't decide the result, and statements after a
+ * {@code RETURN} are lowered into a block without predecessors (which
+ * {@link IrOptimizer} removes). Expressions are lowered with an explicit
+ * stack, so deeply nested expressions don't recurse.
+ */
+public final class IrBuilder {
+
+    private Ir.Function function;
+    private Ir.Block current;
+
+    private final Map<Ir.Block, Map<Scope.Variable, Ir.Instruction>> definitions = new HashMap<>();
+    private final Map<Ir.Block, Map<Scope.Variable, Ir.Instruction>> incomplete = new HashMap<>();
+    private final Set<Ir.Block> sealed = new HashSet<>();
+
+    /**
+     * Phis which were removed as trivial, mapped to the value that replaced
+     * them, since a definition may still refer to one.
+     */
+    private final Map<Ir.Instruction, Ir.Instruction> replaced = new HashMap<>();
+
+    private final List<Ir.Instruction> parameters = new ArrayList<>();
+
+    public Ir.Function build(Ast.Method ast) {
+        function = new Ir.Function(ast.getName(), ast.getParameters().size());
+        definitions.clear();
+        incomplete.clear();
+        sealed.clear();
+        replaced.clear();
+        current = addBlock();
+        seal(current);
+        parameters.clear();
+        for (int i = 0; i < ast.getParameters().size(); i++) {
+            parameters.add(current.append(Ir.Op.PARAM, i, Type.ANY));
+        }
+        lower(ast.getStatements());
+        //falling off the end returns NIL
+        if (current.getTerminator() == null) {
+            current.append(Ir.Op.RETURN, null, null, constant(null));
+        }
+        inferPhiTypes();
+        return function;
+    }
+
+    private void lower(List<Ast.Stmt> statements) {
+        for (Ast.Stmt statement : statements) {
+            lower(statement);
+        }
+    }
+
+    private void lower(Ast.Stmt ast) {
+        if (ast instanceof Ast.Stmt.Expression) {
+            lower(((Ast.Stmt.Expression) ast).getExpression());
+        }
+        else if (ast instanceof Ast.Stmt.Declaration) {
+            Ast.Stmt.Declaration declaration = (Ast.Stmt.Declaration) ast;
+            Ir.Instruction value = declaration.getValue().isPresent() ? lower(declaration.getValue().get()) : constant(null);
+            write(declaration.getVariable(), current, value);
+        }
+        else if (ast instanceof Ast.Stmt.Assignment) {
+            lowerAssignment((Ast.Stmt.Assignment) ast);
+        }
+        else if (ast instanceof Ast.Stmt.If) {
+            lowerIf((Ast.Stmt.If) ast);
+        }
+        else if (ast instanceof Ast.Stmt.For) {
+            lowerFor((Ast.Stmt.For) ast);
+        }
+        else if (ast instanceof Ast.Stmt.While) {
+            lowerWhile((Ast.Stmt.While) ast);
+        }
+        else if (ast instanceof Ast.Stmt.Return) {
+            Ir.Instruction value = lower(((Ast.Stmt.Return) ast).getValue());
+            current.append(Ir.Op.RETURN, null, null, value);
+            //anything after the return is unreachable
+            current = addBlock();
+            seal(current);
+        }
+    }
+
+    private void lowerAssignment(Ast.Stmt.Assignment ast) {
+        //lowering an expression may change the current block, so values are lowered first
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        if (receiver.getReceiver().isPresent()) {
+            Ir.Instruction object = lower(receiver.getReceiver().get());
+            Ir.Instruction value = lower(ast.getValue());
+            current.append(Ir.Op.SET, receiver.getName(), null, object, value);
+        }
+        else if (receiver.getVariable().getKind() == Scope.Variable.Kind.GLOBAL) {
+            Ir.Instruction value = lower(ast.getValue());
+            current.append(Ir.Op.STORE, receiver.getVariable(), null, value);
+        }
+        else {
+            Ir.Instruction value = lower(ast.getValue());
+            write(receiver.getVariable(), current, value);
+        }
+    }
+
+    private void lowerIf(Ast.Stmt.If ast) {
+        Ir.Instruction condition = lower(ast.getCondition());
+        Ir.Block then = addBlock();
+        Ir.Block otherwise = addBlock();
+        Ir.Block merge = addBlock();
+        current.branch(condition, then, otherwise);
+        seal(then);
+        seal(otherwise);
+
+        current = then;
+        lower(ast.getThenStatements());
+        current.jump(merge);
+
+        current = otherwise;
+        lower(ast.getElseStatements());
+        current.jump(merge);
+
+        seal(merge);
+        current = merge;
+    }
+
+    private void lowerWhile(Ast.Stmt.While ast) {
+        Ir.Block header = addBlock();
+        Ir.Block body = addBlock();
+        Ir.Block exit = addBlock();
+        current.jump(header);
+
+        current = header;
+        Ir.Instruction condition = lower(ast.getCondition());
+        current.branch(condition, body, exit);
+        seal(body);
+
+        current = body;
+        lower(ast.getStatements());
+        current.jump(header);
+
+        seal(header);
+        seal(exit);
+        current = exit;
+    }
+
+    private void lowerFor(Ast.Stmt.For ast) {
+        Ir.Instruction value = lower(ast.getValue());
+        Ir.Instruction iterator = current.append(Ir.Op.ITERATE, null, Type.ANY, value);
+        Ir.Block header = addBlock();
+        Ir.Block body = addBlock();
+        Ir.Block exit = addBlock();
+        current.jump(header);
+
+        current = header;
+        current.branch(current.append(Ir.Op.HAS_NEXT, null, Type.BOOLEAN, iterator), body, exit);
+        seal(body);
+
+        current = body;
+        write(ast.getVariable(), current, current.append(Ir.Op.NEXT, null, Type.ANY, iterator));
+        lower(ast.getStatements());
+        current.jump(header);
+
+        seal(header);
+        seal(exit);
+        current = exit;
+    }
+
+    /**
+     * Lowers an expression into the current block (which may change, for
+     * {@code AND}/{@code OR}) and returns its value. Expressions on the work
+     * stack are expanded into their children followed by a marker for the
+     * node itself, which pops its operands' values once they're lowered.
+     */
+    private Ir.Instruction lower(Ast.Expr root) {
+        Deque<Object> work = new ArrayDeque<>();
+        List<Ir.Instruction> values = new ArrayList<>();
+        work.push(root);
+        while (!work.isEmpty()) {
+            Object item = work.pop();
+            if (item instanceof Ast.Expr.Literal) {
+                values.add(constant(((Ast.Expr.Literal) item).getValue()));
+            }
+            else if (item instanceof Ast.Expr.Group) {
+                work.push(((Ast.Expr.Group) item).getExpression());
+            }
+            else if (item instanceof Ast.Expr.Binary) {
+                Ast.Expr.Binary binary = (Ast.Expr.Binary) item;
+                if (isShortCircuit(binary)) {
+                    work.push(new Branch(binary));
+                }
+                else {
+                    work.push(new Apply(binary));
+                    work.push(binary.getRight());
+                }
+                work.push(binary.getLeft());
+            }
+            else if (item instanceof Ast.Expr.Access) {
+                Ast.Expr.Access access = (Ast.Expr.Access) item;
+                if (access.getReceiver().isPresent()) {
+                    work.push(new Apply(access));
+                    work.push(access.getReceiver().get());
+                }
+                else if (access.getVariable().getKind() == Scope.Variable.Kind.GLOBAL) {
+                    values.add(current.append(Ir.Op.LOAD, access.getVariable(), Type.ANY));
+                }
+                else {
+                    values.add(read(access.getVariable(), current));
+                }
+            }
+            else if (item instanceof Ast.Expr.Function) {
+                Ast.Expr.Function call = (Ast.Expr.Function) item;
+                work.push(new Apply(call));
+                for (int i = call.getArguments().size() - 1; i >= 0; i--) {
+                    work.push(call.getArguments().get(i));
+                }
+                call.getReceiver().ifPresent(work::push);
+            }
+            else if (item instanceof Apply) {
+                values.add(apply(((Apply) item).ast, values));
+            }
+            else if (item instanceof Branch) {
+                //the left side is lowered, so branch to the right side if it doesn't decide the result
+                Ast.Expr.Binary binary = ((Branch) item).ast;
+                boolean or = binary.getOperator().equals("OR");
+                Ir.Instruction left = pop(values);
+                Ir.Instruction decided = constant(or);
+                Ir.Block right = addBlock();
+                Ir.Block merge = addBlock();
+                if (or) {
+                    current.branch(left, merge, right);
+                }
+                else {
+                    current.branch(left, right, merge);
+                }
+                seal(right);
+                work.push(new Merge(current, decided, merge));
+                work.push(binary.getRight());
+                current = right;
+            }
+            else {
+                Merge merge = (Merge) item;
+                Ir.Instruction right = pop(values);
+                current.jump(merge.block);
+                seal(merge.block);
+                Ir.Instruction phi = merge.block.addPhi();
+                //operands are in the order the predecessors were added
+                for (Ir.Block predecessor : merge.block.getPredecessors()) {
+                    phi.addOperand(predecessor == merge.left ? merge.decided : right);
+                }
+                current = merge.block;
+                values.add(phi);
+            }
+        }
+        return pop(values);
+    }
+
+    private Ir.Instruction apply(Ast.Expr ast, List<Ir.Instruction> values) {
+        if (ast instanceof Ast.Expr.Binary) {
+            Ir.Instruction right = pop(values);
+            Ir.Instruction left = pop(values);
+            return current.append(Ir.Op.BINARY, ((Ast.Expr.Binary) ast).getOperator(), ast.getType(), left, right);
+        }
+        else if (ast instanceof Ast.Expr.Access) {
+            return current.append(Ir.Op.GET, ((Ast.Expr.Access) ast).getName(), Type.ANY, pop(values));
+        }
+        Ast.Expr.Function call = (Ast.Expr.Function) ast;
+        int count = call.getArguments().size() + (call.getReceiver().isPresent() ? 1 : 0);
+        Ir.Instruction[] operands = new Ir.Instruction[count];
+        for (int i = count - 1; i >= 0; i--) {
+            operands[i] = pop(values);
+        }
+        if (call.getReceiver().isPresent()) {
+            return current.append(Ir.Op.INVOKE, call.getName(), Type.ANY, operands);
+        }
+        return current.append(Ir.Op.CALL, call.getFunction(), call.getFunction().getReturnType(), operands);
+    }
+
+    private static boolean isShortCircuit(Ast.Expr.Binary ast) {
+        return ast.getOperator().equals("AND") || ast.getOperator().equals("OR");
+    }
+
+    private static Ir.Instruction pop(List<Ir.Instruction> values) {
+        return values.remove(values.size() - 1);
+    }
+
+    private Ir.Instruction constant(Object value) {
+        return current.append(Ir.Op.CONST, value, Type.of(value));
+    }
+
+    private Ir.Block addBlock() {
+        Ir.Block block = function.addBlock();
+        definitions.put(block, new HashMap<>());
+        return block;
+    }
+
+    private void write(Scope.Variable variable, Ir.Block block, Ir.Instruction value) {
+        definitions.get(block).put(variable, value);
+    }
+
+    private Ir.Instruction read(Scope.Variable variable, Ir.Block block) {
+        Ir.Instruction value = definitions.get(block).get(variable);
+        if (value == null) {
+            return readRecursive(variable, block);
+        }
+        while (replaced.containsKey(value)) {
+            value = replaced.get(value);
+        }
+        return value;
+    }
+
+    private Ir.Instruction readRecursive(Scope.Variable variable, Ir.Block block) {
+        Ir.Instruction value;
+        if (!sealed.contains(block)) {
+            value = block.addPhi();
+            incomplete.computeIfAbsent(block, k -> new HashMap<>()).put(variable, value);
+        }
+        else if (block.getPredecessors().size() == 1) {
+            value = read(variable, block.getPredecessors().get(0));
+        }
+        else if (block.getPredecessors().isEmpty()) {
+            //the analyzer assigns parameters the first slots in order, and any
+            //other variable read here is in an unreachable block (after a RETURN)
+            int slot = variable.getSlot();
+            value = slot < parameters.size() ? parameters.get(slot) : block.insert(Ir.Op.CONST, null, Type.NIL);
+        }
+        else {
+            Ir.Instruction phi = block.addPhi();
+            write(variable, block, phi);
+            value = addOperands(variable, phi);
+        }
+        write(variable, block, value);
+        return value;
+    }
+
+    private Ir.Instruction addOperands(Scope.Variable variable, Ir.Instruction phi) {
+        for (Ir.Block predecessor : phi.getBlock().getPredecessors()) {
+            phi.addOperand(read(variable, predecessor));
+        }
+        return removeTrivial(phi);
+    }
+
+    /**
+     * Replaces a phi whose operands are all the same value (or the phi
+     * itself) with that value. Removing it may make phis using it trivial, so
+     * they are checked in turn.
+     */
+    private Ir.Instruction removeTrivial(Ir.Instruction phi) {
+        Ir.Instruction same = null;
+        for (Ir.Instruction operand : phi.getOperands()) {
+            if (operand == same || operand == phi) {
+                continue;
+            }
+            if (same != null) {
+                return phi;
+            }
+            same = operand;
+        }
+        if (same == null) {
+            //the phi is only reachable from itself, so is never used
+            same = phi.getBlock().insert(Ir.Op.CONST, null, Type.NIL);
+        }
+        List<Ir.Instruction> users = new ArrayList<>(phi.getUsers());
+        users.remove(phi);
+        phi.replaceWith(same);
+        phi.remove();
+        replaced.put(phi, same);
+        for (Ir.Instruction user : users) {
+            if (user.getOp() == Ir.Op.PHI && user.getBlock() != null) {
+                removeTrivial(user);
+            }
+        }
+        return same;
+    }
+
+    private void seal(Ir.Block block) {
+        Map<Scope.Variable, Ir.Instruction> phis = incomplete.remove(block);
+        sealed.add(block);
+        if (phis != null) {
+            for (Map.Entry<Scope.Variable, Ir.Instruction> entry : phis.entrySet()) {
+                addOperands(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Sets the type of each phi to the join of its operands' types. Phis in
+     * loops depend on each other, so every phi starts without a type and the
+     * types are joined until they stop changing.
+     */
+    private void inferPhiTypes() {
+        List<Ir.Instruction> phis = new ArrayList<>();
+        for (Ir.Block block : function.getBlocks()) {
+            for (Ir.Instruction instruction : block.getInstructions()) {
+                if (instruction.getOp() == Ir.Op.PHI) {
+                    instruction.setType(null);
+                    phis.add(instruction);
+                }
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Ir.Instruction phi : phis) {
+                Type type = phi.getType();
+                for (Ir.Instruction operand : phi.getOperands()) {
+                    if (operand.getType() != null) {
+                        type = type == null ? operand.getType() : type.join(operand.getType());
+                    }
+                }
+                if (type != phi.getType()) {
+                    phi.setType(type);
+                    changed = true;
+                }
+            }
+        }
+        for (Ir.Instruction phi : phis) {
+            if (phi.getType() == null) {
+                phi.setType(Type.ANY);
+            }
+        }
+    }
+
+    private static final class Apply {
+
+        private final Ast.Expr ast;
+
+        private Apply(Ast.Expr ast) {
+            this.ast = ast;
+        }
+
+    }
+
+    private static final class Branch {
+
+        private final Ast.Expr.Binary ast;
+
+        private Branch(Ast.Expr.Binary ast) {
+            this.ast = ast;
+        }
+
+    }
+
+    private static final class Merge {
+
+        private final Ir.Block left;
+        private final Ir.Instruction decided;
+        private final Ir.Block block;
+
+        private Merge(Ir.Block left, Ir.Instruction decided, Ir.Block block) {
+            this.left = left;
+            this.decided = decided;
+            this.block = block;
+        }
+
+    }
+
+}
@@ -0,0 +1,355 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Optimizes an {@link Ir.Function} in place with the following passes, in
+ * order:
+ *
+ *  - Dead code elimination of blocks: branches on a constant condition become
+ *    jumps, and blocks which can't be reached from the entry (such as code
+ *    after a {@code RETURN}) are removed.
+ *  - Copy propagation: phis whose operands are all the same value are
+ *    replaced by it. SSA construction never creates copies for variables, but
+ *    removing blocks leaves phis with fewer operands.
+ *  - Common subexpression elimination: a pure instruction (see
+ *    {@link Ir.Instruction#isPure()}) equal to one in a dominating block is
+ *    replaced by it.
+ *  - Loop-invariant code motion: pure instructions in a loop whose operands
+ *    are all defined outside it are moved to the block before the loop, which
+ *    is safe even if the loop doesn't run since they can't fail.
+ *  - Dead code elimination of instructions: instructions without effects
+ *    (see {@link Ir.Instruction#hasEffects()}) whose values aren't used by
+ *    any instruction with effects are removed.
+ *
+ * The blocks are left in reverse postorder, so each block comes after its
+ * dominator and code generation can lay them out as listed.
+ */
+public final class IrOptimizer {
+
+    private Ir.Function function;
+    private List<Ir.Block> order;
+    private Map<Ir.Block, Integer> index;
+    private Ir.Block[] dominators;
+
+    public Ir.Function optimize(Ir.Function function) {
+        this.function = function;
+        simplifyBranches();
+        removeUnreachable();
+        propagateCopies();
+        computeDominators();
+        eliminateCommonSubexpressions();
+        hoistLoopInvariants();
+        removeDeadInstructions();
+        return function;
+    }
+
+    private void simplifyBranches() {
+        for (Ir.Block block : function.getBlocks()) {
+            Ir.Instruction terminator = block.getTerminator();
+            if (terminator == null || terminator.getOp() != Ir.Op.BRANCH) {
+                continue;
+            }
+            Ir.Instruction condition = terminator.getOperands().get(0);
+            if (condition.getOp() == Ir.Op.CONST && condition.getData() instanceof Boolean) {
+                Ir.Block removed = block.getSuccessors().get((Boolean) condition.getData() ? 1 : 0);
+                terminator.remove();
+                block.removeSuccessor(removed);
+                block.append(Ir.Op.JUMP, null, null);
+            }
+        }
+    }
+
+    /**
+     * Removes blocks that can't be reached from the entry and orders the
+     * rest in reverse postorder.
+     */
+    private void removeUnreachable() {
+        List<Ir.Block> postorder = new ArrayList<>();
+        Set<Ir.Block> visited = new HashSet<>();
+        //each entry is a block and the index of the next successor to visit
+        Deque<Object[]> stack = new ArrayDeque<>();
+        stack.push(new Object[] {function.getEntry(), 0});
+        visited.add(function.getEntry());
+        while (!stack.isEmpty()) {
+            Object[] top = stack.peek();
+            Ir.Block block = (Ir.Block) top[0];
+            int next = (Integer) top[1];
+            if (next < block.getSuccessors().size()) {
+                top[1] = next + 1;
+                Ir.Block successor = block.getSuccessors().get(next);
+                if (visited.add(successor)) {
+                    stack.push(new Object[] {successor, 0});
+                }
+            }
+            else {
+                stack.pop();
+                postorder.add(block);
+            }
+        }
+        for (Ir.Block block : function.getBlocks()) {
+            if (!visited.contains(block)) {
+                for (Ir.Block successor : new ArrayList<>(block.getSuccessors())) {
+                    block.removeSuccessor(successor);
+                }
+            }
+        }
+        //an unreachable block's values can only be used by unreachable blocks
+        //(other than phis, whose operands were removed with the edges)
+        for (Ir.Block block : function.getBlocks()) {
+            if (!visited.contains(block)) {
+                for (Ir.Instruction instruction : new ArrayList<>(block.getInstructions())) {
+                    instruction.remove();
+                }
+            }
+        }
+        order = new ArrayList<>(postorder.size());
+        for (int i = postorder.size() - 1; i >= 0; i--) {
+            order.add(postorder.get(i));
+        }
+        function.setBlocks(order);
+        index = new HashMap<>();
+        for (int i = 0; i < order.size(); i++) {
+            index.put(order.get(i), i);
+        }
+    }
+
+    private void propagateCopies() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Ir.Block block : order) {
+                for (Ir.Instruction instruction : new ArrayList<>(block.getInstructions())) {
+                    if (instruction.getOp() != Ir.Op.PHI || instruction.getBlock() == null) {
+                        continue;
+                    }
+                    Ir.Instruction same = null;
+                    boolean trivial = true;
+                    for (Ir.Instruction operand : instruction.getOperands()) {
+                        if (operand == instruction || operand == same) {
+                            continue;
+                        }
+                        if (same != null) {
+                            trivial = false;
+                            break;
+                        }
+                        same = operand;
+                    }
+                    if (trivial && same != null) {
+                        instruction.replaceWith(same);
+                        instruction.remove();
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the immediate dominator of each block with the iterative
+     * algorithm of Cooper, Harvey and Kennedy, "A Simple, Fast Dominance
+     * Algorithm", using the reverse postorder of the blocks.
+     */
+    private void computeDominators() {
+        dominators = new Ir.Block[order.size()];
+        dominators[0] = order.get(0);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < order.size(); i++) {
+                Ir.Block dominator = null;
+                for (Ir.Block predecessor : order.get(i).getPredecessors()) {
+                    if (dominators[index.get(predecessor)] != null) {
+                        dominator = dominator == null ? predecessor : intersect(predecessor, dominator);
+                    }
+                }
+                if (dominators[i] != dominator) {
+                    dominators[i] = dominator;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private Ir.Block intersect(Ir.Block left, Ir.Block right) {
+        int i = index.get(left);
+        int j = index.get(right);
+        while (i != j) {
+            while (i > j) {
+                i = index.get(dominators[i]);
+            }
+            while (j > i) {
+                j = index.get(dominators[j]);
+            }
+        }
+        return order.get(i);
+    }
+
+    private boolean dominates(Ir.Block dominator, Ir.Block block) {
+        int target = index.get(dominator);
+        int i = index.get(block);
+        while (i > target) {
+            i = index.get(dominators[i]);
+        }
+        return i == target;
+    }
+
+    /**
+     * Walks the dominator tree with a scoped table of the pure instructions
+     * available in each block, keyed by their operation, data and operands.
+     * A block's dominators are visited before it, so an instruction's
+     * operands have already been replaced by the time it is looked up.
+     */
+    private void eliminateCommonSubexpressions() {
+        Map<Ir.Block, List<Ir.Block>> children = new HashMap<>();
+        for (int i = 1; i < order.size(); i++) {
+            children.computeIfAbsent(dominators[i], k -> new ArrayList<>()).add(order.get(i));
+        }
+        Map<List<Object>, Ir.Instruction> available = new HashMap<>();
+        //each entry is a block to visit, or the keys to remove once its children are visited
+        Deque<Object> stack = new ArrayDeque<>();
+        stack.push(order.get(0));
+        while (!stack.isEmpty()) {
+            Object item = stack.pop();
+            if (item instanceof List) {
+                for (Object key : (List<?>) item) {
+                    available.remove(key);
+                }
+                continue;
+            }
+            Ir.Block block = (Ir.Block) item;
+            List<List<Object>> added = new ArrayList<>();
+            for (Ir.Instruction instruction : new ArrayList<>(block.getInstructions())) {
+                if (!instruction.isPure() || instruction.getOp() == Ir.Op.PHI || instruction.getOp() == Ir.Op.PARAM) {
+                    continue;
+                }
+                List<Object> key = new ArrayList<>(Arrays.asList(instruction.getOp(), instruction.getData(), instruction.getType()));
+                key.addAll(instruction.getOperands());
+                Ir.Instruction existing = available.get(key);
+                if (existing != null) {
+                    instruction.replaceWith(existing);
+                    instruction.remove();
+                }
+                else {
+                    available.put(key, instruction);
+                    added.add(key);
+                }
+            }
+            stack.push(added);
+            for (Ir.Block child : children.getOrDefault(block, List.of())) {
+                stack.push(child);
+            }
+        }
+    }
+
+    /**
+     * Finds each natural loop (the blocks that reach a back edge to a header
+     * which dominates them) and moves its invariant instructions to the
+     * loop's preheader, the only block outside it which jumps to the header.
+     * Inner loops are handled first so their invariants can move further out.
+     */
+    private void hoistLoopInvariants() {
+        Map<Ir.Block, Set<Ir.Block>> loops = new LinkedHashMap<>();
+        for (Ir.Block block : order) {
+            for (Ir.Block successor : block.getSuccessors()) {
+                if (dominates(successor, block)) {
+                    Set<Ir.Block> body = loops.computeIfAbsent(successor, k -> new HashSet<>(List.of(k)));
+                    Deque<Ir.Block> work = new ArrayDeque<>();
+                    if (body.add(block)) {
+                        work.push(block);
+                    }
+                    while (!work.isEmpty()) {
+                        for (Ir.Block predecessor : work.pop().getPredecessors()) {
+                            if (body.add(predecessor)) {
+                                work.push(predecessor);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        List<Map.Entry<Ir.Block, Set<Ir.Block>>> sorted = new ArrayList<>(loops.entrySet());
+        sorted.sort(Comparator.comparingInt(entry -> entry.getValue().size()));
+        for (Map.Entry<Ir.Block, Set<Ir.Block>> loop : sorted) {
+            List<Ir.Block> outside = new ArrayList<>();
+            for (Ir.Block predecessor : loop.getKey().getPredecessors()) {
+                if (!loop.getValue().contains(predecessor)) {
+                    outside.add(predecessor);
+                }
+            }
+            //the lowering always jumps to a loop from a block without other successors
+            if (outside.size() == 1 && outside.get(0).getSuccessors().size() == 1) {
+                hoist(loop.getValue(), outside.get(0));
+            }
+        }
+    }
+
+    private void hoist(Set<Ir.Block> body, Ir.Block preheader) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Ir.Block block : order) {
+                if (!body.contains(block)) {
+                    continue;
+                }
+                for (Ir.Instruction instruction : new ArrayList<>(block.getInstructions())) {
+                    if (instruction.isPure() && instruction.getOp() != Ir.Op.PHI && isInvariant(instruction, body)) {
+                        preheader.hoist(instruction);
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isInvariant(Ir.Instruction instruction, Set<Ir.Block> body) {
+        for (Ir.Instruction operand : instruction.getOperands()) {
+            if (body.contains(operand.getBlock())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks every instruction that an instruction with effects depends on,
+     * and removes the rest.
+     */
+    private void removeDeadInstructions() {
+        Set<Ir.Instruction> live = new HashSet<>();
+        Deque<Ir.Instruction> work = new ArrayDeque<>();
+        for (Ir.Block block : order) {
+            for (Ir.Instruction instruction : block.getInstructions()) {
+                if (instruction.hasEffects() && live.add(instruction)) {
+                    work.push(instruction);
+                }
+            }
+        }
+        while (!work.isEmpty()) {
+            for (Ir.Instruction operand : work.pop().getOperands()) {
+                if (live.add(operand)) {
+                    work.push(operand);
+                }
+            }
+        }
+        //dead instructions may use each other, so their users aren't checked
+        for (Ir.Block block : order) {
+            for (Ir.Instruction instruction : new ArrayList<>(block.getInstructions())) {
+                if (!live.contains(instruction)) {
+                    instruction.remove();
+                }
+            }
+        }
+    }
+
+}
@@ -19,9 +19,29 @@ import java.util.*;
 public final class Lexer {
 
     private final CharStream chars;
+    private final LineIndex lines;
 
     public Lexer(String input) {
-        chars = new CharStream(input);
+        this(input, false);
+    }
+
+    /**
+     * Creates a lexer which, if {@code codePoints} is true, treats characters
+     * outside the Basic Multilingual Plane (surrogate pairs) as a single
+     * character and records the UTF-8 byte offset of each token and
+     * {@link ParseException} along with its index.
+     */
+    public Lexer(String input, boolean codePoints) {
+        chars = new CharStream(input, codePoints);
+        lines = new LineIndex(input);
+    }
+
+    /**
+     * Returns the line index of the input, with the line starts recorded by
+     * {@link #lex()}.
+     */
+    public LineIndex getLineIndex() {
+        return lines;
     }
 
     /**
@@ -32,13 +52,23 @@ public final class Lexer {
         //throw new UnsupportedOperationException(); //TODO - DONE
         List<Token> tokenList = new ArrayList<Token>();
         while (chars.has(0) ) {
-            if (!match(" ")) {
-                if (!match("[\b\n\r\t]")) {
-                    tokenList.add(lexToken());
+            //runs of blanks are skipped at once, but line breaks are handled one at a time to record them
+            int blank = CharScanner.blankEnd(chars.array, chars.index);
+            if (blank > chars.index) {
+                chars.advanceTo(blank);
+            }
+            else if (chars.get(0) == '\n' || chars.get(0) == '\r') {
+                if (chars.get(0) == '\n' || !(chars.has(1) && chars.get(1) == '\n')) { //\r\n is one line break
+                    lines.addLine(chars.index + 1);
                 }
+                chars.advance();
+            }
+            else {
+                tokenList.add(lexToken());
             }
             chars.skip();
         }
+        lines.complete(chars.index);
         return tokenList;
     }
 
@@ -72,24 +102,18 @@ public final class Lexer {
     //These functions examine chars one at a time
     public Token lexIdentifier() {
         //throw new UnsupportedOperationException(); //TODO - DONE
-        while (match("[A-Za-z0-9_-]")) {
-            continue;
-        }
+        chars.advanceTo(CharScanner.identifierEnd(chars.array, chars.index));
         return chars.emit(Token.Type.IDENTIFIER);
     }
 
     public Token lexNumber() {
         //throw new UnsupportedOperationException(); //TODO - DONE
         match("[\\+-]");
-        while (match("\\d")) {
-            continue;
-        }
+        chars.advanceTo(CharScanner.digitEnd(chars.array, chars.index));
         if (!match("\\.", "\\d")) {     //if no period and digits after the last digit, it's an int
             return chars.emit(Token.Type.INTEGER);
         }
-        while (match("\\d")) {  //add the other digits
-            continue;
-        }
+        chars.advanceTo(CharScanner.digitEnd(chars.array, chars.index));  //add the other digits
         return chars.emit(Token.Type.DECIMAL);
     }
 
@@ -98,22 +122,22 @@ public final class Lexer {
         match("\'");
         if (match("\'")) {
             if (match("\'")) {
-                throw new ParseException("Single Quote Characters are Illegal", chars.index);
+                throw new ParseException("Single Quote Characters are Illegal", chars.index, chars.getByteIndex());
             }
-            throw new ParseException("Missing Character", chars.index);
+            throw new ParseException("Missing Character", chars.index, chars.getByteIndex());
         }
         if (peek("[^\\n\\r]")) {
             if (peek("\\\\")) {    //if explicitly written escape seq
                 lexEscape();
             }
             else {
-                match(".");
+                matchCodePoint();
             }
         }
         if (!match("\'")) {
             match(".");
             //System.out.println("Incorrect char index is: " + chars.index);
-            throw new ParseException("Unterminated or Multiple-Line Character", chars.index);
+            throw new ParseException("Unterminated or Multiple-Line Character", chars.index, chars.getByteIndex());
         }
         return chars.emit(Token.Type.CHARACTER);
     }
@@ -122,19 +146,19 @@ public final class Lexer {
         //throw new UnsupportedOperationException(); //TODO - DONE
         match("\"");
         if (match("\"\"")) {
-            throw new ParseException("Double Quote in the String", chars.index);
+            throw new ParseException("Double Quote in the String", chars.index, chars.getByteIndex());
         }
         while (peek("[^\"\\n\\r]")) {
             if (peek("\\\\")) {
                 lexEscape();
             }
             else {
-                match(".");
+                matchCodePoint();
             }
         }
         if (!match("\"")) {
             match(".");
-            throw new ParseException("Unterminated", chars.index);
+            throw new ParseException("Unterminated", chars.index, chars.getByteIndex());
         }
         return chars.emit(Token.Type.STRING);
     }
@@ -144,16 +168,32 @@ public final class Lexer {
         if (!match("\\\\", "[bnrt\\\\]")){
             match(".");
             //System.out.println("Incorrect char index is: " + chars.index + " " + chars.get(0));
-            throw new ParseException("Invalid Escape Sequence", chars.index);
+            throw new ParseException("Invalid Escape Sequence", chars.index, chars.getByteIndex());
         }
     }
 
     public Token lexOperator() {
         //throw new UnsupportedOperationException(); //TODO - DONE
-        boolean operator = match("[<>!=]", "=") ? true : match("."); //execute only one match
+        boolean operator = match("[<>!=]", "=") ? true : matchCodePoint(); //execute only one match
         return chars.emit(Token.Type.OPERATOR);
     }
 
+    /**
+     * Matches any character, and in code point mode also the second half of a
+     * surrogate pair. Unlike {@code match(".")} this includes line terminators
+     * such as U+2028, which the regex {@code .} doesn't match.
+     */
+    private boolean matchCodePoint() {
+        if (!chars.has(0)) {
+            return false;
+        }
+        chars.advance();
+        if (chars.codePoints && Character.isHighSurrogate(chars.get(-1)) && chars.has(0) && Character.isLowSurrogate(chars.get(0))) {
+            chars.advance();
+        }
+        return true;
+    }
+
     /**
      * Returns true if the next sequence of characters match the given patterns,
      * which should be a regex. For example, {@code peek("a", "b", "c")} would
@@ -196,11 +236,26 @@ public final class Lexer {
     public static final class CharStream {
 
         private final String input;
+        private final char[] array;
+        private final boolean codePoints;
         private int index = 0;
         private int length = 0;
+        private int byteIndex = 0;
+        private int byteLength = 0;
 
         public CharStream(String input) {
+            this(input, false);
+        }
+
+        /**
+         * Creates a stream which, if {@code codePoints} is true, tracks the
+         * UTF-8 byte offset of the index as it advances. ASCII characters are
+         * checked first so they cost a single comparison.
+         */
+        public CharStream(String input, boolean codePoints) {
             this.input = input;
+            this.array = input.toCharArray();
+            this.codePoints = codePoints;
         }
 
         public boolean has(int offset) {
@@ -208,22 +263,75 @@ public final class Lexer {
         }
 
         public char get(int offset) {
-            return input.charAt(index + offset);
+            return array[index + offset];
         }
 
         public void advance() {
+            if (codePoints) {
+                int bytes = array[index] < 0x80 ? 1 : utf8Length(index);
+                byteIndex += bytes;
+                byteLength += bytes;
+            }
             index++;
             length++;
         }
 
+        /**
+         * Advances to the given index, such as the end of a run found by
+         * {@link CharScanner}, which must not be before the current index.
+         * The characters advanced over must all be ASCII (as they are in the
+         * runs found by {@link CharScanner}).
+         */
+        public void advanceTo(int end) {
+            byteIndex += end - index;
+            byteLength += end - index;
+            length += end - index;
+            index = end;
+        }
+
         public void skip() {
             length = 0;
+            byteLength = 0;
+        }
+
+        /**
+         * Returns the UTF-8 byte offset of the index, or {@code -1} if byte
+         * offsets aren't being tracked.
+         */
+        public int getByteIndex() {
+            return codePoints ? byteIndex : -1;
         }
 
         public Token emit(Token.Type type) {
             int start = index - length;
+            int byteStart = codePoints ? byteIndex - byteLength : -1;
             skip();
-            return new Token(type, input.substring(start, index), start);
+            return new Token(type, input.substring(start, index), start, byteStart);
+        }
+
+        /**
+         * Returns the number of UTF-8 bytes for the character at the given
+         * index. The four bytes of a surrogate pair are counted for the high
+         * surrogate, and an unpaired surrogate is counted as three bytes (as
+         * if it were encoded on its own).
+         */
+        private int utf8Length(int i) {
+            char c = array[i];
+            if (c < 0x80) {
+                return 1;
+            }
+            else if (c < 0x800) {
+                return 2;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < array.length && Character.isLowSurrogate(array[i + 1])) {
+                return 4;
+            }
+            else if (Character.isLowSurrogate(c) && i > 0 && Character.isHighSurrogate(array[i - 1])) {
+                return 0;
+            }
+            else {
+                return 3;
+            }
         }
 
     }
@@ -0,0 +1,109 @@
+package plc.project;
+
+import java.util.Arrays;
+
+/**
+ * Converts character offsets (such as {@link Token#getIndex()} and
+ * {@link ParseException#getIndex()}) to line and column numbers, both starting
+ * at 1, in O(log n) with a binary search over the offsets where lines start.
+ *
+ * Line starts are recorded by the {@link Lexer} as it skips whitespace, so no
+ * extra pass is needed. A line break is {@code \n}, {@code \r}, or
+ * {@code \r\n} (which counts once). If lexing stops early, for example with a
+ * {@link ParseException}, the rest of the input is scanned on first lookup.
+ */
+public final class LineIndex {
+
+    private final String input;
+    private int[] starts = new int[16];
+    private int count = 1;
+    private int scanned = 0;
+
+    public LineIndex(String input) {
+        this.input = input;
+    }
+
+    /**
+     * Records that a line starts at the given offset. Offsets which were
+     * already scanned are ignored, so lexing after a lookup (which scans the
+     * whole input) doesn't record lines twice.
+     */
+    void addLine(int start) {
+        if (start <= scanned) {
+            return;
+        }
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+        }
+        starts[count++] = start;
+        scanned = start;
+    }
+
+    /**
+     * Records that all line breaks before the given offset have been added.
+     */
+    void complete(int offset) {
+        scanned = Math.max(scanned, offset);
+    }
+
+    public int getLineCount() {
+        scan();
+        return count;
+    }
+
+    /**
+     * Returns the line containing the given offset. An offset equal to the
+     * input's length (such as for a missing token at the end) is on the last
+     * line.
+     */
+    public int getLine(int offset) {
+        if (offset < 0 || offset > input.length()) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " is outside the input.");
+        }
+        scan();
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (starts[middle] <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low + 1;
+    }
+
+    public int getColumn(int offset) {
+        return offset - getLineStart(getLine(offset)) + 1;
+    }
+
+    public int getLineStart(int line) {
+        scan();
+        if (line < 1 || line > count) {
+            throw new IndexOutOfBoundsException("Line " + line + " is outside the input.");
+        }
+        return starts[line - 1];
+    }
+
+    /**
+     * Adds any line breaks after the part of the input the lexer has seen.
+     */
+    private void scan() {
+        for (int i = scanned; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c == '\n' || c == '\r' && (i + 1 == input.length() || input.charAt(i + 1) != '\n')) {
+                addLine(i + 1);
+            }
+        }
+        scanned = input.length();
+    }
+
+    @Override
+    public String toString() {
+        return "LineIndex{" +
+                "starts=" + Arrays.toString(Arrays.copyOf(starts, count)) +
+                '}';
+    }
+
+}
@@ -0,0 +1,268 @@
+package plc.project;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Metrics for a single compile by the {@link Compiler}: the time and memory
+ * allocated by each {@link Phase}, counts of the characters, tokens, and AST
+ * nodes (by class) processed, and the number of calls inlined. Each phase and
+ * compile is also committed as a JFR event ({@code plc.Phase} and
+ * {@code plc.Compile}) for correlation with the rest of a recording.
+ *
+ * Metrics are off by default and are toggled at runtime with
+ * {@link #setEnabled(boolean)} (or the {@code plc.metrics} system property).
+ * When they're off the compiler doesn't create a {@code Metrics} at all, so
+ * the only overhead is reading the flag once per compile.
+ *
+ * Allocated bytes are per thread and are {@code -1} if the JVM doesn't
+ * support measuring them.
+ */
+public final class Metrics {
+
+    public enum Phase {
+        LEX,
+        PARSE,
+        OPTIMIZE,
+        ANALYZE
+    }
+
+    private static volatile boolean enabled = Boolean.getBoolean("plc.metrics");
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final long[] nanos = new long[Phase.values().length];
+    private final long[] allocated = new long[Phase.values().length];
+    private final Map<Class<? extends Ast>, Integer> nodes = new HashMap<>();
+    private long characters = 0;
+    private int tokens = 0;
+    private int inlined = 0;
+
+    private Phase phase = null;
+    private long phaseStart;
+    private long phaseAllocated;
+    private PhaseEvent phaseEvent;
+    private final CompileEvent compileEvent = new CompileEvent();
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * Starts the compile event, which is committed by {@link #end()}.
+     */
+    public void begin() {
+        compileEvent.begin();
+    }
+
+    /**
+     * Starts timing a phase. Phases can't overlap, and time spent in a phase
+     * more than once is added together.
+     */
+    public void begin(Phase phase) {
+        if (this.phase != null) {
+            throw new IllegalStateException("The phase " + this.phase + " has not ended.");
+        }
+        this.phase = phase;
+        phaseEvent = new PhaseEvent();
+        phaseEvent.begin();
+        phaseAllocated = allocatedBytes();
+        phaseStart = System.nanoTime();
+    }
+
+    public void end(Phase phase) {
+        long time = System.nanoTime() - phaseStart;
+        long bytes = allocatedBytes();
+        if (this.phase != phase) {
+            throw new IllegalStateException("The phase " + phase + " has not begun.");
+        }
+        this.phase = null;
+        nanos[phase.ordinal()] += time;
+        if (bytes >= 0) {
+            bytes -= phaseAllocated;
+            allocated[phase.ordinal()] += bytes;
+        }
+        phaseEvent.end();
+        if (phaseEvent.shouldCommit()) {
+            phaseEvent.phase = phase.name();
+            phaseEvent.allocated = bytes;
+            phaseEvent.commit();
+        }
+        phaseEvent = null;
+    }
+
+    /**
+     * Ends and commits the compile event with the metrics recorded so far.
+     */
+    public void end() {
+        compileEvent.end();
+        if (compileEvent.shouldCommit()) {
+            compileEvent.characters = characters;
+            compileEvent.tokens = tokens;
+            compileEvent.nodes = getNodeCount();
+            compileEvent.lexTime = nanos[Phase.LEX.ordinal()];
+            compileEvent.parseTime = nanos[Phase.PARSE.ordinal()];
+            compileEvent.analyzeTime = nanos[Phase.ANALYZE.ordinal()];
+            compileEvent.optimizeTime = nanos[Phase.OPTIMIZE.ordinal()];
+            compileEvent.allocated = getAllocatedBytes();
+            compileEvent.commit();
+        }
+    }
+
+    public void addCharacters(long count) {
+        characters += count;
+    }
+
+    public void addTokens(int count) {
+        tokens += count;
+    }
+
+    public void addInlined(int count) {
+        inlined += count;
+    }
+
+    /**
+     * Counts the nodes of the given tree by class.
+     */
+    public void addNodes(Ast ast) {
+        Traversal.walk(ast, new Traversal.Adapter() {
+
+            @Override
+            protected boolean enter(Ast ast) {
+                nodes.merge(ast.getClass(), 1, Integer::sum);
+                return true;
+            }
+
+        }, null);
+    }
+
+    public long getCharacters() {
+        return characters;
+    }
+
+    public int getTokens() {
+        return tokens;
+    }
+
+    public int getInlined() {
+        return inlined;
+    }
+
+    public Map<Class<? extends Ast>, Integer> getNodeCounts() {
+        return Collections.unmodifiableMap(nodes);
+    }
+
+    public int getNodeCount() {
+        int count = 0;
+        for (int value : nodes.values()) {
+            count += value;
+        }
+        return count;
+    }
+
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public long getAllocatedBytes(Phase phase) {
+        return allocated[phase.ordinal()];
+    }
+
+    public long getAllocatedBytes() {
+        long total = 0;
+        for (long bytes : allocated) {
+            total += bytes;
+        }
+        return total;
+    }
+
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Metrics{");
+        builder.append("characters=").append(characters);
+        builder.append(", tokens=").append(tokens);
+        builder.append(", nodes=").append(getNodeCount());
+        builder.append(", inlined=").append(inlined);
+        for (Phase phase : Phase.values()) {
+            builder.append(", ").append(phase.name().toLowerCase()).append("=")
+                    .append(nanos[phase.ordinal()] / 1000).append("us/")
+                    .append(allocated[phase.ordinal()]).append("B");
+        }
+        return builder.append('}').toString();
+    }
+
+    @Name("plc.Phase")
+    @Label("Compiler Phase")
+    @Category("PLC")
+    static final class PhaseEvent extends Event {
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+
+    }
+
+    @Name("plc.Compile")
+    @Label("Compile")
+    @Category("PLC")
+    static final class CompileEvent extends Event {
+
+        @Label("Characters")
+        long characters;
+
+        @Label("Tokens")
+        int tokens;
+
+        @Label("Nodes")
+        int nodes;
+
+        @Label("Lex Time")
+        @Timespan
+        long lexTime;
+
+        @Label("Parse Time")
+        @Timespan
+        long parseTime;
+
+        @Label("Analyze Time")
+        @Timespan
+        long analyzeTime;
+
+        @Label("Optimize Time")
+        @Timespan
+        long optimizeTime;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+
+    }
+
+}
@@ -0,0 +1,916 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An executable node, built from an analyzed {@link Ast} by the
+ * {@link NodeInterpreter}. Unlike the {@link Interpreter}, which interprets
+ * each {@link Ast.Expr.Binary} by its operator string every time, a binary
+ * node starts {@link UninitializedBinary uninitialized} and replaces itself
+ * in its parent with a node specialized for the operand types it first sees,
+ * such as {@link IntegerBinary} or {@link StringConcat}. A specialized node
+ * only checks that its operands still have those types, and if they don't it
+ * deoptimizes by replacing itself with a {@link GenericBinary}, which handles
+ * any types. Nodes only move towards more general ones, so a site whose types
+ * change can't keep rewriting itself.
+ *
+ * Statements are nodes whose value is ignored, and control flow uses the
+ * same {@link Interpreter.Return} signal as the interpreter.
+ */
+public abstract class Node {
+
+    public enum Operator {
+        ADD("+"),
+        SUBTRACT("-"),
+        MULTIPLY("*"),
+        DIVIDE("/"),
+        LESS("<"),
+        LESS_EQUAL("<="),
+        GREATER(">"),
+        GREATER_EQUAL(">="),
+        EQUAL("=="),
+        NOT_EQUAL("!="),
+        AND("AND"),
+        OR("OR");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public boolean isComparison() {
+            return compareTo(LESS) >= 0 && compareTo(GREATER_EQUAL) <= 0;
+        }
+
+        public static Operator of(String symbol) {
+            for (Operator operator : values()) {
+                if (operator.symbol.equals(symbol)) {
+                    return operator;
+                }
+            }
+            throw new AssertionError("Unknown operator " + symbol + ".");
+        }
+
+    }
+
+    private Node parent = null;
+    private Node replacement = null;
+
+    public abstract Object execute(Object[] frame);
+
+    public Node getParent() {
+        return parent;
+    }
+
+    protected final <T extends Node> T adopt(T child) {
+        ((Node) child).parent = this;
+        return child;
+    }
+
+    protected final Node[] adopt(Node[] children) {
+        for (Node child : children) {
+            child.parent = this;
+        }
+        return children;
+    }
+
+    /**
+     * Replaces this node with another in its parent, so the parent executes
+     * the replacement from now on.
+     *
+     * A replaced node may still be running in an outer activation of a
+     * recursive method (which started executing it before an inner call
+     * rewrote it), so it keeps a forwarding pointer to its replacement. If
+     * such a stale node is replaced again, the replacement takes the place
+     * of the node that is now in the tree.
+     */
+    protected final <T extends Node> T replace(T replacement) {
+        Node current = current();
+        current.parent.replaceChild(current, replacement);
+        ((Node) replacement).parent = current.parent;
+        current.replacement = replacement;
+        if (current != this) {
+            this.replacement = replacement;
+        }
+        return replacement;
+    }
+
+    /**
+     * Returns the node which has taken this node's place in the tree, which
+     * is this node unless it has been replaced.
+     */
+    protected final Node current() {
+        Node current = this;
+        while (current.replacement != null) {
+            current = current.replacement;
+        }
+        return current;
+    }
+
+    /**
+     * Replaces a child of this node, which is called by {@link #replace}.
+     */
+    protected void replaceChild(Node child, Node replacement) {
+        throw new AssertionError("Node " + getClass().getSimpleName() + " has no replaceable children.");
+    }
+
+    private static void replaceIn(Node[] children, Node child, Node replacement) {
+        for (int i = 0; i < children.length; i++) {
+            if (children[i] == child) {
+                children[i] = replacement;
+                return;
+            }
+        }
+        throw new AssertionError("Node is not a child.");
+    }
+
+    private static Object[] evaluate(Node[] nodes, Object[] values, int offset, Object[] frame) {
+        for (int i = 0; i < nodes.length; i++) {
+            values[offset + i] = nodes[i].execute(frame);
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
+    public static final class Literal extends Node {
+
+        private final Object value;
+
+        public Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            return value;
+        }
+
+    }
+
+    public static final class ReadLocal extends Node {
+
+        private final int slot;
+
+        public ReadLocal(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            return frame[slot];
+        }
+
+    }
+
+    public static final class WriteLocal extends Node {
+
+        private final int slot;
+        private Node value;
+
+        public WriteLocal(int slot, Node value) {
+            this.slot = slot;
+            this.value = adopt(value);
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            frame[slot] = value.execute(frame);
+            return null;
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            value = replacement;
+        }
+
+    }
+
+    public static final class ReadGlobal extends Node {
+
+        private final NodeInterpreter runtime;
+        private final int slot;
+
+        public ReadGlobal(NodeInterpreter runtime, int slot) {
+            this.runtime = runtime;
+            this.slot = slot;
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            return runtime.globals[slot];
+        }
+
+    }
+
+    public static final class WriteGlobal extends Node {
+
+        private final NodeInterpreter runtime;
+        private final int slot;
+        private Node value;
+
+        public WriteGlobal(NodeInterpreter runtime, int slot, Node value) {
+            this.runtime = runtime;
+            this.slot = slot;
+            this.value = adopt(value);
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            runtime.globals[slot] = value.execute(frame);
+            return null;
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            value = replacement;
+        }
+
+    }
+
+    public static final class ReadField extends Node {
+
+        private Node receiver;
+        private final String name;
+        private final InlineCache cache;
+
+        public ReadField(Node receiver, String name, InlineCache cache) {
+            this.receiver = adopt(receiver);
+            this.name = name;
+            this.cache = cache;
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            return Interpreter.readField(Interpreter.requireObject(receiver.execute(frame), name), name, cache);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            receiver = replacement;
+        }
+
+    }
+
+    public static final class WriteField extends Node {
+
+        private Node receiver;
+        private final String name;
+        private final InlineCache cache;
+        private Node value;
+
+        public WriteField(Node receiver, String name, InlineCache cache, Node value) {
+            this.receiver = adopt(receiver);
+            this.name = name;
+            this.cache = cache;
+            this.value = adopt(value);
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            PlcObject object = Interpreter.requireObject(receiver.execute(frame), name);
+            Interpreter.writeField(object, name, cache, value.execute(frame));
+            return null;
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (child == receiver) {
+                receiver = replacement;
+            }
+            else if (child == value) {
+                value = replacement;
+            }
+            else {
+                throw new AssertionError("Node is not a child.");
+            }
+        }
+
+    }
+
+    /**
+     * A call to a function without a receiver. The arguments are evaluated
+     * directly into the callee's frame.
+     */
+    public static final class Call extends Node {
+
+        private final NodeInterpreter runtime;
+        private final Scope.Function function;
+        private final Node[] arguments;
+        private Node body = null;
+
+        public Call(NodeInterpreter runtime, Scope.Function function, Node[] arguments) {
+            this.runtime = runtime;
+            this.function = function;
+            this.arguments = adopt(arguments);
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            if (function.getMethod() == null) {
+                return runtime.builtin(function.getName(), evaluate(arguments, new Object[arguments.length], 0, frame));
+            }
+            Object[] callee = new Object[Math.max(function.getFrameSize(), arguments.length)];
+            evaluate(arguments, callee, 0, frame);
+            //the callee's body is only looked up on the first call
+            if (body == null) {
+                body = runtime.body(function);
+            }
+            return runtime.invoke(function, body, callee);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            replaceIn(arguments, child, replacement);
+        }
+
+    }
+
+    /**
+     * A call through a receiver, cached by the receiver's shape like the
+     * {@link Interpreter}.
+     */
+    public static final class Invoke extends Node {
+
+        private final NodeInterpreter runtime;
+        private Node receiver;
+        private final String name;
+        private final Node[] arguments;
+        private final InlineCache cache;
+
+        public Invoke(NodeInterpreter runtime, Node receiver, String name, Node[] arguments, InlineCache cache) {
+            this.runtime = runtime;
+            this.receiver = adopt(receiver);
+            this.name = name;
+            this.arguments = adopt(arguments);
+            this.cache = cache;
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            Object value = receiver.execute(frame);
+            //objects pass themselves as the first argument to the program's function
+            Object[] values = new Object[arguments.length + 1];
+            values[0] = value;
+            evaluate(arguments, values, 1, frame);
+            Object target = Interpreter.lookupMethod(runtime.scope, value, name, arguments.length, cache);
+            if (target instanceof Shape.Method) {
+                return ((Shape.Method) target).invoke(value, Arrays.asList(values).subList(1, values.length));
+            }
+            Scope.Function function = (Scope.Function) target;
+            if (function.getMethod() == null) {
+                return runtime.builtin(function.getName(), values);
+            }
+            Object[] callee = values.length < function.getFrameSize() ? Arrays.copyOf(values, function.getFrameSize()) : values;
+            return runtime.invoke(function, callee);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (child == receiver) {
+                receiver = replacement;
+            }
+            else {
+                replaceIn(arguments, child, replacement);
+            }
+        }
+
+    }
+
+    /**
+     * A binary operator other than {@code AND} and {@code OR}. Subclasses
+     * implement {@link #apply} for their operand types, so a node being
+     * replaced can hand its already evaluated operands to its replacement.
+     */
+    public abstract static class Binary extends Node {
+
+        protected final NodeInterpreter runtime;
+        protected final Operator operator;
+        private Node left;
+        private Node right;
+
+        protected Binary(NodeInterpreter runtime, Operator operator, Node left, Node right) {
+            this.runtime = runtime;
+            this.operator = operator;
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        @Override
+        public final Object execute(Object[] frame) {
+            Object lhs = left.execute(frame);
+            return apply(lhs, right.execute(frame));
+        }
+
+        protected abstract Object apply(Object left, Object right);
+
+        /**
+         * Replaces this node with one specialized for the operand types.
+         */
+        protected final Binary specialize(Object lhs, Object rhs) {
+            if (current() != this) {
+                //an inner activation already specialized this node
+                return (Binary) current();
+            }
+            Binary specialized;
+            if (operator == Operator.EQUAL || operator == Operator.NOT_EQUAL) {
+                specialized = new EqualityBinary(runtime, operator, left, right);
+            }
+            else if (Numeric.isInteger(lhs) && Numeric.isInteger(rhs)) {
+                specialized = new IntegerBinary(runtime, operator, left, right);
+            }
+            else if (lhs instanceof BigDecimal && rhs instanceof BigDecimal) {
+                specialized = new DecimalBinary(runtime, operator, left, right);
+            }
+            else if (lhs instanceof CharSequence && rhs instanceof CharSequence && operator == Operator.ADD) {
+                specialized = new StringConcat(runtime, operator, left, right);
+            }
+            else if (operator.isComparison() && (lhs instanceof CharSequence && rhs instanceof CharSequence || lhs instanceof Character && rhs instanceof Character)) {
+                specialized = new ComparableBinary(runtime, operator, left, right);
+            }
+            else {
+                specialized = new GenericBinary(runtime, operator, left, right);
+            }
+            runtime.specializations++;
+            return replace(specialized);
+        }
+
+        /**
+         * Replaces this node with a {@link GenericBinary} after its operands
+         * had other types than it was specialized for.
+         */
+        protected final Object deoptimize(Object lhs, Object rhs) {
+            if (current() != this) {
+                //an inner activation already replaced this node, which may
+                //handle these operands or deoptimize itself
+                return ((Binary) current()).apply(lhs, rhs);
+            }
+            runtime.deoptimizations++;
+            return replace(new GenericBinary(runtime, operator, left, right)).apply(lhs, rhs);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (child == left) {
+                left = replacement;
+            }
+            else if (child == right) {
+                right = replacement;
+            }
+            else {
+                throw new AssertionError("Node is not a child.");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "(" + operator.getSymbol() + ")";
+        }
+
+    }
+
+    public static final class UninitializedBinary extends Binary {
+
+        public UninitializedBinary(NodeInterpreter runtime, Operator operator, Node left, Node right) {
+            super(runtime, operator, left, right);
+        }
+
+        @Override
+        protected Object apply(Object left, Object right) {
+            return specialize(left, right).apply(left, right);
+        }
+
+    }
+
+    /**
+     * Integers, which are usually a {@link Long} and are only computed with
+     * {@link Numeric} once they overflow.
+     */
+    public static final class IntegerBinary extends Binary {
+
+        public IntegerBinary(NodeInterpreter runtime, Operator operator, Node left, Node right) {
+            super(runtime, operator, left, right);
+        }
+
+        @Override
+        protected Object apply(Object left, Object right) {
+            if (left instanceof Long && right instanceof Long) {
+                long lhs = (Long) left;
+                long rhs = (Long) right;
+                switch (operator) {
+                    case LESS: return lhs < rhs;
+                    case LESS_EQUAL: return lhs <= rhs;
+                    case GREATER: return lhs > rhs;
+                    case GREATER_EQUAL: return lhs >= rhs;
+                    default: break;
+                }
+            }
+            else if (!Numeric.isInteger(left) || !Numeric.isInteger(right)) {
+                return deoptimize(left, right);
+            }
+            switch (operator) {
+                case ADD: return Numeric.add(left, right);
+                case SUBTRACT: return Numeric.subtract(left, right);
+                case MULTIPLY: return Numeric.multiply(left, right);
+                case DIVIDE:
+                    if (Numeric.signum(right) == 0) {
+                        throw new RuntimeException("Division by zero.");
+                    }
+                    return Numeric.divide(left, right);
+                default: return compare(operator, Numeric.compare(left, right));
+            }
+        }
+
+    }
+
+    public static final class DecimalBinary extends Binary {
+
+        public DecimalBinary(NodeInterpreter runtime, Operator operator, Node left, Node right) {
+            super(runtime, operator, left, right);
+        }
+
+        @Override
+        protected Object apply(Object left, Object right) {
+            if (!(left instanceof BigDecimal) || !(right instanceof BigDecimal)) {
+                return deoptimize(left, right);
+            }
+            BigDecimal lhs = (BigDecimal) left;
+            BigDecimal rhs = (BigDecimal) right;
+            switch (operator) {
+                case ADD: return lhs.add(rhs);
+                case SUBTRACT: return lhs.subtract(rhs);
+                case MULTIPLY: return lhs.multiply(rhs);
+                case DIVIDE:
+                    if (rhs.signum() == 0) {
+                        throw new RuntimeException("Division by zero.");
+                    }
+                    return lhs.divide(rhs, RoundingMode.HALF_EVEN);
+                default: return compare(operator, lhs.compareTo(rhs));
+            }
+        }
+
+    }
+
+    public static final class StringConcat extends Binary {
+
+        public StringConcat(NodeInterpreter runtime, Operator operator, Node left, Node right) {
+            super(runtime, operator, left, right);
+        }
+
+        @Override
+        protected Object apply(Object left, Object right) {
+            if (!(left instanceof CharSequence) || !(right instanceof CharSequence)) {
+                return deoptimize(left, right);
+            }
+            return Rope.concat((CharSequence) left, (CharSequence) right);
+        }
+
+    }
+
+    /**
+     * Comparisons of two characters or two strings.
+     */
+    public static final class ComparableBinary extends Binary {
+
+        public ComparableBinary(NodeInterpreter runtime, Operator operator, Node left, Node right) {
+            super(runtime, operator, left, right);
+        }
+
+        @Override
+        protected Object apply(Object left, Object right) {
+            if (left instanceof Character && right instanceof Character) {
+                return compare(operator, Character.compare((Character) left, (Character) right));
+            }
+            else if (left instanceof CharSequence && right instanceof CharSequence) {
+                return compare(operator, left.toString().compareTo(right.toString()));
+            }
+            return deoptimize(left, right);
+        }
+
+    }
+
+    /**
+     * Equality, which is defined for all types and so never deoptimizes.
+     */
+    public static final class EqualityBinary extends Binary {
+
+        public EqualityBinary(NodeInterpreter runtime, Operator operator, Node left, Node right) {
+            super(runtime, operator, left, right);
+        }
+
+        @Override
+        protected Object apply(Object left, Object right) {
+            return Rope.equal(left, right) == (operator == Operator.EQUAL);
+        }
+
+    }
+
+    /**
+     * Any operand types, with the same checks as the {@link Interpreter}.
+     */
+    public static final class GenericBinary extends Binary {
+
+        public GenericBinary(NodeInterpreter runtime, Operator operator, Node left, Node right) {
+            super(runtime, operator, left, right);
+        }
+
+        @Override
+        protected Object apply(Object left, Object right) {
+            return Interpreter.binary(operator.getSymbol(), left, right);
+        }
+
+    }
+
+    /**
+     * {@code AND} and {@code OR}, which only evaluate the right side when the
+     * left side doesn't decide the result.
+     */
+    public static final class Logical extends Node {
+
+        private final boolean shortCircuit;
+        private Node left;
+        private Node right;
+
+        public Logical(Operator operator, Node left, Node right) {
+            this.shortCircuit = operator == Operator.OR;
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            if (Interpreter.requireBoolean(left.execute(frame)) == shortCircuit) {
+                return shortCircuit;
+            }
+            return right.execute(frame);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (child == left) {
+                left = replacement;
+            }
+            else if (child == right) {
+                right = replacement;
+            }
+            else {
+                throw new AssertionError("Node is not a child.");
+            }
+        }
+
+    }
+
+    public static final class Block extends Node {
+
+        private final Node[] statements;
+
+        public Block(Node[] statements) {
+            this.statements = adopt(statements);
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            for (Node statement : statements) {
+                statement.execute(frame);
+            }
+            return null;
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            replaceIn(statements, child, replacement);
+        }
+
+    }
+
+    /**
+     * The statements of a method. A {@code RETURN} which is the last
+     * statement is the body's result, so the common case of a method
+     * returning at its end doesn't need to unwind with the return signal.
+     */
+    public static final class Body extends Node {
+
+        private final Node[] statements;
+        private Node result;
+
+        public Body(Node[] statements, Node result) {
+            this.statements = adopt(statements);
+            this.result = result != null ? adopt(result) : null;
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            for (Node statement : statements) {
+                statement.execute(frame);
+            }
+            return result != null ? result.execute(frame) : null;
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            if (child == result) {
+                result = replacement;
+            }
+            else {
+                replaceIn(statements, child, replacement);
+            }
+        }
+
+    }
+
+    public static final class If extends Node {
+
+        private Node condition;
+        private final Node thenBlock;
+        private final Node elseBlock;
+
+        public If(Node condition, Node thenBlock, Node elseBlock) {
+            this.condition = adopt(condition);
+            this.thenBlock = adopt(thenBlock);
+            this.elseBlock = adopt(elseBlock);
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            if (Interpreter.requireBoolean(condition.execute(frame))) {
+                thenBlock.execute(frame);
+            }
+            else {
+                elseBlock.execute(frame);
+            }
+            return null;
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            condition = replacement;
+        }
+
+    }
+
+    public static final class While extends Node {
+
+        private Node condition;
+        private final Node body;
+
+        public While(Node condition, Node body) {
+            this.condition = adopt(condition);
+            this.body = adopt(body);
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            while (Interpreter.requireBoolean(condition.execute(frame))) {
+                body.execute(frame);
+            }
+            return null;
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            condition = replacement;
+        }
+
+    }
+
+    public static final class For extends Node {
+
+        private final int slot;
+        private final boolean used;
+        private Node value;
+        private final Node body;
+
+        public For(int slot, boolean used, Node value, Node body) {
+            this.slot = slot;
+            this.used = used;
+            this.value = adopt(value);
+            this.body = adopt(body);
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            Object iterable = value.execute(frame);
+            if (iterable instanceof Range && ((Range) iterable).isLong()) {
+                long end = (Long) ((Range) iterable).getEnd();
+                for (long i = (Long) ((Range) iterable).getStart(); i < end; i++) {
+                    if (used) {
+                        frame[slot] = Numeric.valueOf(i);
+                    }
+                    body.execute(frame);
+                }
+            }
+            else if (iterable instanceof List && iterable instanceof RandomAccess) {
+                List<?> list = (List<?>) iterable;
+                int size = list.size();
+                for (int i = 0; i < size; i++) {
+                    if (used) {
+                        frame[slot] = list.get(i);
+                    }
+                    body.execute(frame);
+                    if (list.size() != size) {
+                        throw Interpreter.modified();
+                    }
+                }
+            }
+            else if (iterable instanceof Iterable) {
+                for (Object element : (Iterable<?>) iterable) {
+                    frame[slot] = element;
+                    body.execute(frame);
+                }
+            }
+            else {
+                throw new RuntimeException("Expected an iterable value, received " + Shape.of(iterable).getName() + ".");
+            }
+            return null;
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            value = replacement;
+        }
+
+    }
+
+    public static final class Return extends Node {
+
+        private final NodeInterpreter runtime;
+        private Node value;
+
+        public Return(NodeInterpreter runtime, Node value) {
+            this.runtime = runtime;
+            this.value = adopt(value);
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            throw runtime.signal.of(null, value.execute(frame));
+        }
+
+        public Node getValue() {
+            return value;
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            value = replacement;
+        }
+
+    }
+
+    /**
+     * A tail call (see {@link Ast.Expr.Function#isTail()}), whose arguments
+     * are evaluated into the spare frame before unwinding to the enclosing
+     * call, which runs the callee in place of the caller.
+     */
+    public static final class TailCall extends Node {
+
+        private final NodeInterpreter runtime;
+        private final Scope.Function function;
+        private final Node[] arguments;
+
+        public TailCall(NodeInterpreter runtime, Scope.Function function, Node[] arguments) {
+            this.runtime = runtime;
+            this.function = function;
+            this.arguments = adopt(arguments);
+        }
+
+        @Override
+        public Object execute(Object[] frame) {
+            Object[] spare = runtime.spare;
+            if (spare == null || spare.length < arguments.length) {
+                spare = new Object[Math.max(arguments.length, frame.length)];
+            }
+            runtime.spare = evaluate(arguments, spare, 0, frame);
+            throw runtime.signal.of(function, null);
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            replaceIn(arguments, child, replacement);
+        }
+
+    }
+
+    private static Boolean compare(Operator operator, int comparison) {
+        switch (operator) {
+            case LESS: return comparison < 0;
+            case LESS_EQUAL: return comparison <= 0;
+            case GREATER: return comparison > 0;
+            case GREATER_EQUAL: return comparison >= 0;
+            default: throw new AssertionError("Unexpected comparison " + operator.getSymbol() + ".");
+        }
+    }
+
+}
@@ -0,0 +1,295 @@
+package plc.project;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executes an analyzed AST by building a tree of self-specializing
+ * {@link Node}s for each method the first time it is called, with the same
+ * semantics (and the same inline caches and tail calls) as the
+ * {@link Interpreter}.
+ *
+ * The number of specializations and deoptimizations performed by binary
+ * nodes are counted, to show whether a program's operand types are stable.
+ */
+public final class NodeInterpreter {
+
+    final Scope scope;
+    private final Appendable out;
+
+    Object[] globals = new Object[0];
+    Object[] spare = null;
+    final Interpreter.Return signal = new Interpreter.Return();
+    int specializations = 0;
+    int deoptimizations = 0;
+
+    private final Map<Scope.Function, Node> bodies = new HashMap<>();
+    private final Builder builder = new Builder();
+
+    /**
+     * Creates an interpreter for the source analyzed in the given scope (see
+     * {@link Analyzer#getScope()}), which prints to the given output.
+     */
+    public NodeInterpreter(Scope scope, Appendable out) {
+        this.scope = scope;
+        this.out = out;
+    }
+
+    public NodeInterpreter(Scope scope) {
+        this(scope, System.out);
+    }
+
+    /**
+     * Initializes the source's fields and calls {@code main/0} if there is
+     * one, returning its result (with a {@link Rope} flattened to a
+     * {@code String}).
+     */
+    public Object run(Ast.Source ast) {
+        for (Ast.Field field : ast.getFields()) {
+            int slot = field.getVariable().getSlot();
+            if (slot >= globals.length) {
+                globals = Arrays.copyOf(globals, Math.max(slot + 1, globals.length * 2));
+            }
+            Node value = field.getValue().isPresent() ? builder.build(field.getValue().get()) : new Node.Literal(null);
+            new Node.WriteGlobal(this, slot, value).execute(null);
+        }
+        for (Ast.Method method : ast.getMethods()) {
+            if (method.getName().equals("main") && method.getParameters().isEmpty()) {
+                Object result = call(method.getFunction());
+                return result instanceof Rope ? result.toString() : result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Calls a function with the given arguments, returning its result.
+     */
+    public Object call(Scope.Function function, Object... arguments) {
+        if (function.getMethod() == null) {
+            return builtin(function.getName(), arguments);
+        }
+        Object[] frame = new Object[Math.max(function.getFrameSize(), arguments.length)];
+        System.arraycopy(arguments, 0, frame, 0, arguments.length);
+        return invoke(function, frame);
+    }
+
+    /**
+     * Returns the node tree of a method, which is {@code null} until it has
+     * been called.
+     */
+    public Node getBody(Scope.Function function) {
+        return bodies.get(function);
+    }
+
+    public int getSpecializations() {
+        return specializations;
+    }
+
+    public int getDeoptimizations() {
+        return deoptimizations;
+    }
+
+    /**
+     * Runs a method with a frame that already contains its arguments, and
+     * runs the callees of any tail calls in place of it.
+     */
+    Object invoke(Scope.Function function, Object[] frame) {
+        return invoke(function, body(function), frame);
+    }
+
+    Object invoke(Scope.Function function, Node body, Object[] frame) {
+        Object[] callerSpare = spare;
+        spare = null;
+        try {
+            while (true) {
+                try {
+                    return body.execute(frame);
+                } catch (Interpreter.Return r) {
+                    if (r.function == null) {
+                        return r.value;
+                    }
+                    //a tail call, whose arguments are in the spare frame
+                    function = r.function;
+                    body = body(function);
+                    Object[] next = spare;
+                    spare = frame;
+                    frame = next.length < function.getFrameSize() ? Arrays.copyOf(next, function.getFrameSize()) : next;
+                    Arrays.fill(frame, function.getArity(), frame.length, null);
+                }
+            }
+        } finally {
+            spare = callerSpare;
+        }
+    }
+
+    Object builtin(String name, Object[] arguments) {
+        return Interpreter.builtin(name, arguments, out);
+    }
+
+    Node body(Scope.Function function) {
+        Node body = bodies.get(function);
+        if (body == null) {
+            body = builder.body(function.getMethod().getStatements());
+            bodies.put(function, body);
+        }
+        return body;
+    }
+
+    /**
+     * Builds the nodes for statements and expressions. Binary expressions
+     * start uninitialized, and a call which is the value of a {@code RETURN}
+     * and marked as a tail call becomes a {@link Node.TailCall}.
+     */
+    private final class Builder implements Ast.Visitor<Node> {
+
+        private Node build(Ast ast) {
+            return ast.accept(this);
+        }
+
+        private Node block(List<Ast.Stmt> statements) {
+            Node[] nodes = new Node[statements.size()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = build(statements.get(i));
+            }
+            return new Node.Block(nodes);
+        }
+
+        /**
+         * Builds a method's statements, with a final {@code RETURN} (other
+         * than a tail call) as the body's result.
+         */
+        private Node body(List<Ast.Stmt> statements) {
+            Node[] nodes = new Node[statements.size()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = build(statements.get(i));
+            }
+            if (nodes.length > 0 && nodes[nodes.length - 1] instanceof Node.Return) {
+                Node.Return last = (Node.Return) nodes[nodes.length - 1];
+                return new Node.Body(Arrays.copyOf(nodes, nodes.length - 1), last.getValue());
+            }
+            return new Node.Body(nodes, null);
+        }
+
+        private Node[] arguments(List<Ast.Expr> arguments) {
+            Node[] nodes = new Node[arguments.size()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = build(arguments.get(i));
+            }
+            return nodes;
+        }
+
+        @Override
+        public Node visit(Ast.Source ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Node visit(Ast.Field ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Node visit(Ast.Method ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Node visit(Ast.Stmt.Expression ast) {
+            return build(ast.getExpression());
+        }
+
+        @Override
+        public Node visit(Ast.Stmt.Declaration ast) {
+            Node value = ast.getValue().isPresent() ? build(ast.getValue().get()) : new Node.Literal(null);
+            return new Node.WriteLocal(ast.getVariable().getSlot(), value);
+        }
+
+        @Override
+        public Node visit(Ast.Stmt.Assignment ast) {
+            Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+            Node value = build(ast.getValue());
+            if (receiver.getReceiver().isPresent()) {
+                return new Node.WriteField(build(receiver.getReceiver().get()), receiver.getName(), receiver.getCache(), value);
+            }
+            Scope.Variable variable = receiver.getVariable();
+            if (variable.getKind() == Scope.Variable.Kind.GLOBAL) {
+                return new Node.WriteGlobal(NodeInterpreter.this, variable.getSlot(), value);
+            }
+            return new Node.WriteLocal(variable.getSlot(), value);
+        }
+
+        @Override
+        public Node visit(Ast.Stmt.If ast) {
+            return new Node.If(build(ast.getCondition()), block(ast.getThenStatements()), block(ast.getElseStatements()));
+        }
+
+        @Override
+        public Node visit(Ast.Stmt.For ast) {
+            return new Node.For(ast.getVariable().getSlot(), ast.getVariable().isUsed(), build(ast.getValue()), block(ast.getStatements()));
+        }
+
+        @Override
+        public Node visit(Ast.Stmt.While ast) {
+            return new Node.While(build(ast.getCondition()), block(ast.getStatements()));
+        }
+
+        @Override
+        public Node visit(Ast.Stmt.Return ast) {
+            Ast.Expr value = ast.getValue();
+            while (value instanceof Ast.Expr.Group) {
+                value = ((Ast.Expr.Group) value).getExpression();
+            }
+            if (value instanceof Ast.Expr.Function && ((Ast.Expr.Function) value).isTail()) {
+                Ast.Expr.Function call = (Ast.Expr.Function) value;
+                return new Node.TailCall(NodeInterpreter.this, call.getFunction(), arguments(call.getArguments()));
+            }
+            return new Node.Return(NodeInterpreter.this, build(value));
+        }
+
+        @Override
+        public Node visit(Ast.Expr.Literal ast) {
+            return new Node.Literal(ast.getValue());
+        }
+
+        @Override
+        public Node visit(Ast.Expr.Group ast) {
+            return build(ast.getExpression());
+        }
+
+        @Override
+        public Node visit(Ast.Expr.Binary ast) {
+            Node.Operator operator = Node.Operator.of(ast.getOperator());
+            Node left = build(ast.getLeft());
+            Node right = build(ast.getRight());
+            if (operator == Node.Operator.AND || operator == Node.Operator.OR) {
+                return new Node.Logical(operator, left, right);
+            }
+            return new Node.UninitializedBinary(NodeInterpreter.this, operator, left, right);
+        }
+
+        @Override
+        public Node visit(Ast.Expr.Access ast) {
+            if (ast.getReceiver().isPresent()) {
+                return new Node.ReadField(build(ast.getReceiver().get()), ast.getName(), ast.getCache());
+            }
+            Scope.Variable variable = ast.getVariable();
+            if (variable.getKind() == Scope.Variable.Kind.GLOBAL) {
+                return new Node.ReadGlobal(NodeInterpreter.this, variable.getSlot());
+            }
+            return new Node.ReadLocal(variable.getSlot());
+        }
+
+        @Override
+        public Node visit(Ast.Expr.Function ast) {
+            if (ast.getReceiver().isPresent()) {
+                return new Node.Invoke(NodeInterpreter.this, build(ast.getReceiver().get()), ast.getName(), arguments(ast.getArguments()), ast.getCache());
+            }
+            return new Node.Call(NodeInterpreter.this, ast.getFunction(), arguments(ast.getArguments()));
+        }
+
+    }
+
+}
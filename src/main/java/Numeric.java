@@ -0,0 +1,183 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Helpers for the runtime representation of numbers. Integers are kept as a
+ * {@link Long} whenever the value fits and are only promoted to a
+ * {@link BigInteger} on overflow, so the common case never allocates. Every
+ * integer operation returns a narrowed result, meaning two equal integers
+ * always have the same representation and can be compared with
+ * {@link Object#equals(Object)}.
+ *
+ * Decimals are always {@link BigDecimal}s since a {@code double} cannot keep
+ * the scale ({@code 1.0} vs {@code 1.00}). Instead, literals with few enough
+ * digits are built from an unscaled {@code long}, which skips the
+ * {@link BigInteger} that {@link BigDecimal#BigDecimal(String)} creates.
+ */
+public final class Numeric {
+
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1024;
+
+    private static final Long[] LONGS = new Long[CACHE_HIGH - CACHE_LOW + 1];
+    private static final BigInteger[] INTEGERS = new BigInteger[CACHE_HIGH - CACHE_LOW + 1];
+
+    /**
+     * The longest run of digits that is guaranteed to fit in a {@code long}.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    static {
+        for (int i = 0; i < LONGS.length; i++) {
+            LONGS[i] = (long) (i + CACHE_LOW);
+            INTEGERS[i] = BigInteger.valueOf(i + CACHE_LOW);
+        }
+    }
+
+    private Numeric() {}
+
+    /**
+     * Returns the (possibly cached) {@link Long} for the given value.
+     */
+    public static Long valueOf(long value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return LONGS[(int) value - CACHE_LOW];
+        }
+        return value;
+    }
+
+    /**
+     * Returns the (possibly cached) {@link BigInteger} for the given value.
+     */
+    public static BigInteger toBigInteger(long value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return INTEGERS[(int) value - CACHE_LOW];
+        }
+        return BigInteger.valueOf(value);
+    }
+
+    /**
+     * Returns the given integer (either a {@link Long} or {@link BigInteger})
+     * as a {@link BigInteger}.
+     */
+    public static BigInteger toBigInteger(Object value) {
+        return value instanceof Long ? toBigInteger((long) (Long) value) : (BigInteger) value;
+    }
+
+    /**
+     * Returns the value as a {@link Long} if it fits, otherwise the value.
+     */
+    public static Object narrow(BigInteger value) {
+        return value.bitLength() < Long.SIZE ? valueOf(value.longValue()) : value;
+    }
+
+    public static boolean isInteger(Object value) {
+        return value instanceof Long || value instanceof BigInteger;
+    }
+
+    /**
+     * Parses the literal of an {@code INTEGER} token, which is an optional
+     * sign followed by digits, into its narrowed representation.
+     */
+    public static Object parseInteger(String literal) {
+        int digits = literal.length() - (hasSign(literal) ? 1 : 0);
+        if (digits <= MAX_LONG_DIGITS) {
+            return valueOf(Long.parseLong(literal));
+        }
+        return narrow(new BigInteger(literal));
+    }
+
+    /**
+     * Parses the literal of a {@code DECIMAL} token, which is an optional sign
+     * followed by digits, a period, and more digits.
+     */
+    public static BigDecimal parseDecimal(String literal) {
+        int period = literal.indexOf('.');
+        int digits = literal.length() - 1 - (hasSign(literal) ? 1 : 0);
+        if (period < 0 || digits > MAX_LONG_DIGITS) {
+            return new BigDecimal(literal);
+        }
+        long unscaled = 0;
+        for (int i = hasSign(literal) ? 1 : 0; i < literal.length(); i++) {
+            if (i != period) {
+                unscaled = unscaled * 10 + (literal.charAt(i) - '0');
+            }
+        }
+        int scale = literal.length() - period - 1;
+        return BigDecimal.valueOf(literal.charAt(0) == '-' ? -unscaled : unscaled, scale);
+    }
+
+    public static Object add(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            long lhs = (Long) left;
+            long rhs = (Long) right;
+            long result = lhs + rhs;
+            if (((lhs ^ result) & (rhs ^ result)) >= 0) {
+                return valueOf(result);
+            }
+        }
+        return narrow(toBigInteger(left).add(toBigInteger(right)));
+    }
+
+    public static Object subtract(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            long lhs = (Long) left;
+            long rhs = (Long) right;
+            long result = lhs - rhs;
+            if (((lhs ^ rhs) & (lhs ^ result)) >= 0) {
+                return valueOf(result);
+            }
+        }
+        return narrow(toBigInteger(left).subtract(toBigInteger(right)));
+    }
+
+    public static Object multiply(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            long lhs = (Long) left;
+            long rhs = (Long) right;
+            long high = Math.multiplyHigh(lhs, rhs);
+            long result = lhs * rhs;
+            if ((high == 0 && result >= 0) || (high == -1 && result < 0)) {
+                return valueOf(result);
+            }
+        }
+        return narrow(toBigInteger(left).multiply(toBigInteger(right)));
+    }
+
+    /**
+     * Divides, truncating towards zero like {@link BigInteger#divide}. Throws
+     * an {@link ArithmeticException} if the right side is zero.
+     */
+    public static Object divide(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            long lhs = (Long) left;
+            long rhs = (Long) right;
+            if (rhs == 0) {
+                throw new ArithmeticException("Division by zero");
+            }
+            //the only overflow is Long.MIN_VALUE / -1
+            if (lhs != Long.MIN_VALUE || rhs != -1) {
+                return valueOf(lhs / rhs);
+            }
+        }
+        return narrow(toBigInteger(left).divide(toBigInteger(right)));
+    }
+
+    public static int compare(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            return Long.compare((Long) left, (Long) right);
+        }
+        return toBigInteger(left).compareTo(toBigInteger(right));
+    }
+
+    public static int signum(Object value) {
+        return value instanceof Long ? Long.signum((Long) value) : ((BigInteger) value).signum();
+    }
+
+    private static boolean hasSign(String literal) {
+        return !literal.isEmpty() && (literal.charAt(0) == '+' || literal.charAt(0) == '-');
+    }
+
+}
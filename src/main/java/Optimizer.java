@@ -0,0 +1,321 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The optimizer rewrites an AST into a smaller, equivalent one so that later
+ * stages have less work to do. It performs three transformations:
+ *
+ *  - Constant folding of {@link Ast.Expr.Binary} expressions whose operands
+ *    are both literals, using exact integer arithmetic from {@link Numeric}
+ *    and {@link BigDecimal} (decimal division rounds
+ *    {@link RoundingMode#HALF_EVEN}).
+ *  - Removal of redundant {@link Ast.Expr.Group}s, meaning any group that is
+ *    not the operand of a binary expression (the tree already encodes the
+ *    grouping, so these only exist for the source text).
+ *  - Short-circuiting of {@code AND}/{@code OR} when the left operand is a
+ *    boolean literal, mirroring how the operators are evaluated. When the
+ *    result is the right operand, it's only replaced if the right operand is
+ *    known to be a boolean (see {@link #isBoolean(Ast.Expr)}), since
+ *    {@code TRUE AND 1} is a type error the rewrite would hide.
+ *
+ * Anything that could fail at runtime (such as division by zero or operands of
+ * mismatched types) is left untouched so that the error is still reported when
+ * the program runs.
+ *
+ * The tree is rebuilt bottom-up in a single {@link Traversal}: when a node is
+ * exited, its children have already been optimized and are on top of the
+ * result stack, so deeply nested expressions don't use any Java stack.
+ */
+public final class Optimizer {
+
+    public Ast.Source optimize(Ast.Source ast) {
+        return (Ast.Source) rewrite(ast);
+    }
+
+    public Ast.Field optimize(Ast.Field ast) {
+        return (Ast.Field) rewrite(ast);
+    }
+
+    public Ast.Method optimize(Ast.Method ast) {
+        return (Ast.Method) rewrite(ast);
+    }
+
+    public List<Ast.Stmt> optimize(List<Ast.Stmt> statements) {
+        List<Ast.Stmt> optimized = new ArrayList<>();
+        for (Ast.Stmt statement : statements) {
+            optimized.add(optimize(statement));
+        }
+        return optimized;
+    }
+
+    public Ast.Stmt optimize(Ast.Stmt ast) {
+        return (Ast.Stmt) rewrite(ast);
+    }
+
+    public Ast.Expr optimize(Ast.Expr ast) {
+        return (Ast.Expr) rewrite(ast);
+    }
+
+    private static Ast rewrite(Ast ast) {
+        Rewriter rewriter = new Rewriter();
+        Traversal.walk(ast, null, rewriter);
+        return rewriter.results.pop();
+    }
+
+    private static final class Rewriter implements Ast.Visitor<Void> {
+
+        private final Deque<Ast> results = new ArrayDeque<>();
+
+        @Override
+        public Void visit(Ast.Source ast) {
+            List<Ast.Method> methods = pop(ast.getMethods().size());
+            List<Ast.Field> fields = pop(ast.getFields().size());
+            results.push(new Ast.Source(fields, methods));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Field ast) {
+            results.push(new Ast.Field(ast.getName(), popOptional(ast.getValue())));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Method ast) {
+            results.push(new Ast.Method(ast.getName(), ast.getParameters(), pop(ast.getStatements().size())));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Expression ast) {
+            results.push(new Ast.Stmt.Expression(popTopLevel()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Declaration ast) {
+            results.push(new Ast.Stmt.Declaration(ast.getName(), popOptional(ast.getValue())));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Assignment ast) {
+            Ast.Expr value = popTopLevel();
+            results.push(new Ast.Stmt.Assignment(popTopLevel(), value));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.If ast) {
+            List<Ast.Stmt> elseStatements = pop(ast.getElseStatements().size());
+            List<Ast.Stmt> thenStatements = pop(ast.getThenStatements().size());
+            results.push(new Ast.Stmt.If(popTopLevel(), thenStatements, elseStatements));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.For ast) {
+            List<Ast.Stmt> statements = pop(ast.getStatements().size());
+            results.push(new Ast.Stmt.For(ast.getName(), popTopLevel(), statements));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.While ast) {
+            List<Ast.Stmt> statements = pop(ast.getStatements().size());
+            results.push(new Ast.Stmt.While(popTopLevel(), statements));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Return ast) {
+            results.push(new Ast.Stmt.Return(popTopLevel()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Literal ast) {
+            results.push(ast);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Group ast) {
+            Ast.Expr expr = popTopLevel();
+            //only a binary expression needs its group to keep the original shape
+            results.push(expr instanceof Ast.Expr.Binary ? new Ast.Expr.Group(expr) : expr);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Binary ast) {
+            Ast.Expr right = (Ast.Expr) results.pop();
+            Ast.Expr left = (Ast.Expr) results.pop();
+            results.push(optimizeBinary(ast.getOperator(), left, right));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Access ast) {
+            results.push(new Ast.Expr.Access(popOptional(ast.getReceiver()), ast.getName()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Function ast) {
+            Ast.Expr[] arguments = new Ast.Expr[ast.getArguments().size()];
+            for (int i = arguments.length - 1; i >= 0; i--) {
+                arguments[i] = popTopLevel();
+            }
+            results.push(new Ast.Expr.Function(popOptional(ast.getReceiver()), ast.getName(), Arrays.asList(arguments)));
+            return null;
+        }
+
+        /**
+         * Pops the optimized results of {@code count} children, in source order.
+         */
+        @SuppressWarnings("unchecked")
+        private <T extends Ast> List<T> pop(int count) {
+            Ast[] children = new Ast[count];
+            for (int i = count - 1; i >= 0; i--) {
+                children[i] = results.pop();
+            }
+            return (List<T>) new ArrayList<>(Arrays.asList(children));
+        }
+
+        /**
+         * Pops the optimized result of an expression that is not the operand
+         * of a binary expression, where any enclosing group is redundant.
+         */
+        private Ast.Expr popTopLevel() {
+            return unwrap((Ast.Expr) results.pop());
+        }
+
+        private Optional<Ast.Expr> popOptional(Optional<Ast.Expr> original) {
+            return original.isPresent() ? Optional.of(popTopLevel()) : Optional.empty();
+        }
+
+    }
+
+    private static Ast.Expr optimizeBinary(String operator, Ast.Expr left, Ast.Expr right) {
+        //the right side is only evaluated when the left side doesn't decide the result
+        if (operator.equals("AND") || operator.equals("OR")) {
+            Object value = literal(left);
+            if (value instanceof Boolean) {
+                boolean shortCircuit = operator.equals("OR");
+                if ((Boolean) value == shortCircuit) {
+                    return new Ast.Expr.Literal(shortCircuit);
+                }
+                else if (isBoolean(right)) {
+                    return right;
+                }
+            }
+        }
+        if (left instanceof Ast.Expr.Literal && right instanceof Ast.Expr.Literal) {
+            Object folded = fold(operator, ((Ast.Expr.Literal) left).getValue(), ((Ast.Expr.Literal) right).getValue());
+            if (folded != null) {
+                return Ast.Expr.Literal.of(folded);
+            }
+        }
+        return new Ast.Expr.Binary(operator, left, right);
+    }
+
+    /**
+     * Returns the result of applying the operator to both literal values (in
+     * their runtime representation, see {@link Numeric}), or {@code null} if
+     * the expression cannot be safely evaluated at compile time.
+     */
+    private static Object fold(String operator, Object left, Object right) {
+        if (Numeric.isInteger(left) && Numeric.isInteger(right)) {
+            switch (operator) {
+                case "+": return Numeric.add(left, right);
+                case "-": return Numeric.subtract(left, right);
+                case "*": return Numeric.multiply(left, right);
+                case "/": return Numeric.signum(right) == 0 ? null : Numeric.divide(left, right);
+                default: return compare(operator, Numeric.compare(left, right));
+            }
+        }
+        else if (left instanceof BigDecimal && right instanceof BigDecimal) {
+            BigDecimal lhs = (BigDecimal) left;
+            BigDecimal rhs = (BigDecimal) right;
+            switch (operator) {
+                case "+": return lhs.add(rhs);
+                case "-": return lhs.subtract(rhs);
+                case "*": return lhs.multiply(rhs);
+                case "/": return rhs.signum() == 0 ? null : lhs.divide(rhs, RoundingMode.HALF_EVEN);
+                case "==": return lhs.equals(rhs);
+                case "!=": return !lhs.equals(rhs);
+                default: return compare(operator, lhs.compareTo(rhs));
+            }
+        }
+        else if (left instanceof String && right instanceof String && operator.equals("+")) {
+            return (String) left + right;
+        }
+        else if (left instanceof Boolean && right instanceof Boolean && (operator.equals("AND") || operator.equals("OR"))) {
+            return operator.equals("AND") ? (Boolean) left && (Boolean) right : (Boolean) left || (Boolean) right;
+        }
+        return null;
+    }
+
+    private static Boolean compare(String operator, int comparison) {
+        switch (operator) {
+            case "<": return comparison < 0;
+            case "<=": return comparison <= 0;
+            case ">": return comparison > 0;
+            case ">=": return comparison >= 0;
+            case "==": return comparison == 0;
+            case "!=": return comparison != 0;
+            default: return null;
+        }
+    }
+
+    /**
+     * Returns true if the expression is a boolean whenever it evaluates
+     * without an error, meaning a boolean literal, a comparison, or an
+     * {@code AND}/{@code OR} whose right operand is one (the result of these
+     * is the right operand if the left doesn't decide it).
+     */
+    private static boolean isBoolean(Ast.Expr ast) {
+        ast = unwrap(ast);
+        if (ast instanceof Ast.Expr.Literal) {
+            return ((Ast.Expr.Literal) ast).getValue() instanceof Boolean;
+        }
+        else if (ast instanceof Ast.Expr.Binary) {
+            switch (((Ast.Expr.Binary) ast).getOperator()) {
+                case "AND":
+                case "OR":
+                    return isBoolean(((Ast.Expr.Binary) ast).getRight());
+                case "==":
+                case "!=":
+                case "<":
+                case "<=":
+                case ">":
+                case ">=":
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    private static Object literal(Ast.Expr ast) {
+        return ast instanceof Ast.Expr.Literal ? ((Ast.Expr.Literal) ast).getValue() : null;
+    }
+
+    private static Ast.Expr unwrap(Ast.Expr ast) {
+        while (ast instanceof Ast.Expr.Group) {
+            ast = ((Ast.Expr.Group) ast).getExpression();
+        }
+        return ast;
+    }
+
+}
@@ -3,14 +3,28 @@
 public final class ParseException extends RuntimeException {
 
     private final int index;
+    private final int byteIndex;
 
     public ParseException(String message, int index) {
+        this(message, index, -1);
+    }
+
+    /**
+     * Creates an exception which also has the UTF-8 byte offset of the index,
+     * which is {@code -1} if it isn't known.
+     */
+    public ParseException(String message, int index, int byteIndex) {
         super(message);
         this.index = index;
+        this.byteIndex = byteIndex;
     }
 
     public int getIndex() {
         return index;
     }
 
+    public int getByteIndex() {
+        return byteIndex;
+    }
+
 }
@@ -1,7 +1,5 @@
 package plc.project;
 
-import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.util.*;
 
 /**
@@ -19,17 +17,65 @@ import java.util.*;
  */
 public final class Parser {
 
+    /**
+     * The nesting limit used by the {@link Compiler} and {@link Project},
+     * which parse iteratively so that deeply nested input is reported as a
+     * {@link ParseException} instead of overflowing the stack.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 10_000;
+
     private final TokenStream tokens;
+    private final boolean iterative;
+    private final int maxDepth;
 
     public Parser(List<Token> tokens) {
         this.tokens = new TokenStream(tokens);
+        this.iterative = false;
+        this.maxDepth = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Creates a parser that parses expressions iteratively (see {@link
+     * #parseIterativeExpression()}), which handles any amount of nesting
+     * without using Java stack. Groups and argument lists nested more than
+     * {@code maxDepth} levels deep throw a {@link ParseException}.
+     */
+    public Parser(List<Token> tokens, int maxDepth) {
+        this.tokens = new TokenStream(tokens);
+        this.iterative = true;
+        this.maxDepth = maxDepth;
     }
 
     /**
      * Parses the {@code source} rule.
      */
     public Ast.Source parseSource() throws ParseException {
-        throw new UnsupportedOperationException(); //TODO
+        return (Ast.Source) parseSource(AST_NODES);
+    }
+
+    /**
+     * Parses the {@code source} rule directly into the given arena, returning
+     * the source's node. Expressions are parsed as in {@link
+     * #parseFlatExpression(FlatAst)}, so no AST classes are created.
+     */
+    public int parseFlatSource(FlatAst ast) throws ParseException {
+        return parseSource(new FlatNodes(ast));
+    }
+
+    private <N> N parseSource(Nodes<N> nodes) throws ParseException {
+        List<N> fields = new ArrayList<>();
+        List<N> methods = new ArrayList<>();
+        while (peek("LET")) {
+            fields.add(parseField(nodes));
+        }
+        while (peek("DEF")) {
+            methods.add(parseMethod(nodes));
+        }
+        if (tokens.has(0)) {
+            //fields must come before methods, and nothing else is allowed
+            throw new ParseException(peek("LET") ? "Field after method" : "Expected field or method", tokens.get(0).getIndex());
+        }
+        return nodes.source(fields, methods);
     }
 
     /**
@@ -37,7 +83,18 @@ public final class Parser {
      * next tokens start a field, aka {@code LET}.
      */
     public Ast.Field parseField() throws ParseException {
-        throw new UnsupportedOperationException(); //TODO
+        return (Ast.Field) parseField(AST_NODES);
+    }
+
+    private <N> N parseField(Nodes<N> nodes) throws ParseException {
+        require("LET", "Expected LET");
+        String name = requireIdentifier();
+        N value = null;
+        if (match("=")) {
+            value = parseExpression(nodes);
+        }
+        requireSemicolon();
+        return nodes.field(name, value);
     }
 
     /**
@@ -45,7 +102,25 @@ public final class Parser {
      * next tokens start a method, aka {@code DEF}.
      */
     public Ast.Method parseMethod() throws ParseException {
-        throw new UnsupportedOperationException(); //TODO
+        return (Ast.Method) parseMethod(AST_NODES);
+    }
+
+    private <N> N parseMethod(Nodes<N> nodes) throws ParseException {
+        require("DEF", "Expected DEF");
+        String name = requireIdentifier();
+        require("(", "Expected opening paren");
+        List<String> parameters = new ArrayList<>();
+        if (!match(")")) {
+            parameters.add(requireIdentifier());
+            while (match(",")) {
+                parameters.add(requireIdentifier());
+            }
+            require(")", "No closing paren");
+        }
+        require("DO", "Expected DO");
+        List<N> statements = parseBlock(nodes);
+        require("END", "Expected END");
+        return nodes.method(name, parameters, statements);
     }
 
     /**
@@ -54,53 +129,42 @@ public final class Parser {
      * statement, then it is an expression/assignment statement.
      */
     public Ast.Stmt parseStatement() throws ParseException {
-        //throw new UnsupportedOperationException(); //TODO
-        if (match("LET")){
-            parseDeclarationStatement();
+        return (Ast.Stmt) parseStatement(AST_NODES);
+    }
+
+    private <N> N parseStatement(Nodes<N> nodes) throws ParseException {
+        int index = tokens.has(0) ? tokens.get(0).getIndex() : -1;
+        N statement = null;
+        if (peek("LET")){
+            statement = parseDeclarationStatement(nodes);
         }
-        else if (match("IF")) {
-            parseIfStatement();
+        else if (peek("IF")) {
+            statement = parseIfStatement(nodes);
         }
-        else if (match("FOR")) {
-            parseForStatement();
+        else if (peek("FOR")) {
+            statement = parseForStatement(nodes);
         }
-        else if (match("WHILE")) {
-            parseWhileStatement();
+        else if (peek("WHILE")) {
+            statement = parseWhileStatement(nodes);
         }
-        else if (match("RETURN")) {
-            parseReturnStatement();
+        else if (peek("RETURN")) {
+            statement = parseReturnStatement(nodes);
         }
         //I don't think we need to check if it's an invalid secondary expression because it goes into
         //primary expression and catches if something is amiss.
-        //Is there a way to delete the duplicate code for missing semicolon for statement?
         else {
-            Ast.Expr expr = parseExpression();
+            N expr = parseExpression(nodes);
             if (match("=")) {
-                Ast.Expr val = parseExpression();
-                if (!match(";")) {
-                    if (tokens.has(0)) {
-                        throw new ParseException("Missing semicolon", tokens.get(0).getIndex());
-                    }
-                    //the token is the final token
-                    else {
-                        throw new ParseException("Missing semicolon", tokens.get(-1).getIndex() + tokens.get(-1).getLiteral().length());
-                    }
-
-                }
-                return new Ast.Stmt.Assignment(expr, val);
+                N val = parseExpression(nodes);
+                requireSemicolon();
+                statement = nodes.assignment(expr, val);
             }
-            else if (!match(";")) {
-                if (tokens.has(0)) {
-                    throw new ParseException("Missing semicolon", tokens.get(0).getIndex());
-                }
-                //the token is the final token
-                else {
-                    throw new ParseException("Missing semicolon", tokens.get(-1).getIndex() + tokens.get(-1).getLiteral().length());
-                }
+            else {
+                requireSemicolon();
+                statement = nodes.expression(expr);
             }
-            return new Ast.Stmt.Expression(expr);
         }
-        return null;
+        return nodes.index(statement, index);
     }
 
     /**
@@ -109,7 +173,18 @@ public final class Parser {
      * statement, aka {@code LET}.
      */
     public Ast.Stmt.Declaration parseDeclarationStatement() throws ParseException {
-        throw new UnsupportedOperationException(); //TODO
+        return (Ast.Stmt.Declaration) parseDeclarationStatement(AST_NODES);
+    }
+
+    private <N> N parseDeclarationStatement(Nodes<N> nodes) throws ParseException {
+        require("LET", "Expected LET");
+        String name = requireIdentifier();
+        N value = null;
+        if (match("=")) {
+            value = parseExpression(nodes);
+        }
+        requireSemicolon();
+        return nodes.declaration(name, value);
     }
 
     /**
@@ -118,7 +193,20 @@ public final class Parser {
      * {@code IF}.
      */
     public Ast.Stmt.If parseIfStatement() throws ParseException {
-        throw new UnsupportedOperationException(); //TODO
+        return (Ast.Stmt.If) parseIfStatement(AST_NODES);
+    }
+
+    private <N> N parseIfStatement(Nodes<N> nodes) throws ParseException {
+        require("IF", "Expected IF");
+        N condition = parseExpression(nodes);
+        require("DO", "Expected DO");
+        List<N> thenStatements = parseBlock(nodes);
+        List<N> elseStatements = new ArrayList<>();
+        if (match("ELSE")) {
+            elseStatements = parseBlock(nodes);
+        }
+        require("END", "Expected END");
+        return nodes.ifStatement(condition, thenStatements, elseStatements);
     }
 
     /**
@@ -127,7 +215,18 @@ public final class Parser {
      * {@code FOR}.
      */
     public Ast.Stmt.For parseForStatement() throws ParseException {
-        throw new UnsupportedOperationException(); //TODO
+        return (Ast.Stmt.For) parseForStatement(AST_NODES);
+    }
+
+    private <N> N parseForStatement(Nodes<N> nodes) throws ParseException {
+        require("FOR", "Expected FOR");
+        String name = requireIdentifier();
+        require("IN", "Expected IN");
+        N value = parseExpression(nodes);
+        require("DO", "Expected DO");
+        List<N> statements = parseBlock(nodes);
+        require("END", "Expected END");
+        return nodes.forStatement(name, value, statements);
     }
 
     /**
@@ -136,7 +235,16 @@ public final class Parser {
      * {@code WHILE}.
      */
     public Ast.Stmt.While parseWhileStatement() throws ParseException {
-        throw new UnsupportedOperationException(); //TODO
+        return (Ast.Stmt.While) parseWhileStatement(AST_NODES);
+    }
+
+    private <N> N parseWhileStatement(Nodes<N> nodes) throws ParseException {
+        require("WHILE", "Expected WHILE");
+        N condition = parseExpression(nodes);
+        require("DO", "Expected DO");
+        List<N> statements = parseBlock(nodes);
+        require("END", "Expected END");
+        return nodes.whileStatement(condition, statements);
     }
 
     /**
@@ -145,7 +253,43 @@ public final class Parser {
      * {@code RETURN}.
      */
     public Ast.Stmt.Return parseReturnStatement() throws ParseException {
-        throw new UnsupportedOperationException(); //TODO
+        return (Ast.Stmt.Return) parseReturnStatement(AST_NODES);
+    }
+
+    private <N> N parseReturnStatement(Nodes<N> nodes) throws ParseException {
+        require("RETURN", "Expected RETURN");
+        N value = parseExpression(nodes);
+        requireSemicolon();
+        return nodes.returnStatement(value);
+    }
+
+    /**
+     * Parses statements until the {@code ELSE} or {@code END} that closes
+     * the block, which is left for the caller to match.
+     */
+    private <N> List<N> parseBlock(Nodes<N> nodes) throws ParseException {
+        List<N> statements = new ArrayList<>();
+        while (tokens.has(0) && !peek("END") && !peek("ELSE")) {
+            statements.add(parseStatement(nodes));
+        }
+        return statements;
+    }
+
+    private void require(String literal, String message) throws ParseException {
+        if (!match(literal)) {
+            throw new ParseException(message, nextIndex());
+        }
+    }
+
+    private String requireIdentifier() throws ParseException {
+        if (!match(Token.Type.IDENTIFIER)) {
+            throw new ParseException("No identifier", nextIndex());
+        }
+        return tokens.get(-1).getLiteral();
+    }
+
+    private void requireSemicolon() throws ParseException {
+        require(";", "Missing semicolon");
     }
 
     /**
@@ -154,9 +298,164 @@ public final class Parser {
     public Ast.Expr parseExpression() throws ParseException {
         //throw new UnsupportedOperationException(); //TODO
         //for all expressions except secondary & primary, go through the code and add tokens one by one
+        if (iterative) {
+            return parseIterativeExpression();
+        }
         return parseLogicalExpression();
     }
 
+    /**
+     * Parses the {@code expression} rule without recursion. Instead of one
+     * method per precedence level, each open group or argument list is a
+     * {@link Frame} holding its own operand and operator stacks, and binary
+     * operators are reduced by precedence as they are read (operator
+     * precedence parsing). The resulting AST is the same as from the recursive
+     * methods above.
+     */
+    public Ast.Expr parseIterativeExpression() throws ParseException {
+        return (Ast.Expr) parseIterativeExpression(AST_NODES);
+    }
+
+    /**
+     * Parses the {@code expression} rule directly into the given arena,
+     * returning the expression's node. This uses the same algorithm as {@link
+     * #parseIterativeExpression()} and never creates the AST classes.
+     */
+    public int parseFlatExpression(FlatAst ast) throws ParseException {
+        return parseIterativeExpression(new FlatNodes(ast));
+    }
+
+    /**
+     * Parses an expression within a field or statement. The AST classes follow
+     * this parser's mode, while a {@link FlatAst} is always built iteratively.
+     */
+    @SuppressWarnings("unchecked")
+    private <N> N parseExpression(Nodes<N> nodes) throws ParseException {
+        if (nodes == AST_NODES) {
+            return (N) parseExpression();
+        }
+        return parseIterativeExpression(nodes);
+    }
+
+    private <N> N parseIterativeExpression(Nodes<N> nodes) throws ParseException {
+        Deque<Frame<N>> frames = new ArrayDeque<>();
+        Frame<N> frame = new Frame<>(Frame.Kind.EXPRESSION, nodes, null, null);
+        N operand = null;
+        while (true) {
+            if (operand == null) {
+                //an operand is expected, which may open a new group or argument list
+                if (match("(")) {
+                    frames.push(frame);
+                    frame = new Frame<>(Frame.Kind.GROUP, nodes, null, null);
+                    checkDepth(frames.size());
+                    continue;
+                }
+                else if (!peek("NIL") && !peek("TRUE") && !peek("FALSE") && match(Token.Type.IDENTIFIER, "(")) {
+                    String name = tokens.get(-2).getLiteral();
+                    if (!match(")")) {
+                        frames.push(frame);
+                        frame = new Frame<>(Frame.Kind.ARGUMENTS, nodes, null, name);
+                        checkDepth(frames.size());
+                        continue;
+                    }
+                    operand = nodes.function(null, name, new ArrayList<>());
+                }
+                else if (!peek("NIL") && !peek("TRUE") && !peek("FALSE") && match(Token.Type.IDENTIFIER)) {
+                    operand = nodes.access(null, tokens.get(-1).getLiteral());
+                }
+                else {
+                    //everything else is a literal, which doesn't recurse
+                    operand = nodes.literal(parseLiteral());
+                }
+            }
+            if (match(".")) {
+                if (!match(Token.Type.IDENTIFIER)) {
+                    throw new ParseException("No identifier", nextIndex());
+                }
+                String name = tokens.get(-1).getLiteral();
+                if (!match("(")) {
+                    operand = nodes.access(operand, name);
+                }
+                else if (match(")")) {
+                    operand = nodes.function(operand, name, new ArrayList<>());
+                }
+                else {
+                    frames.push(frame);
+                    frame = new Frame<>(Frame.Kind.ARGUMENTS, nodes, operand, name);
+                    checkDepth(frames.size());
+                    operand = null;
+                }
+                continue;
+            }
+            int precedence = tokens.has(0) ? precedence(tokens.get(0).getLiteral()) : 0;
+            if (precedence > 0) {
+                frame.push(operand, tokens.get(0).getLiteral(), precedence);
+                tokens.advance();
+                operand = null;
+                continue;
+            }
+            //the expression in the current frame has ended
+            N expr = frame.finish(operand);
+            if (frame.kind == Frame.Kind.EXPRESSION) {
+                return expr;
+            }
+            else if (frame.kind == Frame.Kind.GROUP) {
+                if (!match(")")) {
+                    throw new ParseException("No closing paren", nextIndex());
+                }
+                frame = frames.pop();
+                operand = nodes.group(expr);
+            }
+            else {
+                frame.arguments.add(expr);
+                if (match(",")) {
+                    if (match(")")) {
+                        throw new ParseException("Trailing comma", tokens.get(-1).getIndex());
+                    }
+                    operand = null;
+                    continue;
+                }
+                if (!match(")")) {
+                    throw new ParseException("No closing paren", nextIndex());
+                }
+                Frame<N> call = frame;
+                frame = frames.pop();
+                operand = nodes.function(call.receiver, call.name, call.arguments);
+            }
+        }
+    }
+
+    private void checkDepth(int depth) throws ParseException {
+        if (depth > maxDepth) {
+            throw new ParseException("Maximum nesting depth exceeded", tokens.get(-1).getIndex());
+        }
+    }
+
+    /**
+     * Returns the precedence of a binary operator, where higher binds tighter,
+     * or 0 if the literal is not a binary operator.
+     */
+    private static int precedence(String literal) {
+        switch (literal) {
+            case "AND": case "OR": return 1;
+            case "<": case "<=": case ">": case ">=": case "==": case "!=": return 2;
+            case "+": case "-": return 3;
+            case "*": case "/": return 4;
+            default: return 0;
+        }
+    }
+
+    /**
+     * Returns the index for an error at the next token, which is just past the
+     * final token if there are none left.
+     */
+    private int nextIndex() {
+        if (tokens.has(0)) {
+            return tokens.get(0).getIndex();
+        }
+        return tokens.get(-1).getIndex() + tokens.get(-1).getLiteral().length();
+    }
+
     /**
      * Parses the {@code logical-expression} rule.
      */
@@ -184,12 +483,12 @@ public final class Parser {
     public Ast.Expr parseEqualityExpression() throws ParseException {
         //throw new UnsupportedOperationException(); //TODO - DONE
         Ast.Expr left = parseAdditiveExpression();
-        while (peek("<") || peek("<=") || peek(">") || peek("=>") ||
+        while (peek("<") || peek("<=") || peek(">") || peek(">=") ||
                 peek("==") || peek("!=")) {
             String operator = tokens.get(0).getLiteral();
             match(Token.Type.OPERATOR);
             Ast.Expr right = parseAdditiveExpression();
-            if (!(peek("<") || peek("<=") || peek(">") || peek("=>") ||
+            if (!(peek("<") || peek("<=") || peek(">") || peek(">=") ||
                     peek("==") || peek("!="))) {
                 return new Ast.Expr.Binary(operator, left, right);
             }
@@ -305,47 +604,7 @@ public final class Parser {
      */
     public Ast.Expr parsePrimaryExpression() throws ParseException {
         //throw new UnsupportedOperationException(); //TODO
-        if (match("NIL")) {
-            return new Ast.Expr.Literal(null);
-        }
-        else if (match("TRUE")) {
-            return new Ast.Expr.Literal(true);
-        }
-        else if (match("FALSE")) {
-            return new Ast.Expr.Literal(false);
-        }
-        else if (match(Token.Type.INTEGER)) {
-            return new Ast.Expr.Literal(new BigInteger(tokens.get(-1).getLiteral()));
-        }
-        else if (match(Token.Type.DECIMAL)) {
-            return new Ast.Expr.Literal(new BigDecimal(tokens.get(-1).getLiteral()));
-        }
-        else if (match(Token.Type.CHARACTER)) {
-            String escapeChar = tokens.get(-1).getLiteral();
-            if (escapeChar.length() > 3) {
-                escapeChar = escapeChar.replace("\\\\", "\\");
-                escapeChar = escapeChar.replace("\\\"", "\"");
-                escapeChar = escapeChar.replace("\\\'", "\'");
-                escapeChar = escapeChar.replace("\\b", "\b");
-                escapeChar = escapeChar.replace("\\n", "\n");
-                escapeChar = escapeChar.replace("\\r", "\r");
-                escapeChar = escapeChar.replace("\\t", "\t");
-            }
-            //is this correct for \n characters?
-            return new Ast.Expr.Literal(escapeChar.charAt(1));
-        }
-        else if (match(Token.Type.STRING)) {
-            String str = tokens.get(-1).getLiteral();
-            str = str.replace("\\\\", "\\");
-            str = str.replace("\\\"", "\"");
-            str = str.replace("\\\'", "\'");
-            str = str.replace("\\b", "\b");
-            str = str.replace("\\n", "\n");
-            str = str.replace("\\r", "\r");
-            str = str.replace("\\t", "\t");
-            return new Ast.Expr.Literal(str.substring(1, str.length()-1));
-        }
-        else if (match("(")) {
+        if (match("(")) {
             //System.out.println("the index before matching on group is " + Integer.toString(tokens.get(0).getIndex()));
             Ast.Expr.Group group = new Ast.Expr.Group(parseExpression());
             //here I attempted to implement the error-checking functionality
@@ -362,7 +621,7 @@ public final class Parser {
             };
             return group;
         }
-        else if (match(Token.Type.IDENTIFIER)) {
+        else if (!peek("NIL") && !peek("TRUE") && !peek("FALSE") && match(Token.Type.IDENTIFIER)) {
             String name = tokens.get(-1).getLiteral();
             if (match("(")) {
                 //create an empty argument list for the function
@@ -389,6 +648,58 @@ public final class Parser {
             }
             return new Ast.Expr.Access(Optional.empty(), name);
         }
+        return Ast.Expr.Literal.of(parseLiteral());
+    }
+
+    /**
+     * Parses a literal from the {@code primary-expression} rule, returning its
+     * value as stored by {@link Ast.Expr.Literal}.
+     */
+    private Object parseLiteral() throws ParseException {
+        if (match("NIL")) {
+            return null;
+        }
+        else if (match("TRUE")) {
+            return true;
+        }
+        else if (match("FALSE")) {
+            return false;
+        }
+        else if (match(Token.Type.INTEGER)) {
+            return Numeric.parseInteger(tokens.get(-1).getLiteral());
+        }
+        else if (match(Token.Type.DECIMAL)) {
+            return Numeric.parseDecimal(tokens.get(-1).getLiteral());
+        }
+        else if (match(Token.Type.CHARACTER)) {
+            String escapeChar = tokens.get(-1).getLiteral();
+            if (escapeChar.length() > 3) {
+                escapeChar = escapeChar.replace("\\\\", "\\");
+                escapeChar = escapeChar.replace("\\\"", "\"");
+                escapeChar = escapeChar.replace("\\\'", "\'");
+                escapeChar = escapeChar.replace("\\b", "\b");
+                escapeChar = escapeChar.replace("\\n", "\n");
+                escapeChar = escapeChar.replace("\\r", "\r");
+                escapeChar = escapeChar.replace("\\t", "\t");
+            }
+            //a surrogate pair (from the lexer's code point mode) can't be a Character
+            if (Character.isHighSurrogate(escapeChar.charAt(1))) {
+                throw new ParseException("Character literals must be in the Basic Multilingual Plane", tokens.get(-1).getIndex());
+            }
+            //is this correct for \n characters?
+            return escapeChar.charAt(1);
+        }
+        else if (match(Token.Type.STRING)) {
+            String str = tokens.get(-1).getLiteral();
+            str = str.replace("\\\\", "\\");
+            str = str.replace("\\\"", "\"");
+            str = str.replace("\\\'", "\'");
+            str = str.replace("\\b", "\b");
+            str = str.replace("\\n", "\n");
+            str = str.replace("\\r", "\r");
+            str = str.replace("\\t", "\t");
+            return str.substring(1, str.length()-1);
+        }
         else if (tokens.has(0)) {
             throw new ParseException("Invalid primary expression.", tokens.get(0).getIndex());
         }
@@ -445,6 +756,300 @@ public final class Parser {
         }
         return peek;
     }
+
+    /**
+     * Creates the nodes for the parsing methods that take a {@code Nodes},
+     * which are either the AST classes or nodes in a {@link FlatAst}. Children
+     * are always created before their parent, in source order, and a missing
+     * receiver or value is {@code null}.
+     */
+    private interface Nodes<N> {
+
+        N source(List<N> fields, List<N> methods);
+
+        N field(String name, N value);
+
+        N method(String name, List<String> parameters, List<N> statements);
+
+        /**
+         * Records the index of the statement's first token.
+         */
+        N index(N statement, int index);
+
+        N expression(N expression);
+
+        N declaration(String name, N value);
+
+        N assignment(N receiver, N value);
+
+        N ifStatement(N condition, List<N> thenStatements, List<N> elseStatements);
+
+        N forStatement(String name, N value, List<N> statements);
+
+        N whileStatement(N condition, List<N> statements);
+
+        N returnStatement(N value);
+
+        N literal(Object value);
+
+        N group(N expression);
+
+        N binary(String operator, N left, N right);
+
+        N access(N receiver, String name);
+
+        N function(N receiver, String name, List<N> arguments);
+
+    }
+
+    private static final Nodes<Ast> AST_NODES = new Nodes<Ast>() {
+
+        @Override
+        public Ast source(List<Ast> fields, List<Ast> methods) {
+            return new Ast.Source(cast(fields), cast(methods));
+        }
+
+        @Override
+        public Ast field(String name, Ast value) {
+            return new Ast.Field(name, Optional.ofNullable((Ast.Expr) value));
+        }
+
+        @Override
+        public Ast method(String name, List<String> parameters, List<Ast> statements) {
+            return new Ast.Method(name, parameters, cast(statements));
+        }
+
+        @Override
+        public Ast index(Ast statement, int index) {
+            ((Ast.Stmt) statement).setIndex(index);
+            return statement;
+        }
+
+        @Override
+        public Ast expression(Ast expression) {
+            return new Ast.Stmt.Expression((Ast.Expr) expression);
+        }
+
+        @Override
+        public Ast declaration(String name, Ast value) {
+            return new Ast.Stmt.Declaration(name, Optional.ofNullable((Ast.Expr) value));
+        }
+
+        @Override
+        public Ast assignment(Ast receiver, Ast value) {
+            return new Ast.Stmt.Assignment((Ast.Expr) receiver, (Ast.Expr) value);
+        }
+
+        @Override
+        public Ast ifStatement(Ast condition, List<Ast> thenStatements, List<Ast> elseStatements) {
+            return new Ast.Stmt.If((Ast.Expr) condition, cast(thenStatements), cast(elseStatements));
+        }
+
+        @Override
+        public Ast forStatement(String name, Ast value, List<Ast> statements) {
+            return new Ast.Stmt.For(name, (Ast.Expr) value, cast(statements));
+        }
+
+        @Override
+        public Ast whileStatement(Ast condition, List<Ast> statements) {
+            return new Ast.Stmt.While((Ast.Expr) condition, cast(statements));
+        }
+
+        @Override
+        public Ast returnStatement(Ast value) {
+            return new Ast.Stmt.Return((Ast.Expr) value);
+        }
+
+        @Override
+        public Ast literal(Object value) {
+            return Ast.Expr.Literal.of(value);
+        }
+
+        @Override
+        public Ast group(Ast expression) {
+            return new Ast.Expr.Group((Ast.Expr) expression);
+        }
+
+        @Override
+        public Ast binary(String operator, Ast left, Ast right) {
+            return new Ast.Expr.Binary(operator, (Ast.Expr) left, (Ast.Expr) right);
+        }
+
+        @Override
+        public Ast access(Ast receiver, String name) {
+            return new Ast.Expr.Access(Optional.ofNullable((Ast.Expr) receiver), name);
+        }
+
+        @Override
+        public Ast function(Ast receiver, String name, List<Ast> arguments) {
+            return new Ast.Expr.Function(Optional.ofNullable((Ast.Expr) receiver), name, cast(arguments));
+        }
+
+        /**
+         * Narrows a list of children, which the parser only ever fills with
+         * nodes of the type its parent expects.
+         */
+        @SuppressWarnings("unchecked")
+        private <T extends Ast> List<T> cast(List<Ast> nodes) {
+            return (List<T>) (List<?>) nodes;
+        }
+
+    };
+
+    /**
+     * Appends nodes to a {@link FlatAst}, which only needs the number of
+     * children since they were appended just before.
+     */
+    private static final class FlatNodes implements Nodes<Integer> {
+
+        private final FlatAst ast;
+
+        private FlatNodes(FlatAst ast) {
+            this.ast = ast;
+        }
+
+        @Override
+        public Integer source(List<Integer> fields, List<Integer> methods) {
+            return ast.source(fields.size(), methods.size());
+        }
+
+        @Override
+        public Integer field(String name, Integer value) {
+            return ast.field(name, value != null);
+        }
+
+        @Override
+        public Integer method(String name, List<String> parameters, List<Integer> statements) {
+            return ast.method(name, parameters, statements.size());
+        }
+
+        @Override
+        public Integer index(Integer statement, int index) {
+            return statement;
+        }
+
+        @Override
+        public Integer expression(Integer expression) {
+            return ast.expression();
+        }
+
+        @Override
+        public Integer declaration(String name, Integer value) {
+            return ast.declaration(name, value != null);
+        }
+
+        @Override
+        public Integer assignment(Integer receiver, Integer value) {
+            return ast.assignment();
+        }
+
+        @Override
+        public Integer ifStatement(Integer condition, List<Integer> thenStatements, List<Integer> elseStatements) {
+            return ast.ifStatement(thenStatements.size(), elseStatements.size());
+        }
+
+        @Override
+        public Integer forStatement(String name, Integer value, List<Integer> statements) {
+            return ast.forStatement(name, statements.size());
+        }
+
+        @Override
+        public Integer whileStatement(Integer condition, List<Integer> statements) {
+            return ast.whileStatement(statements.size());
+        }
+
+        @Override
+        public Integer returnStatement(Integer value) {
+            return ast.returnStatement();
+        }
+
+        @Override
+        public Integer literal(Object value) {
+            return ast.literal(value);
+        }
+
+        @Override
+        public Integer group(Integer expression) {
+            return ast.group();
+        }
+
+        @Override
+        public Integer binary(String operator, Integer left, Integer right) {
+            return ast.binary(operator);
+        }
+
+        @Override
+        public Integer access(Integer receiver, String name) {
+            return ast.access(name, receiver != null);
+        }
+
+        @Override
+        public Integer function(Integer receiver, String name, List<Integer> arguments) {
+            return ast.function(name, receiver != null, arguments.size());
+        }
+
+    }
+
+    /**
+     * An expression being parsed by {@link #parseIterativeExpression(Nodes)}:
+     * the top-level expression, a group, or an argument list of a function
+     * call.
+     */
+    private static final class Frame<N> {
+
+        private enum Kind {
+            EXPRESSION,
+            GROUP,
+            ARGUMENTS
+        }
+
+        private final Kind kind;
+        private final Nodes<N> nodes;
+        private final N receiver;
+        private final String name;
+        private final List<N> arguments = new ArrayList<>();
+
+        private final Deque<N> operands = new ArrayDeque<>();
+        private final Deque<String> operators = new ArrayDeque<>();
+
+        private Frame(Kind kind, Nodes<N> nodes, N receiver, String name) {
+            this.kind = kind;
+            this.nodes = nodes;
+            this.receiver = receiver;
+            this.name = name;
+        }
+
+        /**
+         * Adds an operand followed by a binary operator. Any pending operators
+         * of the same or higher precedence are reduced first, which keeps
+         * operators left associative.
+         */
+        private void push(N operand, String operator, int precedence) {
+            operands.push(operand);
+            reduce(precedence);
+            operators.push(operator);
+        }
+
+        /**
+         * Adds the final operand and reduces all pending operators, returning
+         * the complete expression.
+         */
+        private N finish(N operand) {
+            operands.push(operand);
+            reduce(1);
+            return operands.pop();
+        }
+
+        private void reduce(int precedence) {
+            while (!operators.isEmpty() && precedence(operators.peek()) >= precedence) {
+                N right = operands.pop();
+                N left = operands.pop();
+                operands.push(nodes.binary(operators.pop(), left, right));
+            }
+        }
+
+    }
+
     private static final class TokenStream {
 
         private final List<Token> tokens;
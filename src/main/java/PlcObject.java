@@ -0,0 +1,48 @@
+package plc.project;
+
+import java.util.Arrays;
+
+/**
+ * A runtime object, created by the built-in {@code object()} function. Fields
+ * are added by assigning them and are stored in slots determined by the
+ * object's {@link Shape}, so a field access cached for the shape (see
+ * {@link InlineCache}) is an array load.
+ */
+public final class PlcObject {
+
+    private Shape shape = Shape.EMPTY;
+    private Object[] values = new Object[4];
+
+    public Shape getShape() {
+        return shape;
+    }
+
+    public Object get(int slot) {
+        return values[slot];
+    }
+
+    public void set(int slot, Object value) {
+        values[slot] = value;
+    }
+
+    /**
+     * Adds a field, given the shape returned by {@link Shape#addField(String)}
+     * for this object's shape.
+     */
+    public void add(Shape shape, Object value) {
+        int slot = shape.size() - 1;
+        if (slot == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[slot] = value;
+        this.shape = shape;
+    }
+
+    @Override
+    public String toString() {
+        return "PlcObject{" +
+                "shape=" + shape +
+                '}';
+    }
+
+}
@@ -0,0 +1,449 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Profiles the methods and statements run by an {@link Interpreter} (see
+ * {@link Interpreter#setProfiler(Profiler)}), in one of two modes:
+ *
+ *  - {@link Mode#EXACT} counts every call and statement, and times them with
+ *    {@link System#nanoTime()} at each transition between statements and
+ *    calls, so the time between two transitions is charged to exactly one
+ *    statement of one stack,
+ *  - {@link Mode#SAMPLING} only counts calls. A daemon thread reads the top
+ *    of the shadow stack at a fixed interval and counts a sample for the
+ *    running stack and statement, so the interpreter only does a few plain
+ *    writes per statement.
+ *
+ * The shadow stack is a stack of {@link Frame}s, one per active call, whose
+ * stacks are shared in a tree of {@link Path}s. The sampler reads it without
+ * locking, so a sample taken during a call or return may be charged to the
+ * caller's statement; this is the usual skew of sampling and doesn't affect
+ * the totals much.
+ *
+ * Statements are reported with the offset of their first token (see
+ * {@link Ast.Stmt#getIndex()}), and {@link #collapse()} exports the profile
+ * in the collapsed-stack format used by flame graph tools.
+ */
+public final class Profiler {
+
+    public enum Mode {
+        EXACT,
+        SAMPLING,
+    }
+
+    public static final long DEFAULT_INTERVAL = 1_000_000;
+
+    private final Mode mode;
+    private final long interval;
+    private final Path root = new Path(null);
+    private final Map<Scope.Function, Method> methods = new IdentityHashMap<>();
+    private final Map<Ast.Stmt, Statement> statements = new IdentityHashMap<>();
+
+    private Frame[] stack = new Frame[16];
+    private volatile int depth = 0;
+    private Frame top = null;
+    private Thread sampler = null;
+    private volatile boolean sampling = false;
+    private long samples = 0;
+
+    /**
+     * Creates a profiler which samples every {@code interval} nanoseconds in
+     * {@link Mode#SAMPLING} (the interval is unused in {@link Mode#EXACT}).
+     */
+    public Profiler(Mode mode, long interval) {
+        this.mode = mode;
+        this.interval = interval;
+    }
+
+    public Profiler(Mode mode) {
+        this(mode, DEFAULT_INTERVAL);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Stops the sampler, if it's running, and waits for its last sample. The
+     * methods returning the profile call this, and profiling continues
+     * (with a new sampler) on the next call.
+     */
+    public void stop() {
+        if (sampler != null) {
+            sampling = false;
+            LockSupport.unpark(sampler);
+            try {
+                sampler.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sampler = null;
+        }
+    }
+
+    /**
+     * Returns the number of samples taken, which is always 0 in
+     * {@link Mode#EXACT}.
+     */
+    public long getSamples() {
+        stop();
+        return samples;
+    }
+
+    /**
+     * Returns the methods which were called, by decreasing self time (or
+     * samples).
+     */
+    public List<Method> getMethods() {
+        stop();
+        return sorted(methods.values(), Comparator.comparingLong((Method m) -> m.self + m.samples).reversed());
+    }
+
+    /**
+     * Returns the statements which were run, by decreasing time (or
+     * samples). Statements are only counted in {@link Mode#EXACT}, so in
+     * {@link Mode#SAMPLING} these are only the statements that were sampled.
+     */
+    public List<Statement> getStatements() {
+        stop();
+        return sorted(statements.values(), Comparator.comparingLong((Statement s) -> s.time + s.samples).reversed());
+    }
+
+    /**
+     * Returns the profile in the collapsed-stack format, with one line per
+     * stack: the called methods as {@code name/arity} from the outermost,
+     * then the running statement as {@code Kind@index}, separated by
+     * {@code ;} and followed by the stack's self time in nanoseconds (or
+     * number of samples). Lines are sorted, and stacks with no time are left
+     * out.
+     */
+    public String collapse() {
+        stop();
+        List<String> lines = new ArrayList<>();
+        collapse(root, "", lines);
+        lines.sort(null);
+        StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(line).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private void collapse(Path path, String prefix, List<String> lines) {
+        for (Map.Entry<Ast.Stmt, long[]> weight : path.weights.entrySet()) {
+            if (weight.getValue()[0] > 0) {
+                String frames = weight.getKey() == null ? prefix : prefix + ";" + label(weight.getKey());
+                lines.add(frames + " " + weight.getValue()[0]);
+            }
+        }
+        for (Path child : path.children.values()) {
+            String frame = child.method.function.getName() + "/" + child.method.function.getArity();
+            collapse(child, prefix.isEmpty() ? frame : prefix + ";" + frame, lines);
+        }
+    }
+
+    /**
+     * Called by the interpreter when a method starts running, including the
+     * callee of a tail call (after {@link #exit()} for the caller).
+     */
+    void enter(Scope.Function function) {
+        long now = mode == Mode.EXACT ? System.nanoTime() : 0;
+        Path parent = root;
+        if (top != null) {
+            charge(top, now);
+            parent = top.path;
+        }
+        Path path = parent.children.get(function);
+        if (path == null) {
+            path = new Path(methods.computeIfAbsent(function, Method::new));
+            parent.children.put(function, path);
+        }
+        int depth = this.depth;
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        Frame frame = stack[depth];
+        if (frame == null) {
+            frame = new Frame();
+            stack[depth] = frame;
+        }
+        frame.path = path;
+        frame.statement = null;
+        frame.since = now;
+        frame.start = now;
+        path.method.calls++;
+        path.method.active++;
+        top = frame;
+        this.depth = depth + 1;
+        if (mode == Mode.SAMPLING && sampler == null) {
+            sampling = true;
+            sampler = new Thread(this::sample, "profiler");
+            sampler.setDaemon(true);
+            sampler.start();
+        }
+    }
+
+    /**
+     * Called by the interpreter when a method returns or throws.
+     */
+    void exit() {
+        long now = mode == Mode.EXACT ? System.nanoTime() : 0;
+        Frame frame = top;
+        charge(frame, now);
+        Method method = frame.path.method;
+        if (--method.active == 0) {
+            //recursive calls are included in the outermost call's time
+            method.total += now - frame.start;
+        }
+        int depth = this.depth - 1;
+        this.depth = depth;
+        top = depth > 0 ? stack[depth - 1] : null;
+        if (top != null) {
+            top.since = now;
+        }
+    }
+
+    /**
+     * Called by the interpreter before running a statement, returning the
+     * running statement to pass to {@link #end(Ast.Stmt, Ast.Stmt)}.
+     */
+    Ast.Stmt begin(Ast.Stmt statement) {
+        Frame frame = top;
+        Ast.Stmt previous = frame.statement;
+        if (mode == Mode.EXACT) {
+            long now = System.nanoTime();
+            charge(frame, now);
+            Statement stats = statement(statement, frame);
+            stats.count++;
+            if (stats.active++ == 0) {
+                stats.start = now;
+            }
+        }
+        frame.statement = statement;
+        return previous;
+    }
+
+    /**
+     * Called by the interpreter after running a statement, including when it
+     * returns or throws.
+     */
+    void end(Ast.Stmt statement, Ast.Stmt previous) {
+        Frame frame = top;
+        if (mode == Mode.EXACT) {
+            long now = System.nanoTime();
+            charge(frame, now);
+            Statement stats = statements.get(statement);
+            if (--stats.active == 0) {
+                stats.time += now - stats.start;
+            }
+        }
+        frame.statement = previous;
+    }
+
+    /**
+     * Charges the time since the frame's last transition to its stack and
+     * running statement.
+     */
+    private void charge(Frame frame, long now) {
+        if (mode == Mode.EXACT) {
+            long elapsed = now - frame.since;
+            frame.path.weight(frame.statement)[0] += elapsed;
+            frame.path.method.self += elapsed;
+            frame.since = now;
+        }
+    }
+
+    private void sample() {
+        while (sampling) {
+            LockSupport.parkNanos(interval);
+            int depth = this.depth;
+            Frame[] stack = this.stack;
+            if (depth == 0 || depth > stack.length || stack[depth - 1] == null) {
+                continue;
+            }
+            Frame frame = stack[depth - 1];
+            Path path = frame.path;
+            Ast.Stmt statement = frame.statement;
+            path.weight(statement)[0]++;
+            path.method.samples++;
+            if (statement != null) {
+                statement(statement, frame).samples++;
+            }
+            samples++;
+        }
+    }
+
+    private Statement statement(Ast.Stmt statement, Frame frame) {
+        Statement stats = statements.get(statement);
+        if (stats == null) {
+            stats = new Statement(statement, frame.path.method.function);
+            statements.put(statement, stats);
+        }
+        return stats;
+    }
+
+    private static String label(Ast.Stmt statement) {
+        String kind = statement.getClass().getSimpleName();
+        return statement.getIndex() >= 0 ? kind + "@" + statement.getIndex() : kind;
+    }
+
+    private static <T> List<T> sorted(Collection<T> values, Comparator<T> comparator) {
+        List<T> list = new ArrayList<>(values);
+        list.sort(comparator);
+        return list;
+    }
+
+    /**
+     * The profile of a method. Self time is the time spent running its own
+     * statements, and total time also includes its callees.
+     */
+    public static final class Method {
+
+        private final Scope.Function function;
+        private long calls = 0;
+        private long self = 0;
+        private long total = 0;
+        private long samples = 0;
+        private int active = 0;
+
+        private Method(Scope.Function function) {
+            this.function = function;
+        }
+
+        public Scope.Function getFunction() {
+            return function;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getSelfTime() {
+            return self;
+        }
+
+        public long getTotalTime() {
+            return total;
+        }
+
+        public long getSamples() {
+            return samples;
+        }
+
+        @Override
+        public String toString() {
+            return "Method{" +
+                    "function=" + function.getName() + "/" + function.getArity() +
+                    ", calls=" + calls +
+                    ", self=" + self +
+                    ", total=" + total +
+                    ", samples=" + samples +
+                    '}';
+        }
+
+    }
+
+    /**
+     * The profile of a statement. Its time includes any statements and calls
+     * it runs.
+     */
+    public static final class Statement {
+
+        private final Ast.Stmt statement;
+        private final Scope.Function function;
+        private long count = 0;
+        private long time = 0;
+        private long samples = 0;
+        private long start = 0;
+        private int active = 0;
+
+        private Statement(Ast.Stmt statement, Scope.Function function) {
+            this.statement = statement;
+            this.function = function;
+        }
+
+        public Ast.Stmt getStatement() {
+            return statement;
+        }
+
+        public Scope.Function getFunction() {
+            return function;
+        }
+
+        public int getIndex() {
+            return statement.getIndex();
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public long getSamples() {
+            return samples;
+        }
+
+        @Override
+        public String toString() {
+            return "Statement{" +
+                    "statement=" + label(statement) +
+                    ", function=" + function.getName() + "/" + function.getArity() +
+                    ", count=" + count +
+                    ", time=" + time +
+                    ", samples=" + samples +
+                    '}';
+        }
+
+    }
+
+    /**
+     * A stack of called methods, as a node in the tree of all stacks, with
+     * the time (or samples) charged to each statement run at the top of it.
+     */
+    private static final class Path {
+
+        private final Method method;
+        private final Map<Scope.Function, Path> children = new HashMap<>();
+        private final Map<Ast.Stmt, long[]> weights = new IdentityHashMap<>();
+
+        private Path(Method method) {
+            this.method = method;
+        }
+
+        private long[] weight(Ast.Stmt statement) {
+            long[] weight = weights.get(statement);
+            if (weight == null) {
+                weight = new long[1];
+                weights.put(statement, weight);
+            }
+            return weight;
+        }
+
+    }
+
+    /**
+     * An active call in the shadow stack. Frames are reused by depth, so
+     * calls don't allocate once the stack has been as deep before.
+     */
+    private static final class Frame {
+
+        private Path path;
+        private Ast.Stmt statement;
+        private long since;
+        private long start;
+
+    }
+
+}
@@ -0,0 +1,648 @@
+package plc.project;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+/**
+ * Compiles a project of several sources (units), where each unit may call the
+ * methods and access the fields of other units.
+ *
+ * Units are lexed, parsed, and optimized in parallel. A unit depends on
+ * another if it has an {@link Ast.Expr.Function} or {@link Ast.Expr.Access}
+ * (without a receiver) naming one of the other unit's methods or fields that
+ * it doesn't define itself. A unit is analyzed once all of its dependencies
+ * have been, with their functions and variables imported into the scope the
+ * {@link Analyzer} uses for the unit's globals.
+ *
+ * Analysis is scheduled on a work-stealing {@link ForkJoinPool}, with each
+ * unit starting as soon as its own dependencies finish rather than in fixed
+ * rounds, so the time taken is proportional to the longest chain of
+ * dependencies rather than the number of units. Units which depend on each
+ * other (a strongly connected component of the dependency graph) are analyzed
+ * together: all of their methods are declared first, then each unit is
+ * analyzed in name order, so they may call each other's methods but a field
+ * can only refer to fields of units earlier in the order.
+ *
+ * Each unit's fields are assigned global slots after those of the units
+ * before it, so imported fields keep their own slot without colliding with
+ * the importing unit's fields, and the units compiled together can share one
+ * array of globals.
+ *
+ * Errors are reported per unit by {@link Unit#getError()}, and units which
+ * depend on a unit with an error aren't analyzed. Names defined by more than
+ * one unit can't be resolved and throw a {@link RuntimeException}.
+ *
+ * Dependencies are found without resolving local variables, so a local
+ * variable with the name of another unit's field adds an unnecessary (but
+ * harmless) dependency.
+ */
+public final class Project {
+
+    public static final String EXTENSION = ".plc";
+
+    private final ForkJoinPool pool;
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+
+    private final java.util.function.Function<String, Ast.Source> frontend;
+
+    public Project(ForkJoinPool pool) {
+        this(pool, Project::parseSource);
+    }
+
+    /**
+     * Creates a project whose sources are turned into ASTs by the given
+     * front end instead of the {@link Lexer} and {@link Parser}.
+     */
+    Project(ForkJoinPool pool, java.util.function.Function<String, Ast.Source> frontend) {
+        this.pool = pool;
+        this.frontend = frontend;
+    }
+
+    public Project() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compiles every file in the directory (and its subdirectories) ending
+     * with {@link #EXTENSION}, where each unit is named by its path relative
+     * to the directory.
+     */
+    public List<Unit> compile(Path directory) throws IOException {
+        Map<String, Path> paths = sources(directory);
+        List<ForkJoinTask<Unit>> tasks = new ArrayList<>();
+        for (Map.Entry<String, Path> entry : paths.entrySet()) {
+            tasks.add(pool.submit(() -> parse(entry.getKey(), read(entry.getValue()))));
+        }
+        return analyze(join(tasks));
+    }
+
+    /**
+     * Compiles only the files in the directory which changed since the build
+     * recorded in the store, along with the files that import a signature
+     * which was added, removed, or changed arity as a result, and updates the
+     * store. Files these depend on are also loaded so their definitions can be
+     * imported, but aren't returned.
+     *
+     * Returns the units which were rebuilt, which is empty if nothing changed
+     * (in which case the build only checked each file's size and modification
+     * time, and hashed those where they differ).
+     *
+     * ASTs of files loaded by an earlier build with this project are reused if
+     * the file's hash is the same, so a long-running process (such as the
+     * {@link Daemon}) only parses each version of a file once.
+     */
+    public List<Unit> build(Path directory, FingerprintStore store) throws IOException {
+        Map<String, Path> paths = sources(directory);
+        Set<String> changedSignatures = new HashSet<>();
+        for (String name : new ArrayList<>(store.getEntries().keySet())) {
+            if (!paths.containsKey(name)) {
+                changedSignatures.addAll(store.get(name).getExports());
+                store.remove(name);
+                cache.remove(name);
+            }
+        }
+
+        List<ForkJoinTask<Source>> scans = new ArrayList<>();
+        for (Map.Entry<String, Path> entry : paths.entrySet()) {
+            scans.add(pool.submit(() -> scan(entry.getKey(), entry.getValue(), store.get(entry.getKey()))));
+        }
+        Map<String, Source> sources = new TreeMap<>();
+        Set<String> dirty = new TreeSet<>();
+        for (ForkJoinTask<Source> scan : scans) {
+            Source source = scan.join();
+            sources.put(source.name, source);
+            FingerprintStore.Entry entry = store.get(source.name);
+            if (source.bytes == null) {
+                continue;
+            }
+            if (entry != null && entry.hasHash(source.hash)) {
+                store.put(source.name, new FingerprintStore.Entry(source.size, source.modified, source.hash, entry.getExports(), entry.getImports()));
+            } else {
+                dirty.add(source.name);
+            }
+        }
+
+        Map<String, Unit> units = new TreeMap<>();
+        for (Unit unit : parse(dirty, sources)) {
+            units.put(unit.name, unit);
+            FingerprintStore.Entry entry = store.get(unit.name);
+            Set<String> previous = entry != null ? entry.getExports() : Set.of();
+            for (String signature : previous) {
+                if (!unit.exports.contains(signature)) {
+                    changedSignatures.add(signature);
+                }
+            }
+            for (String signature : unit.exports) {
+                if (!previous.contains(signature)) {
+                    changedSignatures.add(signature);
+                }
+            }
+        }
+        for (Map.Entry<String, FingerprintStore.Entry> entry : store.getEntries().entrySet()) {
+            if (!dirty.contains(entry.getKey()) && !Collections.disjoint(entry.getValue().getImports(), changedSignatures)) {
+                dirty.add(entry.getKey());
+            }
+        }
+        if (dirty.isEmpty()) {
+            store.save();
+            return List.of();
+        }
+
+        //find the owner of every signature, failing like link() does for a full build if two
+        //files define it, since the units loaded below may not include both definitions
+        Map<String, Set<String>> exports = new TreeMap<>();
+        for (Map.Entry<String, FingerprintStore.Entry> entry : store.getEntries().entrySet()) {
+            exports.put(entry.getKey(), entry.getValue().getExports());
+        }
+        for (Unit unit : units.values()) {
+            exports.put(unit.name, unit.exports);
+        }
+        Map<String, String> owners = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : exports.entrySet()) {
+            for (String signature : entry.getValue()) {
+                String existing = owners.putIfAbsent(signature, entry.getKey());
+                if (existing != null) {
+                    throw new RuntimeException("The " + describe(signature) + " is defined in both " + existing + " and " + entry.getKey() + ".");
+                }
+            }
+        }
+
+        //load everything the dirty units depend on, transitively
+        Set<String> loaded = new TreeSet<>(dirty);
+        Deque<String> pending = new ArrayDeque<>(dirty);
+        while (!pending.isEmpty()) {
+            String name = pending.pop();
+            Unit unit = units.get(name);
+            Set<String> imports = unit != null ? unit.imports : store.get(name).getImports();
+            for (String signature : imports) {
+                String owner = owners.get(signature);
+                if (owner != null && loaded.add(owner)) {
+                    pending.push(owner);
+                }
+            }
+        }
+        Set<String> unparsed = new TreeSet<>(loaded);
+        unparsed.removeAll(units.keySet());
+        for (Unit unit : parse(unparsed, sources)) {
+            units.put(unit.name, unit);
+        }
+
+        analyze(new ArrayList<>(units.values()));
+        List<Unit> rebuilt = new ArrayList<>();
+        for (Unit unit : units.values()) {
+            //units with errors aren't recorded, so they're built again next time
+            Source source = sources.get(unit.name);
+            if (unit.error != null) {
+                store.remove(unit.name);
+            } else if (source.bytes != null) {
+                store.put(unit.name, new FingerprintStore.Entry(source.size, source.modified, source.hash, unit.exports, unit.imports));
+            }
+            if (dirty.contains(unit.name)) {
+                rebuilt.add(unit);
+            }
+        }
+        store.save();
+        return rebuilt;
+    }
+
+    /**
+     * Compiles units which have already been parsed, in name order.
+     */
+    public List<Unit> compile(Map<String, Ast.Source> sources) {
+        List<Unit> units = new ArrayList<>();
+        sources.keySet().stream().sorted().forEach(name -> units.add(new Unit(name, sources.get(name))));
+        return analyze(units);
+    }
+
+    private static Map<String, Path> sources(Path directory) throws IOException {
+        Map<String, Path> paths = new TreeMap<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.filter(path -> Files.isRegularFile(path) && path.toString().endsWith(EXTENSION))
+                    .forEach(path -> paths.put(directory.relativize(path).toString(), path));
+        }
+        return paths;
+    }
+
+    private static Source read(Path path) {
+        Source source = new Source(path.toString(), path);
+        try {
+            source.bytes = Files.readAllBytes(path);
+        } catch (IOException e) {
+            source.error = new UncheckedIOException(e);
+        }
+        return source;
+    }
+
+    /**
+     * Checks a file against its entry in the store, only reading and hashing
+     * it if the size or modification time differ. The file's bytes are null
+     * if it is unchanged.
+     */
+    private static Source scan(String name, Path path, FingerprintStore.Entry entry) {
+        Source source = new Source(name, path);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            source.size = attributes.size();
+            source.modified = attributes.lastModifiedTime().toMillis();
+            if (entry != null && entry.getSize() == source.size && entry.getModified() == source.modified) {
+                return source;
+            }
+            source.bytes = Files.readAllBytes(path);
+            source.hash = FingerprintStore.hash(source.bytes);
+        } catch (IOException e) {
+            source.error = new UncheckedIOException(e);
+            source.bytes = new byte[0];
+            source.hash = new byte[0];
+        }
+        return source;
+    }
+
+    /**
+     * Parses the named sources in parallel, reading those which weren't read
+     * when they were scanned.
+     */
+    private List<Unit> parse(Set<String> names, Map<String, Source> sources) {
+        List<ForkJoinTask<Unit>> tasks = new ArrayList<>();
+        for (String name : names) {
+            Source source = sources.get(name);
+            tasks.add(pool.submit(() -> {
+                if (source.bytes == null) {
+                    Source read = read(source.path);
+                    source.bytes = read.bytes;
+                    source.error = read.error;
+                    source.hash = FingerprintStore.hash(source.bytes != null ? source.bytes : new byte[0]);
+                }
+                Cached cached = cache.get(name);
+                if (cached != null && Arrays.equals(cached.hash, source.hash)) {
+                    return new Unit(name, cached.ast);
+                }
+                Unit unit = parse(name, source);
+                if (unit.ast != null) {
+                    cache.put(name, new Cached(source.hash, unit.ast));
+                }
+                return unit;
+            }));
+        }
+        return join(tasks);
+    }
+
+    private Unit parse(String name, Source source) {
+        if (source.error != null) {
+            Unit unit = new Unit(name, null);
+            unit.error = source.error;
+            return unit;
+        }
+        try {
+            return new Unit(name, frontend.apply(new String(source.bytes, StandardCharsets.UTF_8)));
+        } catch (RuntimeException e) {
+            Unit unit = new Unit(name, null);
+            unit.error = e;
+            return unit;
+        }
+    }
+
+    private static Ast.Source parseSource(String input) {
+        return new Optimizer().optimize(new Inliner().inline(new Parser(new Lexer(input).lex(), Parser.DEFAULT_MAX_DEPTH).parseSource()));
+    }
+
+    private static List<Unit> join(List<ForkJoinTask<Unit>> tasks) {
+        List<Unit> units = new ArrayList<>();
+        for (ForkJoinTask<Unit> task : tasks) {
+            units.add(task.join());
+        }
+        return units;
+    }
+
+    private List<Unit> analyze(List<Unit> units) {
+        link(units);
+        int globals = 0;
+        for (Unit unit : units) {
+            unit.firstGlobal = globals;
+            if (unit.ast != null) {
+                globals += unit.ast.getFields().size();
+            }
+        }
+        Scope builtins = Analyzer.builtins();
+        Map<Unit, CompletableFuture<Void>> futures = new HashMap<>();
+        //components are ordered with dependencies first, so their futures already exist
+        for (List<Unit> component : components(units)) {
+            List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+            for (Unit unit : component) {
+                for (Unit dependency : unit.dependencies) {
+                    if (!component.contains(dependency)) {
+                        dependencies.add(futures.get(dependency));
+                    }
+                }
+            }
+            CompletableFuture<Void> future = CompletableFuture
+                    .allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                    .thenRunAsync(() -> analyze(component, builtins), pool);
+            for (Unit unit : component) {
+                futures.put(unit, future);
+            }
+        }
+        for (CompletableFuture<Void> future : futures.values()) {
+            future.join();
+        }
+        return units;
+    }
+
+    private static void analyze(List<Unit> component, Scope builtins) {
+        for (Unit unit : component) {
+            for (Unit dependency : unit.dependencies) {
+                if (dependency.error != null && !component.contains(dependency)) {
+                    unit.error = new RuntimeException("The unit " + unit.name + " depends on " + dependency.name + ", which has errors.");
+                }
+            }
+        }
+        for (Unit unit : component) {
+            if (unit.error != null) {
+                continue;
+            }
+            try {
+                unit.importScope = new Scope(builtins);
+                unit.analyzer = new Analyzer(unit.importScope, unit.firstGlobal);
+                unit.analyzer.declare(unit.ast);
+            } catch (RuntimeException e) {
+                unit.error = e;
+            }
+        }
+        for (Unit unit : component) {
+            if (unit.error != null) {
+                continue;
+            }
+            try {
+                for (Unit dependency : unit.dependencies) {
+                    if (dependency.error != null) {
+                        throw new RuntimeException("The unit " + unit.name + " depends on " + dependency.name + ", which has errors.");
+                    }
+                    for (Scope.Function function : dependency.analyzer.getScope().getFunctions()) {
+                        unit.importScope.define(function);
+                    }
+                    //fields of units later in this component haven't been defined yet
+                    if (dependency.analyzed) {
+                        for (Scope.Variable variable : dependency.analyzer.getScope().getVariables()) {
+                            unit.importScope.define(variable);
+                        }
+                    }
+                }
+                unit.analyzer.visit(unit.ast);
+                unit.analyzed = true;
+            } catch (RuntimeException e) {
+                unit.error = e;
+            }
+        }
+    }
+
+    /**
+     * Adds each unit's dependencies on the units defining the methods and
+     * fields it uses.
+     */
+    private static void link(List<Unit> units) {
+        Map<String, Unit> owners = new HashMap<>();
+        for (Unit unit : units) {
+            for (String signature : unit.exports) {
+                Unit existing = owners.putIfAbsent(signature, unit);
+                if (existing != null) {
+                    throw new RuntimeException("The " + describe(signature) + " is defined in both " + existing.name + " and " + unit.name + ".");
+                }
+            }
+        }
+        for (Unit unit : units) {
+            for (String signature : unit.imports) {
+                Unit owner = owners.get(signature);
+                if (owner != null && !unit.dependencies.contains(owner)) {
+                    unit.dependencies.add(owner);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the signatures of a source's fields (their name) and methods
+     * ({@code name/arity}). Names can't contain {@code /}, so the two never
+     * conflict.
+     */
+    static Set<String> exports(Ast.Source ast) {
+        Set<String> exports = new TreeSet<>();
+        for (Ast.Field field : ast.getFields()) {
+            exports.add(field.getName());
+        }
+        for (Ast.Method method : ast.getMethods()) {
+            exports.add(method.getName() + "/" + method.getParameters().size());
+        }
+        return exports;
+    }
+
+    /**
+     * Returns the signatures a source uses without defining them itself,
+     * which are either built in or defined by another source.
+     */
+    static Set<String> imports(Ast.Source ast, Set<String> exports) {
+        Set<String> imports = new TreeSet<>();
+        Traversal.walk(ast, new Traversal.Adapter() {
+
+            @Override
+            public Boolean visit(Ast.Expr.Access ast) {
+                if (!ast.getReceiver().isPresent()) {
+                    imports.add(ast.getName());
+                }
+                return true;
+            }
+
+            @Override
+            public Boolean visit(Ast.Expr.Function ast) {
+                if (!ast.getReceiver().isPresent()) {
+                    imports.add(ast.getName() + "/" + ast.getArguments().size());
+                }
+                return true;
+            }
+
+        }, null);
+        imports.removeAll(exports);
+        return imports;
+    }
+
+    private static String describe(String signature) {
+        return signature.contains("/") ? "method " + signature : "field " + signature;
+    }
+
+    /**
+     * Returns the strongly connected components of the dependency graph with
+     * each component after all of the components it depends on, using
+     * Tarjan's algorithm with an explicit stack.
+     */
+    private static List<List<Unit>> components(List<Unit> units) {
+        Map<Unit, Integer> ids = new HashMap<>();
+        for (int i = 0; i < units.size(); i++) {
+            ids.put(units.get(i), i);
+        }
+        int n = units.size();
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] edge = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int[] calls = new int[n];
+        int stackSize = 0;
+        int counter = 0;
+        Arrays.fill(index, -1);
+        List<List<Unit>> components = new ArrayList<>();
+        for (int root = 0; root < n; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+            int callSize = 0;
+            calls[callSize++] = root;
+            index[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (callSize > 0) {
+                int v = calls[callSize - 1];
+                List<Unit> dependencies = units.get(v).dependencies;
+                if (edge[v] < dependencies.size()) {
+                    int w = ids.get(dependencies.get(edge[v]++));
+                    if (index[w] == -1) {
+                        calls[callSize++] = w;
+                        index[w] = low[w] = counter++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                callSize--;
+                if (low[v] == index[v]) {
+                    List<Unit> component = new ArrayList<>();
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        component.add(units.get(w));
+                    } while (w != v);
+                    component.sort((a, b) -> a.name.compareTo(b.name));
+                    components.add(component);
+                }
+                if (callSize > 0) {
+                    int parent = calls[callSize - 1];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+            }
+        }
+        return components;
+    }
+
+    /**
+     * A source file being built, with its bytes if they have been read.
+     */
+    private static final class Source {
+
+        private final String name;
+        private final Path path;
+        private long size;
+        private long modified;
+        private byte[] bytes = null;
+        private byte[] hash = null;
+        private RuntimeException error = null;
+
+        private Source(String name, Path path) {
+            this.name = name;
+            this.path = path;
+        }
+
+    }
+
+    private static final class Cached {
+
+        private final byte[] hash;
+        private final Ast.Source ast;
+
+        private Cached(byte[] hash, Ast.Source ast) {
+            this.hash = hash;
+            this.ast = ast;
+        }
+
+    }
+
+    /**
+     * A compiled source. A unit with an error has no scope, and also has no
+     * AST if the error was while reading or parsing it.
+     */
+    public static final class Unit {
+
+        private final String name;
+        private final Ast.Source ast;
+        private final List<Unit> dependencies = new ArrayList<>();
+        private Scope importScope = null;
+        private Analyzer analyzer = null;
+        private int firstGlobal = 0;
+        private boolean analyzed = false;
+        private RuntimeException error = null;
+
+        private final Set<String> exports;
+        private final Set<String> imports;
+
+        private Unit(String name, Ast.Source ast) {
+            this.name = name;
+            this.ast = ast;
+            this.exports = ast != null ? exports(ast) : Set.of();
+            this.imports = ast != null ? imports(ast, exports) : Set.of();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Ast.Source getAst() {
+            return ast;
+        }
+
+        public List<Unit> getDependencies() {
+            return dependencies;
+        }
+
+        /**
+         * Returns the scope with the unit's fields and methods, whose parent
+         * has the functions and variables imported from its dependencies.
+         */
+        public Scope getScope() {
+            return analyzed ? analyzer.getScope() : null;
+        }
+
+        public RuntimeException getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "Project.Unit{" +
+                    "name='" + name + '\'' +
+                    ", error=" + error +
+                    '}';
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+package plc.project;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The integers from a start (inclusive) to an end (exclusive), returned by
+ * the built-in {@code range(start, end)}.
+ *
+ * A range is iterable like a list, but {@code FOR} recognizes it and counts
+ * with a primitive {@code long} when both bounds fit in one (see
+ * {@link #isLong()}), so the loop doesn't box an integer per iteration
+ * unless the loop variable is read. Larger bounds use the iterator, which
+ * steps with {@link Numeric}.
+ */
+public final class Range implements Iterable<Object> {
+
+    private final Object start;
+    private final Object end;
+
+    private Range(Object start, Object end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public static Range of(Object start, Object end) {
+        if (!Numeric.isInteger(start) || !Numeric.isInteger(end)) {
+            throw new RuntimeException("Expected Integer bounds, received " + Shape.of(start).getName() + " and " + Shape.of(end).getName() + ".");
+        }
+        return new Range(start, end);
+    }
+
+    public Object getStart() {
+        return start;
+    }
+
+    public Object getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns true if both bounds are {@link Long}s.
+     */
+    public boolean isLong() {
+        return start instanceof Long && end instanceof Long;
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return new Iterator<>() {
+
+            private Object next = start;
+
+            @Override
+            public boolean hasNext() {
+                return Numeric.compare(next, end) < 0;
+            }
+
+            @Override
+            public Object next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Object value = next;
+                next = Numeric.add(next, Numeric.valueOf(1));
+                return value;
+            }
+
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "Range{" +
+                "start=" + start +
+                ", end=" + end +
+                '}';
+    }
+
+}
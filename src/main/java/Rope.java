@@ -0,0 +1,140 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A runtime string built by concatenation, which keeps its two parts instead
+ * of copying them so that building a string with {@code +} in a loop costs
+ * O(1) per concatenation rather than O(n).
+ *
+ * A rope is flattened to a {@link String} the first time its characters are
+ * needed (for comparison, output, or anything else through
+ * {@link #toString()}), which takes O(n) once; the flat string is kept and
+ * the parts are dropped. Flattening doesn't recurse, so ropes built from
+ * millions of concatenations don't overflow the stack.
+ *
+ * String values at runtime are either a {@link String} or a rope, so code
+ * handling strings checks for {@link CharSequence}. Short results are still
+ * copied into a {@code String}, since a rope only pays off once copying
+ * costs more than the extra node.
+ */
+public final class Rope implements CharSequence {
+
+    /**
+     * The longest concatenation which is copied into a {@link String}.
+     */
+    public static final int FLAT_LENGTH = 128;
+
+    private CharSequence left;
+    private CharSequence right;
+    private final int length;
+    private String flat = null;
+
+    private Rope(CharSequence left, CharSequence right) {
+        this.left = left;
+        this.right = right;
+        this.length = left.length() + right.length();
+    }
+
+    /**
+     * Returns the concatenation of two strings, which is a rope unless it's
+     * at most {@link #FLAT_LENGTH} characters.
+     */
+    public static CharSequence concat(CharSequence left, CharSequence right) {
+        if (left.length() + right.length() <= FLAT_LENGTH) {
+            return left.toString().concat(right.toString());
+        }
+        else if (left.length() == 0) {
+            return right;
+        }
+        else if (right.length() == 0) {
+            return left;
+        }
+        return new Rope(left, right);
+    }
+
+    /**
+     * Returns true if two runtime values are equal, comparing strings by
+     * their characters whether or not they are ropes. Lists are compared
+     * element by element with this method too, since {@link List#equals}
+     * would compare a {@link String} element to a rope with
+     * {@link String#equals}, which is always false.
+     */
+    public static boolean equal(Object left, Object right) {
+        if (left instanceof Rope || right instanceof Rope) {
+            return left instanceof CharSequence && right instanceof CharSequence &&
+                    ((CharSequence) left).length() == ((CharSequence) right).length() &&
+                    left.toString().equals(right.toString());
+        }
+        else if (left instanceof List && right instanceof List) {
+            List<?> leftList = (List<?>) left;
+            List<?> rightList = (List<?>) right;
+            if (leftList.size() != rightList.size()) {
+                return false;
+            }
+            Iterator<?> leftElements = leftList.iterator();
+            Iterator<?> rightElements = rightList.iterator();
+            while (leftElements.hasNext()) {
+                if (!equal(leftElements.next(), rightElements.next())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return Objects.equals(left, right);
+    }
+
+    /**
+     * Returns true if the rope hasn't been flattened yet.
+     */
+    public boolean isConcatenation() {
+        return flat == null;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (flat == null) {
+            //fill from the end, popping right parts first, so the stack stays
+            //small for ropes built by appending (which are deepest on the left)
+            char[] chars = new char[length];
+            int end = length;
+            ArrayDeque<CharSequence> stack = new ArrayDeque<>();
+            stack.push(this);
+            while (!stack.isEmpty()) {
+                CharSequence part = stack.pop();
+                if (part instanceof Rope && ((Rope) part).flat == null) {
+                    stack.push(((Rope) part).left);
+                    stack.push(((Rope) part).right);
+                }
+                else {
+                    String string = part.toString();
+                    end -= string.length();
+                    string.getChars(0, string.length(), chars, end);
+                }
+            }
+            flat = new String(chars);
+            left = null;
+            right = null;
+        }
+        return flat;
+    }
+
+}
@@ -0,0 +1,126 @@
+package plc.project;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs independent programs concurrently, each with its own
+ * {@link Interpreter} and {@link Budget}, so that a program which loops
+ * forever is aborted instead of holding a thread.
+ *
+ * Programs run on virtual threads when the runtime has them (Java 21+,
+ * found reflectively since the build targets 17), where a budget's yield at
+ * the end of each slice lets other programs run on the same carrier.
+ * Otherwise they run on a pool of platform threads, one per core, where a
+ * program keeps its thread until it finishes or exceeds its limit.
+ *
+ * A source is analyzed on the submitting thread, which annotates its AST,
+ * and is then only read by its program. Submitting a source again while it
+ * runs would annotate it under the running program, so it is rejected; the
+ * source still must not be analyzed elsewhere until its run has finished.
+ */
+public final class Scheduler implements AutoCloseable {
+
+    public static final long DEFAULT_SLICE = 10_000;
+    public static final long DEFAULT_LIMIT = 1_000_000_000;
+
+    private final long slice;
+    private final long limit;
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final Set<Ast.Source> running = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    /**
+     * Creates a scheduler which charges each program's instructions in
+     * slices of {@code slice} and aborts it after {@code limit} in total.
+     */
+    public Scheduler(long slice, long limit) {
+        this.slice = slice;
+        this.limit = limit;
+        ExecutorService executor = virtualExecutor();
+        this.virtual = executor != null;
+        this.executor = executor != null ? executor : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "plc-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Scheduler() {
+        this(DEFAULT_SLICE, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Returns true if programs run on virtual threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Analyzes a source and runs it (see {@link Interpreter#run(Ast.Source)}),
+     * printing to the given output. Analysis errors are thrown from this
+     * method, and the future fails with the program's {@link RuntimeException}
+     * if it fails at runtime or exceeds its budget.
+     *
+     * @throws IllegalStateException if the source is already running
+     */
+    public Future<Object> submit(Ast.Source source, Appendable out) {
+        if (!running.add(source)) {
+            throw new IllegalStateException("The source is already running.");
+        }
+        try {
+            Analyzer analyzer = new Analyzer();
+            analyzer.visit(source);
+            Interpreter interpreter = new Interpreter(analyzer.getScope(), out);
+            interpreter.setBudget(new Budget(slice, limit));
+            return executor.submit(() -> {
+                try {
+                    return interpreter.run(source);
+                } finally {
+                    running.remove(source);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.remove(source);
+            throw e;
+        }
+    }
+
+    /**
+     * Stops accepting programs and waits for the submitted ones to finish,
+     * which the budget limit bounds. If the calling thread is interrupted, it
+     * stops waiting, programs which haven't started are cancelled, and the
+     * interrupt flag is restored.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                //keep waiting; every program either finishes or exceeds its limit
+            }
+        } catch (InterruptedException e) {
+            for (Runnable task : executor.shutdownNow()) {
+                if (task instanceof Future) {
+                    ((Future<?>) task).cancel(false);
+                }
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService virtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+}
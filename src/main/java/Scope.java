@@ -0,0 +1,237 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A lexical scope of variables and functions, used by the {@link Analyzer} to
+ * resolve names. Lookups search this scope and then each parent in turn.
+ *
+ * Variables and functions are separate namespaces, and functions are
+ * identified by both their name and arity (so {@code f/1} and {@code f/2} are
+ * different functions).
+ */
+public final class Scope {
+
+    private final Scope parent;
+    private final Map<String, Variable> variables = new HashMap<>();
+    private final Map<String, List<Function>> functions = new HashMap<>();
+
+    public Scope(Scope parent) {
+        this.parent = parent;
+    }
+
+    public Scope getParent() {
+        return parent;
+    }
+
+    public Variable defineVariable(String name, Variable.Kind kind, int slot) {
+        Variable variable = new Variable(name, kind, slot);
+        define(variable);
+        return variable;
+    }
+
+    /**
+     * Defines an existing variable, such as one imported from another scope.
+     */
+    public void define(Variable variable) {
+        if (variables.containsKey(variable.getName())) {
+            throw new RuntimeException("The variable " + variable.getName() + " is already defined in this scope.");
+        }
+        variables.put(variable.getName(), variable);
+    }
+
+    public Variable lookupVariable(String name) {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            Variable variable = scope.variables.get(name);
+            if (variable != null) {
+                return variable;
+            }
+        }
+        throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+    }
+
+    public Function defineFunction(String name, int arity, Ast.Method method) {
+        Function function = new Function(name, arity, method);
+        define(function);
+        return function;
+    }
+
+    /**
+     * Defines an existing function, such as one imported from another scope.
+     */
+    public void define(Function function) {
+        List<Function> overloads = functions.computeIfAbsent(function.getName(), k -> new ArrayList<>());
+        for (Function overload : overloads) {
+            if (overload.getArity() == function.getArity()) {
+                throw new RuntimeException("The function " + function.getName() + "/" + function.getArity() + " is already defined in this scope.");
+            }
+        }
+        overloads.add(function);
+    }
+
+    /**
+     * Returns the variables defined in this scope, excluding its parents.
+     */
+    public Collection<Variable> getVariables() {
+        return Collections.unmodifiableCollection(variables.values());
+    }
+
+    /**
+     * Returns the functions defined in this scope, excluding its parents.
+     */
+    public List<Function> getFunctions() {
+        List<Function> all = new ArrayList<>();
+        for (List<Function> overloads : functions.values()) {
+            all.addAll(overloads);
+        }
+        return all;
+    }
+
+    /**
+     * Returns the function with the given name and arity. If there is no such
+     * function, the exception distinguishes between an undefined name and an
+     * arity mismatch with the functions that do exist.
+     */
+    public Function lookupFunction(String name, int arity) {
+        List<Integer> arities = new ArrayList<>();
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            for (Function function : scope.functions.getOrDefault(name, List.of())) {
+                if (function.getArity() == arity) {
+                    return function;
+                }
+                arities.add(function.getArity());
+            }
+        }
+        if (arities.isEmpty()) {
+            throw new RuntimeException("The function " + name + " is not defined in this scope.");
+        }
+        throw new RuntimeException("The function " + name + " expects " + arities + " argument(s), received " + arity + ".");
+    }
+
+    /**
+     * A resolved variable. Globals (fields) and locals (parameters and
+     * declarations) each have a slot, which is an index into the program's
+     * globals or the method's frame respectively.
+     */
+    public static final class Variable {
+
+        public enum Kind {
+            GLOBAL,
+            LOCAL
+        }
+
+        private final String name;
+        private final Kind kind;
+        private final int slot;
+        private boolean used = false;
+
+        private Variable(String name, Kind kind, int slot) {
+            this.name = name;
+            this.kind = kind;
+            this.slot = slot;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+        /**
+         * Returns true if the variable is read or assigned anywhere, set by
+         * the {@link Analyzer} (a {@code FOR} loop doesn't store its values
+         * in an unused loop variable).
+         */
+        public boolean isUsed() {
+            return used;
+        }
+
+        public void setUsed(boolean used) {
+            this.used = used;
+        }
+
+        @Override
+        public String toString() {
+            return "Scope.Variable{" +
+                    "name='" + name + '\'' +
+                    ", kind=" + kind +
+                    ", slot=" + slot +
+                    '}';
+        }
+
+    }
+
+    /**
+     * A resolved function. Functions defined by the program have their
+     * {@link Ast.Method} and the number of local slots its frame needs; the
+     * method is {@code null} for built-in functions.
+     */
+    public static final class Function {
+
+        private final String name;
+        private final int arity;
+        private final Ast.Method method;
+        private int frameSize;
+        private Type returnType = Type.ANY;
+
+        private Function(String name, int arity, Ast.Method method) {
+            this.name = name;
+            this.arity = arity;
+            this.method = method;
+            this.frameSize = arity;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getArity() {
+            return arity;
+        }
+
+        public Ast.Method getMethod() {
+            return method;
+        }
+
+        public int getFrameSize() {
+            return frameSize;
+        }
+
+        public void setFrameSize(int frameSize) {
+            this.frameSize = frameSize;
+        }
+
+        /**
+         * Returns the type of every value the function returns, set by the
+         * {@link TypeInference} ({@link Type#ANY} otherwise).
+         */
+        public Type getReturnType() {
+            return returnType;
+        }
+
+        public void setReturnType(Type returnType) {
+            this.returnType = returnType;
+        }
+
+        @Override
+        public String toString() {
+            return "Scope.Function{" +
+                    "name='" + name + '\'' +
+                    ", arity=" + arity +
+                    '}';
+        }
+
+    }
+
+}
@@ -0,0 +1,178 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The shape (hidden class) of a runtime value, which determines the members
+ * that can be accessed through it as a receiver. An {@link InlineCache} keys
+ * the result of looking up a member on the receiver's shape, so a cached
+ * access only needs to compare shapes.
+ *
+ * Objects (see {@link PlcObject}) start with {@link #EMPTY} and move to a new
+ * shape each time a field is added. Shapes form a tree of these transitions
+ * which is shared by all objects, so objects whose fields were added in the
+ * same order have the same shape and the same slot for each field.
+ *
+ * Every other kind of value has a single shape for its class, with built-in
+ * methods such as {@code length()} on strings.
+ */
+public final class Shape {
+
+    /**
+     * A built-in method, called with the receiver and its arguments.
+     */
+    public interface Method {
+
+        Object invoke(Object receiver, List<Object> arguments);
+
+    }
+
+    public static final Shape EMPTY = new Shape("Object", true, Collections.emptyMap(), Collections.emptyMap());
+
+    public static final Shape NIL = new Shape("Nil");
+    public static final Shape BOOLEAN = new Shape("Boolean");
+    public static final Shape INTEGER = new Shape("Integer");
+    public static final Shape DECIMAL = new Shape("Decimal");
+    public static final Shape CHARACTER = new Shape("Character");
+    public static final Shape STRING = new Shape("String");
+    public static final Shape LIST = new Shape("List");
+    public static final Shape RANGE = new Shape("Range");
+
+    static {
+        STRING.methods.put("length/0", (receiver, arguments) -> Numeric.valueOf(((CharSequence) receiver).length()));
+        LIST.methods.put("size/0", (receiver, arguments) -> Numeric.valueOf(list(receiver).size()));
+        LIST.methods.put("get/1", (receiver, arguments) -> list(receiver).get(index(arguments.get(0))));
+        LIST.methods.put("set/2", (receiver, arguments) -> list(receiver).set(index(arguments.get(0)), arguments.get(1)));
+        LIST.methods.put("add/1", (receiver, arguments) -> {
+            list(receiver).add(arguments.get(0));
+            return null;
+        });
+    }
+
+    private final String name;
+    private final boolean object;
+    private final Map<String, Integer> slots;
+    private final Map<String, Method> methods;
+    private final Map<String, Shape> transitions = new ConcurrentHashMap<>();
+
+    private Shape(String name) {
+        this(name, false, Collections.emptyMap(), new HashMap<>());
+    }
+
+    private Shape(String name, boolean object, Map<String, Integer> slots, Map<String, Method> methods) {
+        this.name = name;
+        this.object = object;
+        this.slots = slots;
+        this.methods = methods;
+    }
+
+    /**
+     * Returns the shape of a value. Objects have their own shape, and every
+     * other value has the shape for its class.
+     */
+    public static Shape of(Object value) {
+        if (value instanceof PlcObject) {
+            return ((PlcObject) value).getShape();
+        }
+        else if (value == null) {
+            return NIL;
+        }
+        else if (value instanceof CharSequence) {
+            return STRING;
+        }
+        else if (Numeric.isInteger(value)) {
+            return INTEGER;
+        }
+        else if (value instanceof BigDecimal) {
+            return DECIMAL;
+        }
+        else if (value instanceof Boolean) {
+            return BOOLEAN;
+        }
+        else if (value instanceof Character) {
+            return CHARACTER;
+        }
+        else if (value instanceof List) {
+            return LIST;
+        }
+        else if (value instanceof Range) {
+            return RANGE;
+        }
+        throw new AssertionError("Unexpected runtime value " + value.getClass() + ".");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns true if this is the shape of an object, which can have fields.
+     */
+    public boolean isObject() {
+        return object;
+    }
+
+    /**
+     * Returns the number of fields in an object with this shape.
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Returns the slot of the named field, or {@code -1} if there isn't one.
+     */
+    public int lookupField(String name) {
+        Integer slot = slots.get(name);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Returns the built-in method with the given name and arity, or
+     * {@code null} if there isn't one.
+     */
+    public Method lookupMethod(String name, int arity) {
+        return methods.get(name + "/" + arity);
+    }
+
+    /**
+     * Returns the shape of an object with this shape after the named field is
+     * added, which is in the next slot.
+     */
+    public Shape addField(String field) {
+        Shape shape = transitions.get(field);
+        if (shape == null) {
+            Map<String, Integer> slots = new HashMap<>(this.slots);
+            slots.put(field, slots.size());
+            shape = transitions.computeIfAbsent(field, k -> new Shape(name, true, Collections.unmodifiableMap(slots), Collections.emptyMap()));
+        }
+        return shape;
+    }
+
+    private static List<Object> list(Object receiver) {
+        @SuppressWarnings("unchecked")
+        List<Object> list = (List<Object>) receiver;
+        return list;
+    }
+
+    private static int index(Object value) {
+        if (!(value instanceof Long) || (Long) value < 0 || (Long) value > Integer.MAX_VALUE) {
+            throw new RuntimeException("Expected a non-negative integer index, received " + value + ".");
+        }
+        return (int) (long) (Long) value;
+    }
+
+    @Override
+    public String toString() {
+        return "Shape{" +
+                "name='" + name + '\'' +
+                ", slots=" + slots.keySet() +
+                '}';
+    }
+
+}
@@ -14,11 +14,22 @@ public final class Token {
     private final Type type;
     private final String literal;
     private final int index;
+    private final int byteIndex;
 
     public Token(Type type, String literal, int index) {
+        this(type, literal, index, -1);
+    }
+
+    /**
+     * Creates a token which also has the UTF-8 byte offset of its index,
+     * which is {@code -1} if it isn't known. The byte index is derived from
+     * the index, so it isn't compared by {@link #equals(Object)}.
+     */
+    public Token(Type type, String literal, int index, int byteIndex) {
         this.type = type;
         this.literal = literal;
         this.index = index;
+        this.byteIndex = byteIndex;
     }
 
     public Type getType() {
@@ -33,6 +44,10 @@ public final class Token {
         return index;
     }
 
+    public int getByteIndex() {
+        return byteIndex;
+    }
+
     @Override
     public boolean equals(Object obj) {
         return obj instanceof Token
@@ -41,6 +56,11 @@ public final class Token {
                 && index == ((Token) obj).index;
     }
 
+    @Override
+    public int hashCode() {
+        return 31 * (31 * type.hashCode() + literal.hashCode()) + index;
+    }
+
     @Override
     public String toString() {
         return type + "=" + literal + "@" + index;
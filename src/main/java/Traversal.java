@@ -0,0 +1,277 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Walks an AST using an explicit stack instead of recursion, so arbitrarily
+ * deep trees (such as long chains of {@link Ast.Expr.Binary}) are visited in
+ * constant Java stack.
+ *
+ * Nodes are visited depth-first with children in source order. The
+ * {@code enter} visitor is called before a node's children and returns whether
+ * they should be visited at all; the {@code exit} visitor is called after them.
+ * Either visitor may be {@code null}. Because exit visitors see nodes in
+ * post-order, they can compute results bottom-up by keeping their own stack of
+ * child results (see {@link Optimizer}).
+ */
+public final class Traversal {
+
+    private Ast[] nodes = new Ast[16];
+    private boolean[] exiting = new boolean[16];
+    private int size = 0;
+
+    private final ChildPusher pusher = new ChildPusher();
+
+    private Traversal() {}
+
+    public static void walk(Ast root, Ast.Visitor<Boolean> enter, Ast.Visitor<?> exit) {
+        new Traversal().run(root, enter, exit);
+    }
+
+    /**
+     * Returns the direct children of the given node in source order.
+     */
+    public static List<Ast> children(Ast ast) {
+        Traversal traversal = new Traversal();
+        ast.accept(traversal.pusher);
+        List<Ast> children = new ArrayList<>(traversal.size);
+        for (int i = traversal.size - 1; i >= 0; i--) {
+            children.add(traversal.nodes[i]);
+        }
+        return children;
+    }
+
+    private void run(Ast root, Ast.Visitor<Boolean> enter, Ast.Visitor<?> exit) {
+        push(root, false);
+        while (size > 0) {
+            size--;
+            Ast node = nodes[size];
+            nodes[size] = null;
+            if (exiting[size]) {
+                node.accept(exit);
+                continue;
+            }
+            if (exit != null) {
+                push(node, true);
+            }
+            if (enter == null || !Boolean.FALSE.equals(node.accept(enter))) {
+                node.accept(pusher);
+            }
+        }
+    }
+
+    private void push(Ast node, boolean exit) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            exiting = Arrays.copyOf(exiting, size * 2);
+        }
+        nodes[size] = node;
+        exiting[size] = exit;
+        size++;
+    }
+
+    /**
+     * An {@code enter} visitor that visits every node and does nothing, for
+     * subclasses that only need to handle a few node types (or override
+     * {@link #enter(Ast)} to handle all of them).
+     */
+    public abstract static class Adapter implements Ast.Visitor<Boolean> {
+
+        /**
+         * Called by every visit method not overridden by a subclass, which
+         * can override this to handle all nodes the same way.
+         */
+        protected boolean enter(Ast ast) {
+            return true;
+        }
+
+        @Override
+        public Boolean visit(Ast.Source ast) {
+            return enter(ast);
+        }
+
+        @Override
+        public Boolean visit(Ast.Field ast) {
+            return enter(ast);
+        }
+
+        @Override
+        public Boolean visit(Ast.Method ast) {
+            return enter(ast);
+        }
+
+        @Override
+        public Boolean visit(Ast.Stmt.Expression ast) {
+            return enter(ast);
+        }
+
+        @Override
+        public Boolean visit(Ast.Stmt.Declaration ast) {
+            return enter(ast);
+        }
+
+        @Override
+        public Boolean visit(Ast.Stmt.Assignment ast) {
+            return enter(ast);
+        }
+
+        @Override
+        public Boolean visit(Ast.Stmt.If ast) {
+            return enter(ast);
+        }
+
+        @Override
+        public Boolean visit(Ast.Stmt.For ast) {
+            return enter(ast);
+        }
+
+        @Override
+        public Boolean visit(Ast.Stmt.While ast) {
+            return enter(ast);
+        }
+
+        @Override
+        public Boolean visit(Ast.Stmt.Return ast) {
+            return enter(ast);
+        }
+
+        @Override
+        public Boolean visit(Ast.Expr.Literal ast) {
+            return enter(ast);
+        }
+
+        @Override
+        public Boolean visit(Ast.Expr.Group ast) {
+            return enter(ast);
+        }
+
+        @Override
+        public Boolean visit(Ast.Expr.Binary ast) {
+            return enter(ast);
+        }
+
+        @Override
+        public Boolean visit(Ast.Expr.Access ast) {
+            return enter(ast);
+        }
+
+        @Override
+        public Boolean visit(Ast.Expr.Function ast) {
+            return enter(ast);
+        }
+
+    }
+
+    /**
+     * Pushes children in reverse so that they are popped in source order.
+     */
+    private final class ChildPusher implements Ast.Visitor<Void> {
+
+        private void pushAll(List<? extends Ast> children) {
+            for (int i = children.size() - 1; i >= 0; i--) {
+                push(children.get(i), false);
+            }
+        }
+
+        @Override
+        public Void visit(Ast.Source ast) {
+            pushAll(ast.getMethods());
+            pushAll(ast.getFields());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Field ast) {
+            ast.getValue().ifPresent(value -> push(value, false));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Method ast) {
+            pushAll(ast.getStatements());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Expression ast) {
+            push(ast.getExpression(), false);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Declaration ast) {
+            ast.getValue().ifPresent(value -> push(value, false));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Assignment ast) {
+            push(ast.getValue(), false);
+            push(ast.getReceiver(), false);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.If ast) {
+            pushAll(ast.getElseStatements());
+            pushAll(ast.getThenStatements());
+            push(ast.getCondition(), false);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.For ast) {
+            pushAll(ast.getStatements());
+            push(ast.getValue(), false);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.While ast) {
+            pushAll(ast.getStatements());
+            push(ast.getCondition(), false);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Return ast) {
+            push(ast.getValue(), false);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Literal ast) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Group ast) {
+            push(ast.getExpression(), false);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Binary ast) {
+            push(ast.getRight(), false);
+            push(ast.getLeft(), false);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Access ast) {
+            ast.getReceiver().ifPresent(receiver -> push(receiver, false));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Function ast) {
+            pushAll(ast.getArguments());
+            ast.getReceiver().ifPresent(receiver -> push(receiver, false));
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,67 @@
+package plc.project;
+
+import java.math.BigDecimal;
+
+/**
+ * The static type of an expression, inferred by {@link TypeInference}. Every
+ * type except {@link #ANY} is exact, meaning every value the expression
+ * produces has that runtime representation, so it can be operated on without
+ * checking its type:
+ *
+ *  - {@link #INTEGER} is a {@link Long} or {@link java.math.BigInteger} (see
+ *    {@link Numeric}),
+ *  - {@link #DECIMAL} is a {@link BigDecimal},
+ *  - {@link #BOOLEAN} and {@link #CHARACTER} are a {@link Boolean} and
+ *    {@link Character},
+ *  - {@link #STRING} is a {@link CharSequence}, either a {@link String} or
+ *    the {@link Rope} built by concatenating long strings,
+ *  - {@link #NIL} is always {@code null}.
+ *
+ * {@link #ANY} means the type couldn't be proven, and is what every
+ * expression has before inference.
+ */
+public enum Type {
+
+    NIL,
+    BOOLEAN,
+    INTEGER,
+    DECIMAL,
+    CHARACTER,
+    STRING,
+    ANY;
+
+    /**
+     * Returns the type of a value in its runtime representation, such as
+     * {@link Ast.Expr.Literal#getValue()}.
+     */
+    public static Type of(Object value) {
+        if (value == null) {
+            return NIL;
+        }
+        else if (value instanceof Boolean) {
+            return BOOLEAN;
+        }
+        else if (Numeric.isInteger(value)) {
+            return INTEGER;
+        }
+        else if (value instanceof BigDecimal) {
+            return DECIMAL;
+        }
+        else if (value instanceof Character) {
+            return CHARACTER;
+        }
+        else if (value instanceof String || value instanceof Rope) {
+            return STRING;
+        }
+        return ANY;
+    }
+
+    /**
+     * Returns the type of a value that is either of this type or the other,
+     * which is {@link #ANY} unless they're the same.
+     */
+    public Type join(Type other) {
+        return this == other ? this : ANY;
+    }
+
+}
@@ -0,0 +1,450 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Infers the static {@link Type} of every expression in an analyzed AST (see
+ * {@link Analyzer}), storing it with {@link Ast.Expr#setType(Type)} so that
+ * later stages can use specialized operations where the operand types are
+ * known. The return type of each method is stored on its
+ * {@link Scope.Function}.
+ *
+ * Inference is flow-sensitive for local variables: each assignment gives the
+ * variable the type of its value until the next one, and where control flow
+ * merges (after an {@code IF}, or at the start of a loop) the types are joined
+ * (see {@link Type#join(Type)}). Loops are visited until the types at their
+ * start stop changing, which takes at most a few passes since a type can only
+ * change once (to {@link Type#ANY}). Fields can be assigned by any call so are
+ * always {@link Type#ANY}, as are parameters and {@code FOR} variables.
+ *
+ * Operators only have a type when the operands have types they're defined for
+ * (such as {@code INTEGER + INTEGER}), and otherwise are {@link Type#ANY} so
+ * the error is still reported at runtime:
+ *
+ *  - {@code AND}/{@code OR} of booleans is a boolean,
+ *  - {@code ==}/{@code !=} are always booleans,
+ *  - {@code <}, {@code <=}, {@code >}, {@code >=} of two integers, decimals,
+ *    characters or strings are booleans,
+ *  - {@code +}, {@code -}, {@code *}, {@code /} of two integers or two
+ *    decimals are the same type, as is {@code +} of two strings.
+ *
+ * Method return types are inferred optimistically: a call to a method whose
+ * return type isn't known yet produces no value, and methods are revisited
+ * until no return type changes. This lets recursive methods have a type, such
+ * as a method returning either {@code 1} or the result of calling itself.
+ */
+public final class TypeInference implements Ast.Visitor<Void> {
+
+    /**
+     * The types of local variables at the current point. A variable that
+     * isn't in the map is {@link Type#ANY}.
+     */
+    private Map<Scope.Variable, Type> locals = new HashMap<>();
+
+    /**
+     * Whether the current point can be reached, which is false after a
+     * {@code RETURN} until control flow merges.
+     */
+    private boolean live = true;
+
+    /**
+     * The return types of the methods being inferred so far, which are
+     * {@code null} until a method is found to return a value. The types of
+     * expressions are {@code null} in the same way when they can't produce a
+     * value (yet).
+     */
+    private final Map<Scope.Function, Type> returns = new IdentityHashMap<>();
+    private Type returned = null;
+
+    private final Inferrer inferrer = new Inferrer();
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        for (Ast.Field field : ast.getFields()) {
+            visit(field);
+        }
+        infer(ast.getMethods());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Field ast) {
+        ast.getValue().ifPresent(this::infer);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Method ast) {
+        infer(List.of(ast));
+        return null;
+    }
+
+    /**
+     * Infers the methods until none of their return types change. Calls to
+     * functions which aren't one of these methods use the return type
+     * already stored on the function.
+     */
+    private void infer(List<Ast.Method> methods) {
+        for (Ast.Method method : methods) {
+            returns.put(method.getFunction(), null);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Ast.Method method : methods) {
+                Type previous = returns.get(method.getFunction());
+                inferMethod(method);
+                changed |= returns.get(method.getFunction()) != previous;
+            }
+        }
+        for (Ast.Method method : methods) {
+            Type type = returns.remove(method.getFunction());
+            method.getFunction().setReturnType(type == null ? Type.ANY : type);
+        }
+    }
+
+    private void inferMethod(Ast.Method ast) {
+        locals = new HashMap<>();
+        live = true;
+        returned = returns.get(ast.getFunction());
+        visit(ast.getStatements());
+        //falling off the end of the method returns NIL
+        if (live) {
+            returned = join(returned, Type.NIL);
+        }
+        returns.put(ast.getFunction(), returned);
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Expression ast) {
+        infer(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Declaration ast) {
+        locals.put(ast.getVariable(), ast.getValue().isPresent() ? infer(ast.getValue().get()) : Type.NIL);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Assignment ast) {
+        infer(ast.getReceiver());
+        Type type = infer(ast.getValue());
+        Scope.Variable variable = ((Ast.Expr.Access) ast.getReceiver()).getVariable();
+        if (variable != null && variable.getKind() == Scope.Variable.Kind.LOCAL) {
+            locals.put(variable, type);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.If ast) {
+        infer(ast.getCondition());
+        Map<Scope.Variable, Type> before = locals;
+        boolean wasLive = live;
+
+        locals = new HashMap<>(before);
+        visit(ast.getThenStatements());
+        Map<Scope.Variable, Type> thenLocals = locals;
+        boolean thenLive = live;
+
+        locals = new HashMap<>(before);
+        live = wasLive;
+        visit(ast.getElseStatements());
+
+        //a branch that returned doesn't reach the end of the IF
+        if (thenLive && live) {
+            locals = join(thenLocals, locals);
+        }
+        else if (thenLive) {
+            locals = thenLocals;
+            live = true;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.For ast) {
+        infer(ast.getValue());
+        loop(null, ast.getStatements(), ast.getVariable());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.While ast) {
+        loop(ast.getCondition(), ast.getStatements(), null);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Return ast) {
+        returned = join(returned, infer(ast.getValue()));
+        live = false;
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Literal ast) {
+        infer(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Group ast) {
+        infer(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Binary ast) {
+        infer(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Access ast) {
+        infer(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Function ast) {
+        infer(ast);
+        return null;
+    }
+
+    private void visit(List<Ast.Stmt> statements) {
+        for (Ast.Stmt statement : statements) {
+            statement.accept(this);
+        }
+    }
+
+    /**
+     * Visits a loop until the types at its start are the join of the types
+     * before it and at the end of its body, so the last pass (which sets the
+     * final types) sees every type a variable can have in the loop.
+     */
+    private void loop(Ast.Expr condition, List<Ast.Stmt> statements, Scope.Variable variable) {
+        Map<Scope.Variable, Type> entry = locals;
+        boolean wasLive = live;
+        while (true) {
+            locals = new HashMap<>(entry);
+            live = wasLive;
+            if (condition != null) {
+                infer(condition);
+            }
+            if (variable != null) {
+                locals.put(variable, Type.ANY);
+            }
+            visit(statements);
+            Map<Scope.Variable, Type> next = live ? join(entry, locals) : entry;
+            if (next.equals(entry)) {
+                break;
+            }
+            entry = next;
+        }
+        //the loop may run zero times, so the end is reached from its start
+        locals = entry;
+        live = wasLive;
+    }
+
+    private Type infer(Ast.Expr ast) {
+        Traversal.walk(ast, null, inferrer);
+        return inferrer.types.remove(inferrer.types.size() - 1);
+    }
+
+    /**
+     * Joins two types which may be {@code null}, meaning no value.
+     */
+    private static Type join(Type left, Type right) {
+        if (left == null) {
+            return right;
+        }
+        else if (right == null) {
+            return left;
+        }
+        return left.join(right);
+    }
+
+    /**
+     * Joins the local types at the end of two paths. A variable defined on
+     * only one path is out of scope after they merge, so can be dropped.
+     */
+    private static Map<Scope.Variable, Type> join(Map<Scope.Variable, Type> left, Map<Scope.Variable, Type> right) {
+        Map<Scope.Variable, Type> joined = new HashMap<>();
+        for (Map.Entry<Scope.Variable, Type> entry : left.entrySet()) {
+            if (right.containsKey(entry.getKey())) {
+                joined.put(entry.getKey(), join(entry.getValue(), right.get(entry.getKey())));
+            }
+        }
+        return joined;
+    }
+
+    /**
+     * Returns the type of a binary expression given the types of its
+     * operands, which is {@code null} if either operand produces no value.
+     */
+    private static Type binary(String operator, Type left, Type right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        switch (operator) {
+            case "AND":
+            case "OR":
+                return left == Type.BOOLEAN && right == Type.BOOLEAN ? Type.BOOLEAN : Type.ANY;
+            case "==":
+            case "!=":
+                return Type.BOOLEAN;
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+                return left == right && left != Type.NIL && left != Type.BOOLEAN && left != Type.ANY ? Type.BOOLEAN : Type.ANY;
+            case "+":
+                if (left == Type.STRING && right == Type.STRING) {
+                    return Type.STRING;
+                }
+                return left == right && (left == Type.INTEGER || left == Type.DECIMAL) ? left : Type.ANY;
+            case "-":
+            case "*":
+            case "/":
+                return left == right && (left == Type.INTEGER || left == Type.DECIMAL) ? left : Type.ANY;
+            default:
+                return Type.ANY;
+        }
+    }
+
+    /**
+     * Infers the types of an expression bottom-up in a {@link Traversal},
+     * with the types of children on top of the stack when a node is exited.
+     * The stack is a list since types may be {@code null}.
+     */
+    private final class Inferrer implements Ast.Visitor<Void> {
+
+        private final List<Type> types = new ArrayList<>();
+
+        @Override
+        public Void visit(Ast.Source ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Field ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Method ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Expression ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Declaration ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Assignment ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.If ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.For ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.While ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Return ast) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Literal ast) {
+            push(ast, Type.of(ast.getValue()));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Group ast) {
+            push(ast, pop());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Binary ast) {
+            Type right = pop();
+            Type left = pop();
+            push(ast, binary(ast.getOperator(), left, right));
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Access ast) {
+            if (ast.getReceiver().isPresent()) {
+                pop();
+                push(ast, Type.ANY);
+            }
+            else if (ast.getVariable().getKind() == Scope.Variable.Kind.LOCAL) {
+                push(ast, locals.getOrDefault(ast.getVariable(), Type.ANY));
+            }
+            else {
+                push(ast, Type.ANY);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Function ast) {
+            for (int i = 0; i < ast.getArguments().size(); i++) {
+                pop();
+            }
+            if (ast.getReceiver().isPresent()) {
+                pop();
+                push(ast, Type.ANY);
+            }
+            else if (returns.containsKey(ast.getFunction())) {
+                push(ast, returns.get(ast.getFunction()));
+            }
+            else {
+                push(ast, ast.getFunction().getReturnType());
+            }
+            return null;
+        }
+
+        private Type pop() {
+            return types.remove(types.size() - 1);
+        }
+
+        /**
+         * Pushes the type of the expression and stores it, where no value is
+         * stored as {@link Type#ANY} (the expression is never evaluated, or
+         * never finishes evaluating).
+         */
+        private void push(Ast.Expr ast, Type type) {
+            ast.setType(type == null ? Type.ANY : type);
+            types.add(type);
+        }
+
+    }
+
+}
@@ -0,0 +1,73 @@
+package plc.project;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The vectorized implementation of {@link CharScanner}, which must only be
+ * used if {@link CharScanner#VECTOR} is true.
+ *
+ * Each step loads a vector of characters (16 with AVX2, 32 with AVX-512),
+ * computes a mask of the characters in the run, and stops at the first lane
+ * which isn't. Characters are compared as signed shorts, so characters above
+ * {@code 0x7FFF} are negative and never in any of the (ASCII) ranges. The
+ * remainder shorter than a vector is scanned one character at a time.
+ */
+final class VectorCharScanner {
+
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    static final int LENGTH = SPECIES.length();
+
+    private VectorCharScanner() {}
+
+    static int blankEnd(char[] chars, int start) {
+        int i = start;
+        for (; i <= chars.length - LENGTH; i += LENGTH) {
+            ShortVector vector = ShortVector.fromCharArray(SPECIES, chars, i);
+            VectorMask<Short> blank = vector.eq((short) ' ')
+                    .or(vector.eq((short) '\t'))
+                    .or(vector.eq((short) '\b'));
+            if (!blank.allTrue()) {
+                return i + blank.not().firstTrue();
+            }
+        }
+        return CharScanner.scalarBlankEnd(chars, i);
+    }
+
+    static int identifierEnd(char[] chars, int start) {
+        int i = start;
+        for (; i <= chars.length - LENGTH; i += LENGTH) {
+            ShortVector vector = ShortVector.fromCharArray(SPECIES, chars, i);
+            //setting 0x20 maps A-Z onto a-z, and no other character onto a-z
+            ShortVector lower = vector.or((short) 0x20);
+            VectorMask<Short> identifier = range(lower, 'a', 'z')
+                    .or(range(vector, '0', '9'))
+                    .or(vector.eq((short) '_'))
+                    .or(vector.eq((short) '-'));
+            if (!identifier.allTrue()) {
+                return i + identifier.not().firstTrue();
+            }
+        }
+        return CharScanner.scalarIdentifierEnd(chars, i);
+    }
+
+    static int digitEnd(char[] chars, int start) {
+        int i = start;
+        for (; i <= chars.length - LENGTH; i += LENGTH) {
+            ShortVector vector = ShortVector.fromCharArray(SPECIES, chars, i);
+            VectorMask<Short> digit = range(vector, '0', '9');
+            if (!digit.allTrue()) {
+                return i + digit.not().firstTrue();
+            }
+        }
+        return CharScanner.scalarDigitEnd(chars, i);
+    }
+
+    private static VectorMask<Short> range(ShortVector vector, char low, char high) {
+        return vector.compare(VectorOperators.GE, (short) low).and(vector.compare(VectorOperators.LE, (short) high));
+    }
+
+}
@@ -0,0 +1,157 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+final class AnalyzerTests {
+
+    @Test
+    void testSlots() {
+        //LET x = 1;
+        //DEF f(a, b) DO LET c = a; IF c DO LET d = b; END ELSE LET e = x; END LET g = c; END
+        Ast.Expr.Access a = AstFixtures.access("a");
+        Ast.Expr.Access b = AstFixtures.access("b");
+        Ast.Expr.Access c = AstFixtures.access("c");
+        Ast.Expr.Access x = AstFixtures.access("x");
+        Ast.Stmt.Declaration d = new Ast.Stmt.Declaration("d", Optional.of(b));
+        Ast.Stmt.Declaration e = new Ast.Stmt.Declaration("e", Optional.of(x));
+        Ast.Stmt.Declaration g = new Ast.Stmt.Declaration("g", Optional.of(AstFixtures.access("c")));
+        Ast.Field field = new Ast.Field("x", Optional.of(new Ast.Expr.Literal(BigInteger.ONE)));
+        Ast.Method method = new Ast.Method("f", Arrays.asList("a", "b"), Arrays.asList(
+                new Ast.Stmt.Declaration("c", Optional.of(a)),
+                new Ast.Stmt.If(c, Arrays.asList(d), Arrays.asList(e)),
+                g
+        ));
+        new Analyzer().visit(new Ast.Source(Arrays.asList(field), Arrays.asList(method)));
+
+        Assertions.assertEquals(Scope.Variable.Kind.GLOBAL, x.getVariable().getKind());
+        Assertions.assertSame(field.getVariable(), x.getVariable());
+        Assertions.assertEquals(0, a.getVariable().getSlot());
+        Assertions.assertEquals(1, b.getVariable().getSlot());
+        Assertions.assertEquals(2, c.getVariable().getSlot());
+        //variables in separate blocks share a slot
+        Assertions.assertEquals(3, d.getVariable().getSlot());
+        Assertions.assertEquals(3, e.getVariable().getSlot());
+        Assertions.assertEquals(3, g.getVariable().getSlot());
+        Assertions.assertEquals(4, method.getFunction().getFrameSize());
+    }
+
+    @Test
+    void testFunctionResolution() {
+        //DEF main() DO f(1); END DEF f(x) DO print(x); END
+        Ast.Expr.Function call = new Ast.Expr.Function(Optional.empty(), "f", Arrays.asList(new Ast.Expr.Literal(BigInteger.ONE)));
+        Ast.Expr.Function print = new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(AstFixtures.access("x")));
+        Ast.Method main = new Ast.Method("main", Arrays.asList(), Arrays.asList(new Ast.Stmt.Expression(call)));
+        Ast.Method f = new Ast.Method("f", Arrays.asList("x"), Arrays.asList(new Ast.Stmt.Expression(print)));
+        new Analyzer().visit(new Ast.Source(Arrays.asList(), Arrays.asList(main, f)));
+
+        Assertions.assertSame(f, call.getFunction().getMethod());
+        Assertions.assertNull(print.getFunction().getMethod());
+    }
+
+    @Test
+    void testTailCalls() {
+        //DEF f(x) DO IF x DO RETURN f(x); END RETURN print(x); END
+        //DEF g(x) DO RETURN 1 + f(x); END
+        Ast.Expr.Function tail = new Ast.Expr.Function(Optional.empty(), "f", Arrays.asList(AstFixtures.access("x")));
+        Ast.Expr.Function builtin = new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(AstFixtures.access("x")));
+        Ast.Expr.Function operand = new Ast.Expr.Function(Optional.empty(), "f", Arrays.asList(AstFixtures.access("x")));
+        Ast.Method f = new Ast.Method("f", Arrays.asList("x"), Arrays.asList(
+                new Ast.Stmt.If(AstFixtures.access("x"), Arrays.asList(new Ast.Stmt.Return(tail)), Arrays.asList()),
+                new Ast.Stmt.Return(builtin)
+        ));
+        Ast.Method g = new Ast.Method("g", Arrays.asList("x"), Arrays.asList(
+                new Ast.Stmt.Return(new Ast.Expr.Binary("+", new Ast.Expr.Literal(BigInteger.ONE), operand))
+        ));
+        new Analyzer().visit(new Ast.Source(Arrays.asList(), Arrays.asList(f, g)));
+
+        Assertions.assertTrue(tail.isTail());
+        Assertions.assertFalse(builtin.isTail());
+        Assertions.assertFalse(operand.isTail());
+    }
+
+    @Test
+    void testUsedVariables() {
+        //DEF f(x) DO FOR i IN x DO print(i); END FOR j IN x DO print(x); END END
+        Ast.Stmt.For used = new Ast.Stmt.For("i", AstFixtures.access("x"), Arrays.asList(
+                new Ast.Stmt.Expression(new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(AstFixtures.access("i"))))
+        ));
+        Ast.Stmt.For unused = new Ast.Stmt.For("j", AstFixtures.access("x"), Arrays.asList(
+                new Ast.Stmt.Expression(new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(AstFixtures.access("x"))))
+        ));
+        Ast.Method f = new Ast.Method("f", Arrays.asList("x"), Arrays.asList(used, unused));
+        new Analyzer().visit(new Ast.Source(Arrays.asList(), Arrays.asList(f)));
+
+        Assertions.assertTrue(used.getVariable().isUsed());
+        Assertions.assertFalse(unused.getVariable().isUsed());
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testErrors(String test, Ast.Source ast) {
+        Assertions.assertThrows(RuntimeException.class, () -> new Analyzer().visit(ast));
+    }
+
+    private static Stream<Arguments> testErrors() {
+        return Stream.of(
+                Arguments.of("Undefined Variable",
+                        //DEF main() DO print(x); END
+                        source(new Ast.Stmt.Expression(
+                                new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(AstFixtures.access("x")))
+                        ))
+                ),
+                Arguments.of("Undefined Function",
+                        //DEF main() DO f(); END
+                        source(new Ast.Stmt.Expression(
+                                new Ast.Expr.Function(Optional.empty(), "f", Arrays.asList())
+                        ))
+                ),
+                Arguments.of("Arity Mismatch",
+                        //DEF main() DO print(); END
+                        source(new Ast.Stmt.Expression(
+                                new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList())
+                        ))
+                ),
+                Arguments.of("Out Of Scope",
+                        //DEF main() DO WHILE TRUE DO LET x; END print(x); END
+                        source(
+                                new Ast.Stmt.While(new Ast.Expr.Literal(true), Arrays.asList(
+                                        new Ast.Stmt.Declaration("x", Optional.empty())
+                                )),
+                                new Ast.Stmt.Expression(
+                                        new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(AstFixtures.access("x")))
+                                )
+                        )
+                ),
+                Arguments.of("Redeclared Variable",
+                        //DEF main() DO LET x; LET x; END
+                        source(
+                                new Ast.Stmt.Declaration("x", Optional.empty()),
+                                new Ast.Stmt.Declaration("x", Optional.empty())
+                        )
+                ),
+                Arguments.of("Invalid Assignment",
+                        //DEF main() DO 1 = 2; END
+                        source(new Ast.Stmt.Assignment(
+                                new Ast.Expr.Literal(BigInteger.ONE),
+                                new Ast.Expr.Literal(BigInteger.TWO)
+                        ))
+                )
+        );
+    }
+
+    private static Ast.Source source(Ast.Stmt... statements) {
+        return new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(statements))
+        ));
+    }
+
+}
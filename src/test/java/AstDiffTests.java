@@ -0,0 +1,108 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+final class AstDiffTests {
+
+    @Test
+    void testStructuralHash() {
+        Ast.Source first = source(statement("x", 1), statement("y", 2));
+        Ast.Source second = source(statement("x", 1), statement("y", 2));
+        Assertions.assertEquals(first.getStructuralHash(), second.getStructuralHash());
+        Assertions.assertEquals(first.hashCode(), second.hashCode());
+        Assertions.assertEquals(first, second);
+        Assertions.assertNotEquals(first.getStructuralHash(), source(statement("x", 1), statement("y", 3)).getStructuralHash());
+        //equal literals have equal hashes however the value was created
+        Assertions.assertEquals(new Ast.Expr.Literal(BigInteger.ONE).hashCode(), Ast.Expr.Literal.of(1L).hashCode());
+    }
+
+    @Test
+    void testTokenHash() {
+        Assertions.assertEquals(
+                new Token(Token.Type.IDENTIFIER, "x", 0).hashCode(),
+                new Token(Token.Type.IDENTIFIER, "x", 0).hashCode()
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testDiff(String test, Ast before, Ast after, List<AstDiff.Change> expected) {
+        Assertions.assertEquals(expected, AstDiff.diff(before, after));
+    }
+
+    private static Stream<Arguments> testDiff() {
+        return Stream.of(
+                Arguments.of("Equal",
+                        source(statement("x", 1), statement("y", 2)),
+                        source(statement("x", 1), statement("y", 2)),
+                        Arrays.asList()
+                ),
+                Arguments.of("Changed Literal",
+                        //print(x + 1) -> print(x + 2)
+                        source(statement("x", 1)),
+                        source(statement("x", 2)),
+                        Arrays.asList(new AstDiff.Change(AstFixtures.literal(1), AstFixtures.literal(2)))
+                ),
+                Arguments.of("Changed Operator",
+                        new Ast.Expr.Binary("+", AstFixtures.access("x"), AstFixtures.literal(1)),
+                        new Ast.Expr.Binary("-", AstFixtures.access("x"), AstFixtures.literal(1)),
+                        Arrays.asList(new AstDiff.Change(
+                                new Ast.Expr.Binary("+", AstFixtures.access("x"), AstFixtures.literal(1)),
+                                new Ast.Expr.Binary("-", AstFixtures.access("x"), AstFixtures.literal(1))
+                        ))
+                ),
+                Arguments.of("Inserted Statement",
+                        source(statement("x", 1), statement("z", 3)),
+                        source(statement("x", 1), statement("y", 2), statement("z", 3)),
+                        Arrays.asList(new AstDiff.Change(null, statement("y", 2)))
+                ),
+                Arguments.of("Removed Statement",
+                        source(statement("x", 1), statement("y", 2), statement("z", 3)),
+                        source(statement("x", 1), statement("z", 3)),
+                        Arrays.asList(new AstDiff.Change(statement("y", 2), null))
+                ),
+                Arguments.of("Removed Receiver",
+                        new Ast.Expr.Access(Optional.of(AstFixtures.access("obj")), "x"),
+                        AstFixtures.access("x"),
+                        Arrays.asList(new AstDiff.Change(AstFixtures.access("obj"), null))
+                )
+        );
+    }
+
+    @Test
+    void testDeepDiff() {
+        Ast.Expr before = AstFixtures.literal(0);
+        Ast.Expr after = AstFixtures.literal(1);
+        for (int i = 0; i < 100000; i++) {
+            before = new Ast.Expr.Binary("+", before, AstFixtures.literal(i));
+            after = new Ast.Expr.Binary("+", after, AstFixtures.literal(i));
+        }
+        Assertions.assertEquals(Arrays.asList(new AstDiff.Change(AstFixtures.literal(0), AstFixtures.literal(1))), AstDiff.diff(before, after));
+    }
+
+    private static Ast.Source source(Ast.Stmt... statements) {
+        return new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(statements))
+        ));
+    }
+
+    /**
+     * Returns the statement {@code print(name + value);}.
+     */
+    private static Ast.Stmt statement(String name, long value) {
+        return new Ast.Stmt.Expression(new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(
+                new Ast.Expr.Binary("+", AstFixtures.access(name), AstFixtures.literal(value))
+        )));
+    }
+
+}
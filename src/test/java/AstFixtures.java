@@ -0,0 +1,28 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.Optional;
+
+/**
+ * Shorthand for building ASTs in tests.
+ */
+final class AstFixtures {
+
+    private AstFixtures() {}
+
+    /**
+     * Lexes and parses an expression.
+     */
+    static Ast.Expr parse(String input) {
+        return new Parser(new Lexer(input).lex()).parseExpression();
+    }
+
+    static Ast.Expr.Access access(String name) {
+        return new Ast.Expr.Access(Optional.empty(), name);
+    }
+
+    static Ast.Expr.Literal literal(long value) {
+        return new Ast.Expr.Literal(BigInteger.valueOf(value));
+    }
+
+}
@@ -0,0 +1,101 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+final class AstPrinterTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testPrint(String test, Ast ast) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        AstPrinter.print(ast, builder);
+        Assertions.assertEquals(ast.toString(), builder.toString());
+    }
+
+    private static Stream<Arguments> testPrint() {
+        return Stream.of(
+                Arguments.of("Literals", new Ast.Expr.Group(new Ast.Expr.Binary("+",
+                        new Ast.Expr.Literal(new BigDecimal("1.5")),
+                        new Ast.Expr.Literal(null)
+                ))),
+                Arguments.of("Access", new Ast.Expr.Access(Optional.of(AstFixtures.access("obj")), "field")),
+                Arguments.of("Function", new Ast.Expr.Function(Optional.empty(), "f", Arrays.asList(
+                        AstFixtures.access("x"),
+                        new Ast.Expr.Literal("string")
+                ))),
+                Arguments.of("Source", new Ast.Source(
+                        Arrays.asList(
+                                new Ast.Field("x", Optional.empty()),
+                                new Ast.Field("y", Optional.of(new Ast.Expr.Literal(BigInteger.ONE)))
+                        ),
+                        Arrays.asList(new Ast.Method("main", Arrays.asList("a", "b"), Arrays.asList(
+                                new Ast.Stmt.Declaration("z", Optional.of(AstFixtures.access("a"))),
+                                new Ast.Stmt.Assignment(AstFixtures.access("x"), AstFixtures.access("b")),
+                                new Ast.Stmt.If(new Ast.Expr.Literal(true),
+                                        Arrays.asList(new Ast.Stmt.Expression(AstFixtures.access("x"))),
+                                        Arrays.asList()
+                                ),
+                                new Ast.Stmt.For("i", AstFixtures.access("list"), Arrays.asList(
+                                        new Ast.Stmt.While(AstFixtures.access("i"), Arrays.asList())
+                                )),
+                                new Ast.Stmt.Return(new Ast.Expr.Literal('c'))
+                        )))
+                ))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testPrintJson(String test, Ast ast, String expected) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        AstPrinter.printJson(ast, builder);
+        Assertions.assertEquals(expected, builder.toString());
+    }
+
+    private static Stream<Arguments> testPrintJson() {
+        return Stream.of(
+                Arguments.of("Binary",
+                        new Ast.Expr.Binary("+", AstFixtures.access("x"), new Ast.Expr.Literal(BigInteger.ONE)),
+                        "{\"type\":\"Binary\",\"operator\":\"+\"," +
+                                "\"left\":{\"type\":\"Access\",\"name\":\"x\",\"receiver\":null}," +
+                                "\"right\":{\"type\":\"Literal\",\"value\":1}}"
+                ),
+                Arguments.of("Escapes",
+                        new Ast.Expr.Literal("\"a\\b\"\n"),
+                        "{\"type\":\"Literal\",\"value\":\"\\\"a\\\\b\\\"\\n\"}"
+                ),
+                Arguments.of("Method",
+                        new Ast.Method("f", Arrays.asList("a", "b"), Arrays.asList(
+                                new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "g", Arrays.asList()))
+                        )),
+                        "{\"type\":\"Method\",\"name\":\"f\",\"parameters\":[\"a\",\"b\"],\"statements\":[" +
+                                "{\"type\":\"Return\",\"value\":" +
+                                "{\"type\":\"Function\",\"name\":\"g\",\"receiver\":null,\"arguments\":[]}}]}"
+                )
+        );
+    }
+
+    @Test
+    void testDeepNesting() throws IOException {
+        Ast.Expr ast = AstFixtures.access("x");
+        for (int i = 0; i < 100000; i++) {
+            ast = new Ast.Expr.Group(ast);
+        }
+        StringBuilder builder = new StringBuilder();
+        AstPrinter.print(ast, builder);
+        Assertions.assertEquals(100000 * "Ast.Expr.Group{expression=}".length()
+                + AstFixtures.access("x").toString().length(), builder.length());
+    }
+
+}
@@ -0,0 +1,54 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Random;
+import java.util.stream.Stream;
+
+final class CharScannerTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testRuns(String test, String input, int start, int blank, int identifier, int digit) {
+        char[] chars = input.toCharArray();
+        Assertions.assertEquals(blank, CharScanner.blankEnd(chars, start));
+        Assertions.assertEquals(identifier, CharScanner.identifierEnd(chars, start));
+        Assertions.assertEquals(digit, CharScanner.digitEnd(chars, start));
+    }
+
+    private static Stream<Arguments> testRuns() {
+        return Stream.of(
+                Arguments.of("Empty", "", 0, 0, 0, 0),
+                Arguments.of("Blanks", " \t\b x", 0, 4, 0, 0),
+                Arguments.of("Line Break", "  \n  ", 0, 2, 0, 0),
+                Arguments.of("Identifier", "getName(", 0, 0, 7, 0),
+                Arguments.of("Long Identifier", "a_very-long_identifier_with_more_than_sixty_four_characters_in_it_0123 ", 0, 0, 70, 0),
+                Arguments.of("Digits", "12345678901234567890123456789012345678901234567890.5", 0, 0, 50, 50),
+                Arguments.of("Offset", "x = 123;", 4, 4, 7, 7),
+                Arguments.of("Non-ASCII", "abc\u00e9\uffff", 0, 0, 3, 0),
+                //@, [, `, and { are next to the letters and map onto them with the wrong mask
+                Arguments.of("Letter Boundaries", "AZaz@[`{AZaz@[`{AZaz@[`{AZaz@[`{AZaz@[`{", 0, 0, 4, 0)
+        );
+    }
+
+    @Test
+    void testScalarEquivalence() {
+        Random random = new Random(0);
+        String alphabet = " \t\b\n\r09az_-AZ@[`{/:.\"\u00e9\u8000";
+        char[] chars = new char[4096];
+        for (int i = 0; i < chars.length; i++) {
+            //long runs of one character class, so vectors see both full and partial runs
+            chars[i] = i % 97 < 60 ? "a0 ".charAt(i / 97 % 3) : alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        for (int start = 0; start <= chars.length; start++) {
+            Assertions.assertEquals(CharScanner.scalarBlankEnd(chars, start), CharScanner.blankEnd(chars, start));
+            Assertions.assertEquals(CharScanner.scalarIdentifierEnd(chars, start), CharScanner.identifierEnd(chars, start));
+            Assertions.assertEquals(CharScanner.scalarDigitEnd(chars, start), CharScanner.digitEnd(chars, start));
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+final class CompilerTests {
+
+    @Test
+    void testDeepNesting() throws ParseException {
+        //DEF main() DO RETURN ((...1...)); END, nested deep enough to overflow a recursive parser
+        Assertions.assertEquals(1, new Compiler().compile(nested(2_000)).getMethods().size());
+        Assertions.assertEquals(1, new Compiler(20_000).compile(nested(20_000)).getMethods().size());
+    }
+
+    @Test
+    void testDepthLimit() {
+        ParseException exception = Assertions.assertThrows(ParseException.class,
+                () -> new Compiler(100).compile(nested(2_000)));
+        //the group that exceeds the limit, after "DEF main() DO RETURN " and 100 others
+        Assertions.assertEquals(21 + 100, exception.getIndex());
+    }
+
+    @Test
+    void testFieldCallsMethod() throws ParseException {
+        Ast.Source source = new Compiler().compile("LET x = f(); DEF f() DO RETURN 1; END");
+        Ast.Expr.Function call = (Ast.Expr.Function) source.getFields().get(0).getValue().get();
+        Assertions.assertSame(source.getMethods().get(0), call.getFunction().getMethod());
+    }
+
+    private static String nested(int depth) {
+        return "DEF main() DO RETURN " + "(".repeat(depth) + "1" + ")".repeat(depth) + "; END";
+    }
+
+}
@@ -0,0 +1,81 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+final class DaemonTests {
+
+    @Test
+    void testDiagnostics() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("plc");
+        Path socket = directory.resolve("daemon.sock");
+        Daemon daemon = new Daemon(socket);
+        Thread thread = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        try (DaemonClient client = new DaemonClient(socket)) {
+            DaemonClient.Response response = client.compile("\"unterminated", false);
+            Assertions.assertEquals(Daemon.DIAGNOSTIC, response.getStatus());
+            Assertions.assertEquals("1:14: Unterminated", response.getOutput());
+            //the connection is reused for later requests
+            response = client.compile("x\n\"y", true);
+            Assertions.assertEquals(Daemon.DIAGNOSTIC, response.getStatus());
+            Assertions.assertEquals("2:3: Unterminated", response.getOutput());
+        } finally {
+            daemon.close();
+            thread.join();
+            Files.delete(directory);
+        }
+        Assertions.assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    void testCompile() throws IOException, InterruptedException, ParseException {
+        String source = "LET x = 1;\nDEF main() DO\n    print(x + 1);\nEND";
+        StringBuilder expected = new StringBuilder();
+        AstPrinter.print(new Compiler().compile(source), expected);
+        Path directory = Files.createTempDirectory("plc");
+        Path socket = directory.resolve("daemon.sock");
+        Daemon daemon = new Daemon(socket);
+        Thread thread = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        try (DaemonClient client = new DaemonClient(socket)) {
+            DaemonClient.Response response = client.compile(source, false);
+            Assertions.assertEquals(Daemon.OK, response.getStatus());
+            Assertions.assertEquals(expected.toString(), response.getOutput());
+            response = client.compile(source, true);
+            Assertions.assertEquals(Daemon.OK, response.getStatus());
+            Assertions.assertTrue(response.getOutput().startsWith("{"));
+        } finally {
+            daemon.close();
+            thread.join();
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void testWarmup() throws IOException {
+        Path directory = Files.createTempDirectory("plc");
+        try (Daemon daemon = new Daemon(directory.resolve("daemon.sock"))) {
+            Assertions.assertDoesNotThrow(() -> daemon.warmup(1));
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+final class InlinerTests {
+
+    @Test
+    void testExpression() {
+        //DEF square(x) DO RETURN x * x; END
+        //DEF main() DO LET i = 0; LET t = 0; WHILE i < 10 DO t = t + square(i); i = i + 1; END RETURN t; END
+        Inliner inliner = new Inliner();
+        Ast.Source source = inliner.inline(source(
+                method("square", Arrays.asList("x"), new Ast.Stmt.Return(AstFixtures.parse("x * x"))),
+                method("main", Arrays.asList(),
+                        new Ast.Stmt.Declaration("i", Optional.of(AstFixtures.parse("0"))),
+                        new Ast.Stmt.Declaration("t", Optional.of(AstFixtures.parse("0"))),
+                        new Ast.Stmt.While(AstFixtures.parse("i < 10"), Arrays.asList(
+                                new Ast.Stmt.Assignment(AstFixtures.parse("t"), AstFixtures.parse("t + square(i)")),
+                                new Ast.Stmt.Assignment(AstFixtures.parse("i"), AstFixtures.parse("i + 1"))
+                        )),
+                        new Ast.Stmt.Return(AstFixtures.parse("t"))
+                )
+        ));
+        Assertions.assertEquals(1, inliner.getInlined());
+        Assertions.assertEquals(0, calls(source.getMethods().get(1)));
+        Assertions.assertEquals(285L, run(source));
+    }
+
+    @Test
+    void testStatement() {
+        //DEF f(a) DO LET y = a + 1; RETURN y * 2; END
+        //DEF main() DO LET y = 5; LET z = f(y + 1); RETURN z + y; END
+        Inliner inliner = new Inliner();
+        Ast.Source source = inliner.inline(source(
+                method("f", Arrays.asList("a"),
+                        new Ast.Stmt.Declaration("y", Optional.of(AstFixtures.parse("a + 1"))),
+                        new Ast.Stmt.Return(AstFixtures.parse("y * 2"))
+                ),
+                method("main", Arrays.asList(),
+                        new Ast.Stmt.Declaration("y", Optional.of(AstFixtures.parse("5"))),
+                        new Ast.Stmt.Declaration("z", Optional.of(AstFixtures.parse("f(y + 1)"))),
+                        new Ast.Stmt.Return(AstFixtures.parse("z + y"))
+                )
+        ));
+        Assertions.assertEquals(1, inliner.getInlined());
+        Assertions.assertEquals(0, calls(source.getMethods().get(1)));
+        Assertions.assertEquals(19L, run(source));
+    }
+
+    @Test
+    void testEarlyReturn() {
+        //DEF f(a) DO IF a DO RETURN 1; END RETURN 2; END
+        //DEF main() DO RETURN f(TRUE); END
+        Inliner inliner = new Inliner();
+        Ast.Source source = inliner.inline(source(
+                method("f", Arrays.asList("a"),
+                        new Ast.Stmt.If(AstFixtures.parse("a"), Arrays.asList(new Ast.Stmt.Return(AstFixtures.parse("1"))), Arrays.asList()),
+                        new Ast.Stmt.Return(AstFixtures.parse("2"))
+                ),
+                method("main", Arrays.asList(), new Ast.Stmt.Return(AstFixtures.parse("f(TRUE)")))
+        ));
+        Assertions.assertEquals(0, inliner.getInlined());
+        Assertions.assertEquals(1L, run(source));
+    }
+
+    @Test
+    void testRecursive() {
+        //DEF even(n) DO RETURN n == 0 OR odd(n - 1); END
+        //DEF odd(n) DO RETURN n != 0 AND even(n - 1); END
+        //DEF main() DO RETURN even(4); END
+        Inliner inliner = new Inliner();
+        Ast.Source source = inliner.inline(source(
+                method("even", Arrays.asList("n"), new Ast.Stmt.Return(AstFixtures.parse("n == 0 OR odd(n - 1)"))),
+                method("odd", Arrays.asList("n"), new Ast.Stmt.Return(AstFixtures.parse("n != 0 AND even(n - 1)"))),
+                method("main", Arrays.asList(), new Ast.Stmt.Return(AstFixtures.parse("even(4)")))
+        ));
+        Assertions.assertEquals(0, inliner.getInlined());
+        Assertions.assertEquals(true, run(source));
+    }
+
+    @Test
+    void testCapture() {
+        //LET g = 1; DEF get() DO RETURN g; END DEF main() DO LET g = 2; RETURN get(); END
+        Inliner inliner = new Inliner();
+        Ast.Source source = inliner.inline(new Ast.Source(
+                Arrays.asList(new Ast.Field("g", Optional.of(AstFixtures.parse("1")))),
+                Arrays.asList(
+                        method("get", Arrays.asList(), new Ast.Stmt.Return(AstFixtures.parse("g"))),
+                        method("main", Arrays.asList(),
+                                new Ast.Stmt.Declaration("g", Optional.of(AstFixtures.parse("2"))),
+                                new Ast.Stmt.Return(AstFixtures.parse("get()"))
+                        )
+                )
+        ));
+        Assertions.assertEquals(0, inliner.getInlined());
+        Assertions.assertEquals(1L, run(source));
+    }
+
+    @Test
+    void testArgumentEvaluation() {
+        //DEF twice(x) DO RETURN x + x; END DEF main() DO LET l = list(); RETURN 1 + twice(l.size() + 1); END
+        Inliner inliner = new Inliner();
+        Ast.Source source = inliner.inline(source(
+                method("twice", Arrays.asList("x"), new Ast.Stmt.Return(AstFixtures.parse("x + x"))),
+                method("main", Arrays.asList(),
+                        new Ast.Stmt.Declaration("l", Optional.of(AstFixtures.parse("list()"))),
+                        new Ast.Stmt.Return(AstFixtures.parse("1 + twice(l.size() + 1)"))
+                )
+        ));
+        //the argument isn't a literal or variable, and the call isn't a statement's value
+        Assertions.assertEquals(0, inliner.getInlined());
+        Assertions.assertEquals(3L, run(source));
+    }
+
+    @Test
+    void testSizeBudget() {
+        Inliner inliner = new Inliner(2, Inliner.DEFAULT_MAX_DEPTH);
+        inliner.inline(source(
+                method("square", Arrays.asList("x"), new Ast.Stmt.Return(AstFixtures.parse("x * x"))),
+                method("main", Arrays.asList(), new Ast.Stmt.Return(AstFixtures.parse("square(3)")))
+        ));
+        Assertions.assertEquals(0, inliner.getInlined());
+    }
+
+    @Test
+    void testDepthBudget() {
+        //DEF c(x) DO RETURN x + 1; END DEF b(x) DO RETURN c(x); END DEF main() DO RETURN b(1); END
+        Inliner inliner = new Inliner(Inliner.DEFAULT_MAX_SIZE, 1);
+        Ast.Source source = inliner.inline(source(
+                method("main", Arrays.asList(), new Ast.Stmt.Return(AstFixtures.parse("b(1)"))),
+                method("b", Arrays.asList("x"), new Ast.Stmt.Return(AstFixtures.parse("c(x)"))),
+                method("c", Arrays.asList("x"), new Ast.Stmt.Return(AstFixtures.parse("x + 1")))
+        ));
+        //c is inlined into b, which is then too deep to inline into main
+        Assertions.assertEquals(1, inliner.getInlined());
+        Assertions.assertEquals(0, calls(source.getMethods().get(1)));
+        Assertions.assertEquals(1, calls(source.getMethods().get(0)));
+        Assertions.assertEquals(2L, run(source));
+    }
+
+    private static Object run(Ast.Source source) {
+        Analyzer analyzer = new Analyzer();
+        analyzer.visit(source);
+        return new Interpreter(analyzer.getScope(), new StringBuilder()).run(source);
+    }
+
+    private static int calls(Ast.Method method) {
+        int[] calls = {0};
+        Traversal.walk(method, new Traversal.Adapter() {
+
+            @Override
+            public Boolean visit(Ast.Expr.Function ast) {
+                calls[0]++;
+                return true;
+            }
+
+        }, null);
+        return calls[0];
+    }
+
+    private static Ast.Source source(Ast.Method... methods) {
+        return new Ast.Source(Arrays.asList(), Arrays.asList(methods));
+    }
+
+    private static Ast.Method method(String name, List<String> parameters, Ast.Stmt... statements) {
+        return new Ast.Method(name, parameters, Arrays.asList(statements));
+    }
+
+}
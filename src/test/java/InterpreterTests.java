@@ -0,0 +1,320 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+final class InterpreterTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testExpression(String test, String input, Object expected) {
+        Assertions.assertEquals(expected, run(new Ast.Stmt.Return(AstFixtures.parse(input))));
+    }
+
+    private static Stream<Arguments> testExpression() {
+        return Stream.of(
+                Arguments.of("Integer Arithmetic", "1 + 2 * 3", 7L),
+                Arguments.of("Integer Overflow", "9223372036854775807 + 1", Numeric.narrow(Numeric.toBigInteger(Long.MAX_VALUE).add(Numeric.toBigInteger(1L)))),
+                Arguments.of("Decimal Division", "1.0 / 3.0", new BigDecimal("0.3")),
+                Arguments.of("String Concatenation", "\"a\" + \"b\"", "ab"),
+                Arguments.of("Comparison", "'a' < 'b'", true),
+                Arguments.of("Equality", "1 == 1.0", false),
+                Arguments.of("Short Circuit", "FALSE AND 1 / 0", false),
+                Arguments.of("String Length", "\"abc\".length()", 3L)
+        );
+    }
+
+    @Test
+    void testRuntimeError() {
+        Assertions.assertThrows(RuntimeException.class, () -> run(new Ast.Stmt.Return(AstFixtures.parse("1 + \"a\""))));
+        Assertions.assertThrows(RuntimeException.class, () -> run(new Ast.Stmt.Return(AstFixtures.parse("1 / 0"))));
+        Assertions.assertThrows(RuntimeException.class, () -> run(new Ast.Stmt.Return(AstFixtures.parse("\"abc\".size()"))));
+    }
+
+    @Test
+    void testPrint() {
+        //DEF main() DO print(NIL); print(TRUE); print("a"); END
+        StringBuilder out = new StringBuilder();
+        run(out, Arrays.asList(), Arrays.asList(method("main", Arrays.asList(),
+                new Ast.Stmt.Expression(AstFixtures.parse("print(NIL)")),
+                new Ast.Stmt.Expression(AstFixtures.parse("print(TRUE)")),
+                new Ast.Stmt.Expression(AstFixtures.parse("print(\"a\")"))
+        )));
+        Assertions.assertEquals("NIL\nTRUE\na\n", out.toString());
+    }
+
+    @Test
+    void testMonomorphicField() {
+        //DEF main() DO LET o = object(); o.x = 0; LET i = 0; WHILE i < 10 DO o.x = o.x + i; i = i + 1; END RETURN o.x; END
+        Ast.Expr.Access read = (Ast.Expr.Access) ((Ast.Expr.Binary) AstFixtures.parse("o.x + i")).getLeft();
+        Ast.Expr.Access write = (Ast.Expr.Access) AstFixtures.parse("o.x");
+        Object result = run(
+                new Ast.Stmt.Declaration("o", Optional.of(AstFixtures.parse("object()"))),
+                new Ast.Stmt.Assignment(AstFixtures.parse("o.x"), AstFixtures.parse("0")),
+                new Ast.Stmt.Declaration("i", Optional.of(AstFixtures.parse("0"))),
+                new Ast.Stmt.While(AstFixtures.parse("i < 10"), Arrays.asList(
+                        new Ast.Stmt.Assignment(write, new Ast.Expr.Binary("+", read, AstFixtures.parse("i"))),
+                        new Ast.Stmt.Assignment(AstFixtures.parse("i"), AstFixtures.parse("i + 1"))
+                )),
+                new Ast.Stmt.Return(AstFixtures.parse("o.x"))
+        );
+        Assertions.assertEquals(45L, result);
+        Assertions.assertEquals(InlineCache.State.MONOMORPHIC, read.getCache().getState());
+        Assertions.assertEquals(1, read.getCache().getMisses());
+        Assertions.assertEquals(InlineCache.State.MONOMORPHIC, write.getCache().getState());
+        Assertions.assertEquals(1, write.getCache().getMisses());
+    }
+
+    @Test
+    void testPolymorphicField() {
+        //DEF getX(o) DO RETURN o.x; END
+        Ast.Expr.Access access = (Ast.Expr.Access) AstFixtures.parse("o.x");
+        Ast.Method getX = method("getX", Arrays.asList("o"), new Ast.Stmt.Return(access));
+        Interpreter interpreter = run(new StringBuilder(), Arrays.asList(), Arrays.asList(getX));
+        PlcObject first = object("x");
+        PlcObject second = object("y", "x");
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals("x", interpreter.call(getX.getFunction(), first));
+            Assertions.assertEquals("x", interpreter.call(getX.getFunction(), second));
+        }
+        Assertions.assertEquals(InlineCache.State.POLYMORPHIC, access.getCache().getState());
+        Assertions.assertEquals(2, access.getCache().getMisses());
+    }
+
+    @Test
+    void testMegamorphicField() {
+        Ast.Expr.Access access = (Ast.Expr.Access) AstFixtures.parse("o.x");
+        Ast.Method getX = method("getX", Arrays.asList("o"), new Ast.Stmt.Return(access));
+        Interpreter interpreter = run(new StringBuilder(), Arrays.asList(), Arrays.asList(getX));
+        List<PlcObject> objects = Arrays.asList(object("x"), object("a", "x"), object("b", "x"),
+                object("c", "x"), object("d", "x"));
+        for (PlcObject object : objects) {
+            Assertions.assertEquals("x", interpreter.call(getX.getFunction(), object));
+        }
+        Assertions.assertEquals(InlineCache.State.MEGAMORPHIC, access.getCache().getState());
+        Assertions.assertEquals("x", interpreter.call(getX.getFunction(), objects.get(0)));
+        Assertions.assertEquals(6, access.getCache().getMisses());
+    }
+
+    @Test
+    void testUndefinedField() {
+        Assertions.assertThrows(RuntimeException.class, () -> run(
+                new Ast.Stmt.Declaration("o", Optional.of(AstFixtures.parse("object()"))),
+                new Ast.Stmt.Return(AstFixtures.parse("o.x"))
+        ));
+    }
+
+    @Test
+    void testMethodCall() {
+        //DEF area(r) DO RETURN r.w * r.h; END
+        //DEF main() DO LET r = object(); r.w = 2; r.h = 3; LET i = 0; LET total = 0;
+        //    WHILE i < 5 DO total = total + r.area(); i = i + 1; END RETURN total; END
+        Ast.Expr.Function call = (Ast.Expr.Function) AstFixtures.parse("r.area()");
+        Ast.Method area = method("area", Arrays.asList("r"), new Ast.Stmt.Return(AstFixtures.parse("r.w * r.h")));
+        Ast.Method main = method("main", Arrays.asList(),
+                new Ast.Stmt.Declaration("r", Optional.of(AstFixtures.parse("object()"))),
+                new Ast.Stmt.Assignment(AstFixtures.parse("r.w"), AstFixtures.parse("2")),
+                new Ast.Stmt.Assignment(AstFixtures.parse("r.h"), AstFixtures.parse("3")),
+                new Ast.Stmt.Declaration("i", Optional.of(AstFixtures.parse("0"))),
+                new Ast.Stmt.Declaration("total", Optional.of(AstFixtures.parse("0"))),
+                new Ast.Stmt.While(AstFixtures.parse("i < 5"), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.parse("total"), new Ast.Expr.Binary("+", AstFixtures.parse("total"), call)),
+                        new Ast.Stmt.Assignment(AstFixtures.parse("i"), AstFixtures.parse("i + 1"))
+                )),
+                new Ast.Stmt.Return(AstFixtures.parse("total"))
+        );
+        Ast.Source source = new Ast.Source(Arrays.asList(), Arrays.asList(area, main));
+        Analyzer analyzer = new Analyzer();
+        analyzer.visit(source);
+        Assertions.assertEquals(30L, new Interpreter(analyzer.getScope(), new StringBuilder()).run(source));
+        Assertions.assertEquals(InlineCache.State.MONOMORPHIC, call.getCache().getState());
+        Assertions.assertEquals(1, call.getCache().getMisses());
+    }
+
+    @Test
+    void testObjectMethodShapes() {
+        //DEF one(o) DO RETURN 1; END DEF callOne(o) DO RETURN o.one(); END
+        Ast.Expr.Function call = (Ast.Expr.Function) AstFixtures.parse("o.one()");
+        Ast.Method one = method("one", Arrays.asList("o"), new Ast.Stmt.Return(AstFixtures.parse("1")));
+        Ast.Method callOne = method("callOne", Arrays.asList("o"), new Ast.Stmt.Return(call));
+        Interpreter interpreter = run(new StringBuilder(), Arrays.asList(), Arrays.asList(one, callOne));
+        //more shapes than a polymorphic cache holds, which all call the same function
+        for (PlcObject object : Arrays.asList(object("x"), object("a"), object("b"), object("c"), object("d"))) {
+            Assertions.assertEquals(1L, interpreter.call(callOne.getFunction(), object));
+        }
+        Assertions.assertEquals(InlineCache.State.MONOMORPHIC, call.getCache().getState());
+        Assertions.assertEquals(1, call.getCache().getMisses());
+    }
+
+    @Test
+    void testListMethods() {
+        //DEF main() DO LET l = list(); l.add(1); l.add(2); LET total = 0; FOR x IN l DO total = total + x; END RETURN total + l.size(); END
+        Object result = run(
+                new Ast.Stmt.Declaration("l", Optional.of(AstFixtures.parse("list()"))),
+                new Ast.Stmt.Expression(AstFixtures.parse("l.add(1)")),
+                new Ast.Stmt.Expression(AstFixtures.parse("l.add(2)")),
+                new Ast.Stmt.Declaration("total", Optional.of(AstFixtures.parse("0"))),
+                new Ast.Stmt.For("x", AstFixtures.parse("l"), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.parse("total"), AstFixtures.parse("total + x"))
+                )),
+                new Ast.Stmt.Return(AstFixtures.parse("total + l.size()"))
+        );
+        Assertions.assertEquals(5L, result);
+    }
+
+    @Test
+    void testRange() {
+        //DEF main() DO LET total = 0; FOR i IN range(0, 100) DO total = total + i; END RETURN total; END
+        Object result = run(
+                new Ast.Stmt.Declaration("total", Optional.of(AstFixtures.parse("0"))),
+                new Ast.Stmt.For("i", AstFixtures.parse("range(0, 100)"), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.parse("total"), AstFixtures.parse("total + i"))
+                )),
+                new Ast.Stmt.Return(AstFixtures.parse("total"))
+        );
+        Assertions.assertEquals(4950L, result);
+    }
+
+    @Test
+    void testUnusedRangeVariable() {
+        //DEF main() DO LET count = 0; FOR i IN range(5, 2000) DO count = count + 1; END RETURN count; END
+        Object result = run(
+                new Ast.Stmt.Declaration("count", Optional.of(AstFixtures.parse("0"))),
+                new Ast.Stmt.For("i", AstFixtures.parse("range(5, 2000)"), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.parse("count"), AstFixtures.parse("count + 1"))
+                )),
+                new Ast.Stmt.Return(AstFixtures.parse("count"))
+        );
+        Assertions.assertEquals(1995L, result);
+    }
+
+    @Test
+    void testLargeRange() {
+        //DEF main() DO LET total = 0; FOR i IN range(9223372036854775806, 9223372036854775809) DO total = total + i; END RETURN total; END
+        Object result = run(
+                new Ast.Stmt.Declaration("total", Optional.of(AstFixtures.parse("0"))),
+                new Ast.Stmt.For("i", AstFixtures.parse("range(9223372036854775806, 9223372036854775809)"), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.parse("total"), AstFixtures.parse("total + i"))
+                )),
+                new Ast.Stmt.Return(AstFixtures.parse("total"))
+        );
+        BigInteger max = BigInteger.valueOf(Long.MAX_VALUE);
+        Assertions.assertEquals(max.multiply(BigInteger.valueOf(3)), result);
+    }
+
+    @Test
+    void testListModifiedInLoop() {
+        //DEF main() DO LET l = list(); l.add(1); FOR x IN l DO l.add(x); END END
+        Assertions.assertThrows(RuntimeException.class, () -> run(
+                new Ast.Stmt.Declaration("l", Optional.of(AstFixtures.parse("list()"))),
+                new Ast.Stmt.Expression(AstFixtures.parse("l.add(1)")),
+                new Ast.Stmt.For("x", AstFixtures.parse("l"), Arrays.asList(
+                        new Ast.Stmt.Expression(AstFixtures.parse("l.add(x)"))
+                ))
+        ));
+    }
+
+    @Test
+    void testGlobals() {
+        //LET count = 1; DEF main() DO count = count + 1; RETURN count; END
+        Ast.Source source = new Ast.Source(
+                Arrays.asList(new Ast.Field("count", Optional.of(AstFixtures.parse("1")))),
+                Arrays.asList(method("main", Arrays.asList(),
+                        new Ast.Stmt.Assignment(AstFixtures.parse("count"), AstFixtures.parse("count + 1")),
+                        new Ast.Stmt.Return(AstFixtures.parse("count"))
+                ))
+        );
+        Analyzer analyzer = new Analyzer();
+        analyzer.visit(source);
+        Assertions.assertEquals(2L, new Interpreter(analyzer.getScope(), new StringBuilder()).run(source));
+    }
+
+    @Test
+    void testTailRecursion() {
+        //DEF count(n, total) DO IF n == 0 DO RETURN total; END RETURN count(n - 1, total + n); END
+        Ast.Method count = method("count", Arrays.asList("n", "total"),
+                new Ast.Stmt.If(AstFixtures.parse("n == 0"), Arrays.asList(new Ast.Stmt.Return(AstFixtures.parse("total"))), Arrays.asList()),
+                new Ast.Stmt.Return(AstFixtures.parse("count(n - 1, total + n)"))
+        );
+        Interpreter interpreter = run(new StringBuilder(), Arrays.asList(), Arrays.asList(count));
+        //deep enough to overflow the stack if each call recursed
+        Assertions.assertEquals(500000500000L, interpreter.call(count.getFunction(), 1000000L, 0L));
+    }
+
+    @Test
+    void testMutualTailRecursion() {
+        //DEF even(n) DO IF n == 0 DO RETURN TRUE; END LET m = n - 1; RETURN odd(m); END
+        //DEF odd(n) DO IF n == 0 DO RETURN FALSE; END RETURN even(n - 1); END
+        Ast.Method even = method("even", Arrays.asList("n"),
+                new Ast.Stmt.If(AstFixtures.parse("n == 0"), Arrays.asList(new Ast.Stmt.Return(AstFixtures.parse("TRUE"))), Arrays.asList()),
+                new Ast.Stmt.Declaration("m", Optional.of(AstFixtures.parse("n - 1"))),
+                new Ast.Stmt.Return(AstFixtures.parse("odd(m)"))
+        );
+        Ast.Method odd = method("odd", Arrays.asList("n"),
+                new Ast.Stmt.If(AstFixtures.parse("n == 0"), Arrays.asList(new Ast.Stmt.Return(AstFixtures.parse("FALSE"))), Arrays.asList()),
+                new Ast.Stmt.Return(AstFixtures.parse("even(n - 1)"))
+        );
+        Interpreter interpreter = run(new StringBuilder(), Arrays.asList(), Arrays.asList(even, odd));
+        Assertions.assertEquals(true, interpreter.call(even.getFunction(), 1000000L));
+        Assertions.assertEquals(true, interpreter.call(odd.getFunction(), 1000001L));
+    }
+
+    @Test
+    void testTailCallArguments() {
+        //DEF swap(a, b, n) DO IF n == 0 DO RETURN a - b; END RETURN swap(b, a, n - 1); END
+        Ast.Method swap = method("swap", Arrays.asList("a", "b", "n"),
+                new Ast.Stmt.If(AstFixtures.parse("n == 0"), Arrays.asList(new Ast.Stmt.Return(AstFixtures.parse("a - b"))), Arrays.asList()),
+                new Ast.Stmt.Return(AstFixtures.parse("swap(b, a, n - 1)"))
+        );
+        Interpreter interpreter = run(new StringBuilder(), Arrays.asList(), Arrays.asList(swap));
+        //the arguments are all evaluated before the frame is replaced
+        Assertions.assertEquals(-1L, interpreter.call(swap.getFunction(), 1L, 2L, 4L));
+        Assertions.assertEquals(1L, interpreter.call(swap.getFunction(), 1L, 2L, 5L));
+    }
+
+    /**
+     * Runs a main method with the given statements, returning its result.
+     */
+    private static Object run(Ast.Stmt... statements) {
+        Ast.Source source = new Ast.Source(Arrays.asList(), Arrays.asList(method("main", Arrays.asList(), statements)));
+        Analyzer analyzer = new Analyzer();
+        analyzer.visit(source);
+        return new Interpreter(analyzer.getScope(), new StringBuilder()).run(source);
+    }
+
+    private static Interpreter run(StringBuilder out, List<Ast.Field> fields, List<Ast.Method> methods) {
+        Ast.Source source = new Ast.Source(fields, methods);
+        Analyzer analyzer = new Analyzer();
+        analyzer.visit(source);
+        Interpreter interpreter = new Interpreter(analyzer.getScope(), out);
+        interpreter.run(source);
+        return interpreter;
+    }
+
+    private static Ast.Method method(String name, List<String> parameters, Ast.Stmt... statements) {
+        return new Ast.Method(name, parameters, Arrays.asList(statements));
+    }
+
+    /**
+     * Returns an object with the given fields added in order, each set to its
+     * name.
+     */
+    private static PlcObject object(String... fields) {
+        PlcObject object = new PlcObject();
+        for (String field : fields) {
+            object.add(object.getShape().addField(field), field);
+        }
+        return object;
+    }
+
+}
@@ -0,0 +1,196 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+final class IrTests {
+
+    @Test
+    void testStraightLine() {
+        //DEF f() DO LET x = 1; LET y = x; RETURN y + 2; END
+        Ir.Function function = lower(Arrays.asList(),
+                new Ast.Stmt.Declaration("x", Optional.of(AstFixtures.literal(1))),
+                new Ast.Stmt.Declaration("y", Optional.of(AstFixtures.access("x"))),
+                new Ast.Stmt.Return(binary("+", AstFixtures.access("y"), AstFixtures.literal(2)))
+        );
+        Assertions.assertEquals(1, function.getBlocks().size());
+        Ir.Instruction add = find(function, Ir.Op.BINARY).get(0);
+        //y is x, which is the constant 1 without any copies
+        Assertions.assertEquals(BigInteger.ONE.longValue(), add.getOperands().get(0).getData());
+        Assertions.assertEquals(Type.INTEGER, add.getType());
+        Assertions.assertSame(add, function.getEntry().getTerminator().getOperands().get(0));
+    }
+
+    @Test
+    void testUnreachable() {
+        //DEF f() DO RETURN 1; print(2); END
+        Ir.Function function = lower(Arrays.asList(),
+                new Ast.Stmt.Return(AstFixtures.literal(1)),
+                new Ast.Stmt.Expression(call("print", AstFixtures.literal(2)))
+        );
+        Assertions.assertEquals(1, function.getBlocks().size());
+        Assertions.assertTrue(find(function, Ir.Op.CALL).isEmpty());
+    }
+
+    @Test
+    void testConstantBranch() {
+        //DEF f() DO IF FALSE DO print(1); END RETURN 2; END
+        Ir.Function function = lower(Arrays.asList(),
+                new Ast.Stmt.If(new Ast.Expr.Literal(false), Arrays.asList(
+                        new Ast.Stmt.Expression(call("print", AstFixtures.literal(1)))
+                ), Arrays.asList()),
+                new Ast.Stmt.Return(AstFixtures.literal(2))
+        );
+        Assertions.assertTrue(find(function, Ir.Op.CALL).isEmpty());
+        Assertions.assertTrue(find(function, Ir.Op.BRANCH).isEmpty());
+    }
+
+    @Test
+    void testIfPhi() {
+        //DEF f(c) DO LET x = 1; IF c DO x = 2; END RETURN x; END
+        Ir.Function function = lower(Arrays.asList("c"),
+                new Ast.Stmt.Declaration("x", Optional.of(AstFixtures.literal(1))),
+                new Ast.Stmt.If(AstFixtures.access("c"), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.access("x"), AstFixtures.literal(2))
+                ), Arrays.asList()),
+                new Ast.Stmt.Return(AstFixtures.access("x"))
+        );
+        List<Ir.Instruction> phis = find(function, Ir.Op.PHI);
+        Assertions.assertEquals(1, phis.size());
+        Assertions.assertEquals(2, phis.get(0).getOperands().size());
+        Assertions.assertEquals(Type.INTEGER, phis.get(0).getType());
+    }
+
+    @Test
+    void testLoopWithoutAssignment() {
+        //DEF f(c) DO LET x = 1; WHILE c DO print(x); END RETURN x; END
+        Ir.Function function = lower(Arrays.asList("c"),
+                new Ast.Stmt.Declaration("x", Optional.of(AstFixtures.literal(1))),
+                new Ast.Stmt.While(AstFixtures.access("c"), Arrays.asList(
+                        new Ast.Stmt.Expression(call("print", AstFixtures.access("x")))
+                )),
+                new Ast.Stmt.Return(AstFixtures.access("x"))
+        );
+        //the phi for x at the loop header only merges x with itself
+        Assertions.assertTrue(find(function, Ir.Op.PHI).isEmpty());
+    }
+
+    @Test
+    void testCommonSubexpression() {
+        //DEF f() DO LET x = 1; LET y = 2; print(x + y); print(x + y); END
+        Ir.Function function = lower(Arrays.asList(),
+                new Ast.Stmt.Declaration("x", Optional.of(AstFixtures.literal(1))),
+                new Ast.Stmt.Declaration("y", Optional.of(AstFixtures.literal(2))),
+                new Ast.Stmt.Expression(call("print", binary("+", AstFixtures.access("x"), AstFixtures.access("y")))),
+                new Ast.Stmt.Expression(call("print", binary("+", AstFixtures.access("x"), AstFixtures.access("y"))))
+        );
+        List<Ir.Instruction> calls = find(function, Ir.Op.CALL);
+        Assertions.assertEquals(1, find(function, Ir.Op.BINARY).size());
+        Assertions.assertSame(calls.get(0).getOperands().get(0), calls.get(1).getOperands().get(0));
+    }
+
+    @Test
+    void testDivisionNotEliminated() {
+        //DEF f() DO LET x = 1; x / 0; END
+        Ir.Function function = lower(Arrays.asList(),
+                new Ast.Stmt.Declaration("x", Optional.of(AstFixtures.literal(1))),
+                new Ast.Stmt.Expression(binary("/", AstFixtures.access("x"), AstFixtures.literal(0)))
+        );
+        //the unused division is kept since it divides by zero
+        Assertions.assertEquals(1, find(function, Ir.Op.BINARY).size());
+    }
+
+    @Test
+    void testLoopInvariant() {
+        //DEF f() DO LET i = 0; LET k = 5; WHILE i < 10 DO i = i + k * 2; END RETURN i; END
+        Ir.Function function = lower(Arrays.asList(),
+                new Ast.Stmt.Declaration("i", Optional.of(AstFixtures.literal(0))),
+                new Ast.Stmt.Declaration("k", Optional.of(AstFixtures.literal(5))),
+                new Ast.Stmt.While(binary("<", AstFixtures.access("i"), AstFixtures.literal(10)), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.access("i"), binary("+", AstFixtures.access("i"), binary("*", AstFixtures.access("k"), AstFixtures.literal(2))))
+                )),
+                new Ast.Stmt.Return(AstFixtures.access("i"))
+        );
+        for (Ir.Instruction instruction : find(function, Ir.Op.BINARY)) {
+            if (instruction.getData().equals("*")) {
+                Assertions.assertSame(function.getEntry(), instruction.getBlock());
+            }
+            else {
+                Assertions.assertNotSame(function.getEntry(), instruction.getBlock());
+            }
+        }
+        Assertions.assertEquals(1, find(function, Ir.Op.PHI).size());
+    }
+
+    @Test
+    void testShortCircuit() {
+        //DEF f(a, b) DO RETURN a AND b; END
+        Ir.Function function = lower(Arrays.asList("a", "b"),
+                new Ast.Stmt.Return(binary("AND", AstFixtures.access("a"), AstFixtures.access("b")))
+        );
+        List<Ir.Instruction> phis = find(function, Ir.Op.PHI);
+        Assertions.assertEquals(1, phis.size());
+        Assertions.assertEquals(1, find(function, Ir.Op.BRANCH).size());
+        Assertions.assertTrue(find(function, Ir.Op.BINARY).isEmpty());
+    }
+
+    @Test
+    void testShortCircuitCondition() {
+        //DEF f(a, b) DO WHILE a AND b DO print(1); END END
+        Ir.Function function = lower(Arrays.asList("a", "b"),
+                new Ast.Stmt.While(binary("AND", AstFixtures.access("a"), AstFixtures.access("b")), Arrays.asList(
+                        new Ast.Stmt.Expression(call("print", AstFixtures.literal(1)))
+                ))
+        );
+        //the loop branches on the merged value, not in the block with a
+        List<Ir.Instruction> branches = find(function, Ir.Op.BRANCH);
+        Assertions.assertEquals(2, branches.size());
+        Assertions.assertEquals(Ir.Op.PHI, branches.get(1).getOperands().get(0).getOp());
+    }
+
+    /**
+     * Lowers and optimizes a method, checking that every block ends with
+     * its only terminator.
+     */
+    private static Ir.Function lower(List<String> parameters, Ast.Stmt... statements) {
+        Ast.Method method = new Ast.Method("f", parameters, Arrays.asList(statements));
+        Ast.Source source = new Ast.Source(Arrays.asList(), Arrays.asList(method));
+        new Analyzer().visit(source);
+        new TypeInference().visit(source);
+        Ir.Function function = new IrOptimizer().optimize(new IrBuilder().build(method));
+        for (Ir.Block block : function.getBlocks()) {
+            List<Ir.Instruction> instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                Assertions.assertEquals(i == instructions.size() - 1, instructions.get(i).getOp().isTerminator(), function.toString());
+            }
+        }
+        return function;
+    }
+
+    private static List<Ir.Instruction> find(Ir.Function function, Ir.Op op) {
+        List<Ir.Instruction> found = new ArrayList<>();
+        for (Ir.Block block : function.getBlocks()) {
+            for (Ir.Instruction instruction : block.getInstructions()) {
+                if (instruction.getOp() == op) {
+                    found.add(instruction);
+                }
+            }
+        }
+        return found;
+    }
+
+    private static Ast.Expr.Binary binary(String operator, Ast.Expr left, Ast.Expr right) {
+        return new Ast.Expr.Binary(operator, left, right);
+    }
+
+    private static Ast.Expr.Function call(String name, Ast.Expr... arguments) {
+        return new Ast.Expr.Function(Optional.empty(), name, Arrays.asList(arguments));
+    }
+
+}
@@ -117,7 +117,9 @@ public class LexerTests {
                 Arguments.of("Unterminated", "\"unterminated", false),
                 Arguments.of("Invalid Escape", "\"invalid\\escape\"", false),
                 Arguments.of("Multiple Spaces", "\"one       two\"", true),
-                Arguments.of("Mixed Escape", "\"mix of \\b \\$ escapes\"", false)
+                Arguments.of("Mixed Escape", "\"mix of \\b \\$ escapes\"", false),
+                Arguments.of("Line Separator", "\"x\u2028y\"", true),
+                Arguments.of("Next Line", "\"x\u0085y\"", true)
         );
     }
 
@@ -136,6 +138,7 @@ public class LexerTests {
                 Arguments.of("Comparison Not Eq", "!=", true),
                 Arguments.of("Comparison Eq", "==", true),
                 Arguments.of("Set To", "=", true),
+                Arguments.of("Paragraph Separator", "\u2029", true),
                 Arguments.of("Space", " ", false),
                 Arguments.of("Tab", "\t", false)
         );
@@ -177,6 +180,106 @@ public class LexerTests {
         Assertions.assertEquals(13, exception.getIndex());
     }
 
+    @ParameterizedTest
+    @MethodSource
+    void testLineIndex(String test, String input, int offset, int line, int column) {
+        Lexer lexer = new Lexer(input);
+        lexer.lex();
+        Assertions.assertEquals(line, lexer.getLineIndex().getLine(offset));
+        Assertions.assertEquals(column, lexer.getLineIndex().getColumn(offset));
+    }
+
+    private static Stream<Arguments> testLineIndex() {
+        return Stream.of(
+                Arguments.of("First Line", "one\ntwo", 2, 1, 3),
+                Arguments.of("Line Start", "one\ntwo", 4, 2, 1),
+                Arguments.of("Line Feed", "one\n\ntwo", 5, 3, 1),
+                Arguments.of("Carriage Return", "one\rtwo", 5, 2, 2),
+                Arguments.of("Carriage Return Line Feed", "one\r\ntwo", 5, 2, 1),
+                Arguments.of("End Of Input", "one\n", 4, 2, 1),
+                Arguments.of("Empty", "", 0, 1, 1)
+        );
+    }
+
+    @Test
+    void testLineIndexException() {
+        //lines after the error are scanned on lookup
+        Lexer lexer = new Lexer("one\n\"two\nthree\nfour");
+        Assertions.assertThrows(ParseException.class, lexer::lex);
+        Assertions.assertEquals(4, lexer.getLineIndex().getLineCount());
+        Assertions.assertEquals(4, lexer.getLineIndex().getLine(16));
+    }
+
+    @Test
+    void testLineIndexBeforeLex() {
+        //a lookup before lexing scans the input, and lexing doesn't add its lines again
+        Lexer lexer = new Lexer("one\ntwo\r\nthree\n");
+        Assertions.assertEquals(4, lexer.getLineIndex().getLineCount());
+        lexer.lex();
+        Assertions.assertEquals(4, lexer.getLineIndex().getLineCount());
+        Assertions.assertEquals(3, lexer.getLineIndex().getLine(9));
+        Assertions.assertEquals(9, lexer.getLineIndex().getLineStart(3));
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testCodePoints(String test, String input, List<Token> expected, List<Integer> bytes) {
+        List<Token> tokens = new Lexer(input, true).lex();
+        Assertions.assertEquals(expected, tokens);
+        for (int i = 0; i < tokens.size(); i++) {
+            Assertions.assertEquals((int) bytes.get(i), tokens.get(i).getByteIndex());
+        }
+    }
+
+    private static Stream<Arguments> testCodePoints() {
+        return Stream.of(
+                Arguments.of("ASCII", "LET x = 5;", Arrays.asList(
+                        new Token(Token.Type.IDENTIFIER, "LET", 0),
+                        new Token(Token.Type.IDENTIFIER, "x", 4),
+                        new Token(Token.Type.OPERATOR, "=", 6),
+                        new Token(Token.Type.INTEGER, "5", 8),
+                        new Token(Token.Type.OPERATOR, ";", 9)
+                ), Arrays.asList(0, 4, 6, 8, 9)),
+                Arguments.of("Two Bytes", "\"caf\u00E9\" x", Arrays.asList(
+                        new Token(Token.Type.STRING, "\"caf\u00E9\"", 0),
+                        new Token(Token.Type.IDENTIFIER, "x", 7)
+                ), Arrays.asList(0, 8)),
+                Arguments.of("Three Bytes", "'\u20AC' x", Arrays.asList(
+                        new Token(Token.Type.CHARACTER, "'\u20AC'", 0),
+                        new Token(Token.Type.IDENTIFIER, "x", 4)
+                ), Arrays.asList(0, 6)),
+                Arguments.of("Surrogate Pair String", "\"\uD83D\uDE00\" x", Arrays.asList(
+                        new Token(Token.Type.STRING, "\"\uD83D\uDE00\"", 0),
+                        new Token(Token.Type.IDENTIFIER, "x", 5)
+                ), Arrays.asList(0, 7)),
+                Arguments.of("Surrogate Pair Character", "'\uD83D\uDE00' x", Arrays.asList(
+                        new Token(Token.Type.CHARACTER, "'\uD83D\uDE00'", 0),
+                        new Token(Token.Type.IDENTIFIER, "x", 5)
+                ), Arrays.asList(0, 7)),
+                Arguments.of("Surrogate Pair Operator", "\uD83D\uDE00x", Arrays.asList(
+                        new Token(Token.Type.OPERATOR, "\uD83D\uDE00", 0),
+                        new Token(Token.Type.IDENTIFIER, "x", 2)
+                ), Arrays.asList(0, 4))
+        );
+    }
+
+    @Test
+    void testCodePointsException() {
+        ParseException exception = Assertions.assertThrows(ParseException.class,
+                () -> new Lexer("\u00E9 \"unterminated", true).lex());
+        Assertions.assertEquals(15, exception.getIndex());
+        Assertions.assertEquals(16, exception.getByteIndex());
+        exception = Assertions.assertThrows(ParseException.class,
+                () -> new Lexer("\"unterminated").lex());
+        Assertions.assertEquals(-1, exception.getByteIndex());
+    }
+
+    @Test
+    void testSurrogatePairCharacterDefault() {
+        //without code point mode, a surrogate pair is two characters
+        Assertions.assertThrows(ParseException.class, () -> new Lexer("'\uD83D\uDE00'").lex());
+    }
+
     /**
      * Tests that lexing the input through {@link Lexer#lexToken()} produces a
      * single token with the expected type and literal matching the input.
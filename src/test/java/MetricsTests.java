@@ -0,0 +1,71 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+final class MetricsTests {
+
+    @Test
+    void testPhase() {
+        Metrics metrics = new Metrics();
+        metrics.begin();
+        metrics.begin(Metrics.Phase.LEX);
+        List<Token> tokens = new Lexer("x + 1").lex();
+        metrics.end(Metrics.Phase.LEX);
+        metrics.addTokens(tokens.size());
+        metrics.end();
+
+        Assertions.assertEquals(3, metrics.getTokens());
+        Assertions.assertTrue(metrics.getNanos(Metrics.Phase.LEX) > 0);
+        Assertions.assertEquals(0, metrics.getNanos(Metrics.Phase.PARSE));
+        Assertions.assertTrue(metrics.getAllocatedBytes(Metrics.Phase.LEX) != 0);
+    }
+
+    @Test
+    void testUnbalancedPhase() {
+        Metrics metrics = new Metrics();
+        metrics.begin(Metrics.Phase.LEX);
+        Assertions.assertThrows(IllegalStateException.class, () -> metrics.begin(Metrics.Phase.PARSE));
+        Assertions.assertThrows(IllegalStateException.class, () -> metrics.end(Metrics.Phase.PARSE));
+    }
+
+    @Test
+    void testCompile() throws ParseException {
+        String input = "LET x = 1;\nDEF main() DO\n    print(x + 1);\nEND";
+        Compiler compiler = new Compiler();
+        Ast.Source source = compiler.compile(input);
+        Assertions.assertEquals(1, source.getMethods().size());
+        Assertions.assertNull(compiler.getMetrics());
+
+        Metrics.setEnabled(true);
+        try {
+            compiler.compile(input);
+        } finally {
+            Metrics.setEnabled(false);
+        }
+        Assertions.assertEquals(input.length(), compiler.getMetrics().getCharacters());
+        Assertions.assertEquals(18, compiler.getMetrics().getTokens());
+        Assertions.assertTrue(compiler.getMetrics().getNanos(Metrics.Phase.PARSE) > 0);
+    }
+
+    @Test
+    void testNodes() {
+        //print(x + 1);
+        Metrics metrics = new Metrics();
+        metrics.addNodes(new Ast.Stmt.Expression(new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(
+                new Ast.Expr.Binary("+",
+                        new Ast.Expr.Access(Optional.empty(), "x"),
+                        new Ast.Expr.Literal(BigInteger.ONE)
+                )
+        ))));
+        Assertions.assertEquals(5, metrics.getNodeCount());
+        Assertions.assertEquals(1, (int) metrics.getNodeCounts().get(Ast.Expr.Binary.class));
+        Assertions.assertNull(metrics.getNodeCounts().get(Ast.Expr.Group.class));
+    }
+
+}
@@ -0,0 +1,198 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+final class NodeInterpreterTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testExpression(String test, String input, Object expected) {
+        Ast.Source source = source(method("main", Arrays.asList(), new Ast.Stmt.Return(AstFixtures.parse(input))));
+        Assertions.assertEquals(expected, interpreter(source).run(source));
+    }
+
+    private static Stream<Arguments> testExpression() {
+        return Stream.of(
+                Arguments.of("Integer Arithmetic", "1 + 2 * 3", 7L),
+                Arguments.of("Integer Overflow", "9223372036854775807 + 1", Numeric.narrow(Numeric.toBigInteger(Long.MAX_VALUE).add(Numeric.toBigInteger(1L)))),
+                Arguments.of("Decimal Division", "1.0 / 3.0", new BigDecimal("0.3")),
+                Arguments.of("String Concatenation", "\"a\" + \"b\"", "ab"),
+                Arguments.of("Character Comparison", "'a' < 'b'", true),
+                Arguments.of("Equality", "1 == 1.0", false),
+                Arguments.of("Short Circuit", "FALSE AND 1 / 0", false),
+                Arguments.of("String Length", "\"abc\".length()", 3L)
+        );
+    }
+
+    @Test
+    void testMismatchedTypes() {
+        Ast.Source source = source(method("main", Arrays.asList(), new Ast.Stmt.Return(AstFixtures.parse("1 + \"a\""))));
+        Assertions.assertThrows(RuntimeException.class, () -> interpreter(source).run(source));
+    }
+
+    @Test
+    void testStableTypes() {
+        //DEF main() DO LET i = 0; LET t = 0; WHILE i < 100 DO t = t + i; i = i + 1; END RETURN t; END
+        Ast.Source source = source(method("main", Arrays.asList(),
+                new Ast.Stmt.Declaration("i", Optional.of(AstFixtures.parse("0"))),
+                new Ast.Stmt.Declaration("t", Optional.of(AstFixtures.parse("0"))),
+                new Ast.Stmt.While(AstFixtures.parse("i < 100"), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.parse("t"), AstFixtures.parse("t + i")),
+                        new Ast.Stmt.Assignment(AstFixtures.parse("i"), AstFixtures.parse("i + 1"))
+                )),
+                new Ast.Stmt.Return(AstFixtures.parse("t"))
+        ));
+        NodeInterpreter interpreter = interpreter(source);
+        Assertions.assertEquals(4950L, interpreter.run(source));
+        //each binary node specializes once, on its first execution
+        Assertions.assertEquals(3, interpreter.getSpecializations());
+        Assertions.assertEquals(0, interpreter.getDeoptimizations());
+    }
+
+    @Test
+    void testDeoptimization() {
+        //DEF add(a, b) DO RETURN a + b; END
+        Ast.Method add = method("add", Arrays.asList("a", "b"), new Ast.Stmt.Return(AstFixtures.parse("a + b")));
+        Ast.Source source = source(add);
+        NodeInterpreter interpreter = interpreter(source);
+        interpreter.run(source);
+        Assertions.assertEquals(3L, interpreter.call(add.getFunction(), 1L, 2L));
+        Assertions.assertEquals(3L, interpreter.call(add.getFunction(), 1L, 2L));
+        Assertions.assertEquals(0, interpreter.getDeoptimizations());
+        Assertions.assertEquals("ab", interpreter.call(add.getFunction(), "a", "b"));
+        Assertions.assertEquals(new BigDecimal("3.0"), interpreter.call(add.getFunction(), new BigDecimal("1.5"), new BigDecimal("1.5")));
+        Assertions.assertEquals(3L, interpreter.call(add.getFunction(), 1L, 2L));
+        //the generic node handles every type without rewriting again
+        Assertions.assertEquals(1, interpreter.getSpecializations());
+        Assertions.assertEquals(1, interpreter.getDeoptimizations());
+    }
+
+    @Test
+    void testRecursiveBinary() {
+        //DEF fact(n) DO IF n <= 1 DO RETURN 1; END RETURN n * fact(n - 1); END
+        //DEF g(n) DO IF n == 0 DO RETURN 0; END print(n + g(n - 1)); RETURN n; END
+        //DEF main() DO g(3); RETURN fact(5); END
+        Ast.Source source = source(
+                method("fact", Arrays.asList("n"),
+                        new Ast.Stmt.If(AstFixtures.parse("n <= 1"), Arrays.asList(new Ast.Stmt.Return(AstFixtures.parse("1"))), Arrays.asList()),
+                        new Ast.Stmt.Return(AstFixtures.parse("n * fact(n - 1)"))
+                ),
+                method("g", Arrays.asList("n"),
+                        new Ast.Stmt.If(AstFixtures.parse("n == 0"), Arrays.asList(new Ast.Stmt.Return(AstFixtures.parse("0"))), Arrays.asList()),
+                        new Ast.Stmt.Expression(AstFixtures.parse("print(n + g(n - 1))")),
+                        new Ast.Stmt.Return(AstFixtures.parse("n"))
+                ),
+                method("main", Arrays.asList(),
+                        new Ast.Stmt.Expression(AstFixtures.parse("g(3)")),
+                        new Ast.Stmt.Return(AstFixtures.parse("fact(5)"))
+                )
+        );
+        //the inner calls specialize each binary node before the outer ones finish executing it
+        StringBuilder tree = new StringBuilder();
+        Analyzer analyzer = new Analyzer();
+        analyzer.visit(source);
+        Assertions.assertEquals(120L, new Interpreter(analyzer.getScope(), tree).run(source));
+        StringBuilder nodes = new StringBuilder();
+        NodeInterpreter interpreter = new NodeInterpreter(analyzer.getScope(), nodes);
+        Assertions.assertEquals(120L, interpreter.run(source));
+        Assertions.assertEquals(tree.toString(), nodes.toString());
+        Assertions.assertEquals("1\n3\n5\n", nodes.toString());
+        Assertions.assertEquals(0, interpreter.getDeoptimizations());
+    }
+
+    @Test
+    void testTailRecursion() {
+        //DEF count(n, total) DO IF n == 0 DO RETURN total; END RETURN count(n - 1, total + n); END
+        Ast.Method count = method("count", Arrays.asList("n", "total"),
+                new Ast.Stmt.If(AstFixtures.parse("n == 0"), Arrays.asList(new Ast.Stmt.Return(AstFixtures.parse("total"))), Arrays.asList()),
+                new Ast.Stmt.Return(AstFixtures.parse("count(n - 1, total + n)"))
+        );
+        Ast.Source source = source(count);
+        NodeInterpreter interpreter = interpreter(source);
+        Assertions.assertEquals(500000500000L, interpreter.call(count.getFunction(), 1000000L, 0L));
+    }
+
+    @Test
+    void testObjects() {
+        //DEF area(r) DO RETURN r.w * r.h; END
+        //DEF main() DO LET r = object(); r.w = 2; r.h = 3; LET l = list(); l.add(r.area()); l.add(r.w); LET t = 0; FOR x IN l DO t = t + x; END RETURN t; END
+        Ast.Source source = source(
+                method("area", Arrays.asList("r"), new Ast.Stmt.Return(AstFixtures.parse("r.w * r.h"))),
+                method("main", Arrays.asList(),
+                        new Ast.Stmt.Declaration("r", Optional.of(AstFixtures.parse("object()"))),
+                        new Ast.Stmt.Assignment(AstFixtures.parse("r.w"), AstFixtures.parse("2")),
+                        new Ast.Stmt.Assignment(AstFixtures.parse("r.h"), AstFixtures.parse("3")),
+                        new Ast.Stmt.Declaration("l", Optional.of(AstFixtures.parse("list()"))),
+                        new Ast.Stmt.Expression(AstFixtures.parse("l.add(r.area())")),
+                        new Ast.Stmt.Expression(AstFixtures.parse("l.add(r.w)")),
+                        new Ast.Stmt.Declaration("t", Optional.of(AstFixtures.parse("0"))),
+                        new Ast.Stmt.For("x", AstFixtures.parse("l"), Arrays.asList(
+                                new Ast.Stmt.Assignment(AstFixtures.parse("t"), AstFixtures.parse("t + x"))
+                        )),
+                        new Ast.Stmt.Return(AstFixtures.parse("t"))
+                )
+        );
+        Assertions.assertEquals(8L, interpreter(source).run(source));
+    }
+
+    @Test
+    void testRange() {
+        //DEF main() DO LET total = 0; FOR i IN range(0, 100) DO total = total + i; END FOR i IN range(0, 10) DO total = total + 1; END RETURN total; END
+        Ast.Source source = source(method("main", Arrays.asList(),
+                new Ast.Stmt.Declaration("total", Optional.of(AstFixtures.parse("0"))),
+                new Ast.Stmt.For("i", AstFixtures.parse("range(0, 100)"), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.parse("total"), AstFixtures.parse("total + i"))
+                )),
+                new Ast.Stmt.For("i", AstFixtures.parse("range(0, 10)"), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.parse("total"), AstFixtures.parse("total + 1"))
+                )),
+                new Ast.Stmt.Return(AstFixtures.parse("total"))
+        ));
+        Assertions.assertEquals(4960L, interpreter(source).run(source));
+    }
+
+    @Test
+    void testGlobals() {
+        //LET count = 1; DEF main() DO count = count + 1; print(count); RETURN count; END
+        Ast.Source source = new Ast.Source(
+                Arrays.asList(new Ast.Field("count", Optional.of(AstFixtures.parse("1")))),
+                Arrays.asList(method("main", Arrays.asList(),
+                        new Ast.Stmt.Assignment(AstFixtures.parse("count"), AstFixtures.parse("count + 1")),
+                        new Ast.Stmt.Expression(AstFixtures.parse("print(count)")),
+                        new Ast.Stmt.Return(AstFixtures.parse("count"))
+                ))
+        );
+        StringBuilder out = new StringBuilder();
+        Assertions.assertEquals(2L, interpreter(source, out).run(source));
+        Assertions.assertEquals("2\n", out.toString());
+    }
+
+    private static NodeInterpreter interpreter(Ast.Source source) {
+        return interpreter(source, new StringBuilder());
+    }
+
+    private static NodeInterpreter interpreter(Ast.Source source, StringBuilder out) {
+        Analyzer analyzer = new Analyzer();
+        analyzer.visit(source);
+        return new NodeInterpreter(analyzer.getScope(), out);
+    }
+
+    private static Ast.Source source(Ast.Method... methods) {
+        return new Ast.Source(Arrays.asList(), Arrays.asList(methods));
+    }
+
+    private static Ast.Method method(String name, List<String> parameters, Ast.Stmt... statements) {
+        return new Ast.Method(name, parameters, Arrays.asList(statements));
+    }
+
+}
@@ -0,0 +1,194 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+final class OptimizerTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testConstantFolding(String test, Ast.Expr ast, Ast.Expr expected) {
+        test(ast, expected);
+    }
+
+    private static Stream<Arguments> testConstantFolding() {
+        return Stream.of(
+                Arguments.of("Integer Addition",
+                        //1 + 2
+                        new Ast.Expr.Binary("+", AstFixtures.literal(1), AstFixtures.literal(2)),
+                        AstFixtures.literal(3)
+                ),
+                Arguments.of("Nested Integer Arithmetic",
+                        //(1 + 2) * 3 - 4
+                        new Ast.Expr.Binary("-",
+                                new Ast.Expr.Binary("*",
+                                        new Ast.Expr.Group(new Ast.Expr.Binary("+", AstFixtures.literal(1), AstFixtures.literal(2))),
+                                        AstFixtures.literal(3)
+                                ),
+                                AstFixtures.literal(4)
+                        ),
+                        AstFixtures.literal(5)
+                ),
+                Arguments.of("Integer Overflow",
+                        //9223372036854775807 + 1
+                        new Ast.Expr.Binary("+", AstFixtures.literal(Long.MAX_VALUE), AstFixtures.literal(1)),
+                        new Ast.Expr.Literal(new BigInteger("9223372036854775808"))
+                ),
+                Arguments.of("Integer Underflow",
+                        //(9223372036854775807 + 1) - 1
+                        new Ast.Expr.Binary("-",
+                                new Ast.Expr.Group(new Ast.Expr.Binary("+", AstFixtures.literal(Long.MAX_VALUE), AstFixtures.literal(1))),
+                                AstFixtures.literal(1)
+                        ),
+                        AstFixtures.literal(Long.MAX_VALUE)
+                ),
+                Arguments.of("Decimal Division",
+                        //1.0 / 3.0
+                        new Ast.Expr.Binary("/",
+                                new Ast.Expr.Literal(new BigDecimal("1.0")),
+                                new Ast.Expr.Literal(new BigDecimal("3.0"))
+                        ),
+                        new Ast.Expr.Literal(new BigDecimal("0.3"))
+                ),
+                Arguments.of("Integer Comparison",
+                        //1 < 2
+                        new Ast.Expr.Binary("<", AstFixtures.literal(1), AstFixtures.literal(2)),
+                        new Ast.Expr.Literal(true)
+                ),
+                Arguments.of("String Concatenation",
+                        //"a" + "b"
+                        new Ast.Expr.Binary("+", new Ast.Expr.Literal("a"), new Ast.Expr.Literal("b")),
+                        new Ast.Expr.Literal("ab")
+                ),
+                Arguments.of("Division By Zero",
+                        //1 / 0
+                        new Ast.Expr.Binary("/", AstFixtures.literal(1), AstFixtures.literal(0)),
+                        new Ast.Expr.Binary("/", AstFixtures.literal(1), AstFixtures.literal(0))
+                ),
+                Arguments.of("Mismatched Types",
+                        //1 + 1.0
+                        new Ast.Expr.Binary("+", AstFixtures.literal(1), new Ast.Expr.Literal(new BigDecimal("1.0"))),
+                        new Ast.Expr.Binary("+", AstFixtures.literal(1), new Ast.Expr.Literal(new BigDecimal("1.0")))
+                ),
+                Arguments.of("Variable Operand",
+                        //x + (1 + 2)
+                        new Ast.Expr.Binary("+",
+                                AstFixtures.access("x"),
+                                new Ast.Expr.Group(new Ast.Expr.Binary("+", AstFixtures.literal(1), AstFixtures.literal(2)))
+                        ),
+                        new Ast.Expr.Binary("+", AstFixtures.access("x"), AstFixtures.literal(3))
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testGroupRemoval(String test, Ast.Expr ast, Ast.Expr expected) {
+        test(ast, expected);
+    }
+
+    private static Stream<Arguments> testGroupRemoval() {
+        return Stream.of(
+                Arguments.of("Grouped Variable",
+                        //((x))
+                        new Ast.Expr.Group(new Ast.Expr.Group(AstFixtures.access("x"))),
+                        AstFixtures.access("x")
+                ),
+                Arguments.of("Grouped Binary Operand",
+                        //(x + y) * z
+                        new Ast.Expr.Binary("*",
+                                new Ast.Expr.Group(new Ast.Expr.Group(new Ast.Expr.Binary("+", AstFixtures.access("x"), AstFixtures.access("y")))),
+                                AstFixtures.access("z")
+                        ),
+                        new Ast.Expr.Binary("*",
+                                new Ast.Expr.Group(new Ast.Expr.Binary("+", AstFixtures.access("x"), AstFixtures.access("y"))),
+                                AstFixtures.access("z")
+                        )
+                ),
+                Arguments.of("Grouped Argument",
+                        //f((x + y))
+                        new Ast.Expr.Function(Optional.empty(), "f", Arrays.asList(
+                                new Ast.Expr.Group(new Ast.Expr.Binary("+", AstFixtures.access("x"), AstFixtures.access("y")))
+                        )),
+                        new Ast.Expr.Function(Optional.empty(), "f", Arrays.asList(
+                                new Ast.Expr.Binary("+", AstFixtures.access("x"), AstFixtures.access("y"))
+                        ))
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testShortCircuit(String test, Ast.Expr ast, Ast.Expr expected) {
+        test(ast, expected);
+    }
+
+    private static Stream<Arguments> testShortCircuit() {
+        return Stream.of(
+                Arguments.of("True And",
+                        //TRUE AND x < 1
+                        new Ast.Expr.Binary("AND", new Ast.Expr.Literal(true),
+                                new Ast.Expr.Binary("<", AstFixtures.access("x"), AstFixtures.literal(1))),
+                        new Ast.Expr.Binary("<", AstFixtures.access("x"), AstFixtures.literal(1))
+                ),
+                Arguments.of("True And Unknown",
+                        //TRUE AND x, which is a type error unless x is a boolean
+                        new Ast.Expr.Binary("AND", new Ast.Expr.Literal(true), AstFixtures.access("x")),
+                        new Ast.Expr.Binary("AND", new Ast.Expr.Literal(true), AstFixtures.access("x"))
+                ),
+                Arguments.of("False And",
+                        //FALSE AND f()
+                        new Ast.Expr.Binary("AND", new Ast.Expr.Literal(false),
+                                new Ast.Expr.Function(Optional.empty(), "f", Arrays.asList())),
+                        new Ast.Expr.Literal(false)
+                ),
+                Arguments.of("True Or",
+                        //TRUE OR f()
+                        new Ast.Expr.Binary("OR", new Ast.Expr.Literal(true),
+                                new Ast.Expr.Function(Optional.empty(), "f", Arrays.asList())),
+                        new Ast.Expr.Literal(true)
+                ),
+                Arguments.of("False Or",
+                        //FALSE OR (x AND TRUE)
+                        new Ast.Expr.Binary("OR", new Ast.Expr.Literal(false), new Ast.Expr.Group(
+                                new Ast.Expr.Binary("AND", AstFixtures.access("x"), new Ast.Expr.Literal(true)))),
+                        new Ast.Expr.Binary("AND", AstFixtures.access("x"), new Ast.Expr.Literal(true))
+                ),
+                Arguments.of("False Or Integer",
+                        //FALSE OR 1
+                        new Ast.Expr.Binary("OR", new Ast.Expr.Literal(false), AstFixtures.literal(1)),
+                        new Ast.Expr.Binary("OR", new Ast.Expr.Literal(false), AstFixtures.literal(1))
+                ),
+                Arguments.of("Variable And",
+                        //x AND TRUE
+                        new Ast.Expr.Binary("AND", AstFixtures.access("x"), new Ast.Expr.Literal(true)),
+                        new Ast.Expr.Binary("AND", AstFixtures.access("x"), new Ast.Expr.Literal(true))
+                )
+        );
+    }
+
+    @Test
+    void testDeeplyNestedFolding() {
+        //1 + 1 + ... + 1, nested deep enough to overflow a recursive walk
+        Ast.Expr ast = AstFixtures.literal(1);
+        for (int i = 0; i < 100_000; i++) {
+            ast = new Ast.Expr.Binary("+", ast, AstFixtures.literal(1));
+        }
+        test(ast, AstFixtures.literal(100_001));
+    }
+
+    private static void test(Ast.Expr ast, Ast.Expr expected) {
+        Ast.Stmt.Expression stmt = (Ast.Stmt.Expression) new Optimizer().optimize(new Ast.Stmt.Expression(ast));
+        Assertions.assertEquals(expected, stmt.getExpression());
+    }
+
+}
@@ -8,6 +8,7 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -266,7 +267,171 @@ final class ParserExpressionTests {
         );
     }
 
- 
+    @ParameterizedTest
+    @MethodSource
+    void testIterativeExpression(String test, List<Token> tokens, Ast.Expr expected) {
+        Assertions.assertEquals(expected, new Parser(tokens, 100).parseExpression());
+    }
+
+    private static Stream<Arguments> testIterativeExpression() {
+        return Stream.of(
+                testLiteralExpression(),
+                testGroupExpression(),
+                testBinaryExpression(),
+                testAccessExpression(),
+                testFunctionExpression(),
+                Stream.of(
+                        Arguments.of("Precedence",
+                                Arrays.asList(
+                                        //a + b * c AND d
+                                        new Token(Token.Type.IDENTIFIER, "a", 0),
+                                        new Token(Token.Type.OPERATOR, "+", 2),
+                                        new Token(Token.Type.IDENTIFIER, "b", 4),
+                                        new Token(Token.Type.OPERATOR, "*", 6),
+                                        new Token(Token.Type.IDENTIFIER, "c", 8),
+                                        new Token(Token.Type.IDENTIFIER, "AND", 10),
+                                        new Token(Token.Type.IDENTIFIER, "d", 14)
+                                ),
+                                new Ast.Expr.Binary("AND",
+                                        new Ast.Expr.Binary("+",
+                                                new Ast.Expr.Access(Optional.empty(), "a"),
+                                                new Ast.Expr.Binary("*",
+                                                        new Ast.Expr.Access(Optional.empty(), "b"),
+                                                        new Ast.Expr.Access(Optional.empty(), "c")
+                                                )
+                                        ),
+                                        new Ast.Expr.Access(Optional.empty(), "d")
+                                )
+                        ),
+                        Arguments.of("Left Associative",
+                                Arrays.asList(
+                                        //a - b - c
+                                        new Token(Token.Type.IDENTIFIER, "a", 0),
+                                        new Token(Token.Type.OPERATOR, "-", 2),
+                                        new Token(Token.Type.IDENTIFIER, "b", 4),
+                                        new Token(Token.Type.OPERATOR, "-", 6),
+                                        new Token(Token.Type.IDENTIFIER, "c", 8)
+                                ),
+                                new Ast.Expr.Binary("-",
+                                        new Ast.Expr.Binary("-",
+                                                new Ast.Expr.Access(Optional.empty(), "a"),
+                                                new Ast.Expr.Access(Optional.empty(), "b")
+                                        ),
+                                        new Ast.Expr.Access(Optional.empty(), "c")
+                                )
+                        ),
+                        Arguments.of("Nested Method Calls",
+                                Arrays.asList(
+                                        //obj.f(g(x), y).z
+                                        new Token(Token.Type.IDENTIFIER, "obj", 0),
+                                        new Token(Token.Type.OPERATOR, ".", 3),
+                                        new Token(Token.Type.IDENTIFIER, "f", 4),
+                                        new Token(Token.Type.OPERATOR, "(", 5),
+                                        new Token(Token.Type.IDENTIFIER, "g", 6),
+                                        new Token(Token.Type.OPERATOR, "(", 7),
+                                        new Token(Token.Type.IDENTIFIER, "x", 8),
+                                        new Token(Token.Type.OPERATOR, ")", 9),
+                                        new Token(Token.Type.OPERATOR, ",", 10),
+                                        new Token(Token.Type.IDENTIFIER, "y", 12),
+                                        new Token(Token.Type.OPERATOR, ")", 13),
+                                        new Token(Token.Type.OPERATOR, ".", 14),
+                                        new Token(Token.Type.IDENTIFIER, "z", 15)
+                                ),
+                                new Ast.Expr.Access(Optional.of(
+                                        new Ast.Expr.Function(Optional.of(new Ast.Expr.Access(Optional.empty(), "obj")), "f", Arrays.asList(
+                                                new Ast.Expr.Function(Optional.empty(), "g", Arrays.asList(
+                                                        new Ast.Expr.Access(Optional.empty(), "x")
+                                                )),
+                                                new Ast.Expr.Access(Optional.empty(), "y")
+                                        ))
+                                ), "z")
+                        )
+                )
+        ).flatMap(Function.identity());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testIterativeExpression")
+    void testFlatExpression(String test, List<Token> tokens, Ast.Expr expected) {
+        FlatAst ast = new FlatAst();
+        int node = new Parser(tokens).parseFlatExpression(ast);
+        Assertions.assertEquals(ast.size() - 1, node);
+        Assertions.assertEquals(expected, ast.toAst(node));
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testComparisonModes(String test, String operator) {
+        //a OP b == c, which both parsers group left to right
+        List<Token> tokens = Arrays.asList(
+                new Token(Token.Type.IDENTIFIER, "a", 0),
+                new Token(Token.Type.OPERATOR, operator, 2),
+                new Token(Token.Type.IDENTIFIER, "b", 3 + operator.length()),
+                new Token(Token.Type.OPERATOR, "==", 5 + operator.length()),
+                new Token(Token.Type.IDENTIFIER, "c", 8 + operator.length())
+        );
+        Ast.Expr expected = new Ast.Expr.Binary("==",
+                new Ast.Expr.Binary(operator,
+                        new Ast.Expr.Access(Optional.empty(), "a"),
+                        new Ast.Expr.Access(Optional.empty(), "b")
+                ),
+                new Ast.Expr.Access(Optional.empty(), "c")
+        );
+        Assertions.assertEquals(expected, new Parser(tokens).parseExpression());
+        Assertions.assertEquals(expected, new Parser(tokens, 100).parseExpression());
+    }
+
+    private static Stream<Arguments> testComparisonModes() {
+        return Stream.of(
+                Arguments.of("Less Than", "<"),
+                Arguments.of("Less Than Or Equal", "<="),
+                Arguments.of("Greater Than", ">"),
+                Arguments.of("Greater Than Or Equal", ">="),
+                Arguments.of("Not Equal", "!=")
+        );
+    }
+
+    @Test
+    void testSupplementaryCharacterLiteral() {
+        //a surrogate pair lexed in code point mode doesn't fit in a Character
+        test(Arrays.asList(new Token(Token.Type.CHARACTER, "'\uD83D\uDE00'", 0)), null, Parser::parseExpression);
+    }
+
+    @Test
+    void testIterativeDeepNesting() {
+        //((((...expr...))))
+        int depth = 100_000;
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < depth; i++) {
+            tokens.add(new Token(Token.Type.OPERATOR, "(", i));
+        }
+        tokens.add(new Token(Token.Type.IDENTIFIER, "expr", depth));
+        for (int i = 0; i < depth; i++) {
+            tokens.add(new Token(Token.Type.OPERATOR, ")", depth + 4 + i));
+        }
+        Ast.Expr ast = new Parser(tokens, depth).parseExpression();
+        for (int i = 0; i < depth; i++) {
+            Assertions.assertTrue(ast instanceof Ast.Expr.Group);
+            ast = ((Ast.Expr.Group) ast).getExpression();
+        }
+        Assertions.assertEquals(new Ast.Expr.Access(Optional.empty(), "expr"), ast);
+    }
+
+    @Test
+    void testIterativeDepthLimit() {
+        //((expr))
+        List<Token> tokens = Arrays.asList(
+                new Token(Token.Type.OPERATOR, "(", 0),
+                new Token(Token.Type.OPERATOR, "(", 1),
+                new Token(Token.Type.IDENTIFIER, "expr", 2),
+                new Token(Token.Type.OPERATOR, ")", 6),
+                new Token(Token.Type.OPERATOR, ")", 7)
+        );
+        ParseException exception = Assertions.assertThrows(ParseException.class,
+                () -> new Parser(tokens, 1).parseExpression());
+        Assertions.assertEquals(1, exception.getIndex());
+    }
+
     /**
      * Standard test function. If expected is null, a ParseException is expected
      * to be thrown (not used in the provided tests).
@@ -0,0 +1,105 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+final class ParserTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testStatement(String test, String input, Ast.Stmt expected) throws ParseException {
+        Assertions.assertEquals(expected, new Parser(new Lexer(input).lex()).parseStatement());
+    }
+
+    private static Stream<Arguments> testStatement() {
+        return Stream.of(
+                Arguments.of("Declaration", "LET x;",
+                        new Ast.Stmt.Declaration("x", Optional.empty())
+                ),
+                Arguments.of("Initialization", "LET x = 1;",
+                        new Ast.Stmt.Declaration("x", Optional.of(AstFixtures.literal(1)))
+                ),
+                Arguments.of("If Else", "IF c DO f(); ELSE g(); END",
+                        new Ast.Stmt.If(AstFixtures.access("c"),
+                                Arrays.asList(new Ast.Stmt.Expression(call("f"))),
+                                Arrays.asList(new Ast.Stmt.Expression(call("g")))
+                        )
+                ),
+                Arguments.of("For", "FOR x IN l DO f(); END",
+                        new Ast.Stmt.For("x", AstFixtures.access("l"), Arrays.asList(new Ast.Stmt.Expression(call("f"))))
+                ),
+                Arguments.of("While", "WHILE c DO x = 1; END",
+                        new Ast.Stmt.While(AstFixtures.access("c"), Arrays.asList(new Ast.Stmt.Assignment(AstFixtures.access("x"), AstFixtures.literal(1))))
+                ),
+                Arguments.of("Return", "RETURN x;",
+                        new Ast.Stmt.Return(AstFixtures.access("x"))
+                )
+        );
+    }
+
+    @Test
+    void testSource() throws ParseException {
+        Ast.Source source = new Parser(new Lexer("LET g = 1; LET h; DEF f(a, b) DO RETURN a; END DEF main() DO END").lex()).parseSource();
+        Assertions.assertEquals(new Ast.Source(
+                Arrays.asList(
+                        new Ast.Field("g", Optional.of(AstFixtures.literal(1))),
+                        new Ast.Field("h", Optional.empty())
+                ),
+                Arrays.asList(
+                        new Ast.Method("f", Arrays.asList("a", "b"), Arrays.asList(new Ast.Stmt.Return(AstFixtures.access("a")))),
+                        new Ast.Method("main", Arrays.asList(), Arrays.asList())
+                )
+        ), source);
+        Assertions.assertEquals(33, source.getMethods().get(0).getStatements().get(0).getIndex());
+    }
+
+    @Test
+    void testFlatSource() throws ParseException {
+        String input = String.join("\n",
+                "LET g = 'c'; LET h;",
+                "DEF f(a, b) DO",
+                "    LET s = \"s\\n\" + 1.5;",
+                "    IF a.x >= NIL AND TRUE DO a.y = f(1, b); ELSE print(FALSE); END",
+                "    FOR i IN list(1, 2) DO WHILE (i < 2) DO i = i * 2; END END",
+                "    RETURN a.g(h)",
+                ";",
+                "END",
+                "DEF main() DO END");
+        FlatAst ast = new FlatAst();
+        int node = new Parser(new Lexer(input).lex()).parseFlatSource(ast);
+        Assertions.assertEquals(ast.size() - 1, node);
+        Assertions.assertEquals(new Parser(new Lexer(input).lex()).parseSource(), ast.toAst(node));
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testError(String test, String input, int index) {
+        ParseException exception = Assertions.assertThrows(ParseException.class,
+                () -> new Parser(new Lexer(input).lex()).parseSource());
+        Assertions.assertEquals(index, exception.getIndex());
+        exception = Assertions.assertThrows(ParseException.class,
+                () -> new Parser(new Lexer(input).lex()).parseFlatSource(new FlatAst()));
+        Assertions.assertEquals(index, exception.getIndex());
+    }
+
+    private static Stream<Arguments> testError() {
+        return Stream.of(
+                Arguments.of("Missing Semicolon", "LET x = 1", 9),
+                Arguments.of("Missing End", "DEF f() DO RETURN 1;", 20),
+                Arguments.of("Field After Method", "DEF f() DO END LET x;", 15),
+                Arguments.of("Missing Do", "DEF f() RETURN 1; END", 8)
+        );
+    }
+
+    private static Ast.Expr.Function call(String name) {
+        return new Ast.Expr.Function(Optional.empty(), name, Arrays.asList());
+    }
+
+}
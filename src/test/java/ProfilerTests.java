@@ -0,0 +1,127 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+final class ProfilerTests {
+
+    @Test
+    void testExact() {
+        //DEF add(a, b) DO RETURN a + b; END
+        //DEF main() DO LET i = 0; LET t = 0; WHILE i < 10 DO t = add(t, i); i = i + 1; END RETURN t; END
+        Ast.Stmt body = new Ast.Stmt.Assignment(AstFixtures.parse("t"), AstFixtures.parse("add(t, i)"));
+        Ast.Source source = source(
+                method("add", Arrays.asList("a", "b"), new Ast.Stmt.Return(AstFixtures.parse("a + b"))),
+                method("main", Arrays.asList(),
+                        new Ast.Stmt.Declaration("i", Optional.of(AstFixtures.parse("0"))),
+                        new Ast.Stmt.Declaration("t", Optional.of(AstFixtures.parse("0"))),
+                        new Ast.Stmt.While(AstFixtures.parse("i < 10"), Arrays.asList(
+                                body,
+                                new Ast.Stmt.Assignment(AstFixtures.parse("i"), AstFixtures.parse("i + 1"))
+                        )),
+                        new Ast.Stmt.Return(AstFixtures.parse("t"))
+                )
+        );
+        Profiler profiler = new Profiler(Profiler.Mode.EXACT);
+        Assertions.assertEquals(45L, run(source, profiler));
+        Assertions.assertEquals(10, method(profiler, "add").getCalls());
+        Assertions.assertEquals(1, method(profiler, "main").getCalls());
+        Assertions.assertTrue(method(profiler, "main").getTotalTime() >= method(profiler, "add").getTotalTime());
+        Assertions.assertEquals(10, statement(profiler, body).getCount());
+        Assertions.assertEquals(0, profiler.getSamples());
+        List<String> stacks = stacks(profiler);
+        Assertions.assertTrue(stacks.contains("main/0;add/2;Return"), stacks.toString());
+        Assertions.assertTrue(stacks.contains("main/0;While"), stacks.toString());
+    }
+
+    @Test
+    void testRecursion() {
+        //DEF fact(n) DO IF n <= 1 DO RETURN 1; END RETURN n * fact(n - 1); END
+        //DEF main() DO RETURN fact(5); END
+        Ast.Source source = source(
+                method("fact", Arrays.asList("n"),
+                        new Ast.Stmt.If(AstFixtures.parse("n <= 1"), Arrays.asList(new Ast.Stmt.Return(AstFixtures.parse("1"))), Arrays.asList()),
+                        new Ast.Stmt.Return(AstFixtures.parse("n * fact(n - 1)"))
+                ),
+                method("main", Arrays.asList(), new Ast.Stmt.Return(AstFixtures.parse("fact(5)")))
+        );
+        Profiler profiler = new Profiler(Profiler.Mode.EXACT);
+        Assertions.assertEquals(120L, run(source, profiler));
+        Profiler.Method fact = method(profiler, "fact");
+        Assertions.assertEquals(5, fact.getCalls());
+        //recursive calls are only counted once in the total time
+        Assertions.assertTrue(fact.getTotalTime() >= fact.getSelfTime());
+        //main's RETURN is a tail call, so fact replaces it on the stack
+        List<String> stacks = stacks(profiler);
+        Assertions.assertTrue(stacks.contains("fact/1;fact/1;fact/1;fact/1;fact/1;If"), stacks.toString());
+        Assertions.assertFalse(stacks.stream().anyMatch(stack -> stack.startsWith("main/0;fact/1")), stacks.toString());
+    }
+
+    @Test
+    void testSampling() {
+        //DEF main() DO LET i = 0; LET t = 0; WHILE i < 200000 DO t = t + i; i = i + 1; END RETURN t; END
+        Ast.Source source = source(method("main", Arrays.asList(),
+                new Ast.Stmt.Declaration("i", Optional.of(AstFixtures.parse("0"))),
+                new Ast.Stmt.Declaration("t", Optional.of(AstFixtures.parse("0"))),
+                new Ast.Stmt.While(AstFixtures.parse("i < 200000"), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.parse("t"), AstFixtures.parse("t + i")),
+                        new Ast.Stmt.Assignment(AstFixtures.parse("i"), AstFixtures.parse("i + 1"))
+                )),
+                new Ast.Stmt.Return(AstFixtures.parse("t"))
+        ));
+        Profiler profiler = new Profiler(Profiler.Mode.SAMPLING, 100_000);
+        Assertions.assertEquals(19999900000L, run(source, profiler));
+        Assertions.assertTrue(profiler.getSamples() > 0);
+        Assertions.assertEquals(profiler.getSamples(), method(profiler, "main").getSamples());
+        for (String line : profiler.collapse().split("\n")) {
+            Assertions.assertTrue(line.matches("main/0(;\\w+)* \\d+"), line);
+        }
+    }
+
+    @Test
+    void testIndex() throws ParseException {
+        Ast.Stmt statement = new Parser(new Lexer("  print(1);").lex()).parseStatement();
+        Assertions.assertEquals(2, statement.getIndex());
+        Ast.Source source = source(method("main", Arrays.asList(), statement));
+        Profiler profiler = new Profiler(Profiler.Mode.EXACT);
+        run(source, profiler);
+        Assertions.assertEquals(2, statement(profiler, statement).getIndex());
+        Assertions.assertTrue(stacks(profiler).contains("main/0;Expression@2"));
+    }
+
+    private static Object run(Ast.Source source, Profiler profiler) {
+        Analyzer analyzer = new Analyzer();
+        analyzer.visit(source);
+        Interpreter interpreter = new Interpreter(analyzer.getScope(), new StringBuilder());
+        interpreter.setProfiler(profiler);
+        return interpreter.run(source);
+    }
+
+    private static Profiler.Method method(Profiler profiler, String name) {
+        return profiler.getMethods().stream().filter(m -> m.getFunction().getName().equals(name)).findFirst().get();
+    }
+
+    private static Profiler.Statement statement(Profiler profiler, Ast.Stmt statement) {
+        return profiler.getStatements().stream().filter(s -> s.getStatement() == statement).findFirst().get();
+    }
+
+    /**
+     * Returns the stacks of the collapsed profile, without their weights.
+     */
+    private static List<String> stacks(Profiler profiler) {
+        return Arrays.stream(profiler.collapse().split("\n")).map(line -> line.substring(0, line.lastIndexOf(' '))).toList();
+    }
+
+    private static Ast.Source source(Ast.Method... methods) {
+        return new Ast.Source(Arrays.asList(), Arrays.asList(methods));
+    }
+
+    private static Ast.Method method(String name, List<String> parameters, Ast.Stmt... statements) {
+        return new Ast.Method(name, parameters, Arrays.asList(statements));
+    }
+
+}
@@ -0,0 +1,254 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+final class ProjectTests {
+
+    @Test
+    void testDependencies() {
+        //a: DEF main() DO f(); print(x); END DEF g() DO END
+        //b: DEF f() DO g(); END
+        //c: LET x = 1;
+        Ast.Expr.Function f = new Ast.Expr.Function(Optional.empty(), "f", Arrays.asList());
+        Ast.Expr.Access x = AstFixtures.access("x");
+        Ast.Expr.Function g = new Ast.Expr.Function(Optional.empty(), "g", Arrays.asList());
+        Ast.Method method = new Ast.Method("f", Arrays.asList(), Arrays.asList(new Ast.Stmt.Expression(g)));
+        Ast.Field field = new Ast.Field("x", Optional.of(new Ast.Expr.Literal(BigInteger.ONE)));
+        Map<String, Ast.Source> sources = new HashMap<>();
+        sources.put("a", new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Expression(f),
+                        new Ast.Stmt.Expression(new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(x)))
+                )),
+                new Ast.Method("g", Arrays.asList(), Arrays.asList())
+        )));
+        sources.put("b", new Ast.Source(Arrays.asList(), Arrays.asList(method)));
+        sources.put("c", new Ast.Source(Arrays.asList(field), Arrays.asList()));
+        List<Project.Unit> units = new Project().compile(sources);
+
+        for (Project.Unit unit : units) {
+            Assertions.assertNull(unit.getError(), unit.getName());
+        }
+        Assertions.assertEquals(Arrays.asList(units.get(1), units.get(2)), units.get(0).getDependencies());
+        Assertions.assertEquals(Arrays.asList(units.get(0)), units.get(1).getDependencies());
+        Assertions.assertEquals(Arrays.asList(), units.get(2).getDependencies());
+        Assertions.assertSame(method, f.getFunction().getMethod());
+        Assertions.assertSame(field.getVariable(), x.getVariable());
+        Assertions.assertSame(units.get(0).getAst().getMethods().get(1), g.getFunction().getMethod());
+    }
+
+    @Test
+    void testFailedDependency() {
+        //a: DEF main() DO print(x); END
+        //b: LET x = y;
+        Map<String, Ast.Source> sources = new HashMap<>();
+        sources.put("a", new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(new Ast.Stmt.Expression(
+                        new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(AstFixtures.access("x")))
+                )))
+        )));
+        sources.put("b", new Ast.Source(Arrays.asList(new Ast.Field("x", Optional.of(AstFixtures.access("y")))), Arrays.asList()));
+        List<Project.Unit> units = new Project().compile(sources);
+
+        Assertions.assertNotNull(units.get(0).getError());
+        Assertions.assertNotNull(units.get(1).getError());
+        Assertions.assertNull(units.get(0).getScope());
+    }
+
+    @Test
+    void testDuplicateDefinition() {
+        Map<String, Ast.Source> sources = new HashMap<>();
+        sources.put("a", new Ast.Source(Arrays.asList(new Ast.Field("x", Optional.empty())), Arrays.asList()));
+        sources.put("b", new Ast.Source(Arrays.asList(new Ast.Field("x", Optional.empty())), Arrays.asList()));
+        Assertions.assertThrows(RuntimeException.class, () -> new Project().compile(sources));
+    }
+
+    @Test
+    void testLongChain() {
+        //each unit calls the function defined by the previous one
+        Map<String, Ast.Source> sources = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            List<Ast.Stmt> statements = i == 0 ? Arrays.asList() : Arrays.asList(new Ast.Stmt.Expression(
+                    new Ast.Expr.Function(Optional.empty(), "f" + (i - 1), Arrays.asList())
+            ));
+            sources.put(String.format("u%05d", i), new Ast.Source(Arrays.asList(), Arrays.asList(
+                    new Ast.Method("f" + i, Arrays.asList(), statements)
+            )));
+        }
+        for (Project.Unit unit : new Project().compile(sources)) {
+            Assertions.assertNull(unit.getError(), unit.getName());
+        }
+    }
+
+    @Test
+    void testSourceFiles() throws IOException {
+        Path directory = Files.createTempDirectory("plc");
+        Path database = directory.resolve("fingerprints");
+        Files.writeString(directory.resolve("a.plc"), "LET x = 1;\nDEF f() DO RETURN x; END");
+        Files.writeString(directory.resolve("b.plc"), "LET y = 2;\nDEF main() DO print(f() + x + y); END");
+        Files.writeString(directory.resolve("c.plc"), "DEF g() DO RETURN 1 END");
+        try {
+            List<Project.Unit> units = new Project().compile(directory);
+            Assertions.assertNull(units.get(0).getError());
+            Assertions.assertNull(units.get(1).getError());
+            Assertions.assertTrue(units.get(2).getError() instanceof ParseException);
+            Assertions.assertEquals(Arrays.asList(units.get(0)), units.get(1).getDependencies());
+
+            //the imported field keeps its slot, which differs from the importer's own field
+            Scope.Variable x = units.get(0).getAst().getFields().get(0).getVariable();
+            Scope.Variable y = units.get(1).getAst().getFields().get(0).getVariable();
+            Assertions.assertSame(x, units.get(1).getScope().lookupVariable("x"));
+            Assertions.assertEquals(0, x.getSlot());
+            Assertions.assertEquals(1, y.getSlot());
+
+            Assertions.assertEquals(Arrays.asList("a.plc", "b.plc", "c.plc (error)"), build(new Project(), directory, database));
+            Files.writeString(directory.resolve("c.plc"), "DEF g() DO RETURN 1; END");
+            Assertions.assertEquals(Arrays.asList("c.plc"), build(new Project(), directory, database));
+        } finally {
+            try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void testIncrementalBuild() throws IOException {
+        Path directory = Files.createTempDirectory("plc");
+        Path database = directory.resolve("fingerprints");
+        AtomicInteger parses = new AtomicInteger();
+        Project project = new Project(ForkJoinPool.commonPool(), input -> {
+            parses.incrementAndGet();
+            return parse(input);
+        });
+        Files.writeString(directory.resolve("a.plc"), "f/0");
+        Files.writeString(directory.resolve("b.plc"), "g/0>f/0");
+        Files.writeString(directory.resolve("c.plc"), "h/0");
+
+        Assertions.assertEquals(Arrays.asList("a.plc", "b.plc", "c.plc"), build(project, directory, database));
+        Assertions.assertEquals(3, parses.get());
+
+        //nothing changed, including when the database is reloaded
+        Assertions.assertEquals(Arrays.asList(), build(project, directory, database));
+        Files.setLastModifiedTime(directory.resolve("a.plc"), FileTime.fromMillis(0));
+        Assertions.assertEquals(Arrays.asList(), build(project, directory, database));
+        Assertions.assertEquals(3, parses.get());
+
+        //a change that keeps the signatures only rebuilds the changed file
+        Files.writeString(directory.resolve("c.plc"), "h/0 ");
+        Assertions.assertEquals(Arrays.asList("c.plc"), build(project, directory, database));
+
+        //changing a signature rebuilds its importers, and a is loaded again for b
+        Files.writeString(directory.resolve("a.plc"), "f/0 x");
+        Assertions.assertEquals(Arrays.asList("a.plc"), build(project, directory, database));
+        Files.writeString(directory.resolve("a.plc"), "f/1 x");
+        Assertions.assertEquals(Arrays.asList("a.plc", "b.plc (error)"), build(project, directory, database));
+
+        //b failed, since f/0 no longer exists, so it's built again next time
+        Assertions.assertEquals(Arrays.asList("b.plc (error)"), build(project, directory, database));
+        Files.writeString(directory.resolve("a.plc"), "f/0 x");
+        Assertions.assertEquals(Arrays.asList("a.plc", "b.plc"), build(project, directory, database));
+        Assertions.assertEquals(Arrays.asList(), build(project, directory, database));
+
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void testIncrementalDuplicateDefinition() throws IOException {
+        Path directory = Files.createTempDirectory("plc");
+        Path database = directory.resolve("fingerprints");
+        Project project = new Project(ForkJoinPool.commonPool(), ProjectTests::parse);
+        Files.writeString(directory.resolve("a.plc"), "f/0");
+        Files.writeString(directory.resolve("b.plc"), "g/0");
+        try {
+            Assertions.assertEquals(Arrays.asList("a.plc", "b.plc"), build(project, directory, database));
+            //c isn't related to the units loaded for the build, but its f/0 still conflicts with a
+            Files.writeString(directory.resolve("c.plc"), "f/0");
+            RuntimeException full = Assertions.assertThrows(RuntimeException.class, () -> project.compile(directory));
+            RuntimeException incremental = Assertions.assertThrows(RuntimeException.class, () -> build(project, directory, database));
+            Assertions.assertEquals("The method f/0 is defined in both a.plc and c.plc.", full.getMessage());
+            Assertions.assertEquals(full.getMessage(), incremental.getMessage());
+        } finally {
+            try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Builds with a store loaded from the database, returning the names of
+     * rebuilt units.
+     */
+    private static List<String> build(Project project, Path directory, Path database) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (Project.Unit unit : project.build(directory, FingerprintStore.load(database))) {
+            names.add(unit.getError() == null ? unit.getName() : unit.getName() + " (error)");
+        }
+        return names;
+    }
+
+    /**
+     * Parses definitions separated by whitespace, which are either a field
+     * name or a method {@code name/arity} optionally followed by {@code >}
+     * and the calls in its body, such as {@code f/1>g/0,h/2}.
+     */
+    private static Ast.Source parse(String input) {
+        List<Ast.Field> fields = new ArrayList<>();
+        List<Ast.Method> methods = new ArrayList<>();
+        for (String definition : input.trim().split("\\s+")) {
+            if (!definition.contains("/")) {
+                fields.add(new Ast.Field(definition, Optional.empty()));
+                continue;
+            }
+            String[] parts = definition.split(">");
+            List<Ast.Stmt> statements = new ArrayList<>();
+            for (int i = 1; i < parts.length; i++) {
+                for (String call : parts[i].split(",")) {
+                    statements.add(new Ast.Stmt.Expression(new Ast.Expr.Function(Optional.empty(), call.split("/")[0],
+                            literals(Integer.parseInt(call.split("/")[1])))));
+                }
+            }
+            List<String> parameters = new ArrayList<>();
+            for (int i = 0; i < Integer.parseInt(parts[0].split("/")[1]); i++) {
+                parameters.add("p" + i);
+            }
+            methods.add(new Ast.Method(parts[0].split("/")[0], parameters, statements));
+        }
+        return new Ast.Source(fields, methods);
+    }
+
+    private static List<Ast.Expr> literals(int count) {
+        List<Ast.Expr> literals = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            literals.add(new Ast.Expr.Literal(BigInteger.valueOf(i)));
+        }
+        return literals;
+    }
+
+}
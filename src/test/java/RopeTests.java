@@ -0,0 +1,103 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+final class RopeTests {
+
+    @Test
+    void testShortConcatenation() {
+        Assertions.assertEquals("ab", Rope.concat("a", "b"));
+    }
+
+    @Test
+    void testConcatenation() {
+        String part = "x".repeat(Rope.FLAT_LENGTH);
+        CharSequence rope = Rope.concat(Rope.concat(part, "a"), Rope.concat("b", part));
+        Assertions.assertTrue(rope instanceof Rope);
+        Assertions.assertEquals(2 * Rope.FLAT_LENGTH + 2, rope.length());
+        Assertions.assertTrue(((Rope) rope).isConcatenation());
+        Assertions.assertEquals(part + "ab" + part, rope.toString());
+        Assertions.assertFalse(((Rope) rope).isConcatenation());
+    }
+
+    @Test
+    void testDeepAppend() {
+        CharSequence rope = "";
+        for (int i = 0; i < 1_000_000; i++) {
+            rope = Rope.concat(rope, "ab");
+        }
+        Assertions.assertEquals(2_000_000, rope.length());
+        Assertions.assertEquals("ab".repeat(1_000_000), rope.toString());
+    }
+
+    @Test
+    void testDeepPrepend() {
+        CharSequence rope = "";
+        for (int i = 0; i < 1_000_000; i++) {
+            rope = Rope.concat(String.valueOf((char) ('a' + i % 2)), rope);
+        }
+        Assertions.assertEquals("ba".repeat(500_000), rope.toString());
+    }
+
+    @Test
+    void testEquality() {
+        String part = "x".repeat(Rope.FLAT_LENGTH);
+        Assertions.assertTrue(Rope.equal(Rope.concat(part, "a"), part + "a"));
+        Assertions.assertTrue(Rope.equal(part + "a", Rope.concat(part, "a")));
+        Assertions.assertFalse(Rope.equal(Rope.concat(part, "a"), part + "b"));
+        Assertions.assertFalse(Rope.equal(Rope.concat(part, "a"), null));
+        Assertions.assertTrue(Rope.equal(null, null));
+    }
+
+    @Test
+    void testListEquality() {
+        String part = "x".repeat(Rope.FLAT_LENGTH);
+        Assertions.assertTrue(Rope.equal(Arrays.asList(Rope.concat(part, "a"), 1L), Arrays.asList(part + "a", 1L)));
+        Assertions.assertTrue(Rope.equal(Arrays.asList(Arrays.asList(part + "a")), Arrays.asList(Arrays.asList(Rope.concat(part, "a")))));
+        Assertions.assertFalse(Rope.equal(Arrays.asList(Rope.concat(part, "a")), Arrays.asList(part + "b")));
+        Assertions.assertFalse(Rope.equal(Arrays.asList(Rope.concat(part, "a")), Arrays.asList(part + "a", 1L)));
+    }
+
+    @Test
+    void testInterpreterListEquality() {
+        Ast.Source source = new Parser(new Lexer("DEF main() DO\n" +
+                "    LET s = \"\"; WHILE s.length() < 200 DO s = s + \"x\"; END\n" +
+                "    LET a = list(); a.add(s + \"y\");\n" +
+                "    LET b = list(); b.add(\"" + "x".repeat(200) + "y\");\n" +
+                "    RETURN a == b;\n" +
+                "END").lex()).parseSource();
+        Analyzer analyzer = new Analyzer();
+        analyzer.visit(source);
+        Assertions.assertEquals(true, new Interpreter(analyzer.getScope(), new StringBuilder()).run(source));
+        Assertions.assertEquals(true, new NodeInterpreter(analyzer.getScope(), new StringBuilder()).run(source));
+    }
+
+    @Test
+    void testInterpreter() {
+        //DEF main() DO LET i = 0; LET s = ""; WHILE i < 1000 DO s = s + "ab"; i = i + 1; END print(s.length()); RETURN s; END
+        Ast.Method main = new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                new Ast.Stmt.Declaration("i", Optional.of(AstFixtures.parse("0"))),
+                new Ast.Stmt.Declaration("s", Optional.of(AstFixtures.parse("\"\""))),
+                new Ast.Stmt.While(AstFixtures.parse("i < 1000"), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.parse("s"), AstFixtures.parse("s + \"ab\"")),
+                        new Ast.Stmt.Assignment(AstFixtures.parse("i"), AstFixtures.parse("i + 1"))
+                )),
+                new Ast.Stmt.Expression(AstFixtures.parse("print(s.length())")),
+                new Ast.Stmt.Return(AstFixtures.parse("s"))
+        ));
+        Ast.Source source = new Ast.Source(Arrays.asList(), Arrays.asList(main));
+        Analyzer analyzer = new Analyzer();
+        analyzer.visit(source);
+        StringBuilder out = new StringBuilder();
+        Assertions.assertEquals("ab".repeat(1000), new Interpreter(analyzer.getScope(), out).run(source));
+        Assertions.assertEquals("2000\n", out.toString());
+        out.setLength(0);
+        Assertions.assertEquals("ab".repeat(1000), new NodeInterpreter(analyzer.getScope(), out).run(source));
+        Assertions.assertEquals("2000\n", out.toString());
+    }
+
+}
@@ -0,0 +1,145 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+final class SchedulerTests {
+
+    @Test
+    void testConcurrentPrograms() throws Exception {
+        try (Scheduler scheduler = new Scheduler(100, Scheduler.DEFAULT_LIMIT)) {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                results.add(scheduler.submit(sum(i), new StringBuilder()));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                Assertions.assertEquals((long) i * (i - 1) / 2, results.get(i).get());
+            }
+        }
+    }
+
+    @Test
+    void testRunaway() throws Exception {
+        //DEF main() DO WHILE TRUE DO END END
+        Ast.Source runaway = source(method("main", new Ast.Stmt.While(AstFixtures.parse("TRUE"), Arrays.asList())));
+        try (Scheduler scheduler = new Scheduler(100, 10_000)) {
+            Future<Object> aborted = scheduler.submit(runaway, new StringBuilder());
+            Future<Object> result = scheduler.submit(sum(100), new StringBuilder());
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class, aborted::get);
+            Assertions.assertEquals("Instruction budget of 10000 exceeded.", e.getCause().getMessage());
+            Assertions.assertEquals(4950L, result.get());
+        }
+    }
+
+    @Test
+    void testResubmit() throws Exception {
+        //DEF main() DO print(1); RETURN 1; END, which blocks in print until released
+        Ast.Source source = source(method("main",
+                new Ast.Stmt.Expression(AstFixtures.parse("print(1)")),
+                new Ast.Stmt.Return(AstFixtures.parse("1"))
+        ));
+        CountDownLatch release = new CountDownLatch(1);
+        StringWriter out = new StringWriter() {
+            @Override
+            public StringWriter append(CharSequence csq) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.append(csq);
+            }
+        };
+        try (Scheduler scheduler = new Scheduler()) {
+            Future<Object> result = scheduler.submit(source, out);
+            try {
+                Assertions.assertThrows(IllegalStateException.class, () -> scheduler.submit(source, new StringBuilder()));
+            } finally {
+                release.countDown();
+            }
+            Assertions.assertEquals(1L, result.get());
+            //the run has finished, so the source can be submitted again
+            Assertions.assertEquals(1L, scheduler.submit(source, new StringBuilder()).get());
+        }
+    }
+
+    @Test
+    void testAnalysisError() {
+        //DEF main() DO RETURN x; END
+        Ast.Source source = source(method("main", new Ast.Stmt.Return(AstFixtures.parse("x"))));
+        try (Scheduler scheduler = new Scheduler()) {
+            Assertions.assertThrows(RuntimeException.class, () -> scheduler.submit(source, new StringBuilder()));
+        }
+    }
+
+    @Test
+    void testInterruptedClose() {
+        Scheduler scheduler = new Scheduler(100, Scheduler.DEFAULT_LIMIT);
+        scheduler.submit(sum(100_000), new StringBuilder());
+        Thread.currentThread().interrupt();
+        scheduler.close();
+        //Thread.interrupted also clears the flag for later tests
+        Assertions.assertTrue(Thread.interrupted());
+    }
+
+    @Test
+    void testBudget() {
+        //a loop of 100 iterations is charged 100 instructions, plus 1 for the call to main
+        Budget budget = new Budget(10, 101);
+        Assertions.assertEquals(4950L, run(sum(100), budget));
+        Assertions.assertEquals(100, budget.getUsed());
+        Assertions.assertEquals(10, budget.getYields());
+        Assertions.assertThrows(RuntimeException.class, () -> run(sum(101), new Budget(10, 101)));
+    }
+
+    @Test
+    void testRecursionBudget() {
+        //DEF loop() DO RETURN loop(); END, which runs in constant stack as a tail call
+        Ast.Source source = source(
+                method("loop", new Ast.Stmt.Return(AstFixtures.parse("loop()"))),
+                method("main", new Ast.Stmt.Return(AstFixtures.parse("loop()")))
+        );
+        Assertions.assertThrows(RuntimeException.class, () -> run(source, new Budget(100, 1_000_000)));
+    }
+
+    private static Object run(Ast.Source source, Budget budget) {
+        Analyzer analyzer = new Analyzer();
+        analyzer.visit(source);
+        Interpreter interpreter = new Interpreter(analyzer.getScope(), new StringBuilder());
+        interpreter.setBudget(budget);
+        return interpreter.run(source);
+    }
+
+    /**
+     * {@code DEF main() DO LET i = 0; LET t = 0; WHILE i < n DO t = t + i; i = i + 1; END RETURN t; END}
+     */
+    private static Ast.Source sum(int n) {
+        return source(method("main",
+                new Ast.Stmt.Declaration("i", Optional.of(AstFixtures.parse("0"))),
+                new Ast.Stmt.Declaration("t", Optional.of(AstFixtures.parse("0"))),
+                new Ast.Stmt.While(AstFixtures.parse("i < " + n), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.parse("t"), AstFixtures.parse("t + i")),
+                        new Ast.Stmt.Assignment(AstFixtures.parse("i"), AstFixtures.parse("i + 1"))
+                )),
+                new Ast.Stmt.Return(AstFixtures.parse("t"))
+        ));
+    }
+
+    private static Ast.Source source(Ast.Method... methods) {
+        return new Ast.Source(Arrays.asList(), Arrays.asList(methods));
+    }
+
+    private static Ast.Method method(String name, Ast.Stmt... statements) {
+        return new Ast.Method(name, Arrays.asList(), Arrays.asList(statements));
+    }
+
+}
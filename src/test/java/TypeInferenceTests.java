@@ -0,0 +1,158 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+final class TypeInferenceTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testExpression(String test, Ast.Expr ast, Type expected) {
+        infer(new Ast.Stmt.Expression(ast));
+        Assertions.assertEquals(expected, ast.getType());
+    }
+
+    private static Stream<Arguments> testExpression() {
+        return Stream.of(
+                Arguments.of("Integer", literal(BigInteger.ONE), Type.INTEGER),
+                Arguments.of("Decimal", literal(new BigDecimal("1.0")), Type.DECIMAL),
+                Arguments.of("Nil", literal(null), Type.NIL),
+                Arguments.of("Integer Addition", binary("+", literal(BigInteger.ONE), literal(BigInteger.TEN)), Type.INTEGER),
+                Arguments.of("String Concatenation", binary("+", literal("a"), literal("b")), Type.STRING),
+                Arguments.of("Mixed Addition", binary("+", literal(BigInteger.ONE), literal(new BigDecimal("1.0"))), Type.ANY),
+                Arguments.of("String Subtraction", binary("-", literal("a"), literal("b")), Type.ANY),
+                Arguments.of("Comparison", binary("<", literal('a'), literal('b')), Type.BOOLEAN),
+                Arguments.of("Mixed Comparison", binary("<", literal('a'), literal("b")), Type.ANY),
+                Arguments.of("Equality", binary("==", literal("a"), literal(BigInteger.ONE)), Type.BOOLEAN),
+                Arguments.of("And", binary("AND", literal(true), binary("<", literal(BigInteger.ONE), literal(BigInteger.TEN))), Type.BOOLEAN),
+                Arguments.of("Group", new Ast.Expr.Group(literal(new BigDecimal("1.0"))), Type.DECIMAL),
+                Arguments.of("Call", new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(literal(BigInteger.ONE))), Type.ANY)
+        );
+    }
+
+    @Test
+    void testRuntimeType() {
+        String half = "a".repeat(Rope.FLAT_LENGTH);
+        Assertions.assertEquals(Type.STRING, Type.of(half));
+        Assertions.assertEquals(Type.STRING, Type.of(Rope.concat(half, half)));
+        Assertions.assertEquals(Type.ANY, Type.of(new StringBuilder(half)));
+    }
+
+    @Test
+    void testFlowSensitive() {
+        //DEF main() DO LET x = 1; x; x = "a"; x; END
+        Ast.Expr.Access first = AstFixtures.access("x");
+        Ast.Expr.Access second = AstFixtures.access("x");
+        infer(
+                new Ast.Stmt.Declaration("x", Optional.of(literal(BigInteger.ONE))),
+                new Ast.Stmt.Expression(first),
+                new Ast.Stmt.Assignment(AstFixtures.access("x"), literal("a")),
+                new Ast.Stmt.Expression(second)
+        );
+        Assertions.assertEquals(Type.INTEGER, first.getType());
+        Assertions.assertEquals(Type.STRING, second.getType());
+    }
+
+    @Test
+    void testIfJoin() {
+        //DEF main() DO LET x = 1; LET y = 1; IF TRUE DO x = 2; y = 2.0; END ELSE x = 3; END x; y; END
+        Ast.Expr.Access x = AstFixtures.access("x");
+        Ast.Expr.Access y = AstFixtures.access("y");
+        infer(
+                new Ast.Stmt.Declaration("x", Optional.of(literal(BigInteger.ONE))),
+                new Ast.Stmt.Declaration("y", Optional.of(literal(BigInteger.ONE))),
+                new Ast.Stmt.If(literal(true), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.access("x"), literal(BigInteger.TWO)),
+                        new Ast.Stmt.Assignment(AstFixtures.access("y"), literal(new BigDecimal("2.0")))
+                ), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.access("x"), literal(BigInteger.TEN))
+                )),
+                new Ast.Stmt.Expression(x),
+                new Ast.Stmt.Expression(y)
+        );
+        Assertions.assertEquals(Type.INTEGER, x.getType());
+        Assertions.assertEquals(Type.ANY, y.getType());
+    }
+
+    @Test
+    void testIfReturn() {
+        //DEF main() DO LET x = 1; IF TRUE DO x = "a"; RETURN x; END x; END
+        Ast.Expr.Access x = AstFixtures.access("x");
+        Ast.Method method = infer(
+                new Ast.Stmt.Declaration("x", Optional.of(literal(BigInteger.ONE))),
+                new Ast.Stmt.If(literal(true), Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.access("x"), literal("a")),
+                        new Ast.Stmt.Return(AstFixtures.access("x"))
+                ), Arrays.asList()),
+                new Ast.Stmt.Expression(x)
+        );
+        //the assignment doesn't reach x since the branch returned
+        Assertions.assertEquals(Type.INTEGER, x.getType());
+        Assertions.assertEquals(Type.ANY, method.getFunction().getReturnType());
+    }
+
+    @Test
+    void testWhile() {
+        //DEF main() DO LET i = 0; LET s = 0; WHILE i < 10 DO i = i + 1; s = s + 0.5; END RETURN i; END
+        Ast.Expr.Binary condition = binary("<", AstFixtures.access("i"), literal(BigInteger.TEN));
+        Ast.Expr.Binary increment = binary("+", AstFixtures.access("i"), literal(BigInteger.ONE));
+        Ast.Expr.Binary sum = binary("+", AstFixtures.access("s"), literal(new BigDecimal("0.5")));
+        Ast.Method method = infer(
+                new Ast.Stmt.Declaration("i", Optional.of(literal(BigInteger.ZERO))),
+                new Ast.Stmt.Declaration("s", Optional.of(literal(BigInteger.ZERO))),
+                new Ast.Stmt.While(condition, Arrays.asList(
+                        new Ast.Stmt.Assignment(AstFixtures.access("i"), increment),
+                        new Ast.Stmt.Assignment(AstFixtures.access("s"), sum)
+                )),
+                new Ast.Stmt.Return(AstFixtures.access("i"))
+        );
+        Assertions.assertEquals(Type.BOOLEAN, condition.getType());
+        Assertions.assertEquals(Type.INTEGER, increment.getType());
+        //s is an integer before the loop and ANY after the first iteration
+        Assertions.assertEquals(Type.ANY, sum.getType());
+        Assertions.assertEquals(Type.INTEGER, method.getFunction().getReturnType());
+    }
+
+    @Test
+    void testRecursiveReturn() {
+        //DEF f(n) DO IF n DO RETURN 1; END RETURN f(n) * 2; END
+        Ast.Expr.Function call = new Ast.Expr.Function(Optional.empty(), "f", Arrays.asList(AstFixtures.access("n")));
+        Ast.Method method = new Ast.Method("f", Arrays.asList("n"), Arrays.asList(
+                new Ast.Stmt.If(AstFixtures.access("n"), Arrays.asList(
+                        new Ast.Stmt.Return(literal(BigInteger.ONE))
+                ), Arrays.asList()),
+                new Ast.Stmt.Return(binary("*", call, literal(BigInteger.TWO)))
+        ));
+        Ast.Source source = new Ast.Source(Arrays.asList(), Arrays.asList(method));
+        new Analyzer().visit(source);
+        new TypeInference().visit(source);
+        Assertions.assertEquals(Type.INTEGER, call.getType());
+        Assertions.assertEquals(Type.INTEGER, method.getFunction().getReturnType());
+    }
+
+    private static Ast.Method infer(Ast.Stmt... statements) {
+        Ast.Method method = new Ast.Method("main", Arrays.asList(), Arrays.asList(statements));
+        Ast.Source source = new Ast.Source(Arrays.asList(), Arrays.asList(method));
+        new Analyzer().visit(source);
+        new TypeInference().visit(source);
+        return method;
+    }
+
+    private static Ast.Expr.Literal literal(Object value) {
+        return new Ast.Expr.Literal(value);
+    }
+
+    private static Ast.Expr.Binary binary(String operator, Ast.Expr left, Ast.Expr right) {
+        return new Ast.Expr.Binary(operator, left, right);
+    }
+
+}